@@ -0,0 +1,71 @@
+package com.webrayan.store.core.common.controller;
+
+import com.webrayan.store.core.config.DerivedImageProperties;
+import com.webrayan.store.core.exception.BadRequestException;
+import com.webrayan.store.core.exception.ResourceNotFoundException;
+import com.webrayan.store.core.service.DerivedImageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * نسخه‌های تغییر اندازه‌یافته تصاویر که در اولین درخواست ساخته می‌شوند
+ * e.g. {@code /img/<ref>/300x300.webp}. A matching If-None-Match is answered with 304 from the variant's ETag.
+ */
+@RestController
+@RequestMapping("/img")
+public class DerivedImageController {
+
+    private static final Logger logger = LoggerFactory.getLogger(DerivedImageController.class);
+
+    @Autowired
+    private DerivedImageService derivedImageService;
+
+    @Autowired
+    private DerivedImageProperties properties;
+
+    @GetMapping("/{ref}/{width:\\d{1,5}}x{height:\\d{1,5}}.{format:[A-Za-z]{3,4}}")
+    public ResponseEntity<Resource> getImage(@PathVariable String ref,
+                                             @PathVariable int width,
+                                             @PathVariable int height,
+                                             @PathVariable String format,
+                                             WebRequest webRequest) {
+        try {
+            DerivedImageService.DerivedImage image = derivedImageService.getVariant(ref, width, height, format);
+            CacheControl cacheControl = CacheControl.maxAge(properties.getMaxAgeSeconds(), TimeUnit.SECONDS).cachePublic();
+            if (webRequest.checkNotModified(image.getEtag())) {
+                // no body is written for 304, so the handle would never be closed by the converter
+                image.close();
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(image.getEtag()).cacheControl(cacheControl).build();
+            }
+            // the stream is already open: a concurrent eviction can delete the file without failing this response
+            return ResponseEntity.ok()
+                    .eTag(image.getEtag())
+                    .cacheControl(cacheControl)
+                    .contentType(MediaType.parseMediaType(image.getContentType()))
+                    .contentLength(image.getSize())
+                    .body(new InputStreamResource(image.getInputStream()));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IOException e) {
+            logger.error("Failed to serve image {} at {}x{}.{}", ref, width, height, format, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
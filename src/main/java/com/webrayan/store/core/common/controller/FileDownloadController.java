@@ -0,0 +1,237 @@
+package com.webrayan.store.core.common.controller;
+
+import com.webrayan.store.core.config.FileServingProperties;
+import com.webrayan.store.core.service.FileStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ارسال فایل‌های آپلودشده
+ * <p>
+ * Serves {@code /uploads/<ref>} and the {@code /api/files/download/<ref>} URLs handed out by
+ * {@link FileStorageService#getFileUrl(String)}. File contents never pass through the heap: the body
+ * goes out through the container's sendfile when it offers it, otherwise through
+ * {@link FileChannel#transferTo}. Single byte ranges are answered with 206, and If-None-Match /
+ * If-Modified-Since with 304 against an ETag derived from size and modification time. Storages
+ * without local files are streamed through {@link FileStorageService#openStream} instead.
+ */
+@RestController
+public class FileDownloadController {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileDownloadController.class);
+
+    private static final List<String> PREFIXES = List.of("/api/files/download/", "/uploads/");
+
+    // request attributes of Tomcat's sendfile support (org.apache.catalina.Globals)
+    static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private FileServingProperties properties;
+
+    @RequestMapping(value = {"/api/files/download/**", "/uploads/**"}, method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serveFile(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String fileReference = fileReference(request);
+        if (fileReference == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        Path path;
+        try {
+            path = fileStorageService.getLocalPath(fileReference);
+        } catch (SecurityException | IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        } catch (IOException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long length;
+        long lastModified;
+        if (path != null) {
+            if (!Files.isRegularFile(path)) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            length = attributes.size();
+            lastModified = attributes.lastModifiedTime().toMillis();
+        } else {
+            // object storage: the body is streamed from the store instead
+            FileStorageService.FileMetadata metadata;
+            try {
+                metadata = fileStorageService.getFileMetadata(fileReference);
+            } catch (IOException e) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            length = metadata.getSize();
+            lastModified = metadata.getLastModified().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl(fileReference).getHeaderValue());
+        // sets ETag and Last-Modified, and answers 304 when the client's copy is current
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        MediaType mediaType = MediaTypeFactory.getMediaType(fileReference.substring(fileReference.lastIndexOf('/') + 1))
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        response.setContentType(mediaType.toString());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        long start = 0;
+        long end = length - 1;
+        HttpRange range = requestedRange(request, etag, lastModified);
+        if (range != null) {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            if (start >= length || start > end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if (RequestMethod.HEAD.name().equals(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (path == null) {
+            try (InputStream body = fileStorageService.openStream(fileReference, start, count)) {
+                body.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+        if (properties.isSendfile() && count >= properties.getSendfileThresholdBytes()
+                && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            // the connector writes the file once this request returns
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        transfer(path, start, count, response);
+    }
+
+    private void transfer(Path path, long start, long count, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, target);
+                if (sent <= 0) {
+                    // the file was truncated while being sent; the client sees a short body
+                    logger.warn("File {} ended {} bytes early", path, remaining);
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /**
+     * The single range to send, or null for the whole file. Multiple ranges, malformed headers and
+     * an If-Range that no longer matches all fall back to the full body, as RFC 9110 allows.
+     */
+    private HttpRange requestedRange(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRangeMatches(ifRange, request, etag, lastModified)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean ifRangeMatches(String ifRange, HttpServletRequest request, String etag, long lastModified) {
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range needs a strong comparison
+            return ifRange.equals(etag);
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private CacheControl cacheControl(String fileReference) {
+        if (fileStorageService.isImmutable(fileReference)) {
+            return CacheControl.maxAge(properties.getImmutableMaxAgeSeconds(), TimeUnit.SECONDS)
+                    .cachePublic().immutable();
+        }
+        return CacheControl.maxAge(properties.getMaxAgeSeconds(), TimeUnit.SECONDS).cachePublic();
+    }
+
+    /**
+     * The reference after the URL prefix, or null when it is empty or steps out of its directory
+     */
+    private String fileReference(HttpServletRequest request) {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        for (String prefix : PREFIXES) {
+            if (path.startsWith(prefix)) {
+                String fileReference = path.substring(prefix.length());
+                if (fileReference.isEmpty() || fileReference.contains("\\") || fileReference.indexOf('\0') >= 0) {
+                    return null;
+                }
+                for (String segment : fileReference.split("/", -1)) {
+                    if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                        return null;
+                    }
+                }
+                return fileReference;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.webrayan.store.core.common.dto;
+
+import com.webrayan.store.core.util.KeysetCursor;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * صفحه‌ای از نتایج با صفحه‌بندی keyset؛ بدون COUNT و بدون OFFSET
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "صفحه نتایج با نشانگر")
+public class CursorPage<T> {
+
+    private List<T> content;
+
+    private int size;
+
+    private boolean hasNext;
+
+    private boolean hasPrevious;
+
+    @Schema(description = "نشانگر صفحه بعد؛ در صورت نبود صفحه بعد null است")
+    private String nextCursor;
+
+    @Schema(description = "نشانگر صفحه قبل؛ در صفحه اول null است")
+    private String prevCursor;
+
+    /**
+     * ساخت صفحه از Slice خوانده شده
+     * A backward slice is read in reverse sort order, so it is flipped back here and its
+     * {@code hasNext} tells whether there is still an earlier page.
+     *
+     * @param requested نشانگر درخواست شده؛ null برای صفحه اول
+     */
+    public static <T> CursorPage<T> of(Slice<T> slice, KeysetCursor requested,
+                                       Function<T, LocalDateTime> sortValue, Function<T, Long> id) {
+        List<T> content = new ArrayList<>(slice.getContent());
+        boolean backward = requested != null && requested.isBackward();
+        boolean hasNext;
+        boolean hasPrevious;
+        if (backward) {
+            Collections.reverse(content);
+            hasNext = !content.isEmpty();
+            hasPrevious = slice.hasNext();
+        } else {
+            hasNext = slice.hasNext();
+            hasPrevious = requested != null && !content.isEmpty();
+        }
+
+        String nextCursor = null;
+        String prevCursor = null;
+        if (hasNext) {
+            T last = content.get(content.size() - 1);
+            nextCursor = KeysetCursor.after(sortValue.apply(last), id.apply(last)).encode();
+        }
+        if (hasPrevious) {
+            T first = content.get(0);
+            prevCursor = KeysetCursor.before(sortValue.apply(first), id.apply(first)).encode();
+        }
+        return new CursorPage<>(content, slice.getSize(), hasNext, hasPrevious, nextCursor, prevCursor);
+    }
+}
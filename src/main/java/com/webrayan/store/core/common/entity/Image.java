@@ -8,7 +8,9 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "images")
+@Table(name = "images", indexes = {
+        @Index(name = "idx_images_content_hash", columnList = "content_hash")
+})
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -23,4 +25,12 @@ public class Image {
     private LocalDateTime uploadDate;
     private String url;
 
+    // SHA-256 of the stored original; rows with the same hash share one file
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // dHash of the original for near-duplicate detection
+    @Column(name = "perceptual_hash")
+    private Long perceptualHash;
+
 }
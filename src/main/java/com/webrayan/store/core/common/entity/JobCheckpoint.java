@@ -0,0 +1,32 @@
+package com.webrayan.store.core.common.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * نقطه ادامه کارهای دسته‌ای؛ هر کار آخرین شناسه پردازش شده را اینجا نگه می‌دارد
+ */
+@Entity
+@Table(name = "job_checkpoints")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobCheckpoint {
+
+    @Id
+    @Column(name = "name", length = 100)
+    private String name;
+
+    // highest id handled by the sweep in progress; 0 when no sweep is in progress
+    @Column(name = "last_id", nullable = false)
+    private Long lastId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
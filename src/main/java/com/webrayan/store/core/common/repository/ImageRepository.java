@@ -0,0 +1,41 @@
+package com.webrayan.store.core.common.repository;
+
+import com.webrayan.store.core.common.entity.Image;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ImageRepository extends JpaRepository<Image, Long> {
+
+    List<Image> findByContentHashOrderByIdAsc(String contentHash);
+
+    /**
+     * یک ردیف برای هر محتوای یکتا: [contentHash, perceptualHash, imageId, url]
+     */
+    @Query("SELECT i.contentHash, i.perceptualHash, i.id, i.url FROM Image i " +
+           "WHERE i.contentHash IS NOT NULL AND i.perceptualHash IS NOT NULL " +
+           "AND i.id = (SELECT MIN(o.id) FROM Image o WHERE o.contentHash = i.contentHash AND o.perceptualHash IS NOT NULL)")
+    List<Object[]> findHashedOriginals();
+
+    boolean existsByFilename(String filename);
+
+    /**
+     * [id, filename] of the images after {@code afterId}, for walking the table in batches
+     */
+    @Query("SELECT i.id, i.filename FROM Image i WHERE i.id > :afterId ORDER BY i.id")
+    List<Object[]> findFilenamesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Points every image that shares the stored file at its new name
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Image i SET i.filename = :newFilename, i.url = :url WHERE i.filename = :filename")
+    int updateFilename(@Param("filename") String filename, @Param("newFilename") String newFilename,
+                       @Param("url") String url);
+}
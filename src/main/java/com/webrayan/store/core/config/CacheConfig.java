@@ -0,0 +1,49 @@
+package com.webrayan.store.core.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * تنظیمات کش درون‌حافظه‌ای (Caffeine)
+ * Every cache is bounded; its Caffeine spec (size / TTL) comes from app.cache.specs.&lt;name&gt;
+ * and falls back to app.cache.default-spec.
+ */
+@Configuration
+@EnableCaching
+@EnableConfigurationProperties(CacheConfig.CacheProperties.class)
+public class CacheConfig {
+
+    public static final String PRODUCT_DETAILS = "productDetails";
+    public static final String PRODUCT_SLUGS = "productSlugs";
+
+    @Bean
+    public CacheManager cacheManager(CacheProperties cacheProperties) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(Caffeine.from(cacheProperties.getDefaultSpec()));
+        cacheManager.setAllowNullValues(false);
+        cacheProperties.getSpecs().forEach((name, spec) ->
+                cacheManager.registerCustomCache(name, Caffeine.from(spec).build()));
+        return cacheManager;
+    }
+
+    @Data
+    @ConfigurationProperties(prefix = "app.cache")
+    public static class CacheProperties {
+
+        private String defaultSpec = "maximumSize=1000,expireAfterWrite=10m";
+
+        private Map<String, String> specs = new LinkedHashMap<>(Map.of(
+                PRODUCT_DETAILS, "maximumSize=10000,expireAfterWrite=10m,recordStats",
+                PRODUCT_SLUGS, "maximumSize=20000,expireAfterWrite=30m"));
+    }
+}
@@ -0,0 +1,44 @@
+package com.webrayan.store.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * تنظیمات نسخه‌های تصویر ساخته‌شده در لحظه درخواست (app.images.derived.*)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.images.derived")
+public class DerivedImageProperties {
+
+    /**
+     * Root of the derived-image cache; relative paths resolve against the working directory
+     */
+    private String cacheDirectory = "cache/derived-images";
+
+    /**
+     * Least recently used variants are deleted once the cache grows past this many bytes
+     */
+    private long maxCacheBytes = 1024L * 1024 * 1024;
+
+    /**
+     * Storage directories searched, in order, for the {ref} of a request
+     */
+    private List<String> sourceDirectories = new ArrayList<>(List.of("products/originals"));
+
+    private List<String> formats = new ArrayList<>(List.of("jpg", "png", "webp"));
+
+    /**
+     * When false only the sizes in app.file-upload.image-sizes can be requested, which keeps
+     * the number of variants per image bounded
+     */
+    private boolean allowArbitrarySizes = false;
+
+    private int maxDimension = 2000;
+
+    private long maxAgeSeconds = 30L * 24 * 60 * 60;
+}
@@ -0,0 +1,35 @@
+package com.webrayan.store.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * تنظیمات ارسال فایل‌های آپلودشده (app.files.serving.*)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.files.serving")
+public class FileServingProperties {
+
+    /**
+     * Cache lifetime of references whose content can never change, sent with {@code immutable}
+     */
+    private long immutableMaxAgeSeconds = 365L * 24 * 60 * 60;
+
+    /**
+     * Cache lifetime of any other reference; clients revalidate with the ETag afterwards
+     */
+    private long maxAgeSeconds = 60L * 60;
+
+    /**
+     * Hand the file to the servlet container's sendfile when it offers it, instead of copying
+     * it through the response stream
+     */
+    private boolean sendfile = true;
+
+    /**
+     * Bodies smaller than this are copied; setting up sendfile costs more than it saves for them
+     */
+    private long sendfileThresholdBytes = 48L * 1024;
+}
@@ -50,6 +50,28 @@ public class FileUploadConfig {
 
     private boolean enableWebpConversion = true;
 
+    // تعداد نخ‌های پردازش تصویر؛ صفر یعنی به تعداد هسته‌ها
+    @Min(0)
+    private Integer imageProcessingThreads = 0;
+
+    // تصاویر بزرگ‌تر از این تعداد پیکسل رد می‌شوند (محافظت در برابر decompression bomb)
+    @Min(0)
+    private Long maxImagePixels = 50_000_000L;
+
+    // مجموع پیکسل‌های رمزگشایی‌شده همزمان در همه آپلودها؛ صفر یعنی بدون محدودیت
+    @Min(0)
+    private Long decodedPixelBudget = 64_000_000L;
+
+    // بیشینه ضلع نسخه اصلی؛ صفر یعنی اندازه منبع حفظ شود
+    @Min(0)
+    private Integer maxImageDimension = 0;
+
+    // قالب‌های نامزد برای نسخه‌ها؛ کوچک‌ترین خروجی نگه داشته می‌شود و قالب‌های بدون رمزگذار نادیده گرفته می‌شوند
+    private List<String> imageFormatCandidates = List.of("webp", "jpg", "png");
+
+    // ذخیره با نام هش محتوا در پوشه‌های دو سطحی (ab/cd/<sha256>.ext) به جای UUID_نام در یک پوشه
+    private boolean contentAddressed = false;
+
     // Image size configurations
     private List<ImageSize> imageSizes = List.of(
         new ImageSize("thumbnail", 150, 150),
@@ -147,6 +169,54 @@ public class FileUploadConfig {
         this.enableWebpConversion = enableWebpConversion;
     }
 
+    public Integer getImageProcessingThreads() {
+        return imageProcessingThreads;
+    }
+
+    public void setImageProcessingThreads(Integer imageProcessingThreads) {
+        this.imageProcessingThreads = imageProcessingThreads;
+    }
+
+    public Long getMaxImagePixels() {
+        return maxImagePixels;
+    }
+
+    public void setMaxImagePixels(Long maxImagePixels) {
+        this.maxImagePixels = maxImagePixels;
+    }
+
+    public Long getDecodedPixelBudget() {
+        return decodedPixelBudget;
+    }
+
+    public void setDecodedPixelBudget(Long decodedPixelBudget) {
+        this.decodedPixelBudget = decodedPixelBudget;
+    }
+
+    public Integer getMaxImageDimension() {
+        return maxImageDimension;
+    }
+
+    public void setMaxImageDimension(Integer maxImageDimension) {
+        this.maxImageDimension = maxImageDimension;
+    }
+
+    public List<String> getImageFormatCandidates() {
+        return imageFormatCandidates;
+    }
+
+    public void setImageFormatCandidates(List<String> imageFormatCandidates) {
+        this.imageFormatCandidates = imageFormatCandidates;
+    }
+
+    public boolean isContentAddressed() {
+        return contentAddressed;
+    }
+
+    public void setContentAddressed(boolean contentAddressed) {
+        this.contentAddressed = contentAddressed;
+    }
+
     public List<ImageSize> getImageSizes() {
         return imageSizes;
     }
@@ -0,0 +1,59 @@
+package com.webrayan.store.core.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * تنظیمات ذخیره‌سازی فایل در object storage سازگار با S3 (app.file-storage.s3.*)
+ * <p>
+ * Only used when {@code app.file-storage.type=s3}. Works against AWS S3 as well as MinIO, Ceph RGW
+ * and other S3-compatible stores reached through {@link #endpoint}.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.file-storage.s3")
+public class S3StorageProperties {
+
+    /**
+     * Smallest part S3 accepts in a multipart upload, except for the last one
+     */
+    public static final long MIN_PART_SIZE_BYTES = 5L * 1024 * 1024;
+
+    /**
+     * Endpoint of an S3-compatible store, e.g. {@code http://minio:9000}; empty for AWS itself
+     */
+    private String endpoint;
+
+    private String region = "us-east-1";
+
+    private String bucket;
+
+    /**
+     * Static credentials; when empty the SDK's default chain (environment, profile, instance role) is used
+     */
+    private String accessKey;
+
+    private String secretKey;
+
+    /**
+     * Address buckets as {@code endpoint/bucket/key}, which most self-hosted stores expect
+     */
+    private boolean pathStyleAccess = true;
+
+    /**
+     * Base URL under which the bucket is publicly readable (a CDN or the bucket website);
+     * when empty, files are served through {@code /api/files/download/**}
+     */
+    private String publicBaseUrl;
+
+    /**
+     * Files at least this large are sent as a multipart upload, smaller ones with a single PUT
+     */
+    private long multipartThresholdBytes = 16L * 1024 * 1024;
+
+    /**
+     * Size of each multipart upload part; raised to {@link #MIN_PART_SIZE_BYTES} when set lower
+     */
+    private long partSizeBytes = 8L * 1024 * 1024;
+}
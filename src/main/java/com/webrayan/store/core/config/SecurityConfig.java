@@ -6,6 +6,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
 import org.springframework.security.access.expression.method.MethodSecurityExpressionHandler;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -80,6 +81,8 @@ public class SecurityConfig {
                 .requestMatchers("/api/common/countries/**").permitAll()
                 .requestMatchers("/api/common/settings/public/**").permitAll()
                 .requestMatchers("/api/common/tags/**").permitAll()
+                .requestMatchers(HttpMethod.GET, "/api/files/download/**").permitAll()
+                .requestMatchers(HttpMethod.HEAD, "/api/files/download/**").permitAll()
                 
                 // Swagger/OpenAPI endpoints
                 .requestMatchers("/swagger-ui/**").permitAll()
@@ -18,10 +18,8 @@ public class WebMvcConfig implements WebMvcConfigurer {
         // General static resources
         registry.addResourceHandler("/static/**")
                 .addResourceLocations("classpath:/static/");
-        
-        // Upload directory
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:uploads/");
+
+        // Upload directory is served by FileDownloadController (Range, ETag, sendfile)
     }
     
     @Override
@@ -0,0 +1,71 @@
+package com.webrayan.store.core.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Serves resized variants of stored images, generating each one on first request
+ */
+public interface DerivedImageService {
+
+    /**
+     * Return the cached variant of {@code fileReference}, rendering it first if needed
+     * <p>
+     * The returned image holds an open file handle; the caller owns it.
+     *
+     * @param fileReference stored file name of the original, without its directory
+     */
+    DerivedImage getVariant(String fileReference, int width, int height, String format) throws IOException;
+
+    /**
+     * Bytes currently held by the on-disk cache
+     */
+    long getCachedBytes();
+
+    /**
+     * A variant stored in the cache, already opened for reading
+     * <p>
+     * The handle is taken before the service returns, so the bytes stay readable even if the cache evicts the
+     * file afterwards. Whoever receives it must read it through {@link #getInputStream()} or {@link #close()} it.
+     */
+    class DerivedImage implements Closeable {
+        private final Path path;
+        private final String format;
+        private final long size;
+        private final String etag;
+        private final FileChannel channel;
+
+        public DerivedImage(Path path, String format, long size, String etag, FileChannel channel) {
+            this.path = path;
+            this.format = format;
+            this.size = size;
+            this.etag = etag;
+            this.channel = channel;
+        }
+
+        public Path getPath() { return path; }
+        public String getFormat() { return format; }
+        public long getSize() { return size; }
+        public String getEtag() { return etag; }
+
+        public String getContentType() {
+            return "jpg".equals(format) ? "image/jpeg" : "image/" + format;
+        }
+
+        /**
+         * The variant's bytes; closing the stream releases the handle
+         */
+        public InputStream getInputStream() {
+            return Channels.newInputStream(channel);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.webrayan.store.core.service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.List;
 
 /**
@@ -16,6 +18,11 @@ public interface FileStorageService {
      */
     FileStorageResult storeFile(MultipartFile file, String directory) throws IOException;
 
+    /**
+     * Store generated content (e.g. a rendered image variant) that did not arrive as an upload
+     */
+    FileStorageResult storeFile(byte[] content, String filename, String contentType, String directory) throws IOException;
+
     /**
      * Store multiple files
      */
@@ -26,6 +33,29 @@ public interface FileStorageService {
      */
     byte[] retrieveFile(String fileReference) throws IOException;
 
+    /**
+     * Stream {@code length} bytes of the file starting at {@code offset}, without reading it into memory
+     */
+    InputStream openStream(String fileReference, long offset, long length) throws IOException;
+
+    /**
+     * Local file behind the reference, so it can be sent without reading it into memory;
+     * null when this storage does not keep files on the local file system
+     */
+    Path getLocalPath(String fileReference) throws IOException;
+
+    /**
+     * True when the reference can never point at different content, which lets clients
+     * cache it without revalidating
+     */
+    boolean isImmutable(String fileReference);
+
+    /**
+     * Gives an existing file its content-addressed name in the same directory and returns that name.
+     * The file stays reachable under its old reference until it is deleted.
+     */
+    String migrateToContentAddressed(String fileReference) throws IOException;
+
     /**
      * Delete file by reference
      */
@@ -75,14 +105,21 @@ public interface FileStorageService {
         private final long fileSize;
         private final String contentType;
         private final String storagePath;
+        private final String contentHash;
 
         public FileStorageResult(String fileReference, String originalFilename, 
                                long fileSize, String contentType, String storagePath) {
+            this(fileReference, originalFilename, fileSize, contentType, storagePath, null);
+        }
+
+        public FileStorageResult(String fileReference, String originalFilename,
+                               long fileSize, String contentType, String storagePath, String contentHash) {
             this.fileReference = fileReference;
             this.originalFilename = originalFilename;
             this.fileSize = fileSize;
             this.contentType = contentType;
             this.storagePath = storagePath;
+            this.contentHash = contentHash;
         }
 
         public String getFileReference() { return fileReference; }
@@ -90,6 +127,10 @@ public interface FileStorageService {
         public long getFileSize() { return fileSize; }
         public String getContentType() { return contentType; }
         public String getStoragePath() { return storagePath; }
+        /**
+         * Hex SHA-256 of the stored bytes, or null when the storage does not compute it
+         */
+        public String getContentHash() { return contentHash; }
     }
 
     /**
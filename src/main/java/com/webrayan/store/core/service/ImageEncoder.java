@@ -0,0 +1,25 @@
+package com.webrayan.store.core.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Encodes a decoded image into one output format.
+ * Implementations registered as beans are picked up by {@link ImageEncoderRegistry}.
+ */
+public interface ImageEncoder {
+
+    /**
+     * Short lowercase format name used in file extensions and URLs, e.g. "jpg", "png", "webp"
+     */
+    String getFormat();
+
+    String getContentType();
+
+    boolean supportsTransparency();
+
+    /**
+     * @param quality 0..1; ignored by lossless encoders
+     */
+    byte[] encode(BufferedImage image, float quality) throws IOException;
+}
@@ -0,0 +1,165 @@
+package com.webrayan.store.core.service;
+
+import com.webrayan.store.core.service.impl.encoder.ImageIoImageEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * رجیستری رمزگذارهای تصویر
+ * <p>
+ * Every {@link ImageEncoder} bean is registered by its format. Formats without a bundled encoder
+ * (WebP, AVIF) are registered only when an ImageIO writer plugin for them is on the classpath, so
+ * callers can ask {@link #supports(String)} instead of writing through a missing writer and getting
+ * empty output.
+ */
+@Service
+public class ImageEncoderRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageEncoderRegistry.class);
+
+    // formats without a dedicated encoder bean, written through whichever ImageIO writer is present
+    private static final Map<String, String> IMAGEIO_FORMATS = Map.of(
+            "webp", "image/webp",
+            "avif", "image/avif",
+            "gif", "image/gif");
+
+    private final Map<String, ImageEncoder> encoders;
+
+    public ImageEncoderRegistry(List<ImageEncoder> encoderBeans) {
+        Map<String, ImageEncoder> registered = new LinkedHashMap<>();
+        for (ImageEncoder encoder : encoderBeans) {
+            registered.put(normalize(encoder.getFormat()), encoder);
+        }
+        IMAGEIO_FORMATS.forEach((format, contentType) -> {
+            if (!registered.containsKey(format) && ImageIoImageEncoder.isAvailable(format)) {
+                registered.put(format, new ImageIoImageEncoder(format, contentType, true));
+            }
+        });
+        this.encoders = Collections.unmodifiableMap(registered);
+        logger.info("Image encoders available for: {}", encoders.keySet());
+    }
+
+    public static String normalize(String format) {
+        String normalized = format == null ? "" : format.toLowerCase();
+        return "jpeg".equals(normalized) ? "jpg" : normalized;
+    }
+
+    public boolean supports(String format) {
+        return encoders.containsKey(normalize(format));
+    }
+
+    public Optional<ImageEncoder> find(String format) {
+        return Optional.ofNullable(encoders.get(normalize(format)));
+    }
+
+    public Set<String> getFormats() {
+        return encoders.keySet();
+    }
+
+    /**
+     * Encodes in {@code format}, or in PNG/JPEG (depending on transparency) when that format has
+     * no encoder. The returned format is always the one actually written.
+     */
+    public EncodedImage encode(BufferedImage image, String format, float quality) throws IOException {
+        ImageEncoder encoder = encoders.get(normalize(format));
+        if (encoder == null) {
+            encoder = fallbackFor(image);
+            logger.debug("No encoder for {}, encoding as {}", format, encoder.getFormat());
+        }
+        return new EncodedImage(encoder.getFormat(), encoder.getContentType(), encoder.encode(image, quality));
+    }
+
+    /**
+     * کوچک‌ترین خروجی میان قالب‌های نامزد
+     * Encodes the image with every supported candidate and keeps the smallest result. Encoders that
+     * cannot keep transparency are skipped for images with transparent pixels, unless nothing else is left.
+     */
+    public EncodedImage encodeSmallest(BufferedImage image, List<String> candidates, float quality) throws IOException {
+        boolean transparent = hasTransparentPixels(image);
+        boolean transparentCandidate = candidates.stream()
+                .map(candidate -> encoders.get(normalize(candidate)))
+                .anyMatch(encoder -> encoder != null && encoder.supportsTransparency());
+
+        EncodedImage smallest = null;
+        for (String candidate : candidates) {
+            ImageEncoder encoder = encoders.get(normalize(candidate));
+            if (encoder == null || (transparent && transparentCandidate && !encoder.supportsTransparency())) {
+                continue;
+            }
+            try {
+                byte[] data = encoder.encode(image, quality);
+                if (smallest == null || data.length < smallest.getData().length) {
+                    smallest = new EncodedImage(encoder.getFormat(), encoder.getContentType(), data);
+                }
+            } catch (IOException e) {
+                logger.warn("Encoding as {} failed, trying other formats: {}", encoder.getFormat(), e.getMessage());
+            }
+        }
+        if (smallest != null) {
+            return smallest;
+        }
+        return encode(image, candidates.isEmpty() ? "jpg" : candidates.get(0), quality);
+    }
+
+    private ImageEncoder fallbackFor(BufferedImage image) throws IOException {
+        ImageEncoder encoder = encoders.get(hasTransparentPixels(image) ? "png" : "jpg");
+        if (encoder == null) {
+            encoder = encoders.values().stream().findFirst()
+                    .orElseThrow(() -> new IOException("No image encoders registered"));
+        }
+        return encoder;
+    }
+
+    /**
+     * An alpha channel alone does not need PNG; only pixels that are actually see-through do
+     */
+    private boolean hasTransparentPixels(BufferedImage image) {
+        Raster alpha = image.getAlphaRaster();
+        if (alpha == null) {
+            // indexed images keep transparency in the palette
+            return image.getColorModel().getTransparency() != Transparency.OPAQUE;
+        }
+        int max = (1 << image.getColorModel().getComponentSize(image.getColorModel().getNumComponents() - 1)) - 1;
+        int[] row = new int[alpha.getWidth()];
+        for (int y = 0; y < alpha.getHeight(); y++) {
+            alpha.getSamples(0, y, alpha.getWidth(), 1, 0, row);
+            for (int sample : row) {
+                if (sample < max) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Encoded bytes with the format that was actually written
+     */
+    public static final class EncodedImage {
+        private final String format;
+        private final String contentType;
+        private final byte[] data;
+
+        public EncodedImage(String format, String contentType, byte[] data) {
+            this.format = format;
+            this.contentType = contentType;
+            this.data = data;
+        }
+
+        public String getFormat() { return format; }
+        public String getContentType() { return contentType; }
+        public byte[] getData() { return data; }
+    }
+}
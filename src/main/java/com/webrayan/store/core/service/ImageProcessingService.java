@@ -15,6 +15,19 @@ public interface ImageProcessingService {
      */
     ImageProcessingResult processImage(MultipartFile file, ImageProcessingOptions options) throws IOException;
 
+    /**
+     * Process an image that is already in memory, e.g. an original read back from storage by a background job
+     */
+    ImageProcessingResult processImage(byte[] imageData, String filename, String contentType,
+                                       ImageProcessingOptions options) throws IOException;
+
+    /**
+     * Render one size in the requested output format, e.g. for an on-demand variant.
+     * The returned format may differ from the requested one when no encoder is available for it.
+     */
+    ProcessedImageVariant renderVariant(byte[] imageData, ImageSize size, String format,
+                                        ImageProcessingOptions options) throws IOException;
+
     /**
      * Process multiple images
      */
@@ -50,6 +63,11 @@ public interface ImageProcessingService {
      */
     ImageMetadata extractMetadata(byte[] imageData) throws IOException;
 
+    /**
+     * 64-bit difference hash (dHash) of the image; visually similar images differ in few bits
+     */
+    long computePerceptualHash(byte[] imageData) throws IOException;
+
     /**
      * Image processing options
      */
@@ -61,6 +79,7 @@ public interface ImageProcessingService {
         private float jpegQuality = 0.85f;
         private boolean enableProgressive;
         private ResizeMode resizeMode = ResizeMode.PROPORTIONAL;
+        private List<String> candidateFormats;
 
         // Getters and setters
         public List<ImageSize> getSizes() { return sizes; }
@@ -83,6 +102,12 @@ public interface ImageProcessingService {
 
         public ResizeMode getResizeMode() { return resizeMode; }
         public void setResizeMode(ResizeMode resizeMode) { this.resizeMode = resizeMode; }
+
+        /**
+         * When set, each variant is encoded in every supported format of this list and the smallest output is kept
+         */
+        public List<String> getCandidateFormats() { return candidateFormats; }
+        public void setCandidateFormats(List<String> candidateFormats) { this.candidateFormats = candidateFormats; }
     }
 
     /**
@@ -0,0 +1,73 @@
+package com.webrayan.store.core.service.impl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A window of at most {@code limit} bytes over another stream, e.g. one multipart upload part or
+ * the requested byte range of a file
+ */
+final class BoundedInputStream extends FilterInputStream {
+
+    private final boolean closeSource;
+    private long remaining;
+
+    /**
+     * @param closeSource whether closing this window closes the underlying stream; parts cut from
+     *                    one upload stream leave it open for the next part
+     */
+    BoundedInputStream(InputStream source, long limit, boolean closeSource) {
+        super(source);
+        this.remaining = limit;
+        this.closeSource = closeSource;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int value = super.read();
+        if (value >= 0) {
+            remaining--;
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+        if (read > 0) {
+            remaining -= read;
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        long skipped = super.skip(Math.min(count, remaining));
+        remaining -= skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(super.available(), remaining);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closeSource) {
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.webrayan.store.core.service.impl;
+
+import com.webrayan.store.core.config.DerivedImageProperties;
+import com.webrayan.store.core.config.FileUploadConfig;
+import com.webrayan.store.core.exception.BadRequestException;
+import com.webrayan.store.core.exception.ResourceNotFoundException;
+import com.webrayan.store.core.service.DerivedImageService;
+import com.webrayan.store.core.service.FileStorageService;
+import com.webrayan.store.core.service.ImageProcessingService;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * کش دیسکی نسخه‌های تصویر با ساخت در لحظه اولین درخواست
+ * <p>
+ * Each variant is stored under the SHA-256 of everything that determines its bytes (source file,
+ * its size and modification time, dimensions, format and encoder settings), so the key doubles as a
+ * strong ETag and a changed source never serves a stale variant. Concurrent misses for the same key
+ * share one render. The cache is capped in bytes and evicts least recently used variants first;
+ * the LRU index is rebuilt from file modification times on startup.
+ */
+@Service
+public class DiskDerivedImageService implements DerivedImageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskDerivedImageService.class);
+
+    private static final Pattern SAFE_REFERENCE = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]{0,254}");
+    private static final Pattern CACHE_FILE = Pattern.compile("([0-9a-f]{64})\\.([a-z]+)");
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+
+    @Autowired
+    private FileUploadConfig fileUploadConfig;
+
+    @Autowired
+    private DerivedImageProperties properties;
+
+    private Path cacheRoot;
+
+    // access-ordered: iteration starts at the least recently used entry; guarded by itself
+    private final LinkedHashMap<String, CacheEntry> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> rendering = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() throws IOException {
+        cacheRoot = Paths.get(properties.getCacheDirectory()).toAbsolutePath().normalize();
+        Files.createDirectories(cacheRoot);
+
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(cacheRoot, 2)) {
+            walk.filter(Files::isRegularFile).forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(this::lastModified));
+        synchronized (index) {
+            for (Path file : files) {
+                var matcher = CACHE_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    add(new CacheEntry(matcher.group(1), file, matcher.group(2), sizeOf(file)));
+                } else {
+                    // نیمه‌کاره از اجرای قبلی
+                    deleteQuietly(file);
+                }
+            }
+        }
+        evictIfNeeded();
+        logger.info("Derived image cache at {} holds {} variants ({} bytes)", cacheRoot, index.size(), cachedBytes);
+    }
+
+    @Override
+    public DerivedImage getVariant(String fileReference, int width, int height, String format) throws IOException {
+        String targetFormat = normalizeFormat(format);
+        validate(fileReference, width, height);
+
+        String sourceReference = locateSource(fileReference);
+        FileStorageService.FileMetadata source = fileStorageService.getFileMetadata(sourceReference);
+        String key = keyOf(sourceReference, source, width, height, targetFormat);
+
+        while (true) {
+            DerivedImage cached = lookup(key);
+            if (cached != null) {
+                return cached;
+            }
+
+            CompletableFuture<Void> mine = new CompletableFuture<>();
+            CompletableFuture<Void> running = rendering.putIfAbsent(key, mine);
+            if (running != null) {
+                // each waiter opens its own handle; if the variant was evicted already the loop renders it again
+                join(running, fileReference);
+                continue;
+            }
+            try {
+                // another request may have finished this key between our lookup and putIfAbsent
+                DerivedImage image = lookup(key);
+                if (image == null) {
+                    image = render(key, sourceReference, width, height, targetFormat);
+                }
+                mine.complete(null);
+                return image;
+            } catch (IOException | RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                rendering.remove(key, mine);
+            }
+        }
+    }
+
+    @Override
+    public long getCachedBytes() {
+        synchronized (index) {
+            return cachedBytes;
+        }
+    }
+
+    private DerivedImage render(String key, String sourceReference, int width, int height, String format) throws IOException {
+        byte[] original = fileStorageService.retrieveFile(sourceReference);
+        ImageProcessingService.ProcessedImageVariant variant = imageProcessingService.renderVariant(
+                original, new ImageProcessingService.ImageSize(width + "x" + height, width, height), format, processingOptions());
+
+        Path target = pathOf(key, variant.getFormat());
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), key, ".tmp");
+        try {
+            Files.write(temp, variant.getImageData());
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        CacheEntry entry = new CacheEntry(key, target, variant.getFormat(), variant.getImageData().length);
+        // opened before the entry becomes evictable
+        DerivedImage image = entry.open();
+        synchronized (index) {
+            add(entry);
+        }
+        evictIfNeeded();
+        logger.debug("Rendered derived image {} ({}x{} {}, {} bytes)", key, width, height, variant.getFormat(), entry.size);
+        return image;
+    }
+
+    private DerivedImage lookup(String key) throws IOException {
+        CacheEntry entry;
+        synchronized (index) {
+            entry = index.get(key);
+        }
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return entry.open();
+        } catch (NoSuchFileException e) {
+            // evicted or removed from disk after the index lookup
+            synchronized (index) {
+                if (index.remove(key, entry)) {
+                    cachedBytes -= entry.size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void add(CacheEntry entry) {
+        CacheEntry previous = index.put(entry.key, entry);
+        if (previous != null) {
+            cachedBytes -= previous.size;
+        }
+        cachedBytes += entry.size;
+    }
+
+    private void evictIfNeeded() {
+        List<CacheEntry> evicted = new ArrayList<>();
+        synchronized (index) {
+            Iterator<Map.Entry<String, CacheEntry>> eldest = index.entrySet().iterator();
+            while (cachedBytes > properties.getMaxCacheBytes() && eldest.hasNext()) {
+                CacheEntry entry = eldest.next().getValue();
+                eldest.remove();
+                cachedBytes -= entry.size;
+                evicted.add(entry);
+            }
+        }
+        // callers already holding an evicted variant keep reading through their open handle
+        evicted.forEach(entry -> deleteQuietly(entry.path));
+        if (!evicted.isEmpty()) {
+            logger.debug("Evicted {} derived images from cache", evicted.size());
+        }
+    }
+
+    private void join(CompletableFuture<Void> running, String fileReference) throws IOException {
+        try {
+            running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for image: " + fileReference, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Failed to render image: " + fileReference, e.getCause());
+        }
+    }
+
+    private void validate(String fileReference, int width, int height) {
+        if (fileReference == null || !SAFE_REFERENCE.matcher(fileReference).matches()) {
+            throw new BadRequestException("شناسه تصویر نامعتبر است", fileReference);
+        }
+        if (width < 1 || height < 1 || width > properties.getMaxDimension() || height > properties.getMaxDimension()) {
+            throw new BadRequestException("ابعاد تصویر خارج از محدوده مجاز است", width + "x" + height);
+        }
+        if (!properties.isAllowArbitrarySizes() && fileUploadConfig.getImageSizes().stream()
+                .noneMatch(size -> size.getWidth() == width && size.getHeight() == height)) {
+            throw new BadRequestException("این اندازه تصویر پشتیبانی نمی‌شود", width + "x" + height);
+        }
+    }
+
+    private String normalizeFormat(String format) {
+        String normalized = format == null ? "" : format.toLowerCase();
+        if ("jpeg".equals(normalized)) {
+            normalized = "jpg";
+        }
+        if (!properties.getFormats().contains(normalized)) {
+            throw new BadRequestException("فرمت تصویر پشتیبانی نمی‌شود", format);
+        }
+        return normalized;
+    }
+
+    private String locateSource(String fileReference) {
+        for (String directory : properties.getSourceDirectories()) {
+            String reference = directory + "/" + fileReference;
+            if (fileStorageService.fileExists(reference)) {
+                return reference;
+            }
+        }
+        throw new ResourceNotFoundException("تصویر", "reference", fileReference);
+    }
+
+    private String keyOf(String sourceReference, FileStorageService.FileMetadata source,
+                         int width, int height, String format) {
+        ImageProcessingService.ImageProcessingOptions options = processingOptions();
+        String watermark = options.isEnableWatermark() ? options.getWatermarkOptions().getText() : "";
+        String input = String.join("|", "v2", sourceReference, String.valueOf(source.getSize()),
+                String.valueOf(source.getLastModified()), width + "x" + height, format,
+                String.valueOf(options.getJpegQuality()), watermark);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(input.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private ImageProcessingService.ImageProcessingOptions processingOptions() {
+        ImageProcessingService.ImageProcessingOptions options = new ImageProcessingService.ImageProcessingOptions();
+        if (fileUploadConfig.getJpegQuality() != null) {
+            options.setJpegQuality(fileUploadConfig.getJpegQuality() / 100f);
+        }
+        if (fileUploadConfig.isEnableWatermark()) {
+            ImageProcessingService.WatermarkOptions watermark = new ImageProcessingService.WatermarkOptions();
+            watermark.setText(fileUploadConfig.getWatermarkText());
+            options.setEnableWatermark(true);
+            options.setWatermarkOptions(watermark);
+        }
+        return options;
+    }
+
+    private Path pathOf(String key, String format) {
+        return cacheRoot.resolve(key.substring(0, 2)).resolve(key + "." + format);
+    }
+
+    private long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete cached image {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static final class CacheEntry {
+        private final String key;
+        private final Path path;
+        private final String format;
+        private final long size;
+
+        private CacheEntry(String key, Path path, String format, long size) {
+            this.key = key;
+            this.path = path;
+            this.format = format;
+            this.size = size;
+        }
+
+        private DerivedImage open() throws IOException {
+            return new DerivedImage(path, format, size, "\"" + key + "\"", FileChannel.open(path, StandardOpenOption.READ));
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.webrayan.store.core.service.impl;
 
 import com.webrayan.store.core.config.FileUploadConfig;
+import com.webrayan.store.core.service.ImageEncoder;
+import com.webrayan.store.core.service.ImageEncoderRegistry;
 import com.webrayan.store.core.service.ImageProcessingService;
 import net.coobird.thumbnailator.Thumbnails;
 import net.coobird.thumbnailator.geometry.Positions;
@@ -10,143 +12,433 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class ImageProcessingServiceImpl implements ImageProcessingService {
 
     private static final Logger logger = LoggerFactory.getLogger(ImageProcessingServiceImpl.class);
 
+    private static final float DEFAULT_JPEG_QUALITY = 0.85f;
+
+    private static final long PIXELS_PER_PERMIT = 1024;
+
+    // dHash compares 9 columns per row to get 8 bits; each cell averages an 8x8 block
+    private static final int HASH_COLUMNS = 9;
+    private static final int HASH_ROWS = 8;
+    private static final int HASH_CELL = 8;
+
     @Autowired
     private FileUploadConfig fileUploadConfig;
 
+    @Autowired
+    private ImageEncoderRegistry encoderRegistry;
+
+    private final WatermarkRenderer watermarkRenderer = new WatermarkRenderer();
+
+    private ThreadPoolExecutor executor;
+
+    // بودجه پیکسل‌های رمزگشایی‌شده همزمان؛ هر مجوز 1024 پیکسل
+    private Semaphore pixelBudget;
+    private int budgetPermits;
+
+    @PostConstruct
+    public void init() {
+        int threads = fileUploadConfig.getImageProcessingThreads() != null && fileUploadConfig.getImageProcessingThreads() > 0
+                ? fileUploadConfig.getImageProcessingThreads()
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        // صف محدود؛ در صورت پر بودن، نخ فراخواننده خودش کار را انجام می‌دهد (backpressure)
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 16),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-processing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        long budget = fileUploadConfig.getDecodedPixelBudget() != null && fileUploadConfig.getDecodedPixelBudget() > 0
+                ? fileUploadConfig.getDecodedPixelBudget()
+                : Long.MAX_VALUE;
+        budgetPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, budget / PIXELS_PER_PERMIT));
+        pixelBudget = new Semaphore(budgetPermits, true);
+        logger.info("Image processing pool started with {} threads and a budget of {} decoded pixels",
+                threads, budget);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The source is streamed from the upload and decoded once, subsampled to near the largest size
+     * that is needed; every size variant is resized, watermarked and encoded exactly once from that
+     * decoded image, with the variants running in parallel on the bounded processing pool.
+     */
     @Override
     public ImageProcessingResult processImage(MultipartFile file, ImageProcessingOptions options) throws IOException {
         logger.info("Processing image: {} with {} size variants", file.getOriginalFilename(), 
                    options.getSizes() != null ? options.getSizes().size() : 0);
 
-        byte[] originalImageData = file.getBytes();
-        ImageMetadata metadata = extractMetadata(originalImageData);
-        
-        List<ProcessedImageVariant> variants = new ArrayList<>();
+        return await(processAsync(file, options), file.getOriginalFilename());
+    }
 
-        // Process each size variant
-        if (options.getSizes() != null) {
-            for (ImageSize size : options.getSizes()) {
-                try {
-                    byte[] resizedImage = resizeImage(originalImageData, size.getWidth(), size.getHeight(), options.getResizeMode());
-                    
-                    // Apply watermark if enabled
-                    if (options.isEnableWatermark() && options.getWatermarkOptions() != null) {
-                        resizedImage = addWatermark(resizedImage, options.getWatermarkOptions());
+    @Override
+    public ImageProcessingResult processImage(byte[] imageData, String filename, String contentType,
+                                              ImageProcessingOptions options) throws IOException {
+        logger.info("Processing image: {} with {} size variants", filename,
+                   options.getSizes() != null ? options.getSizes().size() : 0);
+
+        return await(processAsync(filename, contentType, () -> new ByteArrayInputStream(imageData),
+                imageData.length, options), filename);
+    }
+
+    /**
+     * Runs on the bounded processing pool, so on-demand renders share the same CPU budget as uploads.
+     * Only the region and resolution the size needs are decoded.
+     */
+    @Override
+    public ProcessedImageVariant renderVariant(byte[] imageData, ImageSize size, String format,
+                                               ImageProcessingOptions options) throws IOException {
+        String name = size != null ? size.getName() : "original";
+        ImageStream stream = () -> new ByteArrayInputStream(imageData);
+        SourceHeader header = readHeader(stream);
+        DecodePlan plan = size != null
+                ? planDecode(header, size.getWidth(), size.getHeight(), options.getResizeMode(), true)
+                : planDecode(header, originalTargetWidth(header), originalTargetHeight(header), ResizeMode.PROPORTIONAL, false);
+
+        int permits = acquirePixels(plan, name);
+        try {
+            return await(CompletableFuture.supplyAsync(
+                    () -> renderVariant(decodeSource(stream, header, plan, imageData.length).image, size, format, options),
+                    executor), name);
+        } finally {
+            pixelBudget.release(permits);
+        }
+    }
+
+    /**
+     * All files are decoded and rendered concurrently; results keep the order of {@code files}.
+     */
+    @Override
+    public List<ImageProcessingResult> processImages(List<MultipartFile> files, ImageProcessingOptions options) throws IOException {
+        List<CompletableFuture<ImageProcessingResult>> pending = new ArrayList<>(files.size());
+        for (MultipartFile file : files) {
+            pending.add(processAsync(file, options));
+        }
+
+        List<ImageProcessingResult> results = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                results.add(await(pending.get(i), files.get(i).getOriginalFilename()));
+            } catch (IOException e) {
+                pending.forEach(future -> future.cancel(false));
+                logger.error("Failed to process image: {}", files.get(i).getOriginalFilename(), e);
+                throw new IOException("Failed to process image: " + files.get(i).getOriginalFilename(), e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * رمزگشایی یک‌باره منبع و اجرای موازی نسخه‌ها
+     * No pool thread ever blocks on another task: variants are chained on the decode stage, so the
+     * pool cannot deadlock when a batch is larger than the number of threads. The pixel budget is
+     * taken on the calling thread before anything is queued, for the same reason.
+     */
+    private CompletableFuture<ImageProcessingResult> processAsync(MultipartFile file, ImageProcessingOptions options) {
+        return processAsync(file.getOriginalFilename(), file.getContentType(), file::getInputStream, file.getSize(), options);
+    }
+
+    private CompletableFuture<ImageProcessingResult> processAsync(String filename, String contentType, ImageStream stream,
+                                                                  long fileSize, ImageProcessingOptions options) {
+        SourceHeader header;
+        DecodePlan plan;
+        int permits;
+        try {
+            header = readHeader(stream);
+            plan = planForSizes(header, options);
+            permits = acquirePixels(plan, filename);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return CompletableFuture
+                .supplyAsync(() -> decodeSource(stream, header, plan, fileSize), executor)
+                .thenCompose(source -> {
+                    String format = determineOptimalFormat(contentType, options.isEnableWebpConversion());
+
+                    List<CompletableFuture<ProcessedImageVariant>> variants = new ArrayList<>();
+                    boolean hasOriginal = false;
+                    if (options.getSizes() != null) {
+                        for (ImageSize size : options.getSizes()) {
+                            hasOriginal |= "original".equals(size.getName());
+                            variants.add(CompletableFuture.supplyAsync(
+                                    () -> renderVariant(source.image, size, format, options), executor));
+                        }
+                    }
+                    // Add original as a variant if not already included
+                    if (!hasOriginal) {
+                        variants.add(CompletableFuture.supplyAsync(
+                                () -> renderVariant(source.image, null, format, options), executor));
                     }
 
-                    // Optimize image
-                    String format = determineOptimalFormat(file.getContentType(), options.isEnableWebpConversion());
-                    resizedImage = optimizeImage(resizedImage, format, options.getJpegQuality());
-
-                    // Get actual dimensions after processing
-                    BufferedImage processedImg = ImageIO.read(new ByteArrayInputStream(resizedImage));
-                    
-                    variants.add(new ProcessedImageVariant(
-                        size.getName(),
-                        processedImg.getWidth(),
-                        processedImg.getHeight(),
-                        format,
-                        resizedImage.length,
-                        resizedImage
-                    ));
-
-                    logger.debug("Created variant: {} ({}x{}, {} bytes)", 
-                               size.getName(), processedImg.getWidth(), processedImg.getHeight(), resizedImage.length);
-
-                } catch (Exception e) {
-                    logger.error("Failed to process size variant: {}", size.getName(), e);
-                    throw new IOException("Failed to process image size: " + size.getName(), e);
+                    return CompletableFuture.allOf(variants.toArray(new CompletableFuture[0]))
+                            .thenApply(done -> new ImageProcessingResult(
+                                    filename,
+                                    variants.stream().map(CompletableFuture::join).toList(),
+                                    source.metadata));
+                })
+                .whenComplete((result, error) -> pixelBudget.release(permits));
+    }
+
+    private DecodedSource decodeSource(ImageStream stream, SourceHeader header, DecodePlan plan, long fileSize) {
+        try {
+            BufferedImage image = decode(stream, plan);
+            if (plan.subsampling > 1) {
+                logger.debug("Decoded {}x{} source at 1/{} ({}x{})", header.width, header.height,
+                           plan.subsampling, image.getWidth(), image.getHeight());
+            }
+            return new DecodedSource(image, new ImageMetadata(header.width, header.height, header.format, fileSize,
+                    image.getColorModel().getPixelSize(), image.getColorModel().hasAlpha()));
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * ابعاد منبع فقط از سرآیند فایل، بدون رمزگشایی پیکسل‌ها
+     */
+    private SourceHeader readHeader(ImageStream stream) throws IOException {
+        try (InputStream in = stream.open(); ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = readerFor(input);
+            try {
+                reader.setInput(input, true, true);
+                SourceHeader header = new SourceHeader(reader.getWidth(0), reader.getHeight(0),
+                        reader.getFormatName().toLowerCase());
+                long maxPixels = fileUploadConfig.getMaxImagePixels() != null ? fileUploadConfig.getMaxImagePixels() : 0;
+                if (maxPixels > 0 && (long) header.width * header.height > maxPixels) {
+                    throw new IOException("Image is too large: " + header.width + "x" + header.height);
                 }
+                return header;
+            } finally {
+                reader.dispose();
             }
         }
+    }
 
-        // Add original as a variant if not already included
-        boolean hasOriginal = variants.stream().anyMatch(v -> "original".equals(v.getSizeName()));
+    /**
+     * Decodes straight from the stream (ImageIO buffers it in a temp file, not the heap),
+     * reading only {@code plan}'s region at its subsampling
+     */
+    private BufferedImage decode(ImageStream stream, DecodePlan plan) throws IOException {
+        try (InputStream in = stream.open(); ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            ImageReader reader = readerFor(input);
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (plan.subsampling > 1) {
+                    param.setSourceSubsampling(plan.subsampling, plan.subsampling, 0, 0);
+                }
+                if (plan.region != null) {
+                    param.setSourceRegion(plan.region);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private ImageReader readerFor(ImageInputStream input) throws IOException {
+        if (input == null) {
+            throw new IOException("Invalid image data");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IOException("Invalid image data");
+        }
+        return readers.next();
+    }
+
+    /**
+     * The largest requested box bounds what every smaller variant needs
+     */
+    private DecodePlan planForSizes(SourceHeader header, ImageProcessingOptions options) {
+        int width = 0;
+        int height = 0;
+        boolean hasOriginal = false;
+        if (options.getSizes() != null) {
+            for (ImageSize size : options.getSizes()) {
+                hasOriginal |= "original".equals(size.getName());
+                width = Math.max(width, size.getWidth());
+                height = Math.max(height, size.getHeight());
+            }
+        }
         if (!hasOriginal) {
-            byte[] originalProcessed = originalImageData;
-            
-            if (options.isEnableWatermark() && options.getWatermarkOptions() != null) {
-                originalProcessed = addWatermark(originalProcessed, options.getWatermarkOptions());
+            width = Math.max(width, originalTargetWidth(header));
+            height = Math.max(height, originalTargetHeight(header));
+        }
+        return planDecode(header, width, height, options.getResizeMode(), false);
+    }
+
+    /**
+     * نقشه رمزگشایی: ناحیه و ضریب نمونه‌برداری
+     * The subsampling factor keeps at least twice the target resolution, so the final resize still
+     * filters real pixels instead of upscaling a decimated image. For CROP only the centred region
+     * with the target's aspect ratio is read.
+     */
+    private DecodePlan planDecode(SourceHeader header, int targetWidth, int targetHeight, ResizeMode mode, boolean allowRegion) {
+        int regionWidth = header.width;
+        int regionHeight = header.height;
+        Rectangle region = null;
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return new DecodePlan(1, null, (long) regionWidth * regionHeight);
+        }
+        if (allowRegion && mode == ResizeMode.CROP) {
+            double targetAspect = (double) targetWidth / targetHeight;
+            if ((double) header.width / header.height > targetAspect) {
+                regionWidth = (int) Math.max(1, Math.min(header.width, Math.round(header.height * targetAspect)));
+            } else {
+                regionHeight = (int) Math.max(1, Math.min(header.height, Math.round(header.width / targetAspect)));
             }
+            region = new Rectangle((header.width - regionWidth) / 2, (header.height - regionHeight) / 2, regionWidth, regionHeight);
+        }
+
+        double widthRatio = (double) regionWidth / targetWidth;
+        double heightRatio = (double) regionHeight / targetHeight;
+        // fit-within modes scale by the tighter side; exact/crop must keep both sides
+        double ratio = mode == ResizeMode.PROPORTIONAL || mode == ResizeMode.FIT
+                ? Math.max(widthRatio, heightRatio)
+                : Math.min(widthRatio, heightRatio);
+        int subsampling = Math.max(1, (int) Math.floor(ratio / 2));
+
+        long decodedWidth = (regionWidth + subsampling - 1) / subsampling;
+        long decodedHeight = (regionHeight + subsampling - 1) / subsampling;
+        return new DecodePlan(subsampling, region, decodedWidth * decodedHeight);
+    }
+
+    private int originalTargetWidth(SourceHeader header) {
+        int cap = maxImageDimension();
+        return cap > 0 ? Math.min(cap, header.width) : header.width;
+    }
+
+    private int originalTargetHeight(SourceHeader header) {
+        int cap = maxImageDimension();
+        return cap > 0 ? Math.min(cap, header.height) : header.height;
+    }
 
-            String format = determineOptimalFormat(file.getContentType(), options.isEnableWebpConversion());
-            originalProcessed = optimizeImage(originalProcessed, format, options.getJpegQuality());
+    private int maxImageDimension() {
+        return fileUploadConfig.getMaxImageDimension() != null ? fileUploadConfig.getMaxImageDimension() : 0;
+    }
 
-            variants.add(new ProcessedImageVariant(
-                "original",
-                metadata.getWidth(),
-                metadata.getHeight(),
-                format,
-                originalProcessed.length,
-                originalProcessed
-            ));
+    /**
+     * سهم پیکسل‌های رمزگشایی‌شده از بودجه مشترک
+     * Blocks until enough of the shared budget is free. One image never asks for more than the
+     * whole budget, so an oversized image waits for exclusive use instead of deadlocking.
+     */
+    private int acquirePixels(DecodePlan plan, String filename) throws IOException {
+        long needed = (plan.decodedPixels + PIXELS_PER_PERMIT - 1) / PIXELS_PER_PERMIT;
+        int permits = (int) Math.max(1, Math.min(budgetPermits, needed));
+        if (pixelBudget.tryAcquire(permits)) {
+            return permits;
         }
+        logger.debug("Waiting for decode budget for {} ({} pixels)", filename, plan.decodedPixels);
+        try {
+            pixelBudget.acquire(permits);
+            return permits;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to decode image: " + filename, e);
+        }
+    }
+
+    /**
+     * @param size null برای نسخه اصلی (بدون تغییر اندازه)
+     */
+    private ProcessedImageVariant renderVariant(BufferedImage source, ImageSize size, String format,
+                                                ImageProcessingOptions options) {
+        String sizeName = size != null ? size.getName() : "original";
+        try {
+            boolean watermark = options.isEnableWatermark() && options.getWatermarkOptions() != null;
+            BufferedImage image = size != null
+                    ? resize(source, size.getWidth(), size.getHeight(), options.getResizeMode())
+                    : fitOriginal(source);
+            if (watermark && image == source) {
+                // منبع بین نسخه‌ها مشترک است و نباید روی آن نوشته شود
+                image = copyOf(source);
+            }
+            if (watermark) {
+                drawWatermark(image, options.getWatermarkOptions());
+            }
+
+            ImageEncoderRegistry.EncodedImage encoded = options.getCandidateFormats() != null && !options.getCandidateFormats().isEmpty()
+                    ? encoderRegistry.encodeSmallest(image, options.getCandidateFormats(), options.getJpegQuality())
+                    : encoderRegistry.encode(image, format, options.getJpegQuality());
 
-        return new ImageProcessingResult(file.getOriginalFilename(), variants, metadata);
+            logger.debug("Created variant: {} ({}x{}, {} bytes)",
+                       sizeName, image.getWidth(), image.getHeight(), encoded.getData().length);
+
+            return new ProcessedImageVariant(
+                sizeName,
+                image.getWidth(),
+                image.getHeight(),
+                encoded.getFormat(),
+                encoded.getData().length,
+                encoded.getData()
+            );
+        } catch (Exception e) {
+            logger.error("Failed to process size variant: {}", sizeName, e);
+            throw new CompletionException(new IOException("Failed to process image size: " + sizeName, e));
+        }
     }
 
-    @Override
-    public List<ImageProcessingResult> processImages(List<MultipartFile> files, ImageProcessingOptions options) throws IOException {
-        List<ImageProcessingResult> results = new ArrayList<>();
-        
-        for (MultipartFile file : files) {
-            try {
-                ImageProcessingResult result = processImage(file, options);
-                results.add(result);
-            } catch (Exception e) {
-                logger.error("Failed to process image: {}", file.getOriginalFilename(), e);
-                throw new IOException("Failed to process image: " + file.getOriginalFilename(), e);
+    private <T> T await(CompletableFuture<T> future, String filename) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing image: " + filename, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
             }
+            throw new IOException("Failed to process image: " + filename, cause);
         }
-        
-        return results;
     }
 
     @Override
     public byte[] resizeImage(byte[] imageData, int width, int height, ResizeMode mode) throws IOException {
         try {
-            BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(imageData));
-            
-            Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(originalImage);
-            
-            switch (mode) {
-                case PROPORTIONAL:
-                    builder.size(width, height).keepAspectRatio(true);
-                    break;
-                case EXACT:
-                    builder.size(width, height).keepAspectRatio(false);
-                    break;
-                case CROP:
-                    builder.size(width, height).crop(Positions.CENTER);
-                    break;
-                case FIT:
-                    builder.size(width, height).keepAspectRatio(true);
-                    break;
-            }
-
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            builder.outputFormat("jpg").toOutputStream(outputStream);
-            
-            return outputStream.toByteArray();
-            
+            BufferedImage resized = resize(decode(imageData), width, height, mode);
+            return encoderRegistry.encode(resized, "jpg", DEFAULT_JPEG_QUALITY).getData();
         } catch (Exception e) {
             logger.error("Failed to resize image to {}x{}", width, height, e);
             throw new IOException("Failed to resize image", e);
@@ -156,20 +448,8 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
     @Override
     public byte[] convertFormat(byte[] imageData, String sourceFormat, String targetFormat) throws IOException {
         try {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
-            
-            // Handle transparency for formats that don't support it
-            if ("jpg".equalsIgnoreCase(targetFormat) || "jpeg".equalsIgnoreCase(targetFormat)) {
-                BufferedImage jpegImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
-                jpegImage.createGraphics().drawImage(image, 0, 0, Color.WHITE, null);
-                image = jpegImage;
-            }
-
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            ImageIO.write(image, targetFormat.toLowerCase(), outputStream);
-            
-            return outputStream.toByteArray();
-            
+            // JPEG encoder flattens transparency onto white itself
+            return requireEncoder(targetFormat).encode(decode(imageData), DEFAULT_JPEG_QUALITY);
         } catch (Exception e) {
             logger.error("Failed to convert image from {} to {}", sourceFormat, targetFormat, e);
             throw new IOException("Failed to convert image format", e);
@@ -179,59 +459,9 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
     @Override
     public byte[] addWatermark(byte[] imageData, WatermarkOptions watermarkOptions) throws IOException {
         try {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
-            Graphics2D g2d = image.createGraphics();
-
-            // Enable anti-aliasing
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
-
-            // Set font
-            Font font = new Font(Font.SANS_SERIF, Font.BOLD, watermarkOptions.getFontSize());
-            g2d.setFont(font);
-
-            // Calculate text dimensions
-            FontMetrics fontMetrics = g2d.getFontMetrics();
-            int textWidth = fontMetrics.stringWidth(watermarkOptions.getText());
-            int textHeight = fontMetrics.getHeight();
-
-            // Calculate position
-            Point position = calculateWatermarkPosition(
-                image.getWidth(), image.getHeight(),
-                textWidth, textHeight,
-                watermarkOptions.getPosition(),
-                watermarkOptions.getMargin()
-            );
-
-            // Set transparency
-            AlphaComposite alphaComposite = AlphaComposite.getInstance(
-                AlphaComposite.SRC_OVER, watermarkOptions.getOpacity()
-            );
-            g2d.setComposite(alphaComposite);
-
-            // Draw background if specified
-            if (watermarkOptions.getBackgroundColor() != null) {
-                g2d.setColor(Color.decode(watermarkOptions.getBackgroundColor()));
-                g2d.fillRect(
-                    position.x - 5, 
-                    position.y - textHeight + 5,
-                    textWidth + 10, 
-                    textHeight
-                );
-            }
-
-            // Draw text
-            g2d.setColor(Color.decode(watermarkOptions.getFontColor()));
-            g2d.drawString(watermarkOptions.getText(), position.x, position.y);
-
-            g2d.dispose();
-
-            // Convert back to byte array
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            ImageIO.write(image, "jpg", outputStream);
-            
-            return outputStream.toByteArray();
-            
+            BufferedImage image = decode(imageData);
+            drawWatermark(image, watermarkOptions);
+            return encoderRegistry.encode(image, "jpg", DEFAULT_JPEG_QUALITY).getData();
         } catch (Exception e) {
             logger.error("Failed to add watermark to image", e);
             throw new IOException("Failed to add watermark", e);
@@ -241,37 +471,7 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
     @Override
     public byte[] optimizeImage(byte[] imageData, String format, float quality) throws IOException {
         try {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
-            
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            
-            if ("jpg".equalsIgnoreCase(format) || "jpeg".equalsIgnoreCase(format)) {
-                // Use JPEG compression with quality control
-                Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
-                if (writers.hasNext()) {
-                    ImageWriter writer = writers.next();
-                    ImageWriteParam param = writer.getDefaultWriteParam();
-                    
-                    if (param.canWriteCompressed()) {
-                        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                        param.setCompressionQuality(quality);
-                    }
-                    
-                    ImageOutputStream ios = ImageIO.createImageOutputStream(outputStream);
-                    writer.setOutput(ios);
-                    writer.write(null, new javax.imageio.IIOImage(image, null, null), param);
-                    
-                    writer.dispose();
-                    ios.close();
-                } else {
-                    ImageIO.write(image, "jpg", outputStream);
-                }
-            } else {
-                ImageIO.write(image, format, outputStream);
-            }
-            
-            return outputStream.toByteArray();
-            
+            return requireEncoder(format).encode(decode(imageData), quality);
         } catch (Exception e) {
             logger.error("Failed to optimize image", e);
             throw new IOException("Failed to optimize image", e);
@@ -286,39 +486,179 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
     @Override
     public ImageMetadata extractMetadata(byte[] imageData) throws IOException {
         try {
-            BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
-            
-            if (image == null) {
-                throw new IOException("Invalid image data");
+            return metadataOf(decode(imageData), imageData);
+        } catch (Exception e) {
+            logger.error("Failed to extract image metadata", e);
+            throw new IOException("Failed to extract image metadata", e);
+        }
+    }
+
+    /**
+     * The source is decoded subsampled down to roughly the hash grid, so hashing a large photo
+     * costs about as much as reading its header.
+     */
+    @Override
+    public long computePerceptualHash(byte[] imageData) throws IOException {
+        ImageStream stream = () -> new ByteArrayInputStream(imageData);
+        SourceHeader header = readHeader(stream);
+        DecodePlan plan = planDecode(header, HASH_COLUMNS * HASH_CELL, HASH_ROWS * HASH_CELL, ResizeMode.EXACT, false);
+
+        int permits = acquirePixels(plan, "perceptual-hash");
+        try {
+            return differenceHash(decode(stream, plan));
+        } finally {
+            pixelBudget.release(permits);
+        }
+    }
+
+    private long differenceHash(BufferedImage image) {
+        int width = HASH_COLUMNS * HASH_CELL;
+        int height = HASH_ROWS * HASH_CELL;
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g2d = gray.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        // transparent areas hash as white, the way they are shown on the storefront
+        g2d.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+        g2d.dispose();
+
+        int[] cells = new int[HASH_COLUMNS * HASH_ROWS];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            gray.getRaster().getSamples(0, y, width, 1, 0, row);
+            for (int x = 0; x < width; x++) {
+                cells[(y / HASH_CELL) * HASH_COLUMNS + x / HASH_CELL] += row[x];
             }
+        }
 
-            int width = image.getWidth();
-            int height = image.getHeight();
-            int colorDepth = image.getColorModel().getPixelSize();
-            boolean hasTransparency = image.getColorModel().hasAlpha();
-            
-            // Determine format from image data
-            String format = "unknown";
-            try {
-                // Simple format detection based on header bytes
-                if (imageData.length >= 4) {
-                    if (imageData[0] == (byte) 0xFF && imageData[1] == (byte) 0xD8) {
-                        format = "jpeg";
-                    } else if (imageData[0] == (byte) 0x89 && imageData[1] == (byte) 0x50) {
-                        format = "png";
-                    } else if (imageData[0] == (byte) 0x47 && imageData[1] == (byte) 0x49) {
-                        format = "gif";
-                    }
+        long hash = 0;
+        for (int y = 0; y < HASH_ROWS; y++) {
+            for (int x = 0; x < HASH_COLUMNS - 1; x++) {
+                hash <<= 1;
+                if (cells[y * HASH_COLUMNS + x] < cells[y * HASH_COLUMNS + x + 1]) {
+                    hash |= 1;
                 }
-            } catch (Exception e) {
-                logger.warn("Failed to detect image format", e);
             }
+        }
+        return hash;
+    }
 
-            return new ImageMetadata(width, height, format, imageData.length, colorDepth, hasTransparency);
-            
-        } catch (Exception e) {
-            logger.error("Failed to extract image metadata", e);
-            throw new IOException("Failed to extract image metadata", e);
+    private BufferedImage decode(byte[] imageData) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
+        if (image == null) {
+            throw new IOException("Invalid image data");
+        }
+        return image;
+    }
+
+    private ImageMetadata metadataOf(BufferedImage image, byte[] imageData) {
+        int colorDepth = image.getColorModel().getPixelSize();
+        boolean hasTransparency = image.getColorModel().hasAlpha();
+
+        // Simple format detection based on header bytes
+        String format = "unknown";
+        if (imageData.length >= 4) {
+            if (imageData[0] == (byte) 0xFF && imageData[1] == (byte) 0xD8) {
+                format = "jpeg";
+            } else if (imageData[0] == (byte) 0x89 && imageData[1] == (byte) 0x50) {
+                format = "png";
+            } else if (imageData[0] == (byte) 0x47 && imageData[1] == (byte) 0x49) {
+                format = "gif";
+            }
+        }
+
+        return new ImageMetadata(image.getWidth(), image.getHeight(), format, imageData.length, colorDepth, hasTransparency);
+    }
+
+    private BufferedImage resize(BufferedImage source, int width, int height, ResizeMode mode) throws IOException {
+        Thumbnails.Builder<BufferedImage> builder = Thumbnails.of(source);
+
+        switch (mode) {
+            case PROPORTIONAL:
+                builder.size(width, height).keepAspectRatio(true);
+                break;
+            case EXACT:
+                builder.size(width, height).keepAspectRatio(false);
+                break;
+            case CROP:
+                builder.size(width, height).crop(Positions.CENTER);
+                break;
+            case FIT:
+                builder.size(width, height).keepAspectRatio(true);
+                break;
+        }
+
+        return builder.asBufferedImage();
+    }
+
+    /**
+     * The original variant is only scaled when app.file-upload.max-image-dimension is set, or when
+     * the source was decoded subsampled and must be brought to that bound anyway
+     */
+    private BufferedImage fitOriginal(BufferedImage source) throws IOException {
+        int cap = maxImageDimension();
+        if (cap > 0 && (source.getWidth() > cap || source.getHeight() > cap)) {
+            return resize(source, cap, cap, ResizeMode.PROPORTIONAL);
+        }
+        return source;
+    }
+
+    private BufferedImage copyOf(BufferedImage source) {
+        BufferedImage copy = new BufferedImage(source.getWidth(), source.getHeight(),
+                source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = copy.createGraphics();
+        g2d.drawImage(source, 0, 0, null);
+        g2d.dispose();
+        return copy;
+    }
+
+    private void drawWatermark(BufferedImage image, WatermarkOptions watermarkOptions) {
+        watermarkRenderer.apply(image, watermarkOptions);
+    }
+
+    private ImageEncoder requireEncoder(String format) throws IOException {
+        return encoderRegistry.find(format)
+                .orElseThrow(() -> new IOException("No encoder available for format: " + format));
+    }
+
+    /**
+     * منبع تصویر که برای خواندن سرآیند و رمزگشایی دوباره باز می‌شود
+     */
+    @FunctionalInterface
+    private interface ImageStream {
+        InputStream open() throws IOException;
+    }
+
+    private static final class SourceHeader {
+        private final int width;
+        private final int height;
+        private final String format;
+
+        private SourceHeader(int width, int height, String format) {
+            this.width = width;
+            this.height = height;
+            this.format = format;
+        }
+    }
+
+    private static final class DecodePlan {
+        private final int subsampling;
+        private final Rectangle region;
+        private final long decodedPixels;
+
+        private DecodePlan(int subsampling, Rectangle region, long decodedPixels) {
+            this.subsampling = subsampling;
+            this.region = region;
+            this.decodedPixels = decodedPixels;
+        }
+    }
+
+    private static final class DecodedSource {
+        private final BufferedImage image;
+        private final ImageMetadata metadata;
+
+        private DecodedSource(BufferedImage image, ImageMetadata metadata) {
+            this.image = image;
+            this.metadata = metadata;
         }
     }
 
@@ -326,7 +666,7 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
      * Determine optimal format based on original format and configuration
      */
     private String determineOptimalFormat(String originalContentType, boolean enableWebpConversion) {
-        if (enableWebpConversion && !"image/gif".equals(originalContentType)) {
+        if (enableWebpConversion && !"image/gif".equals(originalContentType) && encoderRegistry.supports("webp")) {
             // Convert to WebP for better compression (except GIFs to preserve animation)
             return "webp";
         }
@@ -344,53 +684,4 @@ public class ImageProcessingServiceImpl implements ImageProcessingService {
         return "jpg"; // Default fallback
     }
 
-    /**
-     * Calculate watermark position based on image dimensions and position enum
-     */
-    private Point calculateWatermarkPosition(int imageWidth, int imageHeight, int textWidth, int textHeight,
-                                           WatermarkPosition position, int margin) {
-        int x, y;
-        
-        switch (position) {
-            case TOP_LEFT:
-                x = margin;
-                y = margin + textHeight;
-                break;
-            case TOP_CENTER:
-                x = (imageWidth - textWidth) / 2;
-                y = margin + textHeight;
-                break;
-            case TOP_RIGHT:
-                x = imageWidth - textWidth - margin;
-                y = margin + textHeight;
-                break;
-            case CENTER_LEFT:
-                x = margin;
-                y = (imageHeight + textHeight) / 2;
-                break;
-            case CENTER:
-                x = (imageWidth - textWidth) / 2;
-                y = (imageHeight + textHeight) / 2;
-                break;
-            case CENTER_RIGHT:
-                x = imageWidth - textWidth - margin;
-                y = (imageHeight + textHeight) / 2;
-                break;
-            case BOTTOM_LEFT:
-                x = margin;
-                y = imageHeight - margin;
-                break;
-            case BOTTOM_CENTER:
-                x = (imageWidth - textWidth) / 2;
-                y = imageHeight - margin;
-                break;
-            case BOTTOM_RIGHT:
-            default:
-                x = imageWidth - textWidth - margin;
-                y = imageHeight - margin;
-                break;
-        }
-        
-        return new Point(x, y);
-    }
 }
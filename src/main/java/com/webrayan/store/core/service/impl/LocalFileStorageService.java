@@ -6,24 +6,37 @@ import com.webrayan.store.core.validation.FileValidationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.annotation.PostConstruct;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.UUID;
 
 @Service
+@ConditionalOnProperty(prefix = "app.file-storage", name = "type", havingValue = "local", matchIfMissing = true)
 public class LocalFileStorageService implements FileStorageService {
 
     private static final Logger logger = LoggerFactory.getLogger(LocalFileStorageService.class);
 
+    private static final String STAGING_DIRECTORY = ".staging";
+
     @Autowired
     private FileUploadConfig fileUploadConfig;
 
@@ -32,6 +45,8 @@ public class LocalFileStorageService implements FileStorageService {
 
     private Path uploadPath;
     private Path tempPath;
+    // inside uploadPath so a finished file can be renamed into place atomically
+    private Path stagingPath;
 
     @PostConstruct
     public void init() {
@@ -39,9 +54,12 @@ public class LocalFileStorageService implements FileStorageService {
             this.uploadPath = Paths.get(fileUploadConfig.getUploadDirectory()).toAbsolutePath().normalize();
             this.tempPath = Paths.get(fileUploadConfig.getTempDirectory()).toAbsolutePath().normalize();
 
+            this.stagingPath = uploadPath.resolve(STAGING_DIRECTORY);
+
             // Create directories if they don't exist
             Files.createDirectories(uploadPath);
             Files.createDirectories(tempPath);
+            Files.createDirectories(stagingPath);
 
             logger.info("File storage initialized - Upload path: {}, Temp path: {}", uploadPath, tempPath);
         } catch (IOException e) {
@@ -59,32 +77,20 @@ public class LocalFileStorageService implements FileStorageService {
 
         // Generate secure filename
         String secureFilename = fileValidationService.generateSecureFilename(file.getOriginalFilename());
-        
-        // Create target directory
-        Path targetDirectory = uploadPath.resolve(directory);
-        Files.createDirectories(targetDirectory);
+        Path targetDirectory = targetDirectory(directory);
 
-        // Generate unique file reference
-        String fileReference = UUID.randomUUID().toString() + "_" + secureFilename;
-        Path targetLocation = targetDirectory.resolve(fileReference);
+        try (InputStream input = file.getInputStream()) {
+            StoredFile storedFile = writeAtomically(input, targetDirectory, secureFilename);
 
-        // Ensure the target location is within the upload directory (security check)
-        if (!targetLocation.normalize().startsWith(uploadPath)) {
-            throw new SecurityException("Cannot store file outside upload directory");
-        }
-
-        try {
-            // Copy file to target location
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
-            
-            logger.info("File stored successfully: {} -> {}", file.getOriginalFilename(), targetLocation);
+            logger.info("File stored successfully: {} -> {}", file.getOriginalFilename(), storedFile.path);
 
             return new FileStorageResult(
-                fileReference,
+                storedFile.reference,
                 file.getOriginalFilename(),
                 file.getSize(),
                 file.getContentType(),
-                targetLocation.toString()
+                storedFile.path.toString(),
+                storedFile.contentHash
             );
 
         } catch (IOException e) {
@@ -93,6 +99,122 @@ public class LocalFileStorageService implements FileStorageService {
         }
     }
 
+    /**
+     * Content produced by the application itself is not re-validated; only the name is sanitised
+     */
+    @Override
+    public FileStorageResult storeFile(byte[] content, String filename, String contentType, String directory) throws IOException {
+        String secureFilename = fileValidationService.generateSecureFilename(filename);
+        Path targetDirectory = targetDirectory(directory);
+
+        try {
+            StoredFile storedFile = writeAtomically(new ByteArrayInputStream(content), targetDirectory, secureFilename);
+
+            logger.info("File stored successfully: {} -> {}", filename, storedFile.path);
+
+            return new FileStorageResult(
+                storedFile.reference,
+                filename,
+                content.length,
+                contentType,
+                storedFile.path.toString(),
+                storedFile.contentHash
+            );
+
+        } catch (IOException e) {
+            logger.error("Failed to store file: {}", filename, e);
+            throw new IOException("Could not store file: " + filename, e);
+        }
+    }
+
+    private Path targetDirectory(String directory) {
+        Path targetDirectory = uploadPath.resolve(directory).normalize();
+        // Ensure the target location is within the upload directory (security check)
+        if (!targetDirectory.startsWith(uploadPath) || targetDirectory.startsWith(stagingPath)) {
+            throw new SecurityException("Cannot store file outside upload directory");
+        }
+        return targetDirectory;
+    }
+
+    /**
+     * نوشتن اتمی فایل
+     * The content is written to a staging file, hashed on the way, fsynced and only then renamed to
+     * its final name, so readers never see a partial file and a crash leaves at most a stray staging
+     * file behind. In content-addressed mode the name is the SHA-256 of the content, and content
+     * that is already stored is not written a second time.
+     */
+    private StoredFile writeAtomically(InputStream input, Path targetDirectory, String secureFilename) throws IOException {
+        Path staging = stagingPath.resolve(UUID.randomUUID() + ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream hashing = new DigestInputStream(input, digest);
+                 FileChannel channel = FileChannel.open(staging, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                hashing.transferTo(Channels.newOutputStream(channel));
+                channel.force(true);
+            }
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+
+            String reference;
+            Path target;
+            if (fileUploadConfig.isContentAddressed()) {
+                reference = StorageNames.contentAddressedName(contentHash, secureFilename);
+                target = shardedPath(targetDirectory, reference);
+                if (Files.exists(target)) {
+                    return new StoredFile(reference, target, contentHash);
+                }
+            } else {
+                // Generate unique file reference
+                reference = UUID.randomUUID().toString() + "_" + secureFilename;
+                target = targetDirectory.resolve(reference);
+            }
+            if (!target.normalize().startsWith(uploadPath)) {
+                throw new SecurityException("Cannot store file outside upload directory");
+            }
+
+            Files.createDirectories(target.getParent());
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(target.getParent());
+            return new StoredFile(reference, target, contentHash);
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+    }
+
+    /**
+     * Makes a rename durable; not every platform can open a directory, which is only a lost guarantee
+     */
+    private void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not sync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private Path shardedPath(Path directory, String name) {
+        return directory.resolve(StorageNames.shard(name));
+    }
+
+    private static final class StoredFile {
+        private final String reference;
+        private final Path path;
+        private final String contentHash;
+
+        private StoredFile(String reference, Path path, String contentHash) {
+            this.reference = reference;
+            this.path = path;
+            this.contentHash = contentHash;
+        }
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     @Override
     public List<FileStorageResult> storeFiles(List<MultipartFile> files, String directory) throws IOException {
         // Validate all files first
@@ -142,6 +264,69 @@ public class LocalFileStorageService implements FileStorageService {
         }
     }
 
+    @Override
+    public InputStream openStream(String fileReference, long offset, long length) throws IOException {
+        Path filePath = resolveFilePath(fileReference);
+        if (!Files.isRegularFile(filePath)) {
+            throw new IOException("File not found: " + fileReference);
+        }
+        FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ);
+        channel.position(offset);
+        return new BoundedInputStream(Channels.newInputStream(channel), length, true);
+    }
+
+    @Override
+    public Path getLocalPath(String fileReference) throws IOException {
+        return resolveFilePath(fileReference);
+    }
+
+    @Override
+    public boolean isImmutable(String fileReference) {
+        return StorageNames.isImmutable(fileReference);
+    }
+
+    @Override
+    public String migrateToContentAddressed(String fileReference) throws IOException {
+        Path source = resolveFilePath(fileReference);
+        String name = source.getFileName().toString();
+        if (StorageNames.isContentAddressed(name)) {
+            return name;
+        }
+        if (!Files.isRegularFile(source)) {
+            throw new IOException("File not found: " + fileReference);
+        }
+
+        MessageDigest digest = sha256();
+        try (InputStream input = new DigestInputStream(Files.newInputStream(source), digest)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+        String contentAddressedName = StorageNames.contentAddressedName(HexFormat.of().formatHex(digest.digest()), name);
+        Path target = shardedPath(source.getParent(), contentAddressedName);
+        if (Files.exists(target)) {
+            return contentAddressedName;
+        }
+
+        Path staging = stagingPath.resolve(UUID.randomUUID() + ".tmp");
+        try {
+            try {
+                // a second name for the same inode costs no space and no copy
+                Files.createLink(staging, source);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(source, staging);
+                try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(target.getParent());
+        } finally {
+            Files.deleteIfExists(staging);
+        }
+        logger.info("File migrated to content-addressed storage: {} -> {}", fileReference, contentAddressedName);
+        return contentAddressedName;
+    }
+
     @Override
     public boolean deleteFile(String fileReference) throws IOException {
         Path filePath = resolveFilePath(fileReference);
@@ -233,12 +418,16 @@ public class LocalFileStorageService implements FileStorageService {
         Path targetDirectory = uploadPath.resolve(newDirectory);
         Files.createDirectories(targetDirectory);
 
-        // Generate new file reference
+        // Generate new file reference; content-addressed names stay the same in every directory
         String fileName = sourcePath.getFileName().toString();
-        String newFileReference = UUID.randomUUID().toString() + "_" + fileName;
-        Path targetPath = targetDirectory.resolve(newFileReference);
+        boolean contentAddressed = StorageNames.isContentAddressed(fileName);
+        String newFileReference = contentAddressed ? fileName : UUID.randomUUID().toString() + "_" + fileName;
+        Path targetPath = contentAddressed
+                ? shardedPath(targetDirectory, newFileReference)
+                : targetDirectory.resolve(newFileReference);
 
         try {
+            Files.createDirectories(targetPath.getParent());
             Files.move(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
             logger.info("File moved successfully: {} -> {}", fileReference, newFileReference);
             return newFileReference;
@@ -260,12 +449,16 @@ public class LocalFileStorageService implements FileStorageService {
         Path targetDirectory = uploadPath.resolve(newDirectory);
         Files.createDirectories(targetDirectory);
 
-        // Generate new file reference
+        // Generate new file reference; content-addressed names stay the same in every directory
         String fileName = sourcePath.getFileName().toString();
-        String newFileReference = UUID.randomUUID().toString() + "_" + fileName;
-        Path targetPath = targetDirectory.resolve(newFileReference);
+        boolean contentAddressed = StorageNames.isContentAddressed(fileName);
+        String newFileReference = contentAddressed ? fileName : UUID.randomUUID().toString() + "_" + fileName;
+        Path targetPath = contentAddressed
+                ? shardedPath(targetDirectory, newFileReference)
+                : targetDirectory.resolve(newFileReference);
 
         try {
+            Files.createDirectories(targetPath.getParent());
             Files.copy(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
             logger.info("File copied successfully: {} -> {}", fileReference, newFileReference);
             return newFileReference;
@@ -283,6 +476,7 @@ public class LocalFileStorageService implements FileStorageService {
 
     @Override
     public void cleanupTempFiles() {
+        cleanupStagingFiles();
         try {
             if (!Files.exists(tempPath)) {
                 return;
@@ -321,6 +515,24 @@ public class LocalFileStorageService implements FileStorageService {
         }
     }
 
+    /**
+     * Staging files left behind by writes interrupted before their rename
+     */
+    private void cleanupStagingFiles() {
+        try (DirectoryStream<Path> staged = Files.newDirectoryStream(stagingPath)) {
+            for (Path file : staged) {
+                LocalDateTime modified = LocalDateTime.ofInstant(
+                    Files.getLastModifiedTime(file).toInstant(), ZoneId.systemDefault());
+                if (modified.isBefore(LocalDateTime.now().minusDays(1))) {
+                    Files.deleteIfExists(file);
+                    logger.debug("Deleted stale staging file: {}", file);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to cleanup staging files", e);
+        }
+    }
+
     /**
      * Resolve file reference to actual file path
      */
@@ -334,31 +546,32 @@ public class LocalFileStorageService implements FileStorageService {
         Path filePath;
         if (fileReference.contains("/")) {
             filePath = uploadPath.resolve(fileReference);
+            // directory/<sha256>.ext lives in the directory's hash fan-out
+            String name = filePath.getFileName().toString();
+            if (StorageNames.isContentAddressed(name) && !isSharded(filePath)) {
+                filePath = shardedPath(filePath.getParent(), name);
+            }
         } else {
-            // Search in all subdirectories
-            filePath = findFileInDirectories(fileReference);
+            // a bare filename lives directly under the upload root, as /uploads/<name> always mapped;
+            // the tree is never searched, this runs on every public file request
+            filePath = uploadPath.resolve(fileReference);
         }
 
-        // Security check: ensure the resolved path is within upload directory
-        if (!filePath.normalize().startsWith(uploadPath)) {
+        // Security check: ensure the resolved path is within upload directory and not a staged write
+        Path normalized = filePath.normalize();
+        if (!normalized.startsWith(uploadPath) || normalized.startsWith(stagingPath)) {
             throw new SecurityException("File reference points outside upload directory: " + fileReference);
         }
 
         return filePath;
     }
 
-    /**
-     * Find file in upload directories
-     */
-    private Path findFileInDirectories(String filename) throws IOException {
-        try {
-            return Files.walk(uploadPath)
-                .filter(Files::isRegularFile)
-                .filter(path -> path.getFileName().toString().equals(filename))
-                .findFirst()
-                .orElseThrow(() -> new IOException("File not found: " + filename));
-        } catch (IOException e) {
-            throw new IOException("Error searching for file: " + filename, e);
-        }
+    private boolean isSharded(Path filePath) {
+        String name = filePath.getFileName().toString();
+        Path level2 = filePath.getParent();
+        Path level1 = level2 == null ? null : level2.getParent();
+        return level1 != null && level1.getFileName() != null
+                && level2.getFileName().toString().equals(name.substring(2, 4))
+                && level1.getFileName().toString().equals(name.substring(0, 2));
     }
 }
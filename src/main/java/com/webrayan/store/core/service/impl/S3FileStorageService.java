@@ -0,0 +1,598 @@
+package com.webrayan.store.core.service.impl;
+
+import com.webrayan.store.core.config.FileUploadConfig;
+import com.webrayan.store.core.config.S3StorageProperties;
+import com.webrayan.store.core.service.FileStorageService;
+import com.webrayan.store.core.validation.FileValidationService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.checksums.RequestChecksumCalculation;
+import software.amazon.awssdk.core.checksums.ResponseChecksumValidation;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * ذخیره‌سازی فایل در object storage سازگار با S3
+ * <p>
+ * Keys are the file references themselves ({@code <directory>/<name>}, content-addressed names in
+ * their {@code ab/cd/} fan-out), so references and URLs look the same as with
+ * {@link LocalFileStorageService} and several application nodes can share one bucket. Uploads are
+ * streamed: files below the multipart threshold go out as one PUT of known length, larger ones as a
+ * multipart upload whose parts are cut from the same stream, so no upload is held in memory or
+ * spooled to disk. A PUT only becomes visible once complete, so there is no staging step, except in
+ * content-addressed mode where the name is known only after the content has been hashed.
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.file-storage", name = "type", havingValue = "s3")
+public class S3FileStorageService implements FileStorageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(S3FileStorageService.class);
+
+    private static final String STAGING_PREFIX = ".staging/";
+
+    @Autowired
+    private S3StorageProperties properties;
+
+    @Autowired
+    private FileUploadConfig fileUploadConfig;
+
+    @Autowired
+    private FileValidationService fileValidationService;
+
+    private S3Client s3Client;
+    private String bucket;
+
+    @PostConstruct
+    public void init() {
+        if (!StringUtils.hasText(properties.getBucket())) {
+            throw new IllegalStateException("app.file-storage.s3.bucket must be set when app.file-storage.type=s3");
+        }
+        this.bucket = properties.getBucket();
+
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(properties.getRegion()))
+                .forcePathStyle(properties.isPathStyleAccess())
+                // most S3-compatible stores do not understand the SDK's default trailing checksums
+                .requestChecksumCalculation(RequestChecksumCalculation.WHEN_REQUIRED)
+                .responseChecksumValidation(ResponseChecksumValidation.WHEN_REQUIRED);
+        if (StringUtils.hasText(properties.getEndpoint())) {
+            builder.endpointOverride(URI.create(properties.getEndpoint()));
+        }
+        if (StringUtils.hasText(properties.getAccessKey())) {
+            builder.credentialsProvider(StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(properties.getAccessKey(), properties.getSecretKey())));
+        } else {
+            builder.credentialsProvider(DefaultCredentialsProvider.create());
+        }
+        this.s3Client = builder.build();
+
+        logger.info("File storage initialized - S3 bucket: {}, endpoint: {}", bucket,
+                StringUtils.hasText(properties.getEndpoint()) ? properties.getEndpoint() : "AWS");
+    }
+
+    @PreDestroy
+    public void close() {
+        if (s3Client != null) {
+            s3Client.close();
+        }
+    }
+
+    @Override
+    public FileStorageResult storeFile(MultipartFile file, String directory) throws IOException {
+        // Validate file first
+        FileValidationService.FileValidationResult validationResult = fileValidationService.validateFile(file);
+        if (!validationResult.isValid()) {
+            throw new IllegalArgumentException("File validation failed: " + validationResult.getErrorMessage());
+        }
+
+        String secureFilename = fileValidationService.generateSecureFilename(file.getOriginalFilename());
+        String prefix = directoryPrefix(directory);
+
+        try (InputStream input = file.getInputStream()) {
+            StoredObject stored = upload(input, file.getSize(), file.getContentType(), prefix, secureFilename);
+
+            logger.info("File stored successfully: {} -> s3://{}/{}", file.getOriginalFilename(), bucket, stored.key);
+
+            return new FileStorageResult(
+                stored.reference,
+                file.getOriginalFilename(),
+                file.getSize(),
+                file.getContentType(),
+                "s3://" + bucket + "/" + stored.key,
+                stored.contentHash
+            );
+
+        } catch (IOException | SdkException e) {
+            logger.error("Failed to store file: {}", file.getOriginalFilename(), e);
+            throw new IOException("Could not store file: " + file.getOriginalFilename(), e);
+        }
+    }
+
+    /**
+     * Content produced by the application itself is not re-validated; only the name is sanitised
+     */
+    @Override
+    public FileStorageResult storeFile(byte[] content, String filename, String contentType, String directory) throws IOException {
+        String secureFilename = fileValidationService.generateSecureFilename(filename);
+        String prefix = directoryPrefix(directory);
+
+        try {
+            StoredObject stored = upload(new ByteArrayInputStream(content), content.length, contentType, prefix, secureFilename);
+
+            logger.info("File stored successfully: {} -> s3://{}/{}", filename, bucket, stored.key);
+
+            return new FileStorageResult(
+                stored.reference,
+                filename,
+                content.length,
+                contentType,
+                "s3://" + bucket + "/" + stored.key,
+                stored.contentHash
+            );
+
+        } catch (IOException | SdkException e) {
+            logger.error("Failed to store file: {}", filename, e);
+            throw new IOException("Could not store file: " + filename, e);
+        }
+    }
+
+    /**
+     * In content-addressed mode the object is uploaded under a staging key, then copied server-side
+     * to {@code <sha256>.<ext>} unless that object already exists
+     */
+    private StoredObject upload(InputStream input, long size, String contentType, String prefix,
+                                String secureFilename) throws IOException {
+        MessageDigest digest = sha256();
+        InputStream hashing = new DigestInputStream(input, digest);
+
+        if (!fileUploadConfig.isContentAddressed()) {
+            String reference = UUID.randomUUID() + "_" + secureFilename;
+            String key = prefix + reference;
+            putStream(key, hashing, size, contentType);
+            return new StoredObject(reference, key, HexFormat.of().formatHex(digest.digest()));
+        }
+
+        String staging = STAGING_PREFIX + UUID.randomUUID();
+        try {
+            putStream(staging, hashing, size, contentType);
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            String reference = StorageNames.contentAddressedName(contentHash, secureFilename);
+            String key = prefix + StorageNames.shard(reference);
+            if (head(key) == null) {
+                copyObject(staging, key);
+            }
+            return new StoredObject(reference, key, contentHash);
+        } finally {
+            deleteQuietly(staging);
+        }
+    }
+
+    /**
+     * Sends exactly {@code size} bytes of the stream to the key, as one PUT or as a multipart upload
+     */
+    private void putStream(String key, InputStream input, long size, String contentType) {
+        // the SDK re-reads a markable stream when signing or retrying, which would hash bytes twice;
+        // a window without mark support is buffered by the SDK instead, within its retry read limit
+        if (size < properties.getMultipartThresholdBytes()) {
+            s3Client.putObject(request -> request.bucket(bucket).key(key).contentType(contentType).contentLength(size),
+                    RequestBody.fromInputStream(new BoundedInputStream(input, size, false), size));
+            return;
+        }
+
+        long partSize = Math.max(properties.getPartSizeBytes(), S3StorageProperties.MIN_PART_SIZE_BYTES);
+        String uploadId = s3Client.createMultipartUpload(request -> request.bucket(bucket).key(key)
+                .contentType(contentType)).uploadId();
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            long offset = 0;
+            for (int partNumber = 1; offset < size; partNumber++) {
+                long length = Math.min(partSize, size - offset);
+                int number = partNumber;
+                // each part reads the next window of the one upload stream and leaves it open
+                String eTag = s3Client.uploadPart(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+                                .partNumber(number).contentLength(length),
+                        RequestBody.fromInputStream(new BoundedInputStream(input, length, false), length)).eTag();
+                parts.add(CompletedPart.builder().partNumber(number).eTag(eTag).build());
+                offset += length;
+            }
+            s3Client.completeMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId)
+                    .multipartUpload(upload -> upload.parts(parts)));
+        } catch (RuntimeException e) {
+            // parts of an abandoned upload are stored and billed until it is aborted
+            try {
+                s3Client.abortMultipartUpload(request -> request.bucket(bucket).key(key).uploadId(uploadId));
+            } catch (SdkException abortError) {
+                logger.warn("Could not abort multipart upload {} of {}", uploadId, key, abortError);
+            }
+            throw e;
+        }
+    }
+
+    private static final class StoredObject {
+        private final String reference;
+        private final String key;
+        private final String contentHash;
+
+        private StoredObject(String reference, String key, String contentHash) {
+            this.reference = reference;
+            this.key = key;
+            this.contentHash = contentHash;
+        }
+    }
+
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public List<FileStorageResult> storeFiles(List<MultipartFile> files, String directory) throws IOException {
+        // Validate all files first
+        FileValidationService.FileValidationResult validationResult = fileValidationService.validateFiles(files);
+        if (!validationResult.isValid()) {
+            throw new IllegalArgumentException("Files validation failed: " + validationResult.getErrorMessage());
+        }
+
+        List<FileStorageResult> results = new ArrayList<>();
+        List<String> storedFiles = new ArrayList<>();
+
+        try {
+            for (MultipartFile file : files) {
+                FileStorageResult result = storeFile(file, directory);
+                results.add(result);
+                storedFiles.add(directoryPrefix(directory) + result.getFileReference());
+            }
+            return results;
+
+        } catch (Exception e) {
+            // Rollback: delete any files that were successfully stored
+            logger.warn("Rolling back file storage due to error, deleting {} files", storedFiles.size());
+            storedFiles.forEach(fileRef -> {
+                try {
+                    deleteFile(fileRef);
+                } catch (IOException deleteError) {
+                    logger.error("Failed to delete file during rollback: {}", fileRef, deleteError);
+                }
+            });
+            throw e;
+        }
+    }
+
+    @Override
+    public byte[] retrieveFile(String fileReference) throws IOException {
+        String key = keyOf(fileReference);
+        try {
+            return s3Client.getObjectAsBytes(request -> request.bucket(bucket).key(key)).asByteArray();
+        } catch (NoSuchKeyException e) {
+            throw new IOException("File not found: " + fileReference);
+        } catch (SdkException e) {
+            logger.error("Failed to read file: {}", fileReference, e);
+            throw new IOException("Could not read file: " + fileReference, e);
+        }
+    }
+
+    @Override
+    public InputStream openStream(String fileReference, long offset, long length) throws IOException {
+        String key = keyOf(fileReference);
+        if (length <= 0) {
+            if (head(key) == null) {
+                throw new IOException("File not found: " + fileReference);
+            }
+            return InputStream.nullInputStream();
+        }
+        try {
+            // the response body is read straight off the connection
+            return s3Client.getObject(request -> request.bucket(bucket).key(key)
+                    .range("bytes=" + offset + "-" + (offset + length - 1)));
+        } catch (NoSuchKeyException e) {
+            throw new IOException("File not found: " + fileReference);
+        } catch (SdkException e) {
+            logger.error("Failed to read file: {}", fileReference, e);
+            throw new IOException("Could not read file: " + fileReference, e);
+        }
+    }
+
+    /**
+     * Objects are not on the local file system; callers stream them with {@link #openStream}
+     */
+    @Override
+    public Path getLocalPath(String fileReference) {
+        keyOf(fileReference);
+        return null;
+    }
+
+    @Override
+    public boolean isImmutable(String fileReference) {
+        return StorageNames.isImmutable(fileReference);
+    }
+
+    @Override
+    public String migrateToContentAddressed(String fileReference) throws IOException {
+        String key = keyOf(fileReference);
+        String name = StorageNames.filename(key);
+        if (StorageNames.isContentAddressed(name)) {
+            return name;
+        }
+
+        MessageDigest digest = sha256();
+        try (InputStream input = new DigestInputStream(s3Client.getObject(request -> request.bucket(bucket).key(key)), digest)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        } catch (NoSuchKeyException e) {
+            throw new IOException("File not found: " + fileReference);
+        } catch (SdkException e) {
+            throw new IOException("Could not read file: " + fileReference, e);
+        }
+        String contentAddressedName = StorageNames.contentAddressedName(HexFormat.of().formatHex(digest.digest()), name);
+        String target = parentPrefix(key) + StorageNames.shard(contentAddressedName);
+        if (head(target) == null) {
+            copyObject(key, target);
+        }
+        logger.info("File migrated to content-addressed storage: {} -> {}", fileReference, contentAddressedName);
+        return contentAddressedName;
+    }
+
+    @Override
+    public boolean deleteFile(String fileReference) throws IOException {
+        String key = keyOf(fileReference);
+
+        if (head(key) == null) {
+            logger.warn("Attempted to delete non-existent file: {}", fileReference);
+            return false;
+        }
+
+        try {
+            s3Client.deleteObject(request -> request.bucket(bucket).key(key));
+            logger.info("File deleted successfully: {}", fileReference);
+            return true;
+        } catch (SdkException e) {
+            logger.error("Failed to delete file: {}", fileReference, e);
+            throw new IOException("Could not delete file: " + fileReference, e);
+        }
+    }
+
+    @Override
+    public boolean deleteFiles(List<String> fileReferences) throws IOException {
+        boolean allDeleted = true;
+        List<String> failedDeletions = new ArrayList<>();
+
+        for (String fileReference : fileReferences) {
+            try {
+                if (!deleteFile(fileReference)) {
+                    allDeleted = false;
+                    failedDeletions.add(fileReference);
+                }
+            } catch (IOException e) {
+                allDeleted = false;
+                failedDeletions.add(fileReference);
+                logger.error("Failed to delete file: {}", fileReference, e);
+            }
+        }
+
+        if (!failedDeletions.isEmpty()) {
+            logger.warn("Failed to delete {} files: {}", failedDeletions.size(), failedDeletions);
+        }
+
+        return allDeleted;
+    }
+
+    @Override
+    public boolean fileExists(String fileReference) {
+        try {
+            return head(keyOf(fileReference)) != null;
+        } catch (Exception e) {
+            logger.error("Error checking file existence: {}", fileReference, e);
+            return false;
+        }
+    }
+
+    @Override
+    public FileMetadata getFileMetadata(String fileReference) throws IOException {
+        String key = keyOf(fileReference);
+        HeadObjectResponse head = head(key);
+        if (head == null) {
+            throw new IOException("File not found: " + fileReference);
+        }
+        // S3 keeps no creation time; an object is only ever written whole
+        LocalDateTime lastModified = LocalDateTime.ofInstant(head.lastModified(), ZoneId.systemDefault());
+        return new FileMetadata(
+            StorageNames.filename(key),
+            head.contentLength(),
+            head.contentType(),
+            lastModified,
+            lastModified
+        );
+    }
+
+    @Override
+    public String moveFile(String fileReference, String newDirectory) throws IOException {
+        String sourceKey = keyOf(fileReference);
+        String newFileReference = copyTo(fileReference, sourceKey, newDirectory);
+        try {
+            s3Client.deleteObject(request -> request.bucket(bucket).key(sourceKey));
+        } catch (SdkException e) {
+            throw new IOException("Could not move file: " + fileReference, e);
+        }
+        logger.info("File moved successfully: {} -> {}", fileReference, newFileReference);
+        return newFileReference;
+    }
+
+    @Override
+    public String copyFile(String fileReference, String newDirectory) throws IOException {
+        String newFileReference = copyTo(fileReference, keyOf(fileReference), newDirectory);
+        logger.info("File copied successfully: {} -> {}", fileReference, newFileReference);
+        return newFileReference;
+    }
+
+    /**
+     * Server-side copy; content-addressed names stay the same in every directory
+     */
+    private String copyTo(String fileReference, String sourceKey, String newDirectory) throws IOException {
+        if (head(sourceKey) == null) {
+            throw new IOException("File not found: " + fileReference);
+        }
+        String fileName = StorageNames.filename(sourceKey);
+        boolean contentAddressed = StorageNames.isContentAddressed(fileName);
+        String newFileReference = contentAddressed ? fileName : UUID.randomUUID().toString() + "_" + fileName;
+        String targetKey = directoryPrefix(newDirectory)
+                + (contentAddressed ? StorageNames.shard(newFileReference) : newFileReference);
+        copyObject(sourceKey, targetKey);
+        return newFileReference;
+    }
+
+    @Override
+    public String getFileUrl(String fileReference) {
+        if (StringUtils.hasText(properties.getPublicBaseUrl())) {
+            String baseUrl = properties.getPublicBaseUrl();
+            return (baseUrl.endsWith("/") ? baseUrl : baseUrl + "/") + keyOf(fileReference);
+        }
+        return "/api/files/download/" + fileReference;
+    }
+
+    /**
+     * Staging objects left behind by content-addressed uploads interrupted before their copy
+     */
+    @Override
+    public void cleanupTempFiles() {
+        Instant cutoff = Instant.now().minus(1, ChronoUnit.DAYS);
+        try {
+            for (S3Object object : s3Client.listObjectsV2Paginator(request -> request.bucket(bucket)
+                    .prefix(STAGING_PREFIX)).contents()) {
+                if (object.lastModified().isBefore(cutoff)) {
+                    deleteQuietly(object.key());
+                    logger.debug("Deleted stale staging object: {}", object.key());
+                }
+            }
+            logger.info("Temporary files cleanup completed");
+        } catch (SdkException e) {
+            logger.error("Failed to cleanup staging objects", e);
+        }
+    }
+
+    private void copyObject(String sourceKey, String targetKey) throws IOException {
+        try {
+            s3Client.copyObject(request -> request.sourceBucket(bucket).sourceKey(sourceKey)
+                    .destinationBucket(bucket).destinationKey(targetKey));
+        } catch (SdkException e) {
+            throw new IOException("Could not copy " + sourceKey + " to " + targetKey, e);
+        }
+    }
+
+    /**
+     * Object metadata, or null when there is no such object
+     */
+    private HeadObjectResponse head(String key) throws IOException {
+        try {
+            return s3Client.headObject(request -> request.bucket(bucket).key(key));
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return null;
+            }
+            throw new IOException("Could not read metadata of " + key, e);
+        } catch (SdkException e) {
+            throw new IOException("Could not read metadata of " + key, e);
+        }
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            s3Client.deleteObject(request -> request.bucket(bucket).key(key));
+        } catch (SdkException e) {
+            logger.warn("Could not delete {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * {@code directory/} for a directory below the bucket root, checked like a reference
+     */
+    private String directoryPrefix(String directory) {
+        if (directory == null || directory.isEmpty()) {
+            return "";
+        }
+        String trimmed = directory.endsWith("/") ? directory.substring(0, directory.length() - 1) : directory;
+        checkKey(trimmed, "Cannot store file outside upload directory");
+        return trimmed + "/";
+    }
+
+    /**
+     * Object key of a reference; {@code directory/<sha256>.ext} lives in the directory's hash fan-out.
+     * Unlike the local storage, a bare name is not searched for in subdirectories.
+     */
+    private String keyOf(String fileReference) {
+        if (fileReference == null || fileReference.trim().isEmpty()) {
+            throw new IllegalArgumentException("File reference cannot be null or empty");
+        }
+        checkKey(fileReference, "File reference points outside upload directory: " + fileReference);
+
+        String name = StorageNames.filename(fileReference);
+        if (StorageNames.isContentAddressed(name) && !isSharded(fileReference)) {
+            return parentPrefix(fileReference) + StorageNames.shard(name);
+        }
+        return fileReference;
+    }
+
+    private void checkKey(String key, String message) {
+        if (key.startsWith("/") || key.contains("\\") || key.indexOf('\0') >= 0 || key.startsWith(STAGING_PREFIX)) {
+            throw new SecurityException(message);
+        }
+        for (String segment : key.split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                throw new SecurityException(message);
+            }
+        }
+    }
+
+    private boolean isSharded(String key) {
+        String[] segments = key.split("/");
+        if (segments.length < 3) {
+            return false;
+        }
+        String name = segments[segments.length - 1];
+        return segments[segments.length - 2].equals(name.substring(2, 4))
+                && segments[segments.length - 3].equals(name.substring(0, 2));
+    }
+
+    private String parentPrefix(String key) {
+        return key.substring(0, key.lastIndexOf('/') + 1);
+    }
+}
@@ -0,0 +1,56 @@
+package com.webrayan.store.core.service.impl;
+
+import java.util.regex.Pattern;
+
+/**
+ * نام‌گذاری فایل‌های ذخیره‌شده، مشترک میان پیاده‌سازی‌های FileStorageService
+ * <p>
+ * Generated names are either {@code <uuid>_<name>} or, in content-addressed mode,
+ * {@code <sha256>.<ext>}; the latter live in a two-level fan-out ({@code ab/cd/<name>}) below their
+ * directory while references keep the flat {@code <directory>/<name>} form.
+ */
+final class StorageNames {
+
+    private static final Pattern GENERATED_REFERENCE =
+            Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}_.+");
+
+    private static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("[0-9a-f]{64}(\\.[a-z0-9]{1,10})?");
+
+    private static final Pattern EXTENSION = Pattern.compile("\\.[a-z0-9]{1,10}");
+
+    private StorageNames() {
+    }
+
+    static String filename(String fileReference) {
+        return fileReference.substring(fileReference.lastIndexOf('/') + 1);
+    }
+
+    static boolean isContentAddressed(String filename) {
+        return CONTENT_ADDRESSED_NAME.matcher(filename).matches();
+    }
+
+    /**
+     * Stored names are the hash of the content or start with a random UUID, and are never written twice
+     */
+    static boolean isImmutable(String fileReference) {
+        String filename = filename(fileReference);
+        return isContentAddressed(filename) || GENERATED_REFERENCE.matcher(filename).matches();
+    }
+
+    static String contentAddressedName(String contentHash, String filename) {
+        return contentHash + extensionOf(filename);
+    }
+
+    /**
+     * {@code ab/cd/<name>} for a content-addressed name
+     */
+    static String shard(String name) {
+        return name.substring(0, 2) + "/" + name.substring(2, 4) + "/" + name;
+    }
+
+    private static String extensionOf(String filename) {
+        int dot = filename.lastIndexOf('.');
+        String extension = dot < 0 ? "" : filename.substring(dot).toLowerCase();
+        return EXTENSION.matcher(extension).matches() ? extension : "";
+    }
+}
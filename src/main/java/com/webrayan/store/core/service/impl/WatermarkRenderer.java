@@ -0,0 +1,312 @@
+package com.webrayan.store.core.service.impl;
+
+import com.webrayan.store.core.service.ImageProcessingService.WatermarkOptions;
+import com.webrayan.store.core.service.ImageProcessingService.WatermarkPosition;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * رندر واترمارک با کاشی از پیش آماده
+ * <p>
+ * The text of a watermark is rasterized once per (text, font size, colours, opacity) into a
+ * premultiplied ARGB tile, with the opacity already applied to its alpha. Each image then only
+ * needs the tile blended into its raster at the computed position; INT_RGB and INT_ARGB rasters are
+ * blended in place without going through Graphics2D. Tiles are read-only once built and may be
+ * shared between threads.
+ */
+final class WatermarkRenderer {
+
+    private static final int MAX_CACHED_TILES = 32;
+
+    // padding of the background box around the text, as drawn before tiles were cached
+    private static final int BACKGROUND_PADDING = 5;
+
+    // access-ordered LRU; guarded by itself
+    private final LinkedHashMap<TileKey, Tile> tiles = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TileKey, Tile> eldest) {
+            return size() > MAX_CACHED_TILES;
+        }
+    };
+
+    void apply(BufferedImage image, WatermarkOptions options) {
+        Tile tile = tileFor(options);
+        Point baseline = position(image.getWidth(), image.getHeight(), tile.textWidth, tile.textHeight,
+                options.getPosition(), options.getMargin());
+        composite(image, tile, baseline.x + tile.originX, baseline.y + tile.originY);
+    }
+
+    int cachedTiles() {
+        synchronized (tiles) {
+            return tiles.size();
+        }
+    }
+
+    private Tile tileFor(WatermarkOptions options) {
+        TileKey key = new TileKey(options);
+        synchronized (tiles) {
+            Tile tile = tiles.get(key);
+            if (tile != null) {
+                return tile;
+            }
+        }
+        // rendered outside the lock; two threads may build the same tile once, which is harmless
+        Tile tile = render(options);
+        synchronized (tiles) {
+            Tile existing = tiles.putIfAbsent(key, tile);
+            return existing != null ? existing : tile;
+        }
+    }
+
+    private Tile render(WatermarkOptions options) {
+        Font font = new Font(Font.SANS_SERIF, Font.BOLD, options.getFontSize());
+        BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D measure = scratch.createGraphics();
+        measure.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        FontMetrics fontMetrics = measure.getFontMetrics(font);
+        measure.dispose();
+
+        int textWidth = fontMetrics.stringWidth(options.getText());
+        int textHeight = fontMetrics.getHeight();
+        boolean background = options.getBackgroundColor() != null;
+
+        // tile bounds relative to the text baseline: the glyphs, plus the background box if any
+        int left = background ? -BACKGROUND_PADDING : 0;
+        int right = background ? textWidth + BACKGROUND_PADDING : textWidth;
+        int top = -fontMetrics.getAscent();
+        int bottom = fontMetrics.getDescent();
+        if (background) {
+            top = Math.min(top, -textHeight + BACKGROUND_PADDING);
+            bottom = Math.max(bottom, BACKGROUND_PADDING);
+        }
+
+        BufferedImage tile = new BufferedImage(Math.max(1, right - left), Math.max(1, bottom - top),
+                BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2d = tile.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.translate(-left, -top);
+        if (background) {
+            g2d.setColor(Color.decode(options.getBackgroundColor()));
+            g2d.fillRect(-BACKGROUND_PADDING, -textHeight + BACKGROUND_PADDING,
+                    textWidth + 2 * BACKGROUND_PADDING, textHeight);
+        }
+        g2d.setFont(font);
+        g2d.setColor(Color.decode(options.getFontColor()));
+        g2d.drawString(options.getText(), 0, 0);
+        g2d.dispose();
+
+        int[] pixels = ((DataBufferInt) tile.getRaster().getDataBuffer()).getData();
+        scaleAlpha(pixels, Math.max(0f, Math.min(1f, options.getOpacity())));
+        return new Tile(pixels, tile.getWidth(), tile.getHeight(), left, top, textWidth, textHeight);
+    }
+
+    /**
+     * Applies the opacity to every premultiplied component, so blending needs no extra multiply
+     */
+    private void scaleAlpha(int[] pixels, float opacity) {
+        int scale = Math.round(opacity * 256);
+        for (int i = 0; i < pixels.length; i++) {
+            int argb = pixels[i];
+            if (argb == 0) {
+                continue;
+            }
+            int a = ((argb >>> 24) * scale) >> 8;
+            int r = (((argb >> 16) & 0xFF) * scale) >> 8;
+            int g = (((argb >> 8) & 0xFF) * scale) >> 8;
+            int b = ((argb & 0xFF) * scale) >> 8;
+            pixels[i] = (a << 24) | (r << 16) | (g << 8) | b;
+        }
+    }
+
+    private void composite(BufferedImage image, Tile tile, int x, int y) {
+        int fromX = Math.max(0, x);
+        int fromY = Math.max(0, y);
+        int toX = Math.min(image.getWidth(), x + tile.width);
+        int toY = Math.min(image.getHeight(), y + tile.height);
+        if (fromX >= toX || fromY >= toY) {
+            return;
+        }
+
+        int type = image.getType();
+        WritableRaster raster = image.getRaster();
+        // sub-images share a larger buffer; leave those to Java2D
+        if ((type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB)
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel)
+                || raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) {
+            compositeWithGraphics(image, tile, x, y);
+            return;
+        }
+
+        int[] target = ((DataBufferInt) raster.getDataBuffer()).getData();
+        int stride = sampleModel.getScanlineStride();
+        boolean opaqueTarget = type == BufferedImage.TYPE_INT_RGB;
+        for (int row = fromY; row < toY; row++) {
+            int tileOffset = (row - y) * tile.width - x;
+            int targetOffset = row * stride;
+            for (int column = fromX; column < toX; column++) {
+                int source = tile.pixels[tileOffset + column];
+                if (source != 0) {
+                    int index = targetOffset + column;
+                    target[index] = opaqueTarget
+                            ? blendOpaque(source, target[index])
+                            : blendStraight(source, target[index]);
+                }
+            }
+        }
+    }
+
+    /**
+     * SRC_OVER of a premultiplied source onto an opaque pixel; red and blue share one multiply
+     */
+    private static int blendOpaque(int source, int target) {
+        int alpha = source >>> 24;
+        // 0..255 scaled to 0..256 so the division is a shift; floor keeps every channel within 255
+        int inverse = 256 - alpha - (alpha >> 7);
+        int redBlue = (((target & 0xFF00FF) * inverse) >>> 8) & 0xFF00FF;
+        int green = (((target & 0x00FF00) * inverse) >>> 8) & 0x00FF00;
+        return 0xFF000000 | ((source & 0xFFFFFF) + redBlue + green);
+    }
+
+    /**
+     * SRC_OVER of a premultiplied source onto a non-premultiplied ARGB pixel
+     */
+    private static int blendStraight(int source, int target) {
+        int targetAlpha = target >>> 24;
+        if (targetAlpha == 255) {
+            return blendOpaque(source, target);
+        }
+        int inverse = 255 - (source >>> 24);
+        int keep = div255(targetAlpha * inverse);
+        int a = (source >>> 24) + keep;
+        if (a == 0) {
+            return 0;
+        }
+        int r = (((source >> 16) & 0xFF) * 255 + ((target >> 16) & 0xFF) * keep) / a;
+        int g = (((source >> 8) & 0xFF) * 255 + ((target >> 8) & 0xFF) * keep) / a;
+        int b = ((source & 0xFF) * 255 + (target & 0xFF) * keep) / a;
+        return (a << 24) | (Math.min(255, r) << 16) | (Math.min(255, g) << 8) | Math.min(255, b);
+    }
+
+    private static int div255(int value) {
+        return (value + 1 + (value >> 8)) >> 8;
+    }
+
+    private void compositeWithGraphics(BufferedImage image, Tile tile, int x, int y) {
+        BufferedImage tileImage = new BufferedImage(tile.width, tile.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        tileImage.getRaster().setDataElements(0, 0, tile.width, tile.height, tile.pixels);
+        Graphics2D g2d = image.createGraphics();
+        g2d.drawImage(tileImage, x, y, null);
+        g2d.dispose();
+    }
+
+    /**
+     * Baseline of the text for the given placement, as calculated before tiles were cached
+     */
+    static Point position(int imageWidth, int imageHeight, int textWidth, int textHeight,
+                          WatermarkPosition position, int margin) {
+        int x, y;
+
+        switch (position) {
+            case TOP_LEFT:
+                x = margin;
+                y = margin + textHeight;
+                break;
+            case TOP_CENTER:
+                x = (imageWidth - textWidth) / 2;
+                y = margin + textHeight;
+                break;
+            case TOP_RIGHT:
+                x = imageWidth - textWidth - margin;
+                y = margin + textHeight;
+                break;
+            case CENTER_LEFT:
+                x = margin;
+                y = (imageHeight + textHeight) / 2;
+                break;
+            case CENTER:
+                x = (imageWidth - textWidth) / 2;
+                y = (imageHeight + textHeight) / 2;
+                break;
+            case CENTER_RIGHT:
+                x = imageWidth - textWidth - margin;
+                y = (imageHeight + textHeight) / 2;
+                break;
+            case BOTTOM_LEFT:
+                x = margin;
+                y = imageHeight - margin;
+                break;
+            case BOTTOM_CENTER:
+                x = (imageWidth - textWidth) / 2;
+                y = imageHeight - margin;
+                break;
+            case BOTTOM_RIGHT:
+            default:
+                x = imageWidth - textWidth - margin;
+                y = imageHeight - margin;
+                break;
+        }
+
+        return new Point(x, y);
+    }
+
+    private static final class Tile {
+        private final int[] pixels;
+        private final int width;
+        private final int height;
+        // offset of the tile's top-left corner from the text baseline origin
+        private final int originX;
+        private final int originY;
+        private final int textWidth;
+        private final int textHeight;
+
+        private Tile(int[] pixels, int width, int height, int originX, int originY, int textWidth, int textHeight) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.originX = originX;
+            this.originY = originY;
+            this.textWidth = textWidth;
+            this.textHeight = textHeight;
+        }
+    }
+
+    private static final class TileKey {
+        private final String text;
+        private final int fontSize;
+        private final String fontColor;
+        private final String backgroundColor;
+        private final float opacity;
+
+        private TileKey(WatermarkOptions options) {
+            this.text = options.getText();
+            this.fontSize = options.getFontSize();
+            this.fontColor = options.getFontColor();
+            this.backgroundColor = options.getBackgroundColor();
+            this.opacity = options.getOpacity();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TileKey other)) return false;
+            return fontSize == other.fontSize
+                    && Float.compare(opacity, other.opacity) == 0
+                    && Objects.equals(text, other.text)
+                    && Objects.equals(fontColor, other.fontColor)
+                    && Objects.equals(backgroundColor, other.backgroundColor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(text, fontSize, fontColor, backgroundColor, opacity);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.webrayan.store.core.service.impl.encoder;
+
+import com.webrayan.store.core.service.ImageEncoder;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Adapter for any ImageIO writer plugin found on the classpath (e.g. a WebP writer).
+ * Not a bean: the registry creates one per format whose writer is present at startup.
+ */
+public class ImageIoImageEncoder implements ImageEncoder {
+
+    private final String format;
+    private final String contentType;
+    private final boolean supportsTransparency;
+
+    public ImageIoImageEncoder(String format, String contentType, boolean supportsTransparency) {
+        this.format = format;
+        this.contentType = contentType;
+        this.supportsTransparency = supportsTransparency;
+    }
+
+    public static boolean isAvailable(String format) {
+        return ImageIO.getImageWritersByFormatName(format).hasNext();
+    }
+
+    @Override
+    public String getFormat() {
+        return format;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean supportsTransparency() {
+        return supportsTransparency;
+    }
+
+    @Override
+    public byte[] encode(BufferedImage image, float quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No ImageIO writer for " + format);
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(outputStream)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                String[] types = param.getCompressionTypes();
+                if (types != null && types.length > 0 && param.getCompressionType() == null) {
+                    param.setCompressionType(lossyType(types));
+                }
+                param.setCompressionQuality(quality);
+            }
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        byte[] data = outputStream.toByteArray();
+        if (data.length == 0) {
+            throw new IOException("ImageIO writer produced no data for " + format);
+        }
+        return data;
+    }
+
+    private String lossyType(String[] types) {
+        for (String type : types) {
+            if (type.toLowerCase().contains("lossy")) {
+                return type;
+            }
+        }
+        return types[0];
+    }
+}
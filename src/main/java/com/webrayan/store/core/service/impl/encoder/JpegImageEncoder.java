@@ -0,0 +1,62 @@
+package com.webrayan.store.core.service.impl.encoder;
+
+import com.webrayan.store.core.service.ImageEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * JPEG with explicit quality; transparency is flattened onto white
+ */
+@Component
+public class JpegImageEncoder implements ImageEncoder {
+
+    @Override
+    public String getFormat() {
+        return "jpg";
+    }
+
+    @Override
+    public String getContentType() {
+        return "image/jpeg";
+    }
+
+    @Override
+    public boolean supportsTransparency() {
+        return false;
+    }
+
+    @Override
+    public byte[] encode(BufferedImage image, float quality) throws IOException {
+        if (image.getColorModel().hasAlpha()) {
+            BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = rgb.createGraphics();
+            g2d.drawImage(image, 0, 0, Color.WHITE, null);
+            g2d.dispose();
+            image = rgb;
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(outputStream)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+            }
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,54 @@
+package com.webrayan.store.core.service.impl.encoder;
+
+import com.webrayan.store.core.service.ImageEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * PNG at the strongest deflate level; lossless, so quality is ignored
+ */
+@Component
+public class PngImageEncoder implements ImageEncoder {
+
+    @Override
+    public String getFormat() {
+        return "png";
+    }
+
+    @Override
+    public String getContentType() {
+        return "image/png";
+    }
+
+    @Override
+    public boolean supportsTransparency() {
+        return true;
+    }
+
+    @Override
+    public byte[] encode(BufferedImage image, float quality) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(outputStream)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                // for PNG the "quality" is the inverse of the deflate level: 0 compresses hardest
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(0f);
+            }
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+}
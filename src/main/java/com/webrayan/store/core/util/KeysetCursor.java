@@ -0,0 +1,81 @@
+package com.webrayan.store.core.util;
+
+import com.webrayan.store.core.exception.BadRequestException;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * نشانگر صفحه‌بندی keyset (seek)
+ * Points at the boundary row of a page by its sort value and id; clients receive it as an opaque
+ * base64 string and must not build it themselves. A listing sorted by id alone leaves {@code sortValue} null.
+ */
+@Getter
+public final class KeysetCursor {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final char AFTER = 'a';
+    private static final char BEFORE = 'b';
+
+    private final LocalDateTime sortValue;
+    private final Long id;
+    private final boolean backward;
+
+    private KeysetCursor(LocalDateTime sortValue, Long id, boolean backward) {
+        this.sortValue = sortValue;
+        this.id = id;
+        this.backward = backward;
+    }
+
+    /**
+     * ردیف‌های بعد از این ردیف (صفحه بعد)
+     */
+    public static KeysetCursor after(LocalDateTime sortValue, Long id) {
+        return new KeysetCursor(sortValue, id, false);
+    }
+
+    /**
+     * ردیف‌های قبل از این ردیف (صفحه قبل)
+     */
+    public static KeysetCursor before(LocalDateTime sortValue, Long id) {
+        return new KeysetCursor(sortValue, id, true);
+    }
+
+    /**
+     * اندازه صفحه درخواستی محدود به بازه ۱ تا {@link #MAX_PAGE_SIZE}
+     */
+    public static int pageSize(int requested) {
+        return Math.max(1, Math.min(requested, MAX_PAGE_SIZE));
+    }
+
+    public String encode() {
+        String raw = (backward ? BEFORE : AFTER) + "|" + (sortValue != null ? sortValue : "") + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return null برای صفحه اول (نشانگر خالی)
+     * @throws BadRequestException اگر نشانگر دستکاری شده یا ناقص باشد
+     */
+    public static KeysetCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+            if (parts.length != 3 || parts[0].length() != 1
+                    || (parts[0].charAt(0) != AFTER && parts[0].charAt(0) != BEFORE)) {
+                throw new BadRequestException("نشانگر صفحه نامعتبر است", cursor);
+            }
+            LocalDateTime sortValue = parts[1].isEmpty() ? null : LocalDateTime.parse(parts[1]);
+            return new KeysetCursor(sortValue, Long.parseLong(parts[2]), parts[0].charAt(0) == BEFORE);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BadRequestException("نشانگر صفحه نامعتبر است", cursor);
+        }
+    }
+}
@@ -1,84 +1,80 @@
 package com.webrayan.store.core.utils;
 
+import com.webrayan.store.modules.catalog.dto.ProductCardView;
 import com.webrayan.store.modules.catalog.entity.Product;
-import com.webrayan.store.modules.catalog.service.ProductService;
+import com.webrayan.store.modules.catalog.service.ProductCardService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 /**
  * کمک‌کننده برای کار با تصاویر محصولات در template ها
  * این کلاس مشکل LazyInitializationException را حل می‌کند
+ * <p>
+ * Each call resolves a single product. Pages that list products should add the map from
+ * {@link ProductCardService#getCards} to the model instead, which loads the whole page at once.
  */
 @Component("productImageUtils")
 @RequiredArgsConstructor
 public class ProductImageUtils {
 
-    private final ProductService productService;
+    private static final String NO_IMAGE_URL = "/images/no-image.png";
+    private static final String UNKNOWN = "نامشخص";
+
+    private final ProductCardService productCardService;
 
     /**
      * بررسی اینکه آیا محصول تصویری دارد یا نه
      */
     public boolean hasImages(Product product) {
-        if (product == null || product.getId() == null) {
-            return false;
-        }
-        return productService.hasImages(product.getId());
+        ProductCardView card = card(product);
+        return card != null && card.getImageCount() > 0;
     }
 
     /**
      * دریافت URL اولین تصویر محصول
      */
     public String getFirstImageUrl(Product product) {
-        if (product == null || product.getId() == null) {
-            return "/images/no-image.png";
-        }
-        return productService.getFirstImageUrl(product.getId());
+        return getImageUrlOrDefault(product, NO_IMAGE_URL);
     }
 
     /**
      * دریافت URL تصویر محصول یا تصویر پیش‌فرض
      */
     public String getImageUrlOrDefault(Product product, String defaultUrl) {
-        if (product == null || product.getId() == null) {
-            return defaultUrl;
-        }
-        String imageUrl = productService.getFirstImageUrl(product.getId());
-        return imageUrl.equals("/images/no-image.png") ? defaultUrl : imageUrl;
+        ProductCardView card = card(product);
+        return card != null && card.hasImage() ? card.getFirstImageUrl() : defaultUrl;
     }
 
     /**
      * دریافت تعداد تصاویر محصول
      */
     public int getImageCount(Product product) {
-        if (product == null || product.getId() == null) {
-            return 0;
-        }
-        return productService.getProductByIdWithImages(product.getId())
-                .map(p -> p.getImages() != null ? p.getImages().size() : 0)
-                .orElse(0);
+        ProductCardView card = card(product);
+        return card != null ? card.getImageCount() : 0;
     }
 
     /**
      * دریافت نام دسته‌بندی محصول بدون lazy loading exception
      */
     public String getCategoryName(Product product) {
-        if (product == null || product.getId() == null) {
-            return "نامشخص";
-        }
-        return productService.getProductByIdWithImages(product.getId())
-                .map(p -> p.getCategory() != null ? p.getCategory().getName() : "نامشخص")
-                .orElse("نامشخص");
+        ProductCardView card = card(product);
+        return card != null ? card.getCategoryName() : UNKNOWN;
     }
 
     /**
      * دریافت نام فروشنده محصول بدون lazy loading exception
      */
     public String getSellerName(Product product) {
+        ProductCardView card = card(product);
+        return card != null ? card.getSellerName() : UNKNOWN;
+    }
+
+    private ProductCardView card(Product product) {
         if (product == null || product.getId() == null) {
-            return "نامشخص";
+            return null;
         }
-        return productService.getProductByIdWithImages(product.getId())
-                .map(p -> p.getSeller() != null ? p.getSeller().getFirstName() + " " + p.getSeller().getLastName() : "نامشخص")
-                .orElse("نامشخص");
+        return productCardService.getCardsByIds(List.of(product.getId())).get(product.getId());
     }
 }
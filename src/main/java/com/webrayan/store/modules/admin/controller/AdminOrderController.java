@@ -1,10 +1,12 @@
 package com.webrayan.store.modules.admin.controller;
 
+import com.webrayan.store.core.common.dto.CursorPage;
 import com.webrayan.store.modules.sale.entity.Order;
 import com.webrayan.store.modules.sale.enums.OrderStatus;
 import com.webrayan.store.modules.sale.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -34,6 +36,7 @@ public class AdminOrderController {
             @RequestParam(required = false) String status,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String cursor,
             Model model) {
         
         try {
@@ -48,18 +51,36 @@ public class AdminOrderController {
                 }
             }
             
-            Page<Order> orders = orderService.findOrdersForAdmin(
-                    search.trim().isEmpty() ? null : search,
-                    orderStatus,
-                    startDate,
-                    endDate,
-                    pageable
-            );
-            
-            model.addAttribute("orders", orders);
-            model.addAttribute("currentPage", page);
-            model.addAttribute("totalPages", orders.getTotalPages());
-            model.addAttribute("totalElements", orders.getTotalElements());
+            if (cursor != null) {
+                // حالت نشانگر: بدون COUNT و OFFSET؛ پارامتر cursor خالی یعنی صفحه اول
+                CursorPage<Order> cursorPage = orderService.findOrdersForAdminByCursor(
+                        search.trim().isEmpty() ? null : search,
+                        orderStatus,
+                        startDate,
+                        endDate,
+                        cursor,
+                        size
+                );
+                model.addAttribute("orders", new PageImpl<>(cursorPage.getContent()));
+                model.addAttribute("cursorMode", true);
+                model.addAttribute("nextCursor", cursorPage.getNextCursor());
+                model.addAttribute("prevCursor", cursorPage.getPrevCursor());
+                model.addAttribute("currentPage", 0);
+                model.addAttribute("totalPages", 1);
+            } else {
+                Page<Order> orders = orderService.findOrdersForAdmin(
+                        search.trim().isEmpty() ? null : search,
+                        orderStatus,
+                        startDate,
+                        endDate,
+                        pageable
+                );
+
+                model.addAttribute("orders", orders);
+                model.addAttribute("currentPage", page);
+                model.addAttribute("totalPages", orders.getTotalPages());
+                model.addAttribute("totalElements", orders.getTotalElements());
+            }
             model.addAttribute("searchTerm", search);
             model.addAttribute("selectedStatus", status);
             model.addAttribute("startDate", startDate);
@@ -1,14 +1,20 @@
 package com.webrayan.store.modules.admin.controller;
 
+import com.webrayan.store.core.common.dto.CursorPage;
+import com.webrayan.store.core.exception.BadRequestException;
 import com.webrayan.store.modules.catalog.entity.Product;
 import com.webrayan.store.modules.catalog.entity.Category;
 import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import com.webrayan.store.modules.catalog.service.ImageJobService;
+import com.webrayan.store.modules.catalog.service.ProductCardService;
 import com.webrayan.store.modules.catalog.service.ProductService;
 import com.webrayan.store.modules.catalog.service.CategoryService;
 import com.webrayan.store.modules.acl.entity.User;
 import com.webrayan.store.modules.acl.service.UserService;
+import com.webrayan.store.modules.search.service.ProductSearchService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -21,6 +27,7 @@ import org.springframework.web.bind.annotation.InitBinder;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
 import java.util.ArrayList;
 
 @Controller
@@ -31,6 +38,9 @@ public class AdminProductController {
     private final ProductService productService;
     private final CategoryService categoryService;
     private final UserService userService;
+    private final ProductSearchService productSearchService;
+    private final ProductCardService productCardService;
+    private final ImageJobService imageJobService;
 
     /**
      * Exclude images field from automatic binding to prevent conflicts
@@ -55,8 +65,13 @@ public class AdminProductController {
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) Boolean isActive,
             @RequestParam(required = false) Boolean isFeatured,
+            @RequestParam(required = false) String cursor,
             Model model) {
 
+        // حالت نشانگر فقط برای مرتب‌سازی پیش‌فرض (id نزولی) و بدون جستجوی متنی
+        boolean cursorMode = cursor != null && "id".equals(sortBy) && sortDir.equalsIgnoreCase("desc")
+                && (search == null || search.trim().isEmpty());
+
         // تنظیم صفحه‌بندی و مرتب‌سازی
         Sort sort = Sort.by(sortDir.equalsIgnoreCase("desc") ? 
                            Sort.Direction.DESC : Sort.Direction.ASC, sortBy);
@@ -65,12 +80,21 @@ public class AdminProductController {
         Page<Product> products;
 
         // اعمال فیلترها
-        if (search != null && !search.trim().isEmpty()) {
-            if (status != null) {
-                products = productService.searchProductsByNameAndStatus(search, status, pageable);
-            } else {
-                products = productService.searchProductsByName(search, pageable);
+        if (cursorMode) {
+            CursorPage<Product> cursorPage;
+            try {
+                cursorPage = productService.getProductsForAdminByCursor(
+                        status, categoryId, isActive, isFeatured, cursor, size);
+            } catch (BadRequestException e) {
+                // نشانگر نامعتبر: از صفحه اول شروع می‌شود
+                cursorPage = productService.getProductsForAdminByCursor(
+                        status, categoryId, isActive, isFeatured, null, size);
             }
+            products = new PageImpl<>(cursorPage.getContent());
+            model.addAttribute("nextCursor", cursorPage.getNextCursor());
+            model.addAttribute("prevCursor", cursorPage.getPrevCursor());
+        } else if (search != null && !search.trim().isEmpty()) {
+            products = productSearchService.searchProductsForAdmin(search.trim(), status, pageable);
         } else if (status != null) {
             products = productService.getProductsByStatus(status, pageable);
         } else if (categoryId != null) {
@@ -95,6 +119,8 @@ public class AdminProductController {
         var categories = categoryService.getActiveCategories();
 
         model.addAttribute("products", products);
+        // تصویر، دسته‌بندی و فروشنده همه ردیف‌ها با دو کوئری
+        model.addAttribute("productCards", productCardService.getCards(products.getContent()));
         model.addAttribute("categories", categories);
         model.addAttribute("statuses", ProductStatus.values());
         model.addAttribute("currentPage", page);
@@ -106,6 +132,10 @@ public class AdminProductController {
         model.addAttribute("selectedCategoryId", categoryId);
         model.addAttribute("selectedIsActive", isActive);
         model.addAttribute("selectedIsFeatured", isFeatured);
+        model.addAttribute("cursorMode", cursorMode);
+        // ورود به حالت نشانگر از صفحه‌بندی عددی؛ فقط برای مرتب‌سازی پیش‌فرض و بدون جستجو
+        model.addAttribute("cursorAvailable", "id".equals(sortBy) && sortDir.equalsIgnoreCase("desc")
+                && (search == null || search.trim().isEmpty()));
         
         // آمار
         model.addAttribute("totalProducts", totalProducts);
@@ -164,22 +194,11 @@ public class AdminProductController {
             
             Product savedProduct = productService.createProduct(product);
             
-            // Handle image uploads if provided
-            if (imageFiles != null && imageFiles.length > 0) {
-                for (MultipartFile file : imageFiles) {
-                    if (!file.isEmpty()) {
-                        // TODO: Implement image processing and saving
-                        // This would typically involve:
-                        // 1. Validating file type and size
-                        // 2. Saving file to storage (disk/cloud)
-                        // 3. Creating ProductImage entity
-                        // 4. Associating with product
-                    }
-                }
-            }
+            // تصاویر در صف پردازش قرار می‌گیرند و نسخه‌ها در پس‌زمینه ساخته می‌شوند
+            int queuedImages = enqueueImages(savedProduct.getId(), imageFiles);
             
             redirectAttributes.addFlashAttribute("successMessage", 
-                "محصول با موفقیت ایجاد شد");
+                "محصول با موفقیت ایجاد شد" + queuedImagesNote(queuedImages));
             return "redirect:/admin/products/" + savedProduct.getId();
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", 
@@ -223,17 +242,10 @@ public class AdminProductController {
             
             Product updatedProduct = productService.updateProduct(product.getId(), product);
             
-            // Handle new image uploads if provided
-            if (imageFiles != null && imageFiles.length > 0) {
-                for (MultipartFile file : imageFiles) {
-                    if (!file.isEmpty()) {
-                        // TODO: Implement image processing and saving for updates
-                    }
-                }
-            }
+            int queuedImages = enqueueImages(updatedProduct.getId(), imageFiles);
             
             redirectAttributes.addFlashAttribute("successMessage", 
-                "محصول با موفقیت به‌روزرسانی شد");
+                "محصول با موفقیت به‌روزرسانی شد" + queuedImagesNote(queuedImages));
             return "redirect:/admin/products/" + updatedProduct.getId();
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", 
@@ -311,4 +323,21 @@ public class AdminProductController {
         }
         return "redirect:/admin/products/" + id;
     }
+
+    private int enqueueImages(Long productId, MultipartFile[] imageFiles) throws IOException {
+        int queued = 0;
+        if (imageFiles != null) {
+            for (MultipartFile file : imageFiles) {
+                if (!file.isEmpty()) {
+                    imageJobService.enqueue(productId, file, false);
+                    queued++;
+                }
+            }
+        }
+        return queued;
+    }
+
+    private String queuedImagesNote(int queuedImages) {
+        return queuedImages > 0 ? " (" + queuedImages + " تصویر در صف پردازش)" : "";
+    }
 }
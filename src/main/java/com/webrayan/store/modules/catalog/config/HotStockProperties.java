@@ -0,0 +1,35 @@
+package com.webrayan.store.modules.catalog.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * تنظیمات حالت موجودی کالاهای پرفروش (app.inventory.hot.*)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.inventory.hot")
+public class HotStockProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * Number of in-memory shards per hot product; 0 means one per available processor
+     */
+    private int shards = 0;
+
+    /**
+     * Products that start in hot mode when the application is ready
+     */
+    private List<Long> productIds = new ArrayList<>();
+
+    private long reconcileIntervalMs = 1000;
+
+    public int effectiveShards() {
+        return shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,48 @@
+package com.webrayan.store.modules.catalog.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * تنظیمات صف پردازش تصاویر محصول (app.catalog.image-jobs.*)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.catalog.image-jobs")
+public class ImageJobProperties {
+
+    /**
+     * Jobs processed concurrently by this instance; each job renders its variants on the image pool
+     */
+    private int workers = 2;
+
+    private long pollIntervalMs = 1000;
+
+    private int maxAttempts = 3;
+
+    /**
+     * Delay before a failed job is retried, multiplied by the number of attempts so far
+     */
+    private long retryDelayMs = 30000;
+
+    /**
+     * A RUNNING job older than this is assumed to belong to a dead worker and is queued again
+     */
+    private long leaseTimeoutMs = 300000;
+
+    /**
+     * Render every app.file-upload.image-sizes entry up front. Off by default: sizes are served
+     * lazily from /img/{ref}/{w}x{h}.{fmt} and jobs only produce the re-encoded original
+     */
+    private boolean pregenerateSizes = false;
+
+    /**
+     * Reuse the stored original and variants of an earlier upload with the same SHA-256
+     */
+    private boolean deduplicate = true;
+
+    private String originalDirectory = "products/originals";
+
+    private String variantDirectory = "products/variants";
+}
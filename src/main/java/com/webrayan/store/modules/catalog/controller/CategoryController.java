@@ -1,5 +1,6 @@
 package com.webrayan.store.modules.catalog.controller;
 
+import com.webrayan.store.modules.catalog.dto.CategoryTreeNode;
 import com.webrayan.store.modules.catalog.entity.Category;
 import com.webrayan.store.modules.catalog.service.CategoryService;
 import lombok.RequiredArgsConstructor;
@@ -23,8 +24,8 @@ public class CategoryController {
     }
 
     @GetMapping("/root")
-    public ResponseEntity<List<Category>> getRootCategories() {
-        List<Category> categories = categoryService.getRootCategories();
+    public ResponseEntity<List<CategoryTreeNode>> getRootCategories() {
+        List<CategoryTreeNode> categories = categoryService.getRootCategories();
         return ResponseEntity.ok(categories);
     }
 
@@ -43,11 +44,20 @@ public class CategoryController {
     }
 
     @GetMapping("/{id}/subcategories")
-    public ResponseEntity<List<Category>> getSubcategories(@PathVariable Long id) {
-        List<Category> subcategories = categoryService.getSubcategories(id);
+    public ResponseEntity<List<CategoryTreeNode>> getSubcategories(@PathVariable Long id) {
+        List<CategoryTreeNode> subcategories = categoryService.getSubcategories(id);
         return ResponseEntity.ok(subcategories);
     }
 
+    @GetMapping("/{id}/breadcrumb")
+    public ResponseEntity<List<CategoryTreeNode>> getBreadcrumb(@PathVariable Long id) {
+        List<CategoryTreeNode> breadcrumb = categoryService.getBreadcrumb(id);
+        if (breadcrumb.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(breadcrumb);
+    }
+
     @PostMapping
     @PreAuthorize("hasRole('SYSTEM_ADMIN') or hasAuthority('PRODUCT:CREATE')")
     public ResponseEntity<Category> createCategory(@RequestBody Category category) {
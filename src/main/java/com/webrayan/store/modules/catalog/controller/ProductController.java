@@ -1,18 +1,43 @@
 package com.webrayan.store.modules.catalog.controller;
 
+import com.webrayan.store.core.common.dto.CursorPage;
+import com.webrayan.store.core.exception.BadRequestException;
+import com.webrayan.store.core.exception.ResourceNotFoundException;
+import com.webrayan.store.modules.catalog.dto.ImageJobDto;
+import com.webrayan.store.modules.catalog.dto.NearDuplicateImageDto;
+import com.webrayan.store.modules.catalog.dto.ProductDetailDto;
+import com.webrayan.store.modules.catalog.dto.ProductSummary;
+import com.webrayan.store.modules.catalog.dto.StorageMigrationResultDto;
 import com.webrayan.store.modules.catalog.entity.Product;
 import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import com.webrayan.store.modules.catalog.service.ProductDetailService;
 import com.webrayan.store.modules.catalog.service.ProductService;
+import com.webrayan.store.modules.catalog.service.ProductSummaryService;
+import com.webrayan.store.modules.catalog.service.ProductViewCounter;
 import com.webrayan.store.modules.catalog.service.CategoryService;
+import com.webrayan.store.modules.catalog.service.ImageDedupeService;
+import com.webrayan.store.modules.catalog.service.ImageJobService;
+import com.webrayan.store.modules.catalog.service.ImageStorageMigrationService;
+import com.webrayan.store.modules.search.dto.CategoryListingResult;
+import com.webrayan.store.modules.search.service.ProductFacetIndex;
+import com.webrayan.store.modules.search.service.ProductFacetService;
+import com.webrayan.store.modules.search.service.ProductSearchService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.URI;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/catalog/products")
@@ -20,80 +45,145 @@ import java.util.Map;
 public class ProductController {
 
     private final ProductService productService;
+    private final ProductDetailService productDetailService;
+    private final ProductSummaryService productSummaryService;
+    private final ProductViewCounter productViewCounter;
     private final CategoryService categoryService;
+    private final ProductSearchService productSearchService;
+    private final ProductFacetService productFacetService;
+    private final ImageJobService imageJobService;
+    private final ImageDedupeService imageDedupeService;
+    private final ImageStorageMigrationService imageStorageMigrationService;
 
     @GetMapping
-    public ResponseEntity<Page<Product>> getAllProducts(Pageable pageable) {
-        Page<Product> products = productService.getActiveProducts(pageable);
+    public ResponseEntity<Page<ProductSummary>> getAllProducts(Pageable pageable) {
+        Page<ProductSummary> products = productSummaryService.getActiveProducts(pageable);
         return ResponseEntity.ok(products);
     }
 
+    /**
+     * لیست با نشانگر (keyset)؛ برای صفحه بعد/قبل مقدار nextCursor/prevCursor پاسخ را بفرستید
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPage<ProductSummary>> getProductsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) Long categoryId) {
+        try {
+            return ResponseEntity.ok(productSummaryService.getActiveProductsByCursor(categoryId, cursor, size));
+        } catch (BadRequestException e) {
+            // نشانگر دستکاری‌شده یا نامعتبر
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * صفحه‌بندی عددی بدون شمارش کل نتایج
+     */
+    @GetMapping("/slice")
+    public ResponseEntity<Slice<ProductSummary>> getProductsSlice(
+            @RequestParam(required = false) Long categoryId, Pageable pageable) {
+        return ResponseEntity.ok(productSummaryService.getActiveProductsSlice(categoryId, pageable));
+    }
+
     @GetMapping("/featured")
-    public ResponseEntity<List<Product>> getFeaturedProducts() {
-        List<Product> products = productService.getFeaturedProducts();
+    public ResponseEntity<List<ProductSummary>> getFeaturedProducts() {
+        List<ProductSummary> products = productSummaryService.getFeaturedProducts();
         return ResponseEntity.ok(products);
     }
 
-//    @GetMapping("/search")
-//    public ResponseEntity<Page<Product>> searchProducts(@RequestParam String keyword, Pageable pageable) {
-//        Page<Product> products = productService.searchProducts(keyword, pageable);
-//        return ResponseEntity.ok(products);
-//    }
+    @GetMapping("/search")
+    public ResponseEntity<Page<ProductSummary>> searchProducts(@RequestParam String keyword, Pageable pageable) {
+        Page<ProductSummary> products = productSearchService.searchProducts(keyword, pageable);
+        return ResponseEntity.ok(products);
+    }
 
     @GetMapping("/category/{categoryId}")
-    public ResponseEntity<Page<Product>> getProductsByCategory(@PathVariable Long categoryId, Pageable pageable) {
+    public ResponseEntity<Page<ProductSummary>> getProductsByCategory(@PathVariable Long categoryId, Pageable pageable) {
         return categoryService.getCategoryById(categoryId)
                 .map(category -> {
-                    Page<Product> products = productService.getProductsByCategory(category, pageable);
+                    Page<ProductSummary> products = productSummaryService.getProductsByCategory(category.getId(), pageable);
                     return ResponseEntity.ok(products);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * لیست محصولات دسته‌بندی با فیلتر ویژگی‌ها
+     * Filters are passed as attr_{attributeId}=value (repeatable) and range_{attributeId}=min:max
+     */
+    @GetMapping("/category/{categoryId}/faceted")
+    public ResponseEntity<CategoryListingResult> getFacetedProductsByCategory(
+            @PathVariable Long categoryId,
+            @RequestParam MultiValueMap<String, String> parameters,
+            Pageable pageable) {
+        Map<Long, Set<String>> valueFilters = ProductFacetService.parseValueFilters(parameters);
+        Map<Long, ProductFacetIndex.NumericRange> rangeFilters;
+        try {
+            rangeFilters = ProductFacetService.parseRangeFilters(parameters);
+        } catch (IllegalArgumentException e) {
+            // بازه باید به شکل min:max با اعداد معتبر باشد
+            return ResponseEntity.badRequest().build();
+        }
+        return categoryService.getCategoryById(categoryId)
+                .map(category -> ResponseEntity.ok(productFacetService.getCategoryListing(
+                        category, valueFilters, rangeFilters, pageable)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * محصولات دسته‌بندی به همراه همه زیرشاخه‌ها
+     */
+    @GetMapping("/category/{categoryId}/tree")
+    public ResponseEntity<Page<ProductSummary>> getProductsInCategoryTree(@PathVariable Long categoryId, Pageable pageable) {
+        if (categoryService.getBreadcrumb(categoryId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(productSummaryService.getProductsInCategoryTree(categoryId, pageable));
+    }
+
     @GetMapping("/price-range")
-    public ResponseEntity<Page<Product>> getProductsByPriceRange(
+    public ResponseEntity<Page<ProductSummary>> getProductsByPriceRange(
             @RequestParam BigDecimal minPrice, 
             @RequestParam BigDecimal maxPrice, 
             Pageable pageable) {
-        Page<Product> products = productService.getProductsByPriceRange(minPrice, maxPrice, pageable);
+        Page<ProductSummary> products = productSummaryService.getProductsByPriceRange(minPrice, maxPrice, pageable);
         return ResponseEntity.ok(products);
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<Page<Product>> getProductsByUser(@PathVariable Long userId, Pageable pageable) {
-        Page<Product> products = productService.getProductsByUser(userId, pageable);
+    public ResponseEntity<Page<ProductSummary>> getProductsByUser(@PathVariable Long userId, Pageable pageable) {
+        Page<ProductSummary> products = productSummaryService.getProductsByUser(userId, pageable);
         return ResponseEntity.ok(products);
     }
 
     @GetMapping("/low-stock")
-    public ResponseEntity<List<Product>> getLowStockProducts() {
-        List<Product> products = productService.getLowStockProducts();
+    public ResponseEntity<List<ProductSummary>> getLowStockProducts() {
+        List<ProductSummary> products = productSummaryService.getLowStockProducts();
         return ResponseEntity.ok(products);
     }
 
     @GetMapping("/out-of-stock")
-    public ResponseEntity<List<Product>> getOutOfStockProducts() {
-        List<Product> products = productService.getOutOfStockProducts();
+    public ResponseEntity<List<ProductSummary>> getOutOfStockProducts() {
+        List<ProductSummary> products = productSummaryService.getOutOfStockProducts();
         return ResponseEntity.ok(products);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProductById(@PathVariable Long id) {
-        return productService.getProductById(id)
+    public ResponseEntity<ProductDetailDto> getProductById(@PathVariable Long id) {
+        return productDetailService.getProductDetail(id)
                 .map(product -> {
-                    // Increment view count
-                    productService.incrementViewCount(id);
+                    productViewCounter.recordView(id);
                     return ResponseEntity.ok(product);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/slug/{slug}")
-    public ResponseEntity<Product> getProductBySlug(@PathVariable String slug) {
-        return productService.getProductBySlug(slug)
+    public ResponseEntity<ProductDetailDto> getProductBySlug(@PathVariable String slug) {
+        return productDetailService.getProductDetailBySlug(slug)
                 .map(product -> {
-                    // Increment view count
-                    productService.incrementViewCount(product.getId());
+                    productViewCounter.recordView(product.getId());
                     return ResponseEntity.ok(product);
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -168,4 +258,65 @@ public class ProductController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    /**
+     * آپلود تصویر محصول؛ پاسخ بلافاصله با شناسه کار برمی‌گردد و نسخه‌ها در پس‌زمینه ساخته می‌شوند
+     */
+    @PostMapping("/{id}/images")
+    public ResponseEntity<ImageJobDto> uploadProductImage(@PathVariable Long id,
+                                                          @RequestParam("file") MultipartFile file,
+                                                          @RequestParam(defaultValue = "false") boolean primary) {
+        try {
+            ImageJobDto job = imageJobService.enqueue(id, file, primary);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/catalog/products/images/jobs/" + job.getJobId()))
+                    .body(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * وضعیت و درصد پیشرفت کار پردازش تصویر
+     */
+    @GetMapping("/images/jobs/{jobId}")
+    public ResponseEntity<ImageJobDto> getImageJobStatus(@PathVariable Long jobId) {
+        try {
+            return ResponseEntity.ok(imageJobService.getStatus(jobId));
+        } catch (ResourceNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * گزارش تصاویر تقریباً تکراری برای مدیر سیستم
+     */
+    @GetMapping("/images/near-duplicates")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN')")
+    public ResponseEntity<List<NearDuplicateImageDto>> getNearDuplicateImages(
+            @RequestParam(defaultValue = "6") int maxDistance,
+            @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(imageDedupeService.findNearDuplicates(maxDistance, limit));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * انتقال فایل‌های تصویر موجود به نام‌های مبتنی بر هش محتوا؛ قابل اجرای دوباره
+     */
+    @PostMapping("/images/storage-migration")
+    @PreAuthorize("hasRole('SYSTEM_ADMIN')")
+    public ResponseEntity<StorageMigrationResultDto> migrateImageStorage(
+            @RequestParam(defaultValue = "200") int batchSize,
+            @RequestParam(defaultValue = "false") boolean removeLegacyFiles) {
+        try {
+            return ResponseEntity.ok(imageStorageMigrationService.migrate(batchSize, removeLegacyFiles));
+        } catch (BadRequestException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
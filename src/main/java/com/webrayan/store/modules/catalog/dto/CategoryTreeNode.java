@@ -0,0 +1,69 @@
+package com.webrayan.store.modules.catalog.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * گره تغییرناپذیر درخت دسته‌بندی
+ * Part of a {@link com.webrayan.store.modules.catalog.service.CategoryTree} snapshot; children are
+ * sorted by sortOrder and the whole subtree is shared, never copied, between snapshots' readers.
+ * <p>
+ * Serialized flat, like the category entity the listing endpoints used to return: children appear
+ * only as {@code subcategoryIds}, so a listing never carries a whole subtree.
+ */
+@Getter
+@ToString(of = {"id", "name", "depth"})
+public class CategoryTreeNode {
+
+    private final Long id;
+    private final Long parentId;
+    private final String name;
+    private final String slug;
+    @JsonProperty("isActive")
+    private final boolean active;
+    private final int sortOrder;
+    private final int depth;
+
+    /**
+     * شناسه‌های مسیر از ریشه تا خود این گره
+     */
+    @JsonIgnore
+    private final List<Long> path;
+
+    /**
+     * شناسه خود گره و همه نوادگان آن
+     */
+    @JsonIgnore
+    private final Set<Long> descendantIds;
+
+    @JsonIgnore
+    private final List<CategoryTreeNode> children;
+
+    public CategoryTreeNode(Long id, Long parentId, String name, String slug, boolean active, int sortOrder,
+                            int depth, List<Long> path, Set<Long> descendantIds, List<CategoryTreeNode> children) {
+        this.id = id;
+        this.parentId = parentId;
+        this.name = name;
+        this.slug = slug;
+        this.active = active;
+        this.sortOrder = sortOrder;
+        this.depth = depth;
+        this.path = List.copyOf(path);
+        this.descendantIds = Set.copyOf(descendantIds);
+        this.children = List.copyOf(children);
+    }
+
+    @JsonIgnore
+    public boolean isRoot() {
+        return parentId == null;
+    }
+
+    public List<Long> getSubcategoryIds() {
+        return children.stream().map(CategoryTreeNode::getId).toList();
+    }
+}
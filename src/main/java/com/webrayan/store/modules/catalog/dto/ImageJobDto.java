@@ -0,0 +1,38 @@
+package com.webrayan.store.modules.catalog.dto;
+
+import com.webrayan.store.modules.catalog.entity.ImageProcessingJob;
+import com.webrayan.store.modules.catalog.enums.ImageJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * وضعیت کار پردازش تصویر برای پاسخ آپلود و استعلام پیشرفت
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageJobDto {
+    private Long jobId;
+    private Long productImageId;
+    private ImageJobStatus status;
+    private int totalVariants;
+    private int completedVariants;
+    private int progressPercent;
+    private int attempts;
+    private String errorMessage;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+
+    public static ImageJobDto from(ImageProcessingJob job) {
+        int total = job.getTotalVariants() != null ? job.getTotalVariants() : 0;
+        int completed = job.getStatus() == ImageJobStatus.COMPLETED ? total
+                : (job.getCompletedVariants() != null ? job.getCompletedVariants() : 0);
+        int percent = total > 0 ? Math.min(100, completed * 100 / total) : 0;
+        return new ImageJobDto(job.getId(), job.getProductImage().getId(), job.getStatus(), total, completed, percent,
+                job.getAttempts() != null ? job.getAttempts() : 0, job.getErrorMessage(),
+                job.getCreatedAt(), job.getCompletedAt());
+    }
+}
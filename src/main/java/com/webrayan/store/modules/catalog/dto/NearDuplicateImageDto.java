@@ -0,0 +1,24 @@
+package com.webrayan.store.modules.catalog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * دو تصویر با محتوای متفاوت ولی ظاهر تقریباً یکسان
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearDuplicateImageDto {
+    private Long imageId;
+    private String imageUrl;
+    private List<Long> productIds;
+    private Long otherImageId;
+    private String otherImageUrl;
+    private List<Long> otherProductIds;
+    // number of differing bits between the two perceptual hashes (0-64)
+    private int distance;
+}
@@ -0,0 +1,27 @@
+package com.webrayan.store.modules.catalog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * اطلاعات آماده نمایش یک محصول در لیست‌ها و گریدها
+ * Resolved for a whole page at once so templates never trigger lazy loading.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductCardView {
+    private Long productId;
+    /**
+     * URL of the primary (or first by sort order) image, null when the product has no image
+     */
+    private String firstImageUrl;
+    private int imageCount;
+    private String categoryName;
+    private String sellerName;
+
+    public boolean hasImage() {
+        return firstImageUrl != null && !firstImageUrl.isEmpty();
+    }
+}
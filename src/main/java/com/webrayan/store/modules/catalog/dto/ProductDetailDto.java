@@ -0,0 +1,48 @@
+package com.webrayan.store.modules.catalog.dto;
+
+import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * نمای جزئیات محصول برای صفحه محصول
+ * A detached snapshot (no entity references) so it can be cached and served without Hibernate.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductDetailDto {
+    private Long id;
+    private String name;
+    private String slug;
+    private String sku;
+    private String shortDescription;
+    private String description;
+    private BigDecimal price;
+    private BigDecimal discountPrice;
+    private Integer stockQuantity;
+    private Boolean isActive;
+    private Boolean isFeatured;
+    private Boolean isDigital;
+    private ProductStatus status;
+    private String metaTitle;
+    private String metaDescription;
+    private BigDecimal weight;
+    private BigDecimal length;
+    private BigDecimal width;
+    private BigDecimal height;
+    private Long viewsCount;
+    private Long salesCount;
+    private Long categoryId;
+    private String categoryName;
+    private String categorySlug;
+    private Long sellerId;
+    private String sellerName;
+    private String primaryImageUrl;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
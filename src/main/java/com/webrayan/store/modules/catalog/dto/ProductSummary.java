@@ -0,0 +1,49 @@
+package com.webrayan.store.modules.catalog.dto;
+
+import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * خلاصه محصول برای لیست‌ها
+ * Filled by a JPQL constructor expression (see ProductRepository#SUMMARY_SELECT), so only these
+ * columns are read and no entity or proxy is created. The image URL is attached by a second batched query.
+ */
+@Data
+@NoArgsConstructor
+public class ProductSummary {
+    private Long id;
+    private String name;
+    private String slug;
+    private String sku;
+    private BigDecimal price;
+    private BigDecimal discountPrice;
+    private Integer stockQuantity;
+    private ProductStatus status;
+    private Boolean isFeatured;
+    private Long categoryId;
+    private String categoryName;
+    private String imageUrl;
+    private LocalDateTime createdAt;
+
+    public ProductSummary(Long id, String name, String slug, String sku,
+                          BigDecimal price, BigDecimal discountPrice, Integer stockQuantity,
+                          ProductStatus status, Boolean isFeatured, Long categoryId, String categoryName,
+                          LocalDateTime createdAt) {
+        this.id = id;
+        this.name = name;
+        this.slug = slug;
+        this.sku = sku;
+        this.price = price;
+        this.discountPrice = discountPrice;
+        this.stockQuantity = stockQuantity;
+        this.status = status;
+        this.isFeatured = isFeatured;
+        this.categoryId = categoryId;
+        this.categoryName = categoryName;
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,19 @@
+package com.webrayan.store.modules.catalog.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * نتیجه انتقال فایل‌های تصویر به ذخیره‌سازی مبتنی بر هش محتوا
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageMigrationResultDto {
+    private int migratedOriginals;
+    private int migratedVariants;
+    // files that could not be read; their rows keep the old reference
+    private int failed;
+    private int removedLegacyFiles;
+}
@@ -0,0 +1,81 @@
+package com.webrayan.store.modules.catalog.entity;
+
+import com.webrayan.store.modules.catalog.enums.ImageJobStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * کار پردازش نسخه‌های یک تصویر محصول
+ * The row is the queue entry: workers claim it with a conditional status update, so pending work
+ * survives restarts and is never picked up by two workers at once.
+ */
+@Entity
+@Table(name = "catalog_image_jobs", indexes = {
+        @Index(name = "idx_image_jobs_status_next_attempt", columnList = "status, next_attempt_at")
+})
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class ImageProcessingJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_image_id", nullable = false)
+    private ProductImage productImage;
+
+    /**
+     * Reference of the stored original, including its directory
+     */
+    @Column(name = "source_reference", nullable = false, length = 500)
+    private String sourceReference;
+
+    @Column(name = "original_filename", length = 255)
+    private String originalFilename;
+
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private ImageJobStatus status = ImageJobStatus.PENDING;
+
+    @Column(name = "total_variants", nullable = false)
+    private Integer totalVariants = 0;
+
+    @Column(name = "completed_variants", nullable = false)
+    private Integer completedVariants = 0;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "error_message", length = 1000)
+    private String errorMessage;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @CreatedDate
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @LastModifiedDate
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
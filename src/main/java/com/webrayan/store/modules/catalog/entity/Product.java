@@ -14,7 +14,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "catalog_products")
+@Table(name = "catalog_products", indexes = {
+        @Index(name = "idx_catalog_products_created_at_id", columnList = "created_at, id")
+})
 @Data
 @EqualsAndHashCode(callSuper = false)
 @AllArgsConstructor
@@ -6,7 +6,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "product_image_variants")
+@Table(name = "product_image_variants", indexes = {
+        @Index(name = "idx_product_image_variants_file_reference", columnList = "file_reference")
+})
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -0,0 +1,18 @@
+package com.webrayan.store.modules.catalog.enums;
+
+public enum ImageJobStatus {
+    PENDING("در صف"),
+    RUNNING("در حال پردازش"),
+    COMPLETED("انجام شده"),
+    FAILED("ناموفق");
+
+    private final String displayName;
+
+    ImageJobStatus(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,18 @@
+package com.webrayan.store.modules.catalog.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * رویداد تغییر تعریف ویژگی‌های یک دسته‌بندی
+ * Published by CategoryAttributeService; the facet index is rebuilt after commit.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class CategoryAttributeChangedEvent {
+
+    private final Long categoryId;
+    private final Long attributeId;
+}
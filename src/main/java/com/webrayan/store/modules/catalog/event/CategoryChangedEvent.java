@@ -0,0 +1,17 @@
+package com.webrayan.store.modules.catalog.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * رویداد ایجاد، ویرایش، حذف یا تغییر وضعیت یک دسته‌بندی
+ * Published by CategoryService; the in-memory category tree is rebuilt after commit.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class CategoryChangedEvent {
+
+    private final Long categoryId;
+}
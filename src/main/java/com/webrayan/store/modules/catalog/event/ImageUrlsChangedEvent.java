@@ -0,0 +1,18 @@
+package com.webrayan.store.modules.catalog.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * رویداد بازنویسی آدرس تصاویر ذخیره‌شده
+ * Published by ImageStorageMigrationService for every batch of originals it renames; caches that
+ * hold image URLs are cleared after commit.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class ImageUrlsChangedEvent {
+
+    private final int renamedFiles;
+}
@@ -0,0 +1,35 @@
+package com.webrayan.store.modules.catalog.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * رویداد تغییر محصول که توسط ProductService منتشر می‌شود
+ * Listeners (search index, caches, ...) react to it after the surrounding transaction commits
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class ProductChangedEvent {
+
+    private final Long productId;
+    private final ChangeType changeType;
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED,
+        STATUS_CHANGED,
+        STOCK_CHANGED,
+        /**
+         * Relative stock movement from checkout or cancellation (not an absolute stock edit)
+         */
+        STOCK_RESERVED,
+        ATTRIBUTES_CHANGED
+    }
+
+    public boolean isDeleted() {
+        return changeType == ChangeType.DELETED;
+    }
+}
@@ -0,0 +1,24 @@
+package com.webrayan.store.modules.catalog.exception;
+
+import com.webrayan.store.core.exception.ConflictException;
+
+import java.util.List;
+
+/**
+ * دفتر موجودی پرفروش این محصولات در حال بسته شدن است؛ چند لحظه بعد دوباره تلاش کنید
+ * <p>
+ * Retryable: the ledger is retired by the next reconcile, normally within a second.
+ */
+public class HotStockRetiringException extends ConflictException {
+
+    private final List<Long> productIds;
+
+    public HotStockRetiringException(List<Long> productIds) {
+        super("Hot stock of products is being retired, retry shortly: " + productIds);
+        this.productIds = List.copyOf(productIds);
+    }
+
+    public List<Long> getProductIds() {
+        return productIds;
+    }
+}
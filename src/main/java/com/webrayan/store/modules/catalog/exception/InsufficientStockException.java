@@ -0,0 +1,22 @@
+package com.webrayan.store.modules.catalog.exception;
+
+import com.webrayan.store.core.exception.ConflictException;
+
+import java.util.List;
+
+/**
+ * موجودی کافی برای یک یا چند محصول وجود ندارد
+ */
+public class InsufficientStockException extends ConflictException {
+
+    private final List<Long> productIds;
+
+    public InsufficientStockException(List<Long> productIds) {
+        super("Insufficient stock for products: " + productIds);
+        this.productIds = List.copyOf(productIds);
+    }
+
+    public List<Long> getProductIds() {
+        return productIds;
+    }
+}
@@ -22,6 +22,9 @@ public interface CategoryAttributeRepository extends JpaRepository<CategoryAttri
     @Query("SELECT ca FROM CategoryAttribute ca WHERE ca.category = :category AND ca.isActive = true AND ca.isFilterable = true ORDER BY ca.sortOrder ASC")
     List<CategoryAttribute> findFilterableAttributesByCategory(@Param("category") Category category);
     
+    @Query("SELECT ca FROM CategoryAttribute ca JOIN FETCH ca.category WHERE ca.isActive = true AND ca.isFilterable = true ORDER BY ca.sortOrder ASC")
+    List<CategoryAttribute> findAllFilterableAttributes();
+    
     @Query("SELECT ca FROM CategoryAttribute ca WHERE ca.category = :category AND ca.isActive = true AND ca.isSearchable = true ORDER BY ca.sortOrder ASC")
     List<CategoryAttribute> findSearchableAttributesByCategory(@Param("category") Category category);
     
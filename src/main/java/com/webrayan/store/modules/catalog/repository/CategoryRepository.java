@@ -57,4 +57,10 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
 
     @Query("SELECT c FROM Category c LEFT JOIN FETCH c.subcategories WHERE c.id = :id")
     Optional<Category> findByIdWithSubCategories(@Param("id") Long id);
+
+    /**
+     * همه دسته‌بندی‌ها به صورت ردیف تخت [id, parentId, name, slug, isActive, sortOrder] برای ساخت درخت
+     */
+    @Query("SELECT c.id, p.id, c.name, c.slug, c.isActive, c.sortOrder FROM Category c LEFT JOIN c.parent p")
+    List<Object[]> findTreeRows();
 }
@@ -0,0 +1,57 @@
+package com.webrayan.store.modules.catalog.repository;
+
+import com.webrayan.store.modules.catalog.entity.ImageProcessingJob;
+import com.webrayan.store.modules.catalog.enums.ImageJobStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ImageProcessingJobRepository extends JpaRepository<ImageProcessingJob, Long> {
+
+    /**
+     * شناسه کارهای آماده اجرا به ترتیب ورود به صف
+     */
+    @Query("SELECT j.id FROM ImageProcessingJob j " +
+           "WHERE j.status = com.webrayan.store.modules.catalog.enums.ImageJobStatus.PENDING " +
+           "AND j.nextAttemptAt <= :now ORDER BY j.id ASC")
+    List<Long> findRunnableIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Claims a pending job; returns 0 when another worker got it first
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ImageProcessingJob j SET j.status = com.webrayan.store.modules.catalog.enums.ImageJobStatus.RUNNING, " +
+           "j.attempts = j.attempts + 1, j.startedAt = :now, j.completedVariants = 0, j.errorMessage = NULL " +
+           "WHERE j.id = :id AND j.status = com.webrayan.store.modules.catalog.enums.ImageJobStatus.PENDING")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * Returns jobs whose worker died (crash or restart) before finishing back to the queue
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ImageProcessingJob j SET j.status = com.webrayan.store.modules.catalog.enums.ImageJobStatus.PENDING, " +
+           "j.nextAttemptAt = :now " +
+           "WHERE j.status = com.webrayan.store.modules.catalog.enums.ImageJobStatus.RUNNING AND j.startedAt < :staleBefore")
+    int requeueStale(@Param("staleBefore") LocalDateTime staleBefore, @Param("now") LocalDateTime now);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ImageProcessingJob j SET j.sourceReference = :newReference WHERE j.sourceReference = :sourceReference")
+    int updateSourceReference(@Param("sourceReference") String sourceReference, @Param("newReference") String newReference);
+
+    boolean existsBySourceReference(String sourceReference);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ImageProcessingJob j SET j.completedVariants = :completed WHERE j.id = :id")
+    int updateProgress(@Param("id") Long id, @Param("completed") int completed);
+
+    long countByStatus(ImageJobStatus status);
+
+    List<ImageProcessingJob> findByProductImageIdOrderByIdDesc(Long productImageId);
+}
@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,6 +27,20 @@ public interface ProductAttributeValueRepository extends JpaRepository<ProductAt
     @Query("SELECT pav FROM ProductAttributeValue pav WHERE pav.attribute = :attribute AND pav.value = :value")
     List<ProductAttributeValue> findByAttributeAndValue(@Param("attribute") CategoryAttribute attribute, @Param("value") String value);
     
+    /**
+     * مقادیر ویژگی‌های قابل جستجو برای چند محصول: [productId, value]
+     */
+    @Query("SELECT pav.product.id, pav.value FROM ProductAttributeValue pav " +
+           "WHERE pav.product.id IN :productIds AND pav.attribute.isSearchable = true AND pav.attribute.isActive = true")
+    List<Object[]> findSearchableValuesByProductIds(@Param("productIds") Collection<Long> productIds);
+    
+    /**
+     * مقادیر ویژگی‌های قابل فیلتر برای چند محصول: [productId, attributeId, value, numericValue]
+     */
+    @Query("SELECT pav.product.id, pav.attribute.id, pav.value, pav.numericValue FROM ProductAttributeValue pav " +
+           "WHERE pav.product.id IN :productIds AND pav.attribute.isFilterable = true AND pav.attribute.isActive = true")
+    List<Object[]> findFilterableValuesByProductIds(@Param("productIds") Collection<Long> productIds);
+    
     void deleteByProductAndAttribute(Product product, CategoryAttribute attribute);
     
     void deleteByProduct(Product product);
@@ -10,6 +10,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -35,6 +36,21 @@ public interface ProductImageRepository extends JpaRepository<ProductImage, Long
     @Query("DELETE FROM ProductImage pi WHERE pi.product = :product AND pi.image = :image")
     void deleteByProductAndImage(Product product, Image image);
     
+    /**
+     * تصاویر چند محصول به ترتیب نمایش: [productId, imageUrl]؛ تصویر اصلی اول
+     */
+    @Query("SELECT pi.product.id, i.url FROM ProductImage pi LEFT JOIN pi.image i " +
+           "WHERE pi.product.id IN :productIds " +
+           "ORDER BY pi.product.id, pi.isPrimary DESC, pi.sortOrder ASC, pi.id ASC")
+    List<Object[]> findImageUrlsByProductIds(@Param("productIds") Collection<Long> productIds);
+    
+    /**
+     * محصولات استفاده‌کننده از هر محتوا: [contentHash, productId]
+     */
+    @Query("SELECT i.contentHash, pi.product.id FROM ProductImage pi JOIN pi.image i " +
+           "WHERE i.contentHash IN :contentHashes ORDER BY pi.product.id")
+    List<Object[]> findProductIdsByContentHashes(@Param("contentHashes") Collection<String> contentHashes);
+    
     void deleteByProduct(Product product);
     
     Long countByProduct(Product product);
@@ -1,7 +1,9 @@
 package com.webrayan.store.modules.catalog.repository;
 
 import com.webrayan.store.modules.catalog.entity.ProductImageVariant;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -32,9 +34,30 @@ public interface ProductImageVariantRepository extends JpaRepository<ProductImag
      */
     Optional<ProductImageVariant> findByFileReference(String fileReference);
 
+    boolean existsByFileReference(String fileReference);
+
+    /**
+     * Product images of an identical original that already have their variants rendered
+     */
+    @Query("SELECT DISTINCT piv.productImage.id FROM ProductImageVariant piv " +
+           "WHERE piv.productImage.image.contentHash = :contentHash ORDER BY piv.productImage.id")
+    List<Long> findProductImageIdsByContentHash(@Param("contentHash") String contentHash, Pageable pageable);
+
     /**
      * Get all variants for a product
      */
     @Query("SELECT piv FROM ProductImageVariant piv JOIN piv.productImage pi WHERE pi.product.id = :productId")
     List<ProductImageVariant> findByProductId(@Param("productId") Long productId);
+
+    /**
+     * [id, fileReference] of the variants after {@code afterId}, for walking the table in batches
+     */
+    @Query("SELECT piv.id, piv.fileReference FROM ProductImageVariant piv WHERE piv.id > :afterId ORDER BY piv.id")
+    List<Object[]> findFileReferencesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ProductImageVariant piv SET piv.fileReference = :newReference, piv.url = :url " +
+           "WHERE piv.fileReference = :fileReference")
+    int updateFileReference(@Param("fileReference") String fileReference, @Param("newReference") String newReference,
+                            @Param("url") String url);
 }
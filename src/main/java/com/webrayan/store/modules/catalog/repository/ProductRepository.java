@@ -1,16 +1,20 @@
 package com.webrayan.store.modules.catalog.repository;
 
+import com.webrayan.store.modules.catalog.dto.ProductSummary;
 import com.webrayan.store.modules.catalog.entity.Product;
 import com.webrayan.store.modules.catalog.entity.Category;
 import com.webrayan.store.modules.catalog.enums.ProductStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,14 +42,6 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
                                    @Param("maxPrice") BigDecimal maxPrice, 
                                    Pageable pageable);
     
-//    @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.status = :status AND " +
-//           "(LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-//           "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
-//           "LOWER(p.shortDescription) LIKE LOWER(CONCAT('%', :keyword, '%')))")
-//    Page<Product> searchProducts(@Param("keyword") String keyword,
-//                                 @Param("status") ProductStatus status,
-//                                 Pageable pageable);
-//
     @Query("SELECT p FROM Product p WHERE p.isActive = true AND p.status = :status AND p.manageStock = true AND p.stockQuantity <= p.minStockLevel")
     List<Product> findLowStockProducts(@Param("status") ProductStatus status);
     
@@ -87,10 +83,132 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     
     Long countByIsFeatured(Boolean isFeatured);
     
+    /**
+     * نام دسته‌بندی و فروشنده برای چند محصول: [productId, categoryName, sellerFirstName, sellerLastName]
+     */
+    @Query("SELECT p.id, c.name, s.firstName, s.lastName FROM Product p " +
+           "LEFT JOIN p.category c LEFT JOIN p.seller s WHERE p.id IN :ids")
+    List<Object[]> findCardInfoByIds(@Param("ids") Collection<Long> ids);
+
+    // پروجکشن‌های سبک برای API لیست محصولات (بدون ساخت entity)
+    
+    String SUMMARY_SELECT = "SELECT new com.webrayan.store.modules.catalog.dto.ProductSummary(" +
+            "p.id, p.name, p.slug, p.sku, p.price, p.discountPrice, p.stockQuantity, p.status, p.isFeatured, c.id, c.name, p.createdAt) " +
+            "FROM Product p LEFT JOIN p.category c ";
+    
+    @Query(value = SUMMARY_SELECT + "WHERE p.isActive = true AND p.status = :status",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.isActive = true AND p.status = :status")
+    Page<ProductSummary> findActiveSummaries(@Param("status") ProductStatus status, Pageable pageable);
+    
+    @Query(value = SUMMARY_SELECT + "WHERE p.category.id = :categoryId AND p.isActive = true AND p.status = :status",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.category.id = :categoryId AND p.isActive = true AND p.status = :status")
+    Page<ProductSummary> findActiveSummariesByCategory(@Param("categoryId") Long categoryId,
+                                                      @Param("status") ProductStatus status,
+                                                      Pageable pageable);
+    
+    @Query(value = SUMMARY_SELECT + "WHERE c.id IN :categoryIds AND p.isActive = true AND p.status = :status",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.category.id IN :categoryIds AND p.isActive = true AND p.status = :status")
+    Page<ProductSummary> findActiveSummariesByCategoryIds(@Param("categoryIds") Collection<Long> categoryIds,
+                                                         @Param("status") ProductStatus status,
+                                                         Pageable pageable);
+    
+    @Query(SUMMARY_SELECT + "WHERE p.isActive = true AND p.status = :status AND p.isFeatured = true")
+    List<ProductSummary> findFeaturedSummaries(@Param("status") ProductStatus status);
+    
+    @Query(value = SUMMARY_SELECT + "WHERE p.isActive = true AND p.status = :status AND p.price BETWEEN :minPrice AND :maxPrice",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.isActive = true AND p.status = :status AND p.price BETWEEN :minPrice AND :maxPrice")
+    Page<ProductSummary> findSummariesByPriceRange(@Param("status") ProductStatus status,
+                                                   @Param("minPrice") BigDecimal minPrice,
+                                                   @Param("maxPrice") BigDecimal maxPrice,
+                                                   Pageable pageable);
+    
+    @Query(value = SUMMARY_SELECT + "WHERE p.seller.id = :userId AND p.isActive = true",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.seller.id = :userId AND p.isActive = true")
+    Page<ProductSummary> findSummariesBySeller(@Param("userId") Long userId, Pageable pageable);
+    
+    @Query(SUMMARY_SELECT + "WHERE p.isActive = true AND p.status = :status AND p.manageStock = true AND p.stockQuantity <= p.minStockLevel")
+    List<ProductSummary> findLowStockSummaries(@Param("status") ProductStatus status);
+    
+    @Query(SUMMARY_SELECT + "WHERE p.isActive = true AND p.status = :status AND p.manageStock = true AND p.stockQuantity = 0")
+    List<ProductSummary> findOutOfStockSummaries(@Param("status") ProductStatus status);
+    
+    @Query(SUMMARY_SELECT + "WHERE p.id IN :ids")
+    List<ProductSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+    
+    @Query(value = SUMMARY_SELECT + "WHERE p.id IN :ids",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.id IN :ids")
+    Page<ProductSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids, Pageable pageable);
+
+    @Query("SELECT p.id FROM Product p WHERE p.category.id = :categoryId AND p.isActive = true AND p.status = :status")
+    Slice<Long> findActiveIdSliceByCategory(@Param("categoryId") Long categoryId,
+                                            @Param("status") ProductStatus status,
+                                            Pageable pageable);
+
+    // صفحه‌بندی keyset و Slice: بدون کوئری COUNT؛ مرتب‌سازی (createdAt, id) از Pageable می‌آید
+
+    String ACTIVE_SUMMARY_FILTER = "WHERE p.isActive = true AND p.status = :status AND (:categoryId IS NULL OR c.id = :categoryId) ";
+
+    @Query(SUMMARY_SELECT + ACTIVE_SUMMARY_FILTER)
+    Slice<ProductSummary> findActiveSummarySlice(@Param("status") ProductStatus status,
+                                                 @Param("categoryId") Long categoryId,
+                                                 Pageable pageable);
+
+    @Query(SUMMARY_SELECT + ACTIVE_SUMMARY_FILTER +
+           "AND (p.createdAt < :createdAt OR (p.createdAt = :createdAt AND p.id < :id))")
+    Slice<ProductSummary> findActiveSummariesOlderThan(@Param("status") ProductStatus status,
+                                                       @Param("categoryId") Long categoryId,
+                                                       @Param("createdAt") LocalDateTime createdAt,
+                                                       @Param("id") Long id,
+                                                       Pageable pageable);
+
+    @Query(SUMMARY_SELECT + ACTIVE_SUMMARY_FILTER +
+           "AND (p.createdAt > :createdAt OR (p.createdAt = :createdAt AND p.id > :id))")
+    Slice<ProductSummary> findActiveSummariesNewerThan(@Param("status") ProductStatus status,
+                                                       @Param("categoryId") Long categoryId,
+                                                       @Param("createdAt") LocalDateTime createdAt,
+                                                       @Param("id") Long id,
+                                                       Pageable pageable);
+
+    String ADMIN_FILTER = "WHERE (:status IS NULL OR p.status = :status) " +
+            "AND (:categoryId IS NULL OR p.category.id = :categoryId) " +
+            "AND (:isActive IS NULL OR p.isActive = :isActive) " +
+            "AND (:isFeatured IS NULL OR p.isFeatured = :isFeatured) ";
+
+    @Query("SELECT p FROM Product p " + ADMIN_FILTER)
+    Slice<Product> findAdminSlice(@Param("status") ProductStatus status,
+                                  @Param("categoryId") Long categoryId,
+                                  @Param("isActive") Boolean isActive,
+                                  @Param("isFeatured") Boolean isFeatured,
+                                  Pageable pageable);
+
+    @Query("SELECT p FROM Product p " + ADMIN_FILTER + "AND p.id < :id")
+    Slice<Product> findAdminSliceBelowId(@Param("status") ProductStatus status,
+                                         @Param("categoryId") Long categoryId,
+                                         @Param("isActive") Boolean isActive,
+                                         @Param("isFeatured") Boolean isFeatured,
+                                         @Param("id") Long id,
+                                         Pageable pageable);
+
+    @Query("SELECT p FROM Product p " + ADMIN_FILTER + "AND p.id > :id")
+    Slice<Product> findAdminSliceAboveId(@Param("status") ProductStatus status,
+                                         @Param("categoryId") Long categoryId,
+                                         @Param("isActive") Boolean isActive,
+                                         @Param("isFeatured") Boolean isFeatured,
+                                         @Param("id") Long id,
+                                         Pageable pageable);
+
     // متد برای بارگذاری محصول با تصاویر و دسته‌بندی به صورت eager
     @Query("SELECT p FROM Product p LEFT JOIN FETCH p.images LEFT JOIN FETCH p.category LEFT JOIN FETCH p.seller WHERE p.id = :id")
     Optional<Product> findByIdWithImages(@Param("id") Long id);
     
+    // متدهای مورد نیاز ایندکس جستجو
+    
+    @Query("SELECT p FROM Product p WHERE p.id > :afterId ORDER BY p.id ASC")
+    List<Product> findBatchAfterId(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT p FROM Product p WHERE p.id IN :ids")
+    List<Product> findByIdIn(@Param("ids") Collection<Long> ids);
+    
     // Note: Cannot use multiple JOIN FETCH with pagination due to Cartesian product
     // Use separate queries or service-level solutions for list views
 }
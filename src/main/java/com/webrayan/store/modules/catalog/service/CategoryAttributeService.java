@@ -2,8 +2,10 @@ package com.webrayan.store.modules.catalog.service;
 
 import com.webrayan.store.modules.catalog.entity.CategoryAttribute;
 import com.webrayan.store.modules.catalog.entity.Category;
+import com.webrayan.store.modules.catalog.event.CategoryAttributeChangedEvent;
 import com.webrayan.store.modules.catalog.repository.CategoryAttributeRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -16,6 +18,7 @@ import java.util.Optional;
 public class CategoryAttributeService {
 
     private final CategoryAttributeRepository categoryAttributeRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<CategoryAttribute> getAllAttributes() {
         return categoryAttributeRepository.findAll();
@@ -37,6 +40,10 @@ public class CategoryAttributeService {
         return categoryAttributeRepository.findFilterableAttributesByCategory(category);
     }
 
+    public List<CategoryAttribute> getAllFilterableAttributes() {
+        return categoryAttributeRepository.findAllFilterableAttributes();
+    }
+
     public List<CategoryAttribute> getSearchableAttributesByCategory(Category category) {
         return categoryAttributeRepository.findSearchableAttributesByCategory(category);
     }
@@ -47,7 +54,9 @@ public class CategoryAttributeService {
 
     public CategoryAttribute createAttribute(CategoryAttribute attribute) {
         validateAttribute(attribute);
-        return categoryAttributeRepository.save(attribute);
+        CategoryAttribute savedAttribute = categoryAttributeRepository.save(attribute);
+        publishChange(savedAttribute);
+        return savedAttribute;
     }
 
     public CategoryAttribute updateAttribute(Long id, CategoryAttribute attributeDetails) {
@@ -68,7 +77,9 @@ public class CategoryAttributeService {
         
         validateAttribute(attribute);
         
-        return categoryAttributeRepository.save(attribute);
+        CategoryAttribute savedAttribute = categoryAttributeRepository.save(attribute);
+        publishChange(savedAttribute);
+        return savedAttribute;
     }
 
     public void deleteAttribute(Long id) {
@@ -81,6 +92,7 @@ public class CategoryAttributeService {
         }
         
         categoryAttributeRepository.delete(attribute);
+        publishChange(attribute);
     }
 
     public void toggleAttributeStatus(Long id) {
@@ -89,6 +101,12 @@ public class CategoryAttributeService {
         
         attribute.setIsActive(!attribute.getIsActive());
         categoryAttributeRepository.save(attribute);
+        publishChange(attribute);
+    }
+
+    private void publishChange(CategoryAttribute attribute) {
+        Long categoryId = attribute.getCategory() != null ? attribute.getCategory().getId() : null;
+        eventPublisher.publishEvent(new CategoryAttributeChangedEvent(categoryId, attribute.getId()));
     }
 
     private void validateAttribute(CategoryAttribute attribute) {
@@ -1,8 +1,11 @@
 package com.webrayan.store.modules.catalog.service;
 
+import com.webrayan.store.modules.catalog.dto.CategoryTreeNode;
 import com.webrayan.store.modules.catalog.entity.Category;
+import com.webrayan.store.modules.catalog.event.CategoryChangedEvent;
 import com.webrayan.store.modules.catalog.repository.CategoryRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -17,6 +20,8 @@ import java.util.Optional;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final CategoryTreeService categoryTreeService;
+    private final ApplicationEventPublisher eventPublisher;
 
     public List<Category> getAllCategories() {
         return categoryRepository.findAll();
@@ -26,12 +31,22 @@ public class CategoryService {
         return categoryRepository.findAllActiveCategories();
     }
 
-    public List<Category> getRootCategories() {
-        return categoryRepository.findActiveRootCategories();
+    /**
+     * دسته‌بندی‌های ریشه فعال از درخت درون‌حافظه‌ای (بدون کوئری)
+     */
+    public List<CategoryTreeNode> getRootCategories() {
+        return categoryTreeService.getActiveRoots();
+    }
+
+    public List<CategoryTreeNode> getSubcategories(Long parentId) {
+        return categoryTreeService.getActiveChildren(parentId);
     }
 
-    public List<Category> getSubcategories(Long parentId) {
-        return categoryRepository.findByParentIdAndIsActiveTrue(parentId);
+    /**
+     * مسیر ریشه تا دسته‌بندی برای breadcrumb
+     */
+    public List<CategoryTreeNode> getBreadcrumb(Long categoryId) {
+        return categoryTreeService.getBreadcrumb(categoryId);
     }
 
     public List<Category> getSubcategories(Category parent) {
@@ -49,7 +64,9 @@ public class CategoryService {
     public Category createCategory(Category category) {
         validateCategory(category);
         generateSlugIfEmpty(category);
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(saved.getId()));
+        return saved;
     }
 
     public Category updateCategory(Long id, Category categoryDetails) {
@@ -66,7 +83,9 @@ public class CategoryService {
         validateCategory(category);
         generateSlugIfEmpty(category);
         
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id));
+        return saved;
     }
 
     public void deleteCategory(Long id) {
@@ -74,8 +93,7 @@ public class CategoryService {
                 .orElseThrow(() -> new IllegalArgumentException("Category not found with id: " + id));
         
         // Check if category has subcategories
-        List<Category> subcategories = categoryRepository.findByParentIdAndIsActiveTrue(id);
-        if (!subcategories.isEmpty()) {
+        if (!categoryTreeService.getActiveChildren(id).isEmpty()) {
             throw new IllegalStateException("Cannot delete category with subcategories");
         }
         
@@ -86,6 +104,7 @@ public class CategoryService {
         }
         
         categoryRepository.delete(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id));
     }
 
     public void toggleCategoryStatus(Long id) {
@@ -94,6 +113,7 @@ public class CategoryService {
         
         category.setIsActive(!category.getIsActive());
         categoryRepository.save(category);
+        eventPublisher.publishEvent(new CategoryChangedEvent(id));
     }
 
     private void validateCategory(Category category) {
@@ -112,15 +132,10 @@ public class CategoryService {
             throw new IllegalArgumentException("Category with this slug already exists");
         }
         
-        // Prevent circular reference
-        if (category.getParent() != null && category.getId() != null) {
-            Category parent = category.getParent();
-            while (parent != null) {
-                if (parent.getId().equals(category.getId())) {
-                    throw new IllegalArgumentException("Circular reference detected in category hierarchy");
-                }
-                parent = parent.getParent();
-            }
+        // Prevent circular reference: new parent must not be the category itself or one of its descendants
+        if (category.getParent() != null && category.getId() != null
+                && categoryTreeService.wouldCreateCycle(category.getId(), category.getParent().getId())) {
+            throw new IllegalArgumentException("Circular reference detected in category hierarchy");
         }
     }
 
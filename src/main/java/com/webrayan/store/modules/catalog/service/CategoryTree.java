@@ -0,0 +1,182 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.modules.catalog.dto.CategoryTreeNode;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * تصویر لحظه‌ای و تغییرناپذیر درخت دسته‌بندی‌ها
+ * <p>
+ * Built in one pass from flat rows; every lookup is a map access plus a walk of at most the node's depth,
+ * so breadcrumbs, descendant sets and cycle checks never touch the database. A new snapshot replaces
+ * the old one as a whole (see {@link CategoryTreeService}); readers keep whichever snapshot they got.
+ */
+@Slf4j
+public final class CategoryTree {
+
+    public static final CategoryTree EMPTY = new CategoryTree(Map.of(), List.of());
+
+    private static final Comparator<Object[]> SIBLING_ORDER = Comparator
+            .comparingInt((Object[] row) -> row[5] != null ? (Integer) row[5] : 0)
+            .thenComparing(row -> (Long) row[0]);
+
+    private final Map<Long, CategoryTreeNode> nodes;
+    private final List<CategoryTreeNode> roots;
+
+    private CategoryTree(Map<Long, CategoryTreeNode> nodes, List<CategoryTreeNode> roots) {
+        this.nodes = nodes;
+        this.roots = roots;
+    }
+
+    /**
+     * @param rows ردیف‌های [id, parentId, name, slug, isActive, sortOrder]
+     */
+    public static CategoryTree build(List<Object[]> rows) {
+        Map<Long, Object[]> rowsById = new HashMap<>();
+        for (Object[] row : rows) {
+            rowsById.put((Long) row[0], row);
+        }
+        Map<Long, List<Object[]>> childRows = new HashMap<>();
+        List<Object[]> rootRows = new ArrayList<>();
+        for (Object[] row : rows) {
+            Long parentId = (Long) row[1];
+            if (parentId == null || !rowsById.containsKey(parentId)) {
+                rootRows.add(row);
+            } else {
+                childRows.computeIfAbsent(parentId, key -> new ArrayList<>()).add(row);
+            }
+        }
+        rootRows.sort(SIBLING_ORDER);
+        childRows.values().forEach(siblings -> siblings.sort(SIBLING_ORDER));
+
+        // از بالا به پایین: مسیر هر گره؛ گره‌هایی که از ریشه‌ها نمی‌رسند در یک حلقه هستند
+        Map<Long, List<Long>> paths = new HashMap<>();
+        List<Long> preOrder = new ArrayList<>(rows.size());
+        Deque<Object[]> stack = new ArrayDeque<>();
+        for (int i = rootRows.size() - 1; i >= 0; i--) {
+            stack.push(rootRows.get(i));
+        }
+        while (!stack.isEmpty()) {
+            Object[] row = stack.pop();
+            Long id = (Long) row[0];
+            Long parentId = (Long) row[1];
+            List<Long> path = new ArrayList<>(parentId != null && paths.containsKey(parentId)
+                    ? paths.get(parentId) : List.of());
+            path.add(id);
+            paths.put(id, path);
+            preOrder.add(id);
+            List<Object[]> children = childRows.getOrDefault(id, List.of());
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(children.get(i));
+            }
+        }
+        if (preOrder.size() < rows.size()) {
+            log.warn("Category tree contains {} categories in a parent cycle; they are left out of the tree",
+                    rows.size() - preOrder.size());
+        }
+
+        // از پایین به بالا: فرزندان قبل از والد ساخته می‌شوند
+        Map<Long, CategoryTreeNode> nodes = new HashMap<>();
+        for (int i = preOrder.size() - 1; i >= 0; i--) {
+            Long id = preOrder.get(i);
+            Object[] row = rowsById.get(id);
+            List<CategoryTreeNode> children = new ArrayList<>();
+            Set<Long> descendantIds = new HashSet<>();
+            descendantIds.add(id);
+            for (Object[] childRow : childRows.getOrDefault(id, List.of())) {
+                CategoryTreeNode child = nodes.get((Long) childRow[0]);
+                children.add(child);
+                descendantIds.addAll(child.getDescendantIds());
+            }
+            List<Long> path = paths.get(id);
+            nodes.put(id, new CategoryTreeNode(
+                    id,
+                    path.size() > 1 ? path.get(path.size() - 2) : null,
+                    (String) row[2],
+                    (String) row[3],
+                    !Boolean.FALSE.equals(row[4]),
+                    row[5] != null ? (Integer) row[5] : 0,
+                    path.size() - 1,
+                    path,
+                    descendantIds,
+                    children));
+        }
+
+        List<CategoryTreeNode> roots = new ArrayList<>(rootRows.size());
+        for (Object[] row : rootRows) {
+            roots.add(nodes.get((Long) row[0]));
+        }
+        return new CategoryTree(Collections.unmodifiableMap(nodes), List.copyOf(roots));
+    }
+
+    public Optional<CategoryTreeNode> find(Long id) {
+        return Optional.ofNullable(id != null ? nodes.get(id) : null);
+    }
+
+    public List<CategoryTreeNode> getRoots() {
+        return roots;
+    }
+
+    public List<CategoryTreeNode> getActiveRoots() {
+        return roots.stream().filter(CategoryTreeNode::isActive).toList();
+    }
+
+    public List<CategoryTreeNode> getActiveChildren(Long id) {
+        return find(id)
+                .map(node -> node.getChildren().stream().filter(CategoryTreeNode::isActive).toList())
+                .orElse(List.of());
+    }
+
+    /**
+     * مسیر از ریشه تا دسته‌بندی (برای breadcrumb)؛ خالی اگر دسته‌بندی وجود نداشته باشد
+     */
+    public List<CategoryTreeNode> getBreadcrumb(Long id) {
+        CategoryTreeNode node = nodes.get(id);
+        if (node == null) {
+            return List.of();
+        }
+        List<CategoryTreeNode> breadcrumb = new ArrayList<>(node.getPath().size());
+        for (Long pathId : node.getPath()) {
+            breadcrumb.add(nodes.get(pathId));
+        }
+        return breadcrumb;
+    }
+
+    /**
+     * شناسه دسته‌بندی و همه زیرشاخه‌های آن؛ خالی اگر دسته‌بندی وجود نداشته باشد
+     */
+    public Set<Long> getDescendantIds(Long id) {
+        CategoryTreeNode node = nodes.get(id);
+        return node != null ? node.getDescendantIds() : Set.of();
+    }
+
+    /**
+     * آیا قرار دادن newParentId به عنوان والد categoryId حلقه می‌سازد؟
+     * True when the new parent is the category itself or lies in its subtree.
+     */
+    public boolean wouldCreateCycle(Long categoryId, Long newParentId) {
+        if (categoryId == null || newParentId == null) {
+            return false;
+        }
+        if (categoryId.equals(newParentId)) {
+            return true;
+        }
+        CategoryTreeNode parent = nodes.get(newParentId);
+        return parent != null && parent.getPath().contains(categoryId);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+}
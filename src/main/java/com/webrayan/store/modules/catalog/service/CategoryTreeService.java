@@ -0,0 +1,91 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.modules.catalog.dto.CategoryTreeNode;
+import com.webrayan.store.modules.catalog.event.CategoryChangedEvent;
+import com.webrayan.store.modules.catalog.repository.CategoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * نگهداری درخت دسته‌بندی‌ها در حافظه
+ * <p>
+ * The tree is loaded with a single query on first use and rebuilt as a whole after every committed
+ * {@link CategoryChangedEvent}. Readers only dereference a volatile snapshot, so they never block and
+ * never see a half-built tree. Rebuilds are serialized so an older load cannot overwrite a newer one.
+ */
+@Service
+@Slf4j
+public class CategoryTreeService {
+
+    private final CategoryRepository categoryRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private volatile CategoryTree tree;
+
+    public CategoryTreeService(CategoryRepository categoryRepository, PlatformTransactionManager transactionManager) {
+        this.categoryRepository = categoryRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // بعد از commit تراکنش قبلی هم اجرا می‌شود
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public CategoryTree getTree() {
+        CategoryTree current = tree;
+        return current != null ? current : load();
+    }
+
+    public List<CategoryTreeNode> getActiveRoots() {
+        return getTree().getActiveRoots();
+    }
+
+    public List<CategoryTreeNode> getActiveChildren(Long categoryId) {
+        return getTree().getActiveChildren(categoryId);
+    }
+
+    public List<CategoryTreeNode> getBreadcrumb(Long categoryId) {
+        return getTree().getBreadcrumb(categoryId);
+    }
+
+    public Set<Long> getDescendantIds(Long categoryId) {
+        return getTree().getDescendantIds(categoryId);
+    }
+
+    public boolean wouldCreateCycle(Long categoryId, Long newParentId) {
+        return getTree().wouldCreateCycle(categoryId, newParentId);
+    }
+
+    /**
+     * بارگذاری مجدد کامل درخت از پایگاه داده
+     */
+    public synchronized CategoryTree rebuild() {
+        List<Object[]> rows = readOnlyTransaction.execute(status -> categoryRepository.findTreeRows());
+        CategoryTree rebuilt = CategoryTree.build(rows != null ? rows : List.of());
+        tree = rebuilt;
+        log.debug("Category tree rebuilt with {} categories", rebuilt.size());
+        return rebuilt;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            // درخت قدیمی نباید بماند؛ خواننده بعدی دوباره بارگذاری می‌کند
+            tree = null;
+            log.error("Failed to rebuild category tree after change of category {}", event.getCategoryId(), e);
+        }
+    }
+
+    private synchronized CategoryTree load() {
+        CategoryTree current = tree;
+        return current != null ? current : rebuild();
+    }
+}
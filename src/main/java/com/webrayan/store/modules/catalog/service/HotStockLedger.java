@@ -0,0 +1,498 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.modules.catalog.config.HotStockProperties;
+import com.webrayan.store.modules.catalog.event.ProductChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * دفتر موجودی درون‌حافظه‌ای برای کالاهای پرفروش (حراج لحظه‌ای)
+ * <p>
+ * For a product in hot mode the database stock is loaded once and split into K shards. A checkout
+ * takes units from a random shard with a CAS (falling back to the other shards), so concurrent
+ * checkouts of one SKU no longer queue on the same catalog_products row lock. Units come back to
+ * their shard if the order transaction rolls back; committed units are added to the shard's
+ * reservation log. A background reconciler writes the net logged delta to stock_quantity as a
+ * relative update and evens out the shards.
+ * <p>
+ * While a product is hot, every stock movement for it must go through this ledger
+ * ({@link InventoryService} routes them). An absolute stock edit re-seeds the ledger from the database.
+ * <p>
+ * Leaving hot mode never blocks the caller: the ledger is closed, and the reconciler retires it once
+ * its last open reservation has completed and been written, then re-seeds it if asked to. Until then
+ * new checkouts of the product get {@link ReserveResult#RETIRING} instead of falling through to a
+ * database row that does not yet include the ledger's sales. They are not made to wait: a checkout
+ * calls in with its transaction open, and the retirement itself waits for open transactions.
+ */
+@Component
+@Slf4j
+public class HotStockLedger {
+
+    public enum ReserveResult {
+        RESERVED,
+        INSUFFICIENT,
+        NOT_HOT,
+        // the ledger is closed and not yet retired; the checkout can be retried shortly
+        RETIRING
+    }
+
+    private static final String SELECT_STOCK_SQL = "SELECT stock_quantity FROM catalog_products WHERE id = ?";
+    private static final String APPLY_DELTA_SQL =
+            "UPDATE catalog_products SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?";
+    private static final String CLEAR_STOCK_SQL =
+            "UPDATE catalog_products SET stock_quantity = 0 WHERE id = ? AND stock_quantity < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HotStockProperties properties;
+    private final TransactionTemplate writeTransaction;
+    // closed ledgers stay here until reconcile() retires them
+    private final Map<Long, ProductLedger> ledgers = new ConcurrentHashMap<>();
+    // closed ledgers to re-seed from the database once retired
+    private final Set<Long> reseed = ConcurrentHashMap.newKeySet();
+
+    public HotStockLedger(JdbcTemplate jdbcTemplate,
+                          HotStockProperties properties,
+                          PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        // reconcile may run from an after-commit callback, so it always needs its own transaction
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void activateConfiguredProducts() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (Long productId : properties.getProductIds()) {
+            try {
+                activate(productId);
+            } catch (RuntimeException e) {
+                log.error("Failed to put product {} in hot stock mode: {}", productId, e.getMessage());
+            }
+        }
+    }
+
+    public boolean isHot(Long productId) {
+        return ledgers.containsKey(productId);
+    }
+
+    /**
+     * موجودی فعلی در حافظه یا -1 اگر محصول در حالت پرفروش نیست
+     */
+    public long available(Long productId) {
+        ProductLedger ledger = ledgers.get(productId);
+        return ledger != null ? ledger.total() : -1;
+    }
+
+    public synchronized void activate(Long productId) {
+        if (!properties.isEnabled()) {
+            throw new IllegalStateException("Hot stock mode is disabled");
+        }
+        ProductLedger existing = ledgers.get(productId);
+        if (existing != null) {
+            if (existing.closed) {
+                // still draining; comes back once it is retired
+                reseed.add(productId);
+            }
+            return;
+        }
+        Integer stock;
+        try {
+            stock = jdbcTemplate.queryForObject(SELECT_STOCK_SQL, Integer.class, productId);
+        } catch (EmptyResultDataAccessException e) {
+            throw new IllegalArgumentException("Product not found with id: " + productId);
+        }
+        ledgers.put(productId, new ProductLedger(productId, properties.effectiveShards(), stock != null ? stock : 0));
+        log.info("Product {} switched to hot stock mode with {} units in {} shards",
+                productId, stock, properties.effectiveShards());
+    }
+
+    /**
+     * خروج از حالت پرفروش؛ پس از ثبت همه رزروهای در جریان، موجودی دوباره از پایگاه داده مدیریت می‌شود
+     * Returns at once; the ledger is retired by a later {@link #reconcile()}.
+     */
+    public synchronized void deactivate(Long productId) {
+        ProductLedger ledger = ledgers.get(productId);
+        if (ledger != null) {
+            ledger.closed = true;
+            reseed.remove(productId);
+        }
+    }
+
+    /**
+     * کسر موجودی از دفتر؛ در صورت rollback تراکنش جاری، واحدها به دفتر برمی‌گردند
+     * Never blocks: a closed ledger answers {@link ReserveResult#RETIRING} at once.
+     */
+    public ReserveResult tryReserve(Long productId, int quantity) {
+        ProductLedger ledger = ledgers.get(productId);
+        if (ledger == null) {
+            return ReserveResult.NOT_HOT;
+        }
+        ledger.inFlight.increment();
+        if (ledger.closed) {
+            // the ledger's sales are not in the database yet; selling from the row could oversell
+            ledger.inFlight.decrement();
+            return ReserveResult.RETIRING;
+        }
+
+        Reservation reservation = ledger.reserve(quantity);
+        if (reservation == null) {
+            ledger.inFlight.decrement();
+            return ReserveResult.INSUFFICIENT;
+        }
+        onCompletion(committed -> {
+            if (committed) {
+                ledger.commit(reservation);
+            } else {
+                ledger.rollback(reservation);
+            }
+        });
+        return ReserveResult.RESERVED;
+    }
+
+    /**
+     * بازگرداندن موجودی (لغو سفارش) پس از commit؛ false اگر محصول در حالت پرفروش نیست
+     */
+    public boolean tryRelease(Long productId, int quantity) {
+        ProductLedger ledger = ledgers.get(productId);
+        if (ledger == null) {
+            return false;
+        }
+        ledger.inFlight.increment();
+        if (ledger.closed) {
+            // returning units straight to the row is safe; the ledger's pending sales are subtracted later
+            ledger.inFlight.decrement();
+            return false;
+        }
+        onCompletion(committed -> {
+            if (committed) {
+                ledger.release(quantity);
+            }
+            ledger.inFlight.decrement();
+        });
+        return true;
+    }
+
+    /**
+     * ثبت تغییرات خالص در stock_quantity و توزیع مجدد موجودی بین shard ها
+     * Also retires closed ledgers with no open reservation left.
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.hot.reconcile-interval-ms:1000}")
+    public synchronized void reconcile() {
+        List<ProductLedger> all = new ArrayList<>(ledgers.values());
+
+        List<ProductLedger> changed = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        for (ProductLedger ledger : all) {
+            long delta = ledger.drainConsumed();
+            if (delta != 0) {
+                changed.add(ledger);
+                deltas.add(delta);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            List<Object[]> batchArgs = new ArrayList<>(changed.size());
+            for (int i = 0; i < changed.size(); i++) {
+                batchArgs.add(new Object[]{deltas.get(i), changed.get(i).productId, deltas.get(i)});
+            }
+            try {
+                List<Integer> shortOfStock = writeTransaction.execute(status -> {
+                    int[] updated = jdbcTemplate.batchUpdate(APPLY_DELTA_SQL, batchArgs);
+                    List<Integer> missed = new ArrayList<>();
+                    for (int i = 0; i < updated.length; i++) {
+                        if (updated[i] == 0) {
+                            // the row holds fewer units than the ledger sold: it was lowered behind the ledger's back
+                            jdbcTemplate.update(CLEAR_STOCK_SQL, changed.get(i).productId, deltas.get(i));
+                            missed.add(i);
+                        }
+                    }
+                    return missed;
+                });
+                for (int i : shortOfStock) {
+                    ProductLedger ledger = changed.get(i);
+                    log.error("Product {} had fewer units in the database than the {} sold from its hot stock ledger; " +
+                            "stock set to 0 and the ledger re-seeded", ledger.productId, deltas.get(i));
+                    ledger.closed = true;
+                    reseed.add(ledger.productId);
+                }
+            } catch (RuntimeException e) {
+                for (int i = 0; i < changed.size(); i++) {
+                    changed.get(i).restoreConsumed(deltas.get(i));
+                }
+                log.warn("Failed to reconcile hot stock for {} products: {}", changed.size(), e.getMessage());
+            }
+        }
+
+        for (ProductLedger ledger : all) {
+            if (ledger.closed && ledger.inFlight.sum() == 0 && ledger.pendingConsumed() == 0) {
+                retire(ledger);
+            } else if (!ledger.closed) {
+                ledger.rebalance();
+            }
+        }
+    }
+
+    /**
+     * تغییر مطلق موجودی توسط مدیر: دفتر با مقدار جدید پایگاه داده دوباره ساخته می‌شود
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!isHot(event.getProductId())) {
+            return;
+        }
+        switch (event.getChangeType()) {
+            case DELETED -> deactivate(event.getProductId());
+            case UPDATED, STOCK_CHANGED -> resync(event.getProductId());
+            default -> {
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        reconcile();
+    }
+
+    private synchronized void resync(Long productId) {
+        ProductLedger ledger = ledgers.get(productId);
+        if (ledger != null) {
+            ledger.closed = true;
+            reseed.add(productId);
+        }
+    }
+
+    private void retire(ProductLedger ledger) {
+        ledgers.remove(ledger.productId, ledger);
+        if (reseed.remove(ledger.productId)) {
+            try {
+                activate(ledger.productId);
+            } catch (RuntimeException e) {
+                log.error("Failed to re-seed hot stock of product {}: {}", ledger.productId, e.getMessage());
+            }
+        }
+    }
+
+    private static void onCompletion(Consumer<Boolean> callback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            callback.accept(true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                callback.accept(status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    /**
+     * Units taken from each shard by one reservation
+     */
+    private static final class Reservation {
+        private final long[] perShard;
+
+        Reservation(long[] perShard) {
+            this.perShard = perShard;
+        }
+    }
+
+    /**
+     * Sharded stock of one product. Counters are spaced one cache line apart so shards
+     * updated by different cores do not invalidate each other.
+     */
+    static final class ProductLedger {
+
+        private static final int PADDING = 8;
+
+        private final Long productId;
+        private final int shardCount;
+        private final AtomicLongArray available;
+        private final AtomicLongArray consumed;
+        private final LongAdder inFlight = new LongAdder();
+        private volatile boolean closed;
+        private volatile boolean rebalancing;
+
+        ProductLedger(Long productId, int shardCount, long stock) {
+            this.productId = productId;
+            this.shardCount = shardCount;
+            this.available = new AtomicLongArray(shardCount * PADDING);
+            this.consumed = new AtomicLongArray(shardCount * PADDING);
+            long base = Math.max(0, stock) / shardCount;
+            long remainder = Math.max(0, stock) % shardCount;
+            for (int shard = 0; shard < shardCount; shard++) {
+                available.set(slot(shard), base + (shard < remainder ? 1 : 0));
+            }
+        }
+
+        long total() {
+            long total = 0;
+            for (int shard = 0; shard < shardCount; shard++) {
+                total += available.get(slot(shard));
+            }
+            return total;
+        }
+
+        Reservation reserve(int quantity) {
+            int home = ThreadLocalRandom.current().nextInt(shardCount);
+            for (int attempt = 0; attempt < 2; attempt++) {
+                long[] perShard = new long[shardCount];
+                if (takeExactly(home, quantity)) {
+                    perShard[home] = quantity;
+                    return new Reservation(perShard);
+                }
+                long needed = quantity;
+                for (int i = 0; i < shardCount && needed > 0; i++) {
+                    int shard = (home + i) % shardCount;
+                    long taken = takeUpTo(shard, needed);
+                    perShard[shard] += taken;
+                    needed -= taken;
+                }
+                if (needed == 0) {
+                    return new Reservation(perShard);
+                }
+                giveBack(perShard);
+                if (!rebalancing) {
+                    break;
+                }
+                // units may be in transit between shards; one more pass after the rebalance
+                Thread.onSpinWait();
+            }
+            return null;
+        }
+
+        void commit(Reservation reservation) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                if (reservation.perShard[shard] != 0) {
+                    consumed.addAndGet(slot(shard), reservation.perShard[shard]);
+                }
+            }
+            inFlight.decrement();
+        }
+
+        void rollback(Reservation reservation) {
+            giveBack(reservation.perShard);
+            inFlight.decrement();
+        }
+
+        void release(long quantity) {
+            int shard = ThreadLocalRandom.current().nextInt(shardCount);
+            available.addAndGet(slot(shard), quantity);
+            consumed.addAndGet(slot(shard), -quantity);
+        }
+
+        long drainConsumed() {
+            long delta = 0;
+            for (int shard = 0; shard < shardCount; shard++) {
+                delta += consumed.getAndSet(slot(shard), 0);
+            }
+            return delta;
+        }
+
+        void restoreConsumed(long delta) {
+            consumed.addAndGet(slot(0), delta);
+        }
+
+        long pendingConsumed() {
+            long pending = 0;
+            for (int shard = 0; shard < shardCount; shard++) {
+                pending += consumed.get(slot(shard));
+            }
+            return pending;
+        }
+
+        void rebalance() {
+            long target = total() / shardCount;
+            rebalancing = true;
+            try {
+                long pool = 0;
+                for (int shard = 0; shard < shardCount; shard++) {
+                    long surplus = available.get(slot(shard)) - target;
+                    if (surplus > 1) {
+                        pool += takeUpTo(shard, surplus);
+                    }
+                }
+                for (int shard = 0; shard < shardCount && pool > 0; shard++) {
+                    long deficit = target - available.get(slot(shard));
+                    if (deficit > 0) {
+                        long given = Math.min(deficit, pool);
+                        available.addAndGet(slot(shard), given);
+                        pool -= given;
+                    }
+                }
+                if (pool > 0) {
+                    available.addAndGet(slot(0), pool);
+                }
+            } finally {
+                rebalancing = false;
+            }
+        }
+
+        long shardAvailable(int shard) {
+            return available.get(slot(shard));
+        }
+
+        private boolean takeExactly(int shard, long quantity) {
+            int index = slot(shard);
+            while (true) {
+                long current = available.get(index);
+                if (current < quantity) {
+                    return false;
+                }
+                if (available.compareAndSet(index, current, current - quantity)) {
+                    return true;
+                }
+            }
+        }
+
+        private long takeUpTo(int shard, long max) {
+            int index = slot(shard);
+            while (true) {
+                long current = available.get(index);
+                if (current <= 0) {
+                    return 0;
+                }
+                long taken = Math.min(current, max);
+                if (available.compareAndSet(index, current, current - taken)) {
+                    return taken;
+                }
+            }
+        }
+
+        private void giveBack(long[] perShard) {
+            for (int shard = 0; shard < shardCount; shard++) {
+                if (perShard[shard] != 0) {
+                    available.addAndGet(slot(shard), perShard[shard]);
+                }
+            }
+        }
+
+        private static int slot(int shard) {
+            return shard * PADDING;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.core.common.repository.ImageRepository;
+import com.webrayan.store.core.exception.BadRequestException;
+import com.webrayan.store.modules.catalog.dto.NearDuplicateImageDto;
+import com.webrayan.store.modules.catalog.repository.ProductImageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * گزارش تصاویر تقریباً تکراری
+ * <p>
+ * Identical uploads already share one original (see {@link ImageJobService}); this report finds
+ * different files that look alike, e.g. the same photo re-saved or resized by another seller.
+ * Pairs are found by splitting the 64-bit hash into {@code maxDistance + 1} blocks: two hashes
+ * within that distance must agree on at least one whole block, so only images sharing a block are
+ * compared instead of every pair. A pair is counted only in the lowest block its hashes share, and
+ * only the closest {@code limit} pairs are kept while scanning.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageDedupeService {
+
+    public static final int MAX_DISTANCE = 16;
+
+    private final ImageRepository imageRepository;
+    private final ProductImageRepository productImageRepository;
+
+    @Transactional(readOnly = true)
+    public List<NearDuplicateImageDto> findNearDuplicates(int maxDistance, int limit) {
+        if (maxDistance < 0 || maxDistance > MAX_DISTANCE) {
+            throw new BadRequestException("فاصله باید بین 0 و " + MAX_DISTANCE + " باشد", String.valueOf(maxDistance));
+        }
+        // [contentHash, perceptualHash, imageId, url], one row per distinct content
+        List<Object[]> originals = imageRepository.findHashedOriginals();
+        long[] hashes = new long[originals.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = (Long) originals.get(i)[1];
+        }
+
+        int blocks = maxDistance + 1;
+        int[] offsets = new int[blocks];
+        long[] masks = new long[blocks];
+        for (int block = 0; block < blocks; block++) {
+            offsets[block] = block * Long.SIZE / blocks;
+            int width = (block + 1) * Long.SIZE / blocks - offsets[block];
+            masks[block] = width == Long.SIZE ? -1L : (1L << width) - 1;
+        }
+
+        // بدترین جفت نگه‌داشته‌شده در رأس؛ حافظه به limit محدود است نه به تعداد جفت‌ها
+        Comparator<int[]> closestFirst = Comparator.<int[]>comparingInt(pair -> pair[2])
+                .thenComparingInt(pair -> pair[0])
+                .thenComparingInt(pair -> pair[1]);
+        int kept = Math.max(0, limit);
+        PriorityQueue<int[]> closest = new PriorityQueue<>(Math.max(1, Math.min(kept, 1024)), closestFirst.reversed());
+        int found = 0;
+        for (int block = 0; block < blocks; block++) {
+            Map<Long, List<Integer>> buckets = new HashMap<>();
+            for (int i = 0; i < hashes.length; i++) {
+                buckets.computeIfAbsent((hashes[i] >>> offsets[block]) & masks[block], key -> new ArrayList<>()).add(i);
+            }
+            for (List<Integer> bucket : buckets.values()) {
+                for (int a = 0; a < bucket.size(); a++) {
+                    for (int b = a + 1; b < bucket.size(); b++) {
+                        int first = bucket.get(a);
+                        int second = bucket.get(b);
+                        long difference = hashes[first] ^ hashes[second];
+                        // a pair is only counted in the lowest block both hashes agree on
+                        if (agreesOnEarlierBlock(difference, block, offsets, masks)) {
+                            continue;
+                        }
+                        int distance = Long.bitCount(difference);
+                        if (distance > maxDistance) {
+                            continue;
+                        }
+                        found++;
+                        int[] pair = {first, second, distance};
+                        if (closest.size() < kept) {
+                            closest.add(pair);
+                        } else if (kept > 0 && closestFirst.compare(pair, closest.peek()) < 0) {
+                            closest.poll();
+                            closest.add(pair);
+                        }
+                    }
+                }
+            }
+        }
+        List<int[]> reported = new ArrayList<>(closest);
+        reported.sort(closestFirst);
+
+        Set<String> contentHashes = new LinkedHashSet<>();
+        for (int[] pair : reported) {
+            contentHashes.add((String) originals.get(pair[0])[0]);
+            contentHashes.add((String) originals.get(pair[1])[0]);
+        }
+        Map<String, List<Long>> productIds = new HashMap<>();
+        if (!contentHashes.isEmpty()) {
+            for (Object[] row : productImageRepository.findProductIdsByContentHashes(contentHashes)) {
+                List<Long> ids = productIds.computeIfAbsent((String) row[0], key -> new ArrayList<>());
+                if (!ids.contains((Long) row[1])) {
+                    ids.add((Long) row[1]);
+                }
+            }
+        }
+
+        List<NearDuplicateImageDto> result = new ArrayList<>(reported.size());
+        for (int[] pair : reported) {
+            Object[] image = originals.get(pair[0]);
+            Object[] other = originals.get(pair[1]);
+            result.add(new NearDuplicateImageDto(
+                    (Long) image[2], (String) image[3], productIds.getOrDefault((String) image[0], List.of()),
+                    (Long) other[2], (String) other[3], productIds.getOrDefault((String) other[0], List.of()),
+                    pair[2]));
+        }
+        log.debug("Near-duplicate report: {} pairs within distance {} among {} originals",
+                found, maxDistance, hashes.length);
+        return result;
+    }
+
+    private static boolean agreesOnEarlierBlock(long difference, int block, int[] offsets, long[] masks) {
+        for (int earlier = 0; earlier < block; earlier++) {
+            if (((difference >>> offsets[earlier]) & masks[earlier]) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
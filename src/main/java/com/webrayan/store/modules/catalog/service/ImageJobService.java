@@ -0,0 +1,206 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.core.common.entity.Image;
+import com.webrayan.store.core.common.repository.ImageRepository;
+import com.webrayan.store.core.config.FileUploadConfig;
+import com.webrayan.store.core.exception.ResourceNotFoundException;
+import com.webrayan.store.core.service.FileStorageService;
+import com.webrayan.store.modules.catalog.config.ImageJobProperties;
+import com.webrayan.store.modules.catalog.dto.ImageJobDto;
+import com.webrayan.store.modules.catalog.entity.ImageProcessingJob;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.entity.ProductImage;
+import com.webrayan.store.modules.catalog.entity.ProductImageVariant;
+import com.webrayan.store.modules.catalog.enums.ImageJobStatus;
+import com.webrayan.store.modules.catalog.event.ProductChangedEvent;
+import com.webrayan.store.modules.catalog.repository.ImageProcessingJobRepository;
+import com.webrayan.store.modules.catalog.repository.ProductImageRepository;
+import com.webrayan.store.modules.catalog.repository.ProductImageVariantRepository;
+import com.webrayan.store.modules.catalog.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * ثبت تصویر محصول و قرار دادن پردازش نسخه‌های آن در صف
+ * <p>
+ * The upload request only stores the original and inserts the job row; resizing, watermarking
+ * and encoding happen later in {@link ImageJobWorker}, so upload latency no longer depends on
+ * how many variants are configured. An upload whose SHA-256 matches an earlier one reuses that
+ * original and its variant files instead of storing and rendering them again. Every upload publishes
+ * a {@link ProductChangedEvent}, since it can change the product's primary image.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageJobService {
+
+    private final ImageProcessingJobRepository jobRepository;
+    private final ImageRepository imageRepository;
+    private final ProductImageVariantRepository variantRepository;
+    private final ProductRepository productRepository;
+    private final ProductImageRepository productImageRepository;
+    private final FileStorageService fileStorageService;
+    private final FileUploadConfig fileUploadConfig;
+    private final ImageJobProperties properties;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Transactional
+    public ImageJobDto enqueue(Long productId, MultipartFile file, boolean primary) throws IOException {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + productId));
+
+        String directory = properties.getOriginalDirectory();
+        FileStorageService.FileStorageResult stored = fileStorageService.storeFile(file, directory);
+        Image duplicateOf = findStoredDuplicate(stored, directory);
+        // فقط فایلی که همین درخواست ساخته در صورت خطا حذف می‌شود، نه فایل مشترک
+        // (content-addressed storage hands back the already stored file for identical bytes)
+        String ownedReference = imageRepository.existsByFilename(stored.getFileReference())
+                ? null
+                : directory + "/" + stored.getFileReference();
+        if (duplicateOf != null) {
+            if (ownedReference != null && !duplicateOf.getFilename().equals(stored.getFileReference())) {
+                deleteQuietly(ownedReference);
+            }
+            ownedReference = null;
+        }
+        String filename = duplicateOf != null ? duplicateOf.getFilename() : stored.getFileReference();
+        String sourceReference = directory + "/" + filename;
+        try {
+            Image image = new Image();
+            image.setFilename(filename);
+            image.setOriginalFilename(stored.getOriginalFilename());
+            image.setSize(String.valueOf(stored.getFileSize()));
+            image.setUploadDate(LocalDateTime.now());
+            image.setUrl(duplicateOf != null ? duplicateOf.getUrl() : fileStorageService.getFileUrl(sourceReference));
+            image.setContentHash(stored.getContentHash());
+            image.setPerceptualHash(duplicateOf != null ? duplicateOf.getPerceptualHash() : null);
+
+            long existing = productImageRepository.countByProduct(product);
+            boolean makePrimary = primary || existing == 0;
+            if (makePrimary && existing > 0) {
+                productImageRepository.resetPrimaryImagesForProduct(product);
+            }
+
+            ProductImage productImage = new ProductImage();
+            productImage.setProduct(product);
+            productImage.setImage(image);
+            productImage.setIsPrimary(makePrimary);
+            productImage.setSortOrder((int) existing);
+            productImage.setAltText(product.getName());
+            productImageRepository.save(productImage);
+
+            List<ProductImageVariant> reused = duplicateOf != null
+                    ? reuseVariants(stored.getContentHash(), productImage)
+                    : List.of();
+
+            ImageProcessingJob job = new ImageProcessingJob();
+            job.setProductImage(productImage);
+            job.setSourceReference(sourceReference);
+            job.setOriginalFilename(stored.getOriginalFilename());
+            job.setContentType(stored.getContentType());
+            job.setNextAttemptAt(LocalDateTime.now());
+            if (reused.isEmpty()) {
+                job.setStatus(ImageJobStatus.PENDING);
+                job.setTotalVariants(variantCount());
+            } else {
+                // نسخه‌های آپلود یکسان قبلی؛ پردازشی لازم نیست
+                job.setStatus(ImageJobStatus.COMPLETED);
+                job.setTotalVariants(reused.size());
+                job.setCompletedVariants(reused.size());
+                job.setCompletedAt(LocalDateTime.now());
+            }
+            jobRepository.save(job);
+            // تصویر اصلی محصول ممکن است عوض شده باشد؛ شنونده‌ها (کش جزئیات) پس از commit اجرا می‌شوند
+            eventPublisher.publishEvent(new ProductChangedEvent(productId, ProductChangedEvent.ChangeType.UPDATED));
+
+            if (duplicateOf != null) {
+                log.info("Upload for product {} duplicates image {}; reused its original and {} variants",
+                        productId, duplicateOf.getId(), reused.size());
+            } else {
+                log.info("Queued image job {} for product {} ({} variants)", job.getId(), productId, job.getTotalVariants());
+            }
+            return ImageJobDto.from(job);
+        } catch (RuntimeException e) {
+            // فایل اصلی بدون ردیف مربوطه باقی نماند
+            if (ownedReference != null) {
+                deleteQuietly(ownedReference);
+            }
+            throw e;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public ImageJobDto getStatus(Long jobId) {
+        return jobRepository.findById(jobId)
+                .map(ImageJobDto::from)
+                .orElseThrow(() -> new ResourceNotFoundException("کار پردازش تصویر", "id", jobId));
+    }
+
+    @Transactional(readOnly = true)
+    public List<ImageJobDto> getJobsForImage(Long productImageId) {
+        return jobRepository.findByProductImageIdOrderByIdDesc(productImageId).stream()
+                .map(ImageJobDto::from)
+                .toList();
+    }
+
+    /**
+     * An earlier upload with the same bytes whose original is still stored
+     */
+    private Image findStoredDuplicate(FileStorageService.FileStorageResult stored, String directory) {
+        if (!properties.isDeduplicate() || stored.getContentHash() == null) {
+            return null;
+        }
+        for (Image candidate : imageRepository.findByContentHashOrderByIdAsc(stored.getContentHash())) {
+            if (candidate.getFilename() != null
+                    && fileStorageService.fileExists(directory + "/" + candidate.getFilename())) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * New rows pointing at the variant files already rendered for the same original
+     */
+    private List<ProductImageVariant> reuseVariants(String contentHash, ProductImage productImage) {
+        List<Long> donors = variantRepository.findProductImageIdsByContentHash(contentHash, PageRequest.of(0, 1));
+        if (donors.isEmpty()) {
+            return List.of();
+        }
+        List<ProductImageVariant> copies = variantRepository.findByProductImageId(donors.get(0)).stream()
+                .map(variant -> new ProductImageVariant(null, productImage, variant.getSizeName(), variant.getWidth(),
+                        variant.getHeight(), variant.getFormat(), variant.getFileSize(), variant.getFileReference(),
+                        variant.getUrl()))
+                .toList();
+        return variantRepository.saveAll(copies);
+    }
+
+    private void deleteQuietly(String reference) {
+        try {
+            fileStorageService.deleteFile(reference);
+        } catch (IOException e) {
+            log.warn("Could not remove original {}: {}", reference, e.getMessage());
+        }
+    }
+
+    /**
+     * Configured sizes plus the re-encoded original, matching what ImageProcessingService renders
+     */
+    private int variantCount() {
+        List<FileUploadConfig.ImageSize> sizes = fileUploadConfig.getImageSizes();
+        if (!properties.isPregenerateSizes() || sizes == null) {
+            return 1;
+        }
+        boolean hasOriginal = sizes.stream().anyMatch(size -> "original".equals(size.getName()));
+        return sizes.size() + (hasOriginal ? 0 : 1);
+    }
+}
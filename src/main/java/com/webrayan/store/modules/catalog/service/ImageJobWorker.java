@@ -0,0 +1,303 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.core.config.FileUploadConfig;
+import com.webrayan.store.core.service.FileStorageService;
+import com.webrayan.store.core.service.ImageProcessingService;
+import com.webrayan.store.modules.catalog.config.ImageJobProperties;
+import com.webrayan.store.modules.catalog.entity.ImageProcessingJob;
+import com.webrayan.store.modules.catalog.entity.ProductImage;
+import com.webrayan.store.modules.catalog.entity.ProductImageVariant;
+import com.webrayan.store.modules.catalog.enums.ImageJobStatus;
+import com.webrayan.store.modules.catalog.repository.ImageProcessingJobRepository;
+import com.webrayan.store.modules.catalog.repository.ProductImageRepository;
+import com.webrayan.store.modules.catalog.repository.ProductImageVariantRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * پردازشگر صف تصاویر محصول
+ * <p>
+ * Polls {@code catalog_image_jobs} and claims runnable rows with a conditional update, so several
+ * instances can share the queue. Each claimed job reads the stored original, renders every variant
+ * through {@link ImageProcessingService}, stores the files and replaces the image's
+ * {@link ProductImageVariant} rows in one transaction. Failed jobs are retried with a growing delay;
+ * jobs left RUNNING by a crashed or restarted worker are queued again once their lease expires.
+ */
+@Component
+@Slf4j
+public class ImageJobWorker {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final ImageProcessingJobRepository jobRepository;
+    private final ProductImageRepository productImageRepository;
+    private final ProductImageVariantRepository variantRepository;
+    private final FileStorageService fileStorageService;
+    private final ImageProcessingService imageProcessingService;
+    private final FileUploadConfig fileUploadConfig;
+    private final ImageJobProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private ExecutorService executor;
+
+    public ImageJobWorker(ImageProcessingJobRepository jobRepository,
+                          ProductImageRepository productImageRepository,
+                          ProductImageVariantRepository variantRepository,
+                          FileStorageService fileStorageService,
+                          ImageProcessingService imageProcessingService,
+                          FileUploadConfig fileUploadConfig,
+                          ImageJobProperties properties,
+                          PlatformTransactionManager transactionManager) {
+        this.jobRepository = jobRepository;
+        this.productImageRepository = productImageRepository;
+        this.variantRepository = variantRepository;
+        this.fileStorageService = fileStorageService;
+        this.imageProcessingService = imageProcessingService;
+        this.fileUploadConfig = fileUploadConfig;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, properties.getWorkers()), runnable -> {
+            Thread thread = new Thread(runnable, "image-job-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // کارهای نیمه‌کاره پس از پایان lease دوباره در صف قرار می‌گیرند
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalog.image-jobs.poll-interval-ms:1000}",
+               initialDelayString = "${app.catalog.image-jobs.poll-interval-ms:1000}")
+    public void poll() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Integer requeued = transactionTemplate.execute(status -> jobRepository.requeueStale(
+                now.minusNanos(TimeUnit.MILLISECONDS.toNanos(properties.getLeaseTimeoutMs())), now));
+        if (requeued != null && requeued > 0) {
+            log.warn("Re-queued {} image jobs whose worker stopped before finishing", requeued);
+        }
+
+        int free = Math.max(1, properties.getWorkers()) - inFlight.get();
+        if (free <= 0) {
+            return;
+        }
+        List<Long> runnable = jobRepository.findRunnableIds(LocalDateTime.now(), PageRequest.of(0, free));
+        for (Long jobId : runnable) {
+            LocalDateTime claimedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+            Integer claimed = transactionTemplate.execute(status -> jobRepository.claim(jobId, claimedAt));
+            if (claimed == null || claimed == 0) {
+                continue;
+            }
+            inFlight.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    try {
+                        process(jobId, claimedAt);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // در حال خاموش شدن؛ کار با پایان lease دوباره برداشته می‌شود
+                inFlight.decrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * اجرای یک کار برداشته‌شده
+     *
+     * @param claimedAt the {@code startedAt} written by our claim; a different value means the job
+     *                  was re-queued and taken by another worker, so our results are discarded
+     */
+    void process(Long jobId, LocalDateTime claimedAt) {
+        ImageProcessingJob job = transactionTemplate.execute(status -> jobRepository.findById(jobId).orElse(null));
+        if (job == null) {
+            return;
+        }
+
+        List<ProductImageVariant> rendered = new ArrayList<>();
+        try {
+            byte[] original = fileStorageService.retrieveFile(job.getSourceReference());
+            ImageProcessingService.ImageProcessingResult result = imageProcessingService.processImage(
+                    original, job.getOriginalFilename(), job.getContentType(), processingOptions());
+
+            String directory = properties.getVariantDirectory();
+            for (ImageProcessingService.ProcessedImageVariant variant : result.getVariants()) {
+                FileStorageService.FileStorageResult stored = fileStorageService.storeFile(
+                        variant.getImageData(), variant.getSizeName() + "." + variant.getFormat(),
+                        "image/" + variant.getFormat(), directory);
+                String reference = directory + "/" + stored.getFileReference();
+
+                ProductImageVariant row = new ProductImageVariant();
+                row.setSizeName(variant.getSizeName());
+                row.setWidth(variant.getWidth());
+                row.setHeight(variant.getHeight());
+                row.setFormat(variant.getFormat());
+                row.setFileSize(variant.getFileSize());
+                row.setFileReference(reference);
+                row.setUrl(fileStorageService.getFileUrl(reference));
+                rendered.add(row);
+
+                int completed = rendered.size();
+                transactionTemplate.executeWithoutResult(status -> jobRepository.updateProgress(jobId, completed));
+            }
+
+            Long perceptualHash = perceptualHashOf(original, jobId);
+            List<String> replaced = transactionTemplate.execute(status -> complete(jobId, claimedAt, rendered, perceptualHash));
+            if (replaced == null) {
+                log.warn("Image job {} was taken over by another worker; discarding this run", jobId);
+                deleteFiles(referencesOf(rendered));
+                return;
+            }
+            deleteFiles(replaced);
+            log.info("Image job {} completed with {} variants", jobId, rendered.size());
+        } catch (Exception e) {
+            log.error("Image job {} failed on attempt {}", jobId, job.getAttempts(), e);
+            deleteFiles(referencesOf(rendered));
+            transactionTemplate.executeWithoutResult(status -> fail(jobId, claimedAt, e));
+        }
+    }
+
+    /**
+     * @return file references of the variants that were replaced, or null when the claim was lost
+     */
+    private List<String> complete(Long jobId, LocalDateTime claimedAt, List<ProductImageVariant> rendered,
+                                  Long perceptualHash) {
+        ImageProcessingJob job = jobRepository.findById(jobId).orElse(null);
+        if (!isOwnedBy(job, claimedAt)) {
+            return null;
+        }
+        ProductImage productImage = productImageRepository.getReferenceById(job.getProductImage().getId());
+
+        List<ProductImageVariant> previous = variantRepository.findByProductImageId(productImage.getId());
+        variantRepository.deleteAllInBatch(previous);
+        rendered.forEach(variant -> variant.setProductImage(productImage));
+        variantRepository.saveAll(rendered);
+        if (perceptualHash != null && productImage.getImage() != null) {
+            productImage.getImage().setPerceptualHash(perceptualHash);
+        }
+
+        job.setStatus(ImageJobStatus.COMPLETED);
+        job.setCompletedVariants(rendered.size());
+        job.setTotalVariants(rendered.size());
+        job.setCompletedAt(LocalDateTime.now());
+        job.setErrorMessage(null);
+        // files of deduplicated uploads are shared and stay while another row points at them
+        return referencesOf(previous).stream()
+                .filter(reference -> !variantRepository.existsByFileReference(reference))
+                .toList();
+    }
+
+    /**
+     * A missing hash only keeps the image out of the near-duplicate report, so it never fails the job
+     */
+    private Long perceptualHashOf(byte[] original, Long jobId) {
+        try {
+            return imageProcessingService.computePerceptualHash(original);
+        } catch (Exception e) {
+            log.warn("Could not compute perceptual hash for image job {}: {}", jobId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void fail(Long jobId, LocalDateTime claimedAt, Exception error) {
+        ImageProcessingJob job = jobRepository.findById(jobId).orElse(null);
+        if (!isOwnedBy(job, claimedAt)) {
+            return;
+        }
+        String message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        job.setErrorMessage(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+        job.setCompletedVariants(0);
+        if (job.getAttempts() >= properties.getMaxAttempts()) {
+            job.setStatus(ImageJobStatus.FAILED);
+            job.setCompletedAt(LocalDateTime.now());
+        } else {
+            job.setStatus(ImageJobStatus.PENDING);
+            job.setNextAttemptAt(LocalDateTime.now().plusNanos(
+                    TimeUnit.MILLISECONDS.toNanos(properties.getRetryDelayMs() * job.getAttempts())));
+        }
+    }
+
+    private boolean isOwnedBy(ImageProcessingJob job, LocalDateTime claimedAt) {
+        return job != null && job.getStatus() == ImageJobStatus.RUNNING && claimedAt.equals(job.getStartedAt());
+    }
+
+    private ImageProcessingService.ImageProcessingOptions processingOptions() {
+        ImageProcessingService.ImageProcessingOptions options = new ImageProcessingService.ImageProcessingOptions();
+        List<ImageProcessingService.ImageSize> sizes = new ArrayList<>();
+        if (properties.isPregenerateSizes() && fileUploadConfig.getImageSizes() != null) {
+            for (FileUploadConfig.ImageSize size : fileUploadConfig.getImageSizes()) {
+                sizes.add(new ImageProcessingService.ImageSize(size.getName(), size.getWidth(), size.getHeight()));
+            }
+        }
+        options.setSizes(sizes);
+        options.setEnableWebpConversion(fileUploadConfig.isEnableWebpConversion());
+        options.setCandidateFormats(fileUploadConfig.getImageFormatCandidates());
+        if (fileUploadConfig.getJpegQuality() != null) {
+            options.setJpegQuality(fileUploadConfig.getJpegQuality() / 100f);
+        }
+        if (fileUploadConfig.isEnableWatermark()) {
+            ImageProcessingService.WatermarkOptions watermark = new ImageProcessingService.WatermarkOptions();
+            watermark.setText(fileUploadConfig.getWatermarkText());
+            options.setEnableWatermark(true);
+            options.setWatermarkOptions(watermark);
+        }
+        return options;
+    }
+
+    private List<String> referencesOf(List<ProductImageVariant> variants) {
+        return variants.stream().map(ProductImageVariant::getFileReference).toList();
+    }
+
+    private void deleteFiles(List<String> references) {
+        for (String reference : references) {
+            // content-addressed storage shares identical files between variant rows
+            if (variantRepository.existsByFileReference(reference)) {
+                continue;
+            }
+            try {
+                fileStorageService.deleteFile(reference);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not delete image file {}: {}", reference, e.getMessage());
+            }
+        }
+    }
+}
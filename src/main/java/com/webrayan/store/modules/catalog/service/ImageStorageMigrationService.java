@@ -0,0 +1,195 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.core.common.repository.ImageRepository;
+import com.webrayan.store.core.exception.BadRequestException;
+import com.webrayan.store.core.service.FileStorageService;
+import com.webrayan.store.modules.catalog.config.ImageJobProperties;
+import com.webrayan.store.modules.catalog.dto.StorageMigrationResultDto;
+import com.webrayan.store.modules.catalog.event.ImageUrlsChangedEvent;
+import com.webrayan.store.modules.catalog.repository.ImageProcessingJobRepository;
+import com.webrayan.store.modules.catalog.repository.ProductImageVariantRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * انتقال تصاویر موجود به ذخیره‌سازی مبتنی بر هش محتوا
+ * <p>
+ * Walks images and variants in id order, one batch at a time. Each file is first given its
+ * content-addressed name next to the old one, and only then are the rows pointing at it rewritten,
+ * in one short transaction per batch; every reference in the database resolves to a file at every
+ * moment, so the shop keeps serving while the migration runs. Rows that already use
+ * content-addressed names are skipped, so an interrupted run can simply be started again.
+ */
+@Service
+@Slf4j
+public class ImageStorageMigrationService {
+
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    private final ImageRepository imageRepository;
+    private final ProductImageVariantRepository variantRepository;
+    private final ImageProcessingJobRepository jobRepository;
+    private final FileStorageService fileStorageService;
+    private final ImageJobProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ImageStorageMigrationService(ImageRepository imageRepository,
+                                        ProductImageVariantRepository variantRepository,
+                                        ImageProcessingJobRepository jobRepository,
+                                        FileStorageService fileStorageService,
+                                        ImageJobProperties properties,
+                                        PlatformTransactionManager transactionManager,
+                                        ApplicationEventPublisher eventPublisher) {
+        this.imageRepository = imageRepository;
+        this.variantRepository = variantRepository;
+        this.jobRepository = jobRepository;
+        this.fileStorageService = fileStorageService;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * @param removeLegacyFiles delete each old file once no row points at it; leave this off while
+     *                          pages or caches may still hold the old URLs. Uploads that reuse a file
+     *                          while its batch is rewritten can add rows with the old name, so the
+     *                          references are checked again right before each delete
+     */
+    public StorageMigrationResultDto migrate(int batchSize, boolean removeLegacyFiles) {
+        if (batchSize < 1 || batchSize > MAX_BATCH_SIZE) {
+            throw new BadRequestException("اندازه دسته باید بین 1 و " + MAX_BATCH_SIZE + " باشد", String.valueOf(batchSize));
+        }
+        StorageMigrationResultDto result = new StorageMigrationResultDto();
+        migrateOriginals(batchSize, removeLegacyFiles, result);
+        migrateVariants(batchSize, removeLegacyFiles, result);
+        log.info("Image storage migration finished: {} originals, {} variants, {} failed, {} legacy files removed",
+                result.getMigratedOriginals(), result.getMigratedVariants(), result.getFailed(),
+                result.getRemovedLegacyFiles());
+        return result;
+    }
+
+    private void migrateOriginals(int batchSize, boolean removeLegacyFiles, StorageMigrationResultDto result) {
+        String directory = properties.getOriginalDirectory();
+        long afterId = 0;
+        while (true) {
+            // [id, filename]
+            List<Object[]> batch = imageRepository.findFilenamesAfter(afterId, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return;
+            }
+            afterId = (Long) batch.get(batch.size() - 1)[0];
+
+            // images sharing a file (identical uploads) are renamed together
+            Map<String, String> renamed = new LinkedHashMap<>();
+            for (Object[] row : batch) {
+                String filename = (String) row[1];
+                if (filename != null && !renamed.containsKey(filename)) {
+                    String migrated = migrateFile(directory + "/" + filename, result);
+                    if (migrated != null && !migrated.equals(filename)) {
+                        renamed.put(filename, migrated);
+                    }
+                }
+            }
+            if (renamed.isEmpty()) {
+                continue;
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                renamed.forEach((filename, migrated) -> {
+                    String reference = directory + "/" + migrated;
+                    imageRepository.updateFilename(filename, migrated, fileStorageService.getFileUrl(reference));
+                    jobRepository.updateSourceReference(directory + "/" + filename, reference);
+                });
+                // آدرس تصویر اصلی در جزئیات محصولِ کش‌شده عوض شده است
+                eventPublisher.publishEvent(new ImageUrlsChangedEvent(renamed.size()));
+            });
+            result.setMigratedOriginals(result.getMigratedOriginals() + renamed.size());
+            if (removeLegacyFiles) {
+                renamed.keySet().forEach(filename -> {
+                    String reference = directory + "/" + filename;
+                    // آپلود هم‌زمان ممکن است پس از بازنویسی، ردیف تازه‌ای با نام قدیمی ثبت کرده باشد
+                    if (!imageRepository.existsByFilename(filename) && !jobRepository.existsBySourceReference(reference)) {
+                        removeLegacyFile(reference, result);
+                    } else {
+                        log.info("Keeping {}: rows added during the migration still point at it", reference);
+                    }
+                });
+            }
+        }
+    }
+
+    private void migrateVariants(int batchSize, boolean removeLegacyFiles, StorageMigrationResultDto result) {
+        long afterId = 0;
+        while (true) {
+            // [id, fileReference]
+            List<Object[]> batch = variantRepository.findFileReferencesAfter(afterId, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return;
+            }
+            afterId = (Long) batch.get(batch.size() - 1)[0];
+
+            Map<String, String> renamed = new LinkedHashMap<>();
+            for (Object[] row : batch) {
+                String reference = (String) row[1];
+                if (reference == null || renamed.containsKey(reference) || reference.indexOf('/') < 0) {
+                    continue;
+                }
+                String migrated = migrateFile(reference, result);
+                String migratedReference = migrated == null ? null
+                        : reference.substring(0, reference.lastIndexOf('/') + 1) + migrated;
+                if (migratedReference != null && !migratedReference.equals(reference)) {
+                    renamed.put(reference, migratedReference);
+                }
+            }
+            if (renamed.isEmpty()) {
+                continue;
+            }
+
+            transactionTemplate.executeWithoutResult(status -> renamed.forEach((reference, migrated) ->
+                    variantRepository.updateFileReference(reference, migrated, fileStorageService.getFileUrl(migrated))));
+            result.setMigratedVariants(result.getMigratedVariants() + renamed.size());
+            if (removeLegacyFiles) {
+                renamed.keySet().forEach(reference -> {
+                    if (!variantRepository.existsByFileReference(reference)) {
+                        removeLegacyFile(reference, result);
+                    } else {
+                        log.info("Keeping {}: variants added during the migration still point at it", reference);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * @return the content-addressed name, or null when the file could not be migrated
+     */
+    private String migrateFile(String reference, StorageMigrationResultDto result) {
+        try {
+            return fileStorageService.migrateToContentAddressed(reference);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not migrate {} to content-addressed storage: {}", reference, e.getMessage());
+            result.setFailed(result.getFailed() + 1);
+            return null;
+        }
+    }
+
+    private void removeLegacyFile(String reference, StorageMigrationResultDto result) {
+        try {
+            if (fileStorageService.deleteFile(reference)) {
+                result.setRemovedLegacyFiles(result.getRemovedLegacyFiles() + 1);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not remove migrated file {}: {}", reference, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.modules.catalog.event.ProductChangedEvent;
+import com.webrayan.store.modules.catalog.exception.HotStockRetiringException;
+import com.webrayan.store.modules.catalog.exception.InsufficientStockException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+
+/**
+ * رزرو و بازگردانی موجودی محصولات
+ * <p>
+ * Stock is never read into Java and written back. Every line is a single guarded update
+ * ({@code stock_quantity >= ?}) so the database row lock serializes concurrent checkouts and
+ * the update count tells whether the unit was still available. All lines of a cart go in one
+ * JDBC batch, ordered by product id so two carts always lock shared rows in the same order.
+ * Callers run inside their own transaction; a failed reservation rolls back the lines that
+ * already succeeded. Products in hot stock mode are served by {@link HotStockLedger} instead.
+ */
+@Service
+@RequiredArgsConstructor
+public class InventoryService {
+
+    private static final String RESERVE_SQL =
+            "UPDATE catalog_products SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?";
+    private static final String LOCK_SQL_PREFIX =
+            "SELECT id FROM catalog_products WHERE id IN (";
+    private static final String RELEASE_SQL_PREFIX =
+            "UPDATE catalog_products SET stock_quantity = catalog_products.stock_quantity + v.quantity FROM (VALUES ";
+    private static final String RELEASE_SQL_SUFFIX = ") AS v(id, quantity) WHERE catalog_products.id = v.id";
+    private static final String RELEASE_ROW = "(CAST(? AS BIGINT), CAST(? AS INTEGER))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HotStockLedger hotStockLedger;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * کسر موجودی برای همه اقلام؛ در صورت کمبود حتی یک قلم، کل عملیات شکست می‌خورد
+     *
+     * @param quantities productId -> total quantity of that product in the order
+     * @throws InsufficientStockException if any product does not have enough stock
+     * @throws HotStockRetiringException if a product is leaving hot stock mode; the checkout can be retried
+     */
+    @Transactional
+    public void reserveStock(Map<Long, Integer> quantities) {
+        Map<Long, Integer> lines = normalize(quantities);
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        List<Long> failed = new ArrayList<>();
+        List<Long> retiring = new ArrayList<>();
+        Map<Long, Integer> databaseLines = new TreeMap<>();
+        lines.forEach((productId, quantity) -> {
+            switch (hotStockLedger.tryReserve(productId, quantity)) {
+                case NOT_HOT -> databaseLines.put(productId, quantity);
+                case INSUFFICIENT -> failed.add(productId);
+                case RETIRING -> retiring.add(productId);
+                default -> {
+                }
+            }
+        });
+
+        if (!databaseLines.isEmpty()) {
+            List<Object[]> batchArgs = new ArrayList<>(databaseLines.size());
+            databaseLines.forEach((productId, quantity) -> batchArgs.add(new Object[]{quantity, productId, quantity}));
+            int[] updateCounts = jdbcTemplate.batchUpdate(RESERVE_SQL, batchArgs);
+
+            int index = 0;
+            for (Long productId : databaseLines.keySet()) {
+                if (updateCounts[index++] == 0) {
+                    failed.add(productId);
+                }
+            }
+        }
+        if (!failed.isEmpty()) {
+            throw new InsufficientStockException(failed);
+        }
+        if (!retiring.isEmpty()) {
+            throw new HotStockRetiringException(retiring);
+        }
+        publishStockChanges(lines);
+    }
+
+    /**
+     * بازگردانی موجودی (مثلاً هنگام لغو سفارش)
+     * <p>
+     * However many products there are, the database side is two statements: the rows are locked in
+     * product id order, as checkouts lock them, and then all quantities are added by one
+     * {@code UPDATE ... FROM (VALUES ...)}. Callers releasing many orders at once should aggregate
+     * their lines per product first.
+     */
+    @Transactional
+    public void releaseStock(Map<Long, Integer> quantities) {
+        Map<Long, Integer> lines = normalize(quantities);
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Integer> databaseLines = new TreeMap<>();
+        lines.forEach((productId, quantity) -> {
+            if (!hotStockLedger.tryRelease(productId, quantity)) {
+                databaseLines.put(productId, quantity);
+            }
+        });
+        if (!databaseLines.isEmpty()) {
+            List<Object> ids = new ArrayList<>(databaseLines.keySet());
+            jdbcTemplate.queryForList(LOCK_SQL_PREFIX + placeholders(ids.size()) + ") ORDER BY id FOR UPDATE",
+                    Long.class, ids.toArray());
+
+            List<Object> args = new ArrayList<>(databaseLines.size() * 2);
+            StringJoiner rows = new StringJoiner(", ", RELEASE_SQL_PREFIX, RELEASE_SQL_SUFFIX);
+            databaseLines.forEach((productId, quantity) -> {
+                rows.add(RELEASE_ROW);
+                args.add(productId);
+                args.add(quantity);
+            });
+            jdbcTemplate.update(rows.toString(), args.toArray());
+        }
+        publishStockChanges(lines);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static Map<Long, Integer> normalize(Map<Long, Integer> quantities) {
+        Map<Long, Integer> lines = new TreeMap<>();
+        quantities.forEach((productId, quantity) -> {
+            if (productId == null || quantity == null || quantity <= 0) {
+                throw new IllegalArgumentException("Invalid stock quantity " + quantity + " for product " + productId);
+            }
+            lines.merge(productId, quantity, Integer::sum);
+        });
+        return lines;
+    }
+
+    private void publishStockChanges(Map<Long, Integer> lines) {
+        for (Long productId : lines.keySet()) {
+            eventPublisher.publishEvent(new ProductChangedEvent(productId, ProductChangedEvent.ChangeType.STOCK_RESERVED));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.modules.catalog.dto.ProductCardView;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.repository.ProductImageRepository;
+import com.webrayan.store.modules.catalog.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * ساخت اطلاعات نمایشی محصولات یک صفحه با دو کوئری
+ * One query resolves category and seller names, one query lists image URLs, for every
+ * product of the page, instead of one fetch-join per product and per template helper call.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ProductCardService {
+
+    private static final String UNKNOWN = "نامشخص";
+
+    private final ProductRepository productRepository;
+    private final ProductImageRepository productImageRepository;
+
+    /**
+     * @return productId -> card view, in the order of the given products
+     */
+    public Map<Long, ProductCardView> getCards(Collection<Product> products) {
+        return getCardsByIds(products.stream().map(Product::getId).filter(Objects::nonNull).toList());
+    }
+
+    public Map<Long, ProductCardView> getCardsByIds(List<Long> productIds) {
+        Map<Long, ProductCardView> cards = new LinkedHashMap<>();
+        if (productIds.isEmpty()) {
+            return cards;
+        }
+        for (Long productId : productIds) {
+            cards.put(productId, new ProductCardView(productId, null, 0, UNKNOWN, UNKNOWN));
+        }
+
+        for (Object[] row : productRepository.findCardInfoByIds(productIds)) {
+            ProductCardView card = cards.get((Long) row[0]);
+            if (row[1] != null) {
+                card.setCategoryName((String) row[1]);
+            }
+            if (row[2] != null || row[3] != null) {
+                card.setSellerName(joinName((String) row[2], (String) row[3]));
+            }
+        }
+
+        Map<Long, Integer> imageCounts = new HashMap<>();
+        for (Object[] row : productImageRepository.findImageUrlsByProductIds(productIds)) {
+            Long productId = (Long) row[0];
+            ProductCardView card = cards.get(productId);
+            imageCounts.merge(productId, 1, Integer::sum);
+            // ردیف‌ها به ترتیب نمایش هستند؛ اولین URL موجود تصویر کارت است
+            if (card.getFirstImageUrl() == null && row[1] != null) {
+                card.setFirstImageUrl((String) row[1]);
+            }
+        }
+        imageCounts.forEach((productId, count) -> cards.get(productId).setImageCount(count));
+        return cards;
+    }
+
+    private static String joinName(String firstName, String lastName) {
+        return ((firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "")).trim();
+    }
+}
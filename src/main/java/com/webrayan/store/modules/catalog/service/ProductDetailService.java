@@ -0,0 +1,183 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.core.config.CacheConfig;
+import com.webrayan.store.modules.acl.entity.User;
+import com.webrayan.store.modules.catalog.dto.ProductDetailDto;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.entity.ProductImage;
+import com.webrayan.store.modules.catalog.event.CategoryChangedEvent;
+import com.webrayan.store.modules.catalog.event.ImageUrlsChangedEvent;
+import com.webrayan.store.modules.catalog.event.ProductChangedEvent;
+import com.webrayan.store.modules.catalog.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * کش جزئیات محصول (read-through) بر اساس شناسه و slug
+ * <p>
+ * Entries are {@link ProductDetailDto} snapshots, so a cache hit never opens a transaction or
+ * touches the persistence context. The slug cache only maps slug to id; a hit is checked against
+ * the cached detail, which makes a renamed slug fall back to the database instead of serving a
+ * stale mapping. Details are evicted after commit on every {@link ProductChangedEvent} except
+ * checkout reservations, so the cached stock figure may trail sales until the entry expires.
+ * Details also carry the category name and slug and the primary image URL, so a
+ * {@link CategoryChangedEvent} or an {@link ImageUrlsChangedEvent} clears the whole detail cache.
+ * <p>
+ * Every eviction bumps a generation counter. A detail read from the database is only cached when no
+ * eviction happened during the read, and is dropped again if one happened while it was being put, so
+ * a slow read never re-caches a product that changed meanwhile.
+ */
+@Service
+@Slf4j
+public class ProductDetailService {
+
+    private static final String NO_IMAGE_URL = "/images/no-image.png";
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Cache detailCache;
+    private final Cache slugCache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public ProductDetailService(ProductRepository productRepository,
+                                CacheManager cacheManager,
+                                PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.detailCache = Objects.requireNonNull(cacheManager.getCache(CacheConfig.PRODUCT_DETAILS));
+        this.slugCache = Objects.requireNonNull(cacheManager.getCache(CacheConfig.PRODUCT_SLUGS));
+    }
+
+    public Optional<ProductDetailDto> getProductDetail(Long id) {
+        ProductDetailDto cached = detailCache.get(id, ProductDetailDto.class);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        long readGeneration = generation.get();
+        ProductDetailDto loaded = readOnlyTransaction.execute(status ->
+                productRepository.findByIdWithImages(id).map(this::toDto).orElse(null));
+        return Optional.ofNullable(cache(loaded, readGeneration));
+    }
+
+    public Optional<ProductDetailDto> getProductDetailBySlug(String slug) {
+        Long cachedId = slugCache.get(slug, Long.class);
+        if (cachedId != null) {
+            Optional<ProductDetailDto> detail = getProductDetail(cachedId);
+            if (detail.isPresent() && slug.equals(detail.get().getSlug())) {
+                return detail;
+            }
+            slugCache.evict(slug);
+        }
+        long readGeneration = generation.get();
+        ProductDetailDto loaded = readOnlyTransaction.execute(status ->
+                productRepository.findBySlug(slug).map(this::toDto).orElse(null));
+        return Optional.ofNullable(cache(loaded, readGeneration));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        // رزرو موجودی در checkout جزئیات را از کش خارج نمی‌کند؛ هر خرید نباید کش محصول پرفروش را خالی کند
+        if (event.getChangeType() == ProductChangedEvent.ChangeType.STOCK_RESERVED) {
+            return;
+        }
+        generation.incrementAndGet();
+        ProductDetailDto cached = detailCache.get(event.getProductId(), ProductDetailDto.class);
+        detailCache.evict(event.getProductId());
+        if (cached != null && cached.getSlug() != null) {
+            slugCache.evict(cached.getSlug());
+        }
+        log.debug("Evicted product detail cache for product {} ({})", event.getProductId(), event.getChangeType());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCategoryChanged(CategoryChangedEvent event) {
+        evictAll();
+        log.debug("Cleared product detail cache after change of category {}", event.getCategoryId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImageUrlsChanged(ImageUrlsChangedEvent event) {
+        evictAll();
+        log.debug("Cleared product detail cache after {} image files were renamed", event.getRenamedFiles());
+    }
+
+    /**
+     * Slug mappings stay; each one is checked against the detail it leads to
+     */
+    private void evictAll() {
+        generation.incrementAndGet();
+        detailCache.clear();
+    }
+
+    private ProductDetailDto cache(ProductDetailDto detail, long readGeneration) {
+        if (detail == null || generation.get() != readGeneration) {
+            return detail;
+        }
+        detailCache.put(detail.getId(), detail);
+        if (detail.getSlug() != null) {
+            slugCache.put(detail.getSlug(), detail.getId());
+        }
+        // an eviction that ran between the check and the put may have missed this entry
+        if (generation.get() != readGeneration) {
+            detailCache.evict(detail.getId());
+        }
+        return detail;
+    }
+
+    private ProductDetailDto toDto(Product product) {
+        User seller = product.getSeller();
+        return new ProductDetailDto(
+                product.getId(),
+                product.getName(),
+                product.getSlug(),
+                product.getSku(),
+                product.getShortDescription(),
+                product.getDescription(),
+                product.getPrice(),
+                product.getDiscountPrice(),
+                product.getStockQuantity(),
+                product.getIsActive(),
+                product.getIsFeatured(),
+                product.getIsDigital(),
+                product.getStatus(),
+                product.getMetaTitle(),
+                product.getMetaDescription(),
+                product.getWeight(),
+                product.getLength(),
+                product.getWidth(),
+                product.getHeight(),
+                product.getViewsCount(),
+                product.getSalesCount(),
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getCategory() != null ? product.getCategory().getName() : null,
+                product.getCategory() != null ? product.getCategory().getSlug() : null,
+                seller != null ? seller.getId() : null,
+                seller != null ? seller.getFirstName() + " " + seller.getLastName() : null,
+                primaryImageUrl(product),
+                product.getCreatedAt(),
+                product.getUpdatedAt());
+    }
+
+    private static String primaryImageUrl(Product product) {
+        if (product.getImages() == null) {
+            return NO_IMAGE_URL;
+        }
+        return product.getImages().stream()
+                .filter(image -> image.getImage() != null)
+                .min(Comparator.comparing((ProductImage image) -> !Boolean.TRUE.equals(image.getIsPrimary()))
+                        .thenComparing(image -> image.getSortOrder() != null ? image.getSortOrder() : 0))
+                .map(image -> image.getImage().getUrl())
+                .orElse(NO_IMAGE_URL);
+    }
+}
@@ -1,17 +1,24 @@
 package com.webrayan.store.modules.catalog.service;
 
+import com.webrayan.store.core.common.dto.CursorPage;
+import com.webrayan.store.core.util.KeysetCursor;
 import com.webrayan.store.modules.catalog.entity.Product;
 import com.webrayan.store.modules.catalog.entity.Category;
 import com.webrayan.store.modules.catalog.entity.ProductAttributeValue;
 import com.webrayan.store.modules.catalog.entity.CategoryAttribute;
 import com.webrayan.store.modules.catalog.enums.AttributeType;
 import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import com.webrayan.store.modules.catalog.event.ProductChangedEvent;
 import com.webrayan.store.modules.catalog.repository.ProductRepository;
 import com.webrayan.store.modules.catalog.repository.ProductAttributeValueRepository;
 import com.webrayan.store.modules.catalog.repository.CategoryAttributeRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,6 +35,7 @@ public class ProductService {
     private final ProductRepository productRepository;
     private final ProductAttributeValueRepository productAttributeValueRepository;
     private final CategoryAttributeRepository categoryAttributeRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public Page<Product> getAllProducts(Pageable pageable) {
         return productRepository.findAll(pageable);
@@ -45,10 +53,6 @@ public class ProductService {
         return productRepository.findFeaturedProducts(ProductStatus.PUBLISHED);
     }
 
-//    public Page<Product> searchProducts(String keyword, Pageable pageable) {
-//        return productRepository.searchProducts(keyword, ProductStatus.PUBLISHED, pageable);
-//    }
-
     public Page<Product> getProductsByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
         return productRepository.findByPriceRange(ProductStatus.PUBLISHED, minPrice, maxPrice, pageable);
     }
@@ -80,7 +84,9 @@ public class ProductService {
     public Product createProduct(Product product) {
         validateProduct(product);
         generateSlugIfEmpty(product);
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        publishChange(savedProduct.getId(), ProductChangedEvent.ChangeType.CREATED);
+        return savedProduct;
     }
 
     public Product updateProduct(Long id, Product productDetails) {
@@ -112,7 +118,9 @@ public class ProductService {
         validateProduct(product);
         generateSlugIfEmpty(product);
         
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        publishChange(id, ProductChangedEvent.ChangeType.UPDATED);
+        return savedProduct;
     }
 
     public void deleteProduct(Long id) {
@@ -123,6 +131,7 @@ public class ProductService {
         productAttributeValueRepository.deleteByProduct(product);
         
         productRepository.delete(product);
+        publishChange(id, ProductChangedEvent.ChangeType.DELETED);
     }
 
     public void toggleProductStatus(Long id) {
@@ -131,6 +140,7 @@ public class ProductService {
         
         product.setIsActive(!product.getIsActive());
         productRepository.save(product);
+        publishChange(id, ProductChangedEvent.ChangeType.STATUS_CHANGED);
     }
 
     public void updateProductStatus(Long id, ProductStatus status) {
@@ -139,14 +149,7 @@ public class ProductService {
         
         product.setStatus(status);
         productRepository.save(product);
-    }
-
-    public Product incrementViewCount(Long id) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new IllegalArgumentException("Product not found with id: " + id));
-        
-        product.setViewsCount(product.getViewsCount() + 1);
-        return productRepository.save(product);
+        publishChange(id, ProductChangedEvent.ChangeType.STATUS_CHANGED);
     }
 
     public Product updateStock(Long id, Integer quantity) {
@@ -164,7 +167,9 @@ public class ProductService {
             }
         }
         
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        publishChange(id, ProductChangedEvent.ChangeType.STOCK_CHANGED);
+        return savedProduct;
     }
 
     public void saveProductAttributes(Long productId, Map<Long, String> attributeValues) {
@@ -198,6 +203,15 @@ public class ProductService {
             
             productAttributeValueRepository.save(attributeValue);
         }
+        
+        publishChange(productId, ProductChangedEvent.ChangeType.ATTRIBUTES_CHANGED);
+    }
+
+    /**
+     * انتشار رویداد تغییر محصول؛ شنونده‌ها پس از commit تراکنش اجرا می‌شوند
+     */
+    private void publishChange(Long productId, ProductChangedEvent.ChangeType changeType) {
+        eventPublisher.publishEvent(new ProductChangedEvent(productId, changeType));
     }
 
     private void validateProduct(Product product) {
@@ -359,6 +373,30 @@ public class ProductService {
         return productRepository.findByIsFeatured(isFeatured, pageable);
     }
     
+    /**
+     * لیست ادمین با صفحه‌بندی keyset روی شناسه (جدیدترین اول)
+     * All given filters are applied together; null filters are ignored.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Product> getProductsForAdminByCursor(ProductStatus status, Long categoryId,
+                                                           Boolean isActive, Boolean isFeatured,
+                                                           String cursor, int size) {
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        int pageSize = KeysetCursor.pageSize(size);
+        Slice<Product> slice;
+        if (position == null) {
+            slice = productRepository.findAdminSlice(status, categoryId, isActive, isFeatured,
+                    PageRequest.of(0, pageSize, Sort.by(Sort.Direction.DESC, "id")));
+        } else if (position.isBackward()) {
+            slice = productRepository.findAdminSliceAboveId(status, categoryId, isActive, isFeatured,
+                    position.getId(), PageRequest.of(0, pageSize, Sort.by(Sort.Direction.ASC, "id")));
+        } else {
+            slice = productRepository.findAdminSliceBelowId(status, categoryId, isActive, isFeatured,
+                    position.getId(), PageRequest.of(0, pageSize, Sort.by(Sort.Direction.DESC, "id")));
+        }
+        return CursorPage.of(slice, position, product -> null, Product::getId);
+    }
+    
     /**
      * شمارش کل محصولات
      */
@@ -0,0 +1,190 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.core.common.dto.CursorPage;
+import com.webrayan.store.core.exception.BadRequestException;
+import com.webrayan.store.core.util.KeysetCursor;
+import com.webrayan.store.modules.catalog.dto.ProductSummary;
+import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import com.webrayan.store.modules.catalog.repository.ProductImageRepository;
+import com.webrayan.store.modules.catalog.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * مدل خواندنی سبک برای لیست محصولات در API
+ * Every list is one projection query plus one batched image query for the returned rows.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ProductSummaryService {
+
+    private static final int SORTED_ID_CHUNK_SIZE = 1000;
+
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+    private static final Sort OLDEST_FIRST = Sort.by(Sort.Order.asc("createdAt"), Sort.Order.asc("id"));
+
+    private final ProductRepository productRepository;
+    private final ProductImageRepository productImageRepository;
+    private final CategoryTreeService categoryTreeService;
+
+    public Page<ProductSummary> getActiveProducts(Pageable pageable) {
+        return withImages(productRepository.findActiveSummaries(ProductStatus.PUBLISHED, pageable));
+    }
+
+    public Page<ProductSummary> getProductsByCategory(Long categoryId, Pageable pageable) {
+        return withImages(productRepository.findActiveSummariesByCategory(categoryId, ProductStatus.PUBLISHED, pageable));
+    }
+
+    /**
+     * محصولات دسته‌بندی و همه زیرشاخه‌های آن؛ شناسه‌ها از درخت درون‌حافظه‌ای می‌آیند
+     */
+    public Page<ProductSummary> getProductsInCategoryTree(Long categoryId, Pageable pageable) {
+        Set<Long> categoryIds = categoryTreeService.getDescendantIds(categoryId);
+        if (categoryIds.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        return withImages(productRepository.findActiveSummariesByCategoryIds(categoryIds, ProductStatus.PUBLISHED, pageable));
+    }
+
+    public List<ProductSummary> getFeaturedProducts() {
+        return withImages(productRepository.findFeaturedSummaries(ProductStatus.PUBLISHED));
+    }
+
+    public Page<ProductSummary> getProductsByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
+        return withImages(productRepository.findSummariesByPriceRange(ProductStatus.PUBLISHED, minPrice, maxPrice, pageable));
+    }
+
+    public Page<ProductSummary> getProductsByUser(Long userId, Pageable pageable) {
+        return withImages(productRepository.findSummariesBySeller(userId, pageable));
+    }
+
+    public List<ProductSummary> getLowStockProducts() {
+        return withImages(productRepository.findLowStockSummaries(ProductStatus.PUBLISHED));
+    }
+
+    public List<ProductSummary> getOutOfStockProducts() {
+        return withImages(productRepository.findOutOfStockSummaries(ProductStatus.PUBLISHED));
+    }
+
+    /**
+     * لیست محصولات فعال با صفحه‌بندی keyset، جدیدترین اول
+     * Cost per page is independent of depth: the cursor row is found through (created_at, id) instead of OFFSET.
+     */
+    public CursorPage<ProductSummary> getActiveProductsByCursor(Long categoryId, String cursor, int size) {
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        if (position != null && position.getSortValue() == null) {
+            throw new BadRequestException("نشانگر صفحه نامعتبر است", cursor);
+        }
+        int pageSize = KeysetCursor.pageSize(size);
+
+        Slice<ProductSummary> slice;
+        if (position == null) {
+            slice = productRepository.findActiveSummarySlice(ProductStatus.PUBLISHED, categoryId,
+                    PageRequest.of(0, pageSize, NEWEST_FIRST));
+        } else if (position.isBackward()) {
+            slice = productRepository.findActiveSummariesNewerThan(ProductStatus.PUBLISHED, categoryId,
+                    position.getSortValue(), position.getId(), PageRequest.of(0, pageSize, OLDEST_FIRST));
+        } else {
+            slice = productRepository.findActiveSummariesOlderThan(ProductStatus.PUBLISHED, categoryId,
+                    position.getSortValue(), position.getId(), PageRequest.of(0, pageSize, NEWEST_FIRST));
+        }
+        withImages(slice.getContent());
+        return CursorPage.of(slice, position, ProductSummary::getCreatedAt, ProductSummary::getId);
+    }
+
+    /**
+     * صفحه‌بندی عددی بدون کوئری COUNT؛ فقط وجود صفحه بعد مشخص است
+     */
+    public Slice<ProductSummary> getActiveProductsSlice(Long categoryId, Pageable pageable) {
+        Slice<ProductSummary> slice = productRepository.findActiveSummarySlice(ProductStatus.PUBLISHED, categoryId, pageable);
+        withImages(slice.getContent());
+        return slice;
+    }
+
+    /**
+     * خلاصه محصولات به همان ترتیب شناسه‌های ورودی (مثلاً ترتیب امتیاز جستجو)
+     */
+    public List<ProductSummary> getSummariesInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, ProductSummary> byId = new HashMap<>();
+        for (ProductSummary summary : productRepository.findSummariesByIdIn(ids)) {
+            byId.put(summary.getId(), summary);
+        }
+        List<ProductSummary> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductSummary summary = byId.get(id);
+            if (summary != null) {
+                ordered.add(summary);
+            }
+        }
+        return withImages(ordered);
+    }
+
+    /**
+     * صفحه‌ای از شناسه‌های ورودی با مرتب‌سازی درخواست
+     * Walks the category's ids in sort order one chunk at a time and keeps those in {@code ids}; only the
+     * page's rows are loaded, so no IN list or COUNT grows with the number of matches.
+     */
+    public Page<ProductSummary> getCategoryPage(Long categoryId, Set<Long> ids, Pageable pageable) {
+        Sort sort = pageable.getSort().getOrderFor("id") == null ? pageable.getSort().and(Sort.by("id")) : pageable.getSort();
+        List<Long> pageIds = new ArrayList<>(pageable.getPageSize());
+        long skip = pageable.getOffset();
+        Slice<Long> chunk;
+        int chunkNumber = 0;
+        do {
+            chunk = productRepository.findActiveIdSliceByCategory(categoryId, ProductStatus.PUBLISHED,
+                    PageRequest.of(chunkNumber++, SORTED_ID_CHUNK_SIZE, sort));
+            for (Long id : chunk.getContent()) {
+                if (!ids.contains(id)) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                } else if (pageIds.size() < pageable.getPageSize()) {
+                    pageIds.add(id);
+                }
+            }
+        } while (pageIds.size() < pageable.getPageSize() && chunk.hasNext());
+        return new PageImpl<>(getSummariesInOrder(pageIds), pageable, ids.size());
+    }
+
+    private Page<ProductSummary> withImages(Page<ProductSummary> page) {
+        withImages(page.getContent());
+        return page;
+    }
+
+    private List<ProductSummary> withImages(List<ProductSummary> summaries) {
+        if (summaries.isEmpty()) {
+            return summaries;
+        }
+        Map<Long, ProductSummary> byId = new HashMap<>();
+        for (ProductSummary summary : summaries) {
+            byId.put(summary.getId(), summary);
+        }
+        // ردیف‌ها به ترتیب نمایش هستند؛ تصویر اصلی اول
+        for (Object[] row : productImageRepository.findImageUrlsByProductIds(byId.keySet())) {
+            ProductSummary summary = byId.get((Long) row[0]);
+            if (summary != null && summary.getImageUrl() == null && row[1] != null) {
+                summary.setImageUrl((String) row[1]);
+            }
+        }
+        return summaries;
+    }
+}
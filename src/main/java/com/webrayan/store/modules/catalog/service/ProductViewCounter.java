@@ -0,0 +1,102 @@
+package com.webrayan.store.modules.catalog.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * شمارنده بازدید محصولات با ذخیره‌سازی دسته‌ای (write-behind)
+ * <p>
+ * A page view only increments an in-memory {@link LongAdder}, so concurrent views of the same
+ * product never contend on a row lock. Pending counts are written periodically as one JDBC batch
+ * of relative updates ({@code views_count = views_count + ?}), which also keeps concurrent
+ * writers of other product columns from being overwritten. Remaining counts are flushed on shutdown.
+ */
+@Component
+@Slf4j
+public class ProductViewCounter {
+
+    private static final String INCREMENT_SQL =
+            "UPDATE catalog_products SET views_count = COALESCE(views_count, 0) + ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConcurrentHashMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public ProductViewCounter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public void recordView(Long productId) {
+        if (productId == null) {
+            return;
+        }
+        LongAdder counter = pending.get(productId);
+        if (counter == null) {
+            counter = pending.computeIfAbsent(productId, id -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * تعداد بازدیدهایی که هنوز در پایگاه داده ثبت نشده‌اند
+     */
+    public long getPendingViews(Long productId) {
+        LongAdder counter = pending.get(productId);
+        return counter != null ? counter.sum() : 0L;
+    }
+
+    @Scheduled(fixedDelayString = "${app.catalog.view-counter.flush-interval-ms:5000}")
+    public void flush() {
+        // مرتب بر اساس شناسه تا ترتیب قفل ردیف‌ها بین flush ها یکسان باشد
+        Map<Long, Long> increments = new TreeMap<>();
+        for (Map.Entry<Long, LongAdder> entry : pending.entrySet()) {
+            long views = entry.getValue().sumThenReset();
+            if (views > 0) {
+                increments.put(entry.getKey(), views);
+            } else if (pending.remove(entry.getKey(), entry.getValue())) {
+                // counter idle for a whole interval; keep a view that raced with the removal
+                long late = entry.getValue().sumThenReset();
+                if (late > 0) {
+                    increments.merge(entry.getKey(), late, Long::sum);
+                }
+            }
+        }
+        if (increments.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>(increments.size());
+        increments.forEach((productId, views) -> batchArgs.add(new Object[]{views, productId}));
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INCREMENT_SQL, batchArgs));
+            log.debug("Flushed view counts for {} products", increments.size());
+        } catch (RuntimeException e) {
+            // بازگرداندن شمارش‌ها برای تلاش مجدد در flush بعدی
+            increments.forEach((productId, views) ->
+                    pending.computeIfAbsent(productId, id -> new LongAdder()).add(views));
+            log.warn("Failed to flush view counts for {} products: {}", increments.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+        long unflushed = pending.values().stream().mapToLong(LongAdder::sum).sum();
+        if (unflushed > 0) {
+            log.warn("{} product views could not be flushed before shutdown", unflushed);
+        }
+    }
+}
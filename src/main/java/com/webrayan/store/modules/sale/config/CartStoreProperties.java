@@ -0,0 +1,39 @@
+package com.webrayan.store.modules.sale.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * تنظیمات نگهداری سبد خرید در حافظه (app.sale.cart-store.*)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.sale.cart-store")
+public class CartStoreProperties {
+
+    /**
+     * Carts kept in memory; the least recently used are dropped beyond this and reloaded on demand
+     */
+    private long maxCarts = 100000;
+
+    /**
+     * A cart not read or changed for this long is dropped from memory
+     */
+    private long idleTimeoutMinutes = 30;
+
+    /**
+     * How often pending cart changes are written to sale_cart_items
+     */
+    private long flushIntervalMs = 1000;
+
+    /**
+     * Where cart changes are journaled until they are in the database; must survive a restart
+     */
+    private String journalDirectory = "data/cart-journal";
+
+    /**
+     * Force every journal record to disk before the change is acknowledged
+     */
+    private boolean journalFsync = true;
+}
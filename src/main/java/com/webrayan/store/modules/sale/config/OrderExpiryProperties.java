@@ -0,0 +1,37 @@
+package com.webrayan.store.modules.sale.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * تنظیمات لغو خودکار سفارش‌های تایید نشده (app.sale.order-expiry.*)
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.sale.order-expiry")
+public class OrderExpiryProperties {
+
+    /**
+     * Run the job on its schedule; the admin endpoint can still run it by hand
+     */
+    private boolean enabled = true;
+
+    private long intervalMs = 300000;
+
+    /**
+     * A PENDING order older than this is cancelled and its stock released
+     */
+    private int pendingTimeoutHours = 24;
+
+    /**
+     * Orders cancelled per transaction
+     */
+    private int batchSize = 500;
+
+    /**
+     * Chunks per run, so one run after an outage does not hold the scheduler thread for long;
+     * the next run resumes from the saved high-water mark
+     */
+    private int maxBatchesPerRun = 100;
+}
@@ -1,14 +1,14 @@
 package com.webrayan.store.modules.sale.controller;
 
+import com.webrayan.store.modules.sale.dto.CartLine;
+import com.webrayan.store.modules.sale.dto.CartSummaryDto;
 import com.webrayan.store.modules.sale.service.CartService;
-import com.webrayan.store.modules.sale.entity.CartItem;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api/sale/cart")
@@ -18,29 +18,29 @@ public class CartController {
     private final CartService cartService;
 
     @PostMapping("/add")
-    public ResponseEntity<CartItem> addToCart(
+    public ResponseEntity<CartLine> addToCart(
             @RequestParam Long userId,
             @RequestParam Long productId,
             @RequestParam Integer quantity,
             @RequestParam(required = false) String selectedAttributes) {
         
-        CartItem cartItem = cartService.addToCart(userId, productId, quantity, selectedAttributes);
+        CartLine cartItem = cartService.addToCart(userId, productId, quantity, selectedAttributes);
         return ResponseEntity.ok(cartItem);
     }
 
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<CartItem>> getCartItems(@PathVariable Long userId) {
-        List<CartItem> cartItems = cartService.getCartItems(userId);
+    public ResponseEntity<List<CartLine>> getCartItems(@PathVariable Long userId) {
+        List<CartLine> cartItems = cartService.getCartItems(userId);
         return ResponseEntity.ok(cartItems);
     }
 
     @PutMapping("/update-quantity")
-    public ResponseEntity<CartItem> updateQuantity(
+    public ResponseEntity<CartLine> updateQuantity(
             @RequestParam Long userId,
             @RequestParam Long productId,
             @RequestParam Integer quantity) {
         
-        CartItem cartItem = cartService.updateCartItemQuantity(userId, productId, quantity);
+        CartLine cartItem = cartService.updateCartItemQuantity(userId, productId, quantity);
         if (cartItem == null) {
             return ResponseEntity.noContent().build(); // آیتم حذف شده
         }
@@ -48,12 +48,12 @@ public class CartController {
     }
 
     @PutMapping("/update-attributes")
-    public ResponseEntity<CartItem> updateAttributes(
+    public ResponseEntity<CartLine> updateAttributes(
             @RequestParam Long userId,
             @RequestParam Long productId,
             @RequestParam String selectedAttributes) {
         
-        CartItem cartItem = cartService.updateCartItemAttributes(userId, productId, selectedAttributes);
+        CartLine cartItem = cartService.updateCartItemAttributes(userId, productId, selectedAttributes);
         return ResponseEntity.ok(cartItem);
     }
 
@@ -91,21 +91,8 @@ public class CartController {
     }
 
     @GetMapping("/summary/{userId}")
-    public ResponseEntity<Map<String, Object>> getCartSummary(@PathVariable Long userId) {
-        List<CartItem> items = cartService.getCartItems(userId);
-        BigDecimal total = cartService.getCartTotal(userId);
-        Long itemCount = cartService.getCartItemCount(userId);
-        Long totalQuantity = cartService.getTotalQuantity(userId);
-        
-        Map<String, Object> summary = Map.of(
-                "items", items,
-                "total", total,
-                "itemCount", itemCount,
-                "totalQuantity", totalQuantity,
-                "isEmpty", cartService.isCartEmpty(userId)
-        );
-        
-        return ResponseEntity.ok(summary);
+    public ResponseEntity<CartSummaryDto> getCartSummary(@PathVariable Long userId) {
+        return ResponseEntity.ok(cartService.getCartSummary(userId));
     }
 
     @GetMapping("/check-product")
@@ -118,11 +105,11 @@ public class CartController {
     }
 
     @GetMapping("/item")
-    public ResponseEntity<CartItem> getCartItem(
+    public ResponseEntity<CartLine> getCartItem(
             @RequestParam Long userId,
             @RequestParam Long productId) {
         
-        CartItem cartItem = cartService.getCartItem(userId, productId);
+        CartLine cartItem = cartService.getCartItem(userId, productId);
         if (cartItem == null) {
             return ResponseEntity.notFound().build();
         }
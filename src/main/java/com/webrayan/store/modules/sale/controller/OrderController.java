@@ -1,5 +1,6 @@
 package com.webrayan.store.modules.sale.controller;
 
+import com.webrayan.store.modules.catalog.exception.HotStockRetiringException;
 import com.webrayan.store.modules.sale.service.OrderService;
 import com.webrayan.store.modules.sale.entity.Order;
 import com.webrayan.store.modules.sale.enums.OrderStatus;
@@ -7,6 +8,8 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -35,9 +38,16 @@ public class OrderController {
             @RequestParam String deliveryName,
             @RequestParam(required = false) String customerNotes) {
         
-        Order order = orderService.createOrderFromCart(customerId, deliveryAddress, deliveryCity, 
-                deliveryState, deliveryPostalCode, deliveryPhone, deliveryName, customerNotes);
-        return ResponseEntity.ok(order);
+        try {
+            Order order = orderService.createOrderFromCart(customerId, deliveryAddress, deliveryCity,
+                    deliveryState, deliveryPostalCode, deliveryPhone, deliveryName, customerNotes);
+            return ResponseEntity.ok(order);
+        } catch (HotStockRetiringException e) {
+            // the order transaction has already rolled back; the client retries after the next reconcile
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
     }
 
     @GetMapping("/{id}")
@@ -169,7 +179,7 @@ public class OrderController {
 
     @PostMapping("/cleanup/expired")
     public ResponseEntity<String> processExpiredOrders() {
-        orderService.processExpiredPendingOrders();
-        return ResponseEntity.ok("Expired pending orders processed successfully");
+        int cancelled = orderService.processExpiredPendingOrders();
+        return ResponseEntity.ok("Expired pending orders processed successfully: " + cancelled + " cancelled");
     }
 }
@@ -0,0 +1,53 @@
+package com.webrayan.store.modules.sale.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * ردیف سبد خرید به همراه اطلاعات فعلی محصول برای نمایش
+ * The product columns and the primary image URL are filled by one JPQL constructor expression for
+ * the whole cart (see CartRepository#findCartItemViews); the line columns come from the cart itself.
+ */
+@Data
+@NoArgsConstructor
+public class CartItemView {
+    private Long productId;
+    private String productName;
+    private String productSlug;
+    private BigDecimal currentPrice;
+    private BigDecimal discountPrice;
+    private Integer stockQuantity;
+    private String imageUrl;
+
+    private int quantity;
+    private BigDecimal unitPrice;
+    private BigDecimal totalPrice;
+    private String selectedAttributes;
+
+    public CartItemView(Long productId, String productName, String productSlug, BigDecimal currentPrice,
+                        BigDecimal discountPrice, Integer stockQuantity, String imageUrl) {
+        this.productId = productId;
+        this.productName = productName;
+        this.productSlug = productSlug;
+        this.currentPrice = currentPrice;
+        this.discountPrice = discountPrice;
+        this.stockQuantity = stockQuantity;
+        this.imageUrl = imageUrl;
+    }
+
+    /**
+     * False when the product is gone or has fewer units than the cart asks for
+     */
+    public boolean isAvailable() {
+        return stockQuantity != null && stockQuantity >= quantity;
+    }
+
+    /**
+     * True when the price was changed after the item was added
+     */
+    public boolean isPriceChanged() {
+        return currentPrice != null && unitPrice != null && currentPrice.compareTo(unitPrice) != 0;
+    }
+}
@@ -0,0 +1,47 @@
+package com.webrayan.store.modules.sale.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * یک ردیف سبد خرید (تغییرناپذیر)
+ * <p>
+ * Every change returns a copy, so a cart can be read without locking while it is being changed.
+ * {@code id} is the sale_cart_items row id, or null while the line has not been written yet.
+ */
+@Getter
+@AllArgsConstructor
+public final class CartLine {
+
+    private final Long id;
+    private final Long productId;
+    private final int quantity;
+    private final BigDecimal unitPrice;
+    private final String selectedAttributes;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+
+    public static CartLine create(Long productId, int quantity, BigDecimal unitPrice, String selectedAttributes) {
+        LocalDateTime now = LocalDateTime.now();
+        return new CartLine(null, productId, quantity, unitPrice, selectedAttributes, now, now);
+    }
+
+    public BigDecimal getTotalPrice() {
+        return unitPrice.multiply(BigDecimal.valueOf(quantity));
+    }
+
+    public CartLine withQuantity(int newQuantity) {
+        return new CartLine(id, productId, newQuantity, unitPrice, selectedAttributes, createdAt, LocalDateTime.now());
+    }
+
+    public CartLine withUnitPrice(BigDecimal newPrice) {
+        return new CartLine(id, productId, quantity, newPrice, selectedAttributes, createdAt, LocalDateTime.now());
+    }
+
+    public CartLine withSelectedAttributes(String attributes) {
+        return new CartLine(id, productId, quantity, unitPrice, attributes, createdAt, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,27 @@
+package com.webrayan.store.modules.sale.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * خلاصه سبد خرید برای هدر و صفحه سبد: ردیف‌ها به همراه جمع‌ها
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSummaryDto {
+    private List<CartItemView> items;
+    private BigDecimal total;
+    private long itemCount;
+    private long totalQuantity;
+
+    @JsonProperty("isEmpty")
+    public boolean isEmpty() {
+        return itemCount == 0;
+    }
+}
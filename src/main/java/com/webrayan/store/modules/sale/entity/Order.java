@@ -9,6 +9,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -16,13 +17,31 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "sale_orders")
+@Table(name = "sale_orders", indexes = {
+        @Index(name = "idx_sale_orders_order_date_id", columnList = "order_date, id")
+})
+@NamedEntityGraph(
+        name = Order.DETAIL_GRAPH,
+        attributeNodes = {
+                @NamedAttributeNode("customer"),
+                @NamedAttributeNode("shipping"),
+                @NamedAttributeNode(value = "orderItems", subgraph = "items")
+        },
+        subgraphs = @NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode("product"))
+)
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 public class Order extends BaseEntity {
 
+    /**
+     * گراف صفحه جزئیات سفارش: مشتری، ارسال و ردیف‌ها با محصول در یک کوئری
+     * Only one collection is joined; payments and status histories are loaded by their own select,
+     * since fetching them in the same join would multiply the rows.
+     */
+    public static final String DETAIL_GRAPH = "Order.detail";
+
     @Column(name = "order_number", unique = true, nullable = false, length = 50)
     private String orderNumber;
 
@@ -102,16 +121,20 @@ public class Order extends BaseEntity {
     private String couponCode;
 
     // روابط
+    // مجموعه‌ها برای لیست سفارشات دسته‌ای بارگذاری می‌شوند، نه یک کوئری برای هر سفارش
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50)
     private List<OrderItem> orderItems = new ArrayList<>();
 
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
+    @BatchSize(size = 50)
     private List<Payment> payments = new ArrayList<>();
 
     @OneToOne(mappedBy = "order", cascade = CascadeType.ALL)
     private Shipping shipping;
 
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
+    @BatchSize(size = 50)
     private List<OrderStatusHistory> statusHistories = new ArrayList<>();
 
     // متدهای کمکی
@@ -1,5 +1,6 @@
 package com.webrayan.store.modules.sale.repository;
 
+import com.webrayan.store.modules.sale.dto.CartItemView;
 import com.webrayan.store.modules.sale.entity.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -9,6 +10,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -53,4 +55,14 @@ public interface CartRepository extends JpaRepository<CartItem, Long> {
     List<Long> getUsersWithProductInCart(@Param("productId") Long productId);
 
     boolean existsByUserIdAndProductId(Long userId, Long productId);
+
+    /**
+     * اطلاعات فعلی محصولات سبد به همراه تصویر اصلی، در یک کوئری
+     */
+    @Query("SELECT new com.webrayan.store.modules.sale.dto.CartItemView(" +
+           "p.id, p.name, p.slug, p.price, p.discountPrice, p.stockQuantity, " +
+           "(SELECT i.url FROM ProductImage pi JOIN pi.image i WHERE pi.product = p " +
+           "ORDER BY pi.isPrimary DESC, pi.sortOrder ASC, pi.id ASC LIMIT 1)) " +
+           "FROM Product p WHERE p.id IN :productIds")
+    List<CartItemView> findCartItemViews(@Param("productIds") Collection<Long> productIds);
 }
@@ -4,6 +4,8 @@ import com.webrayan.store.modules.sale.entity.Order;
 import com.webrayan.store.modules.sale.enums.OrderStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -19,6 +21,12 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     Optional<Order> findByOrderNumber(String orderNumber);
 
+    /**
+     * سفارش با مشتری، ارسال و ردیف‌ها به همراه محصول هر ردیف
+     */
+    @EntityGraph(Order.DETAIL_GRAPH)
+    Optional<Order> findDetailById(Long id);
+
     Page<Order> findByCustomerId(Long customerId, Pageable pageable);
 
     @Query("SELECT o FROM Order o JOIN FETCH o.customer WHERE o.status = :status")
@@ -127,4 +135,47 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
      */
     @Query("SELECT o FROM Order o JOIN FETCH o.customer")
     Page<Order> findAllWithCustomer(Pageable pageable);
+
+    // صفحه‌بندی keyset برای پنل ادمین: مرتب بر اساس (orderDate, id)، بدون COUNT
+
+    String ADMIN_FILTER = "WHERE " +
+           "(:status IS NULL OR o.status = :status) AND " +
+           "(:startDate IS NULL OR o.orderDate >= :startDate) AND " +
+           "(:endDate IS NULL OR o.orderDate <= :endDate) AND " +
+           "(:search IS NULL OR :search = '' OR " +
+           "o.orderNumber LIKE %:search% OR " +
+           "o.customer.username LIKE %:search% OR " +
+           "o.customer.email LIKE %:search% OR " +
+           "o.customer.firstName LIKE %:search% OR " +
+           "o.customer.lastName LIKE %:search%) ";
+
+    /**
+     * مثل findWithFilters ولی بدون کوئری COUNT
+     */
+    @Query("SELECT o FROM Order o JOIN FETCH o.customer " + ADMIN_FILTER)
+    Slice<Order> findSliceWithFilters(@Param("status") OrderStatus status,
+                                      @Param("startDate") LocalDateTime startDate,
+                                      @Param("endDate") LocalDateTime endDate,
+                                      @Param("search") String search,
+                                      Pageable pageable);
+
+    @Query("SELECT o FROM Order o JOIN FETCH o.customer " + ADMIN_FILTER +
+           "AND (o.orderDate < :orderDate OR (o.orderDate = :orderDate AND o.id < :id))")
+    Slice<Order> findSliceWithFiltersOlderThan(@Param("status") OrderStatus status,
+                                               @Param("startDate") LocalDateTime startDate,
+                                               @Param("endDate") LocalDateTime endDate,
+                                               @Param("search") String search,
+                                               @Param("orderDate") LocalDateTime orderDate,
+                                               @Param("id") Long id,
+                                               Pageable pageable);
+
+    @Query("SELECT o FROM Order o JOIN FETCH o.customer " + ADMIN_FILTER +
+           "AND (o.orderDate > :orderDate OR (o.orderDate = :orderDate AND o.id > :id))")
+    Slice<Order> findSliceWithFiltersNewerThan(@Param("status") OrderStatus status,
+                                               @Param("startDate") LocalDateTime startDate,
+                                               @Param("endDate") LocalDateTime endDate,
+                                               @Param("search") String search,
+                                               @Param("orderDate") LocalDateTime orderDate,
+                                               @Param("id") Long id,
+                                               Pageable pageable);
 }
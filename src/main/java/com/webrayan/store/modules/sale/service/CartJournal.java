@@ -0,0 +1,310 @@
+package com.webrayan.store.modules.sale.service;
+
+import com.webrayan.store.modules.sale.dto.CartLine;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * ژورنال تغییرات سبد خرید که هنوز در پایگاه داده ثبت نشده‌اند
+ * <p>
+ * An append-only log split into numbered segment files. Each record is framed as
+ * {@code [length][crc32][payload]}, so a record torn by a crash is detected on replay and
+ * everything before it is kept. {@link #rotate()} starts a new segment and returns the older ones;
+ * the caller deletes them once everything they hold is in the database.
+ * <p>
+ * Appending only writes the record; {@link #sync(long)} makes it durable. Appenders that sync at the
+ * same time share one fsync (group commit): whoever gets the sync lock forces everything written so
+ * far, and the others find their records already covered.
+ */
+@Slf4j
+final class CartJournal implements Closeable {
+
+    static final byte PUT = 1;
+    static final byte REMOVE = 2;
+    static final byte CLEAR = 3;
+
+    private static final String PREFIX = "cart-";
+    private static final String SUFFIX = ".journal";
+    private static final int MAX_RECORD_BYTES = 1 << 20;
+
+    private final Path directory;
+    private final boolean fsync;
+    // taken before this journal's monitor, never after it
+    private final Object syncLock = new Object();
+    private long currentSequence;
+    private FileChannel current;
+    // bytes appended since startup, over all segments; guarded by this
+    private long written;
+    private volatile long durable;
+
+    CartJournal(Path directory, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        List<Path> existing = segments();
+        currentSequence = existing.isEmpty() ? 1 : sequenceOf(existing.get(existing.size() - 1)) + 1;
+        current = open(currentSequence);
+    }
+
+    /**
+     * Records left by earlier runs, oldest first; the segment opened by this instance is empty
+     */
+    synchronized List<Entry> replay() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (Path segment : segments()) {
+            if (sequenceOf(segment) < currentSequence) {
+                read(segment, entries);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the record without forcing it to disk
+     *
+     * @return the position to pass to {@link #sync(long)} before the change is acknowledged
+     */
+    synchronized long append(Entry entry) throws IOException {
+        byte[] payload = entry.encode();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (frame.hasRemaining()) {
+            current.write(frame);
+        }
+        written += 8 + payload.length;
+        return written;
+    }
+
+    /**
+     * Returns once every record up to {@code position} is on disk; a no-op when fsync is off
+     */
+    void sync(long position) throws IOException {
+        if (!fsync || durable >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durable >= position) {
+                return;
+            }
+            long target;
+            FileChannel channel;
+            synchronized (this) {
+                target = written;
+                channel = current;
+            }
+            // appends go on meanwhile; their writers wait here and are usually covered by the next force
+            channel.force(false);
+            durable = target;
+        }
+    }
+
+    /**
+     * Starts a new segment
+     *
+     * @return every older segment, including ones kept by an earlier failed flush
+     */
+    List<Path> rotate() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (fsync && durable < written) {
+                    current.force(false);
+                    durable = written;
+                }
+                current.close();
+                currentSequence++;
+                current = open(currentSequence);
+                List<Path> sealed = new ArrayList<>();
+                for (Path segment : segments()) {
+                    if (sequenceOf(segment) < currentSequence) {
+                        sealed.add(segment);
+                    }
+                }
+                return sealed;
+            }
+        }
+    }
+
+    void delete(List<Path> segments) {
+        for (Path segment : segments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                log.warn("Could not delete cart journal segment {}: {}", segment, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                current.close();
+            }
+        }
+    }
+
+    private FileChannel open(long sequence) throws IOException {
+        return FileChannel.open(directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static void read(Path segment, List<Entry> entries) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                try {
+                    if (length <= 0 || length > MAX_RECORD_BYTES) {
+                        throw new EOFException("bad record length " + length);
+                    }
+                    int expectedCrc = in.readInt();
+                    byte[] payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 crc = new CRC32();
+                    crc.update(payload);
+                    if ((int) crc.getValue() != expectedCrc) {
+                        throw new EOFException("checksum mismatch");
+                    }
+                    entries.add(Entry.decode(payload));
+                } catch (EOFException e) {
+                    // the tail was torn by a crash while it was being written; it was never acknowledged
+                    log.warn("Ignoring a torn record at the end of cart journal segment {}: {}", segment, e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * One cart change: a line put or removed, or the whole cart cleared
+     */
+    static final class Entry {
+
+        final byte type;
+        final Long userId;
+        final Long productId;
+        final CartLine line;
+
+        private Entry(byte type, Long userId, Long productId, CartLine line) {
+            this.type = type;
+            this.userId = userId;
+            this.productId = productId;
+            this.line = line;
+        }
+
+        static Entry put(Long userId, CartLine line) {
+            return new Entry(PUT, userId, line.getProductId(), line);
+        }
+
+        static Entry remove(Long userId, Long productId) {
+            return new Entry(REMOVE, userId, productId, null);
+        }
+
+        static Entry clear(Long userId) {
+            return new Entry(CLEAR, userId, null, null);
+        }
+
+        byte[] encode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            out.writeLong(userId);
+            if (type != CLEAR) {
+                out.writeLong(productId);
+            }
+            if (type == PUT) {
+                out.writeLong(line.getId() != null ? line.getId() : -1L);
+                out.writeInt(line.getQuantity());
+                out.writeUTF(line.getUnitPrice().toPlainString());
+                writeText(out, line.getSelectedAttributes());
+                out.writeUTF(line.getCreatedAt().toString());
+                out.writeUTF(line.getUpdatedAt().toString());
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        static Entry decode(byte[] payload) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            byte type = in.readByte();
+            Long userId = in.readLong();
+            if (type == CLEAR) {
+                return clear(userId);
+            }
+            Long productId = in.readLong();
+            if (type == REMOVE) {
+                return remove(userId, productId);
+            }
+            long id = in.readLong();
+            int quantity = in.readInt();
+            BigDecimal unitPrice = new BigDecimal(in.readUTF());
+            String attributes = readText(in);
+            LocalDateTime createdAt = LocalDateTime.parse(in.readUTF());
+            LocalDateTime updatedAt = LocalDateTime.parse(in.readUTF());
+            return put(userId, new CartLine(id >= 0 ? id : null, productId, quantity, unitPrice, attributes,
+                    createdAt, updatedAt));
+        }
+
+        private static void writeText(DataOutputStream out, String text) throws IOException {
+            if (text == null) {
+                out.writeInt(-1);
+                return;
+            }
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readText(DataInputStream in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
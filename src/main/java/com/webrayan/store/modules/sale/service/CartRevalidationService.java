@@ -0,0 +1,164 @@
+package com.webrayan.store.modules.sale.service;
+
+import com.webrayan.store.modules.catalog.event.ProductChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * هماهنگ‌سازی دسته‌ای قیمت و تعداد سبدهای خرید با قیمت و موجودی فعلی محصولات
+ * <p>
+ * Rows are repriced and clamped with set-based statements joined to catalog_products, never
+ * loaded one by one: one UPDATE for prices, one UPDATE for quantities above stock and one DELETE
+ * for sold-out products, scoped either to one cart or to a set of products across all carts.
+ * <p>
+ * Price and stock edits ({@link ProductChangedEvent} UPDATED / STOCK_CHANGED) are collected and
+ * handled together on a short schedule, so a bulk catalogue update runs a few statements per
+ * chunk of products instead of per product. Checkout stock movements (STOCK_RESERVED) are left
+ * alone; the cart summary flags lines that no longer fit and checkout re-checks stock anyway.
+ * <p>
+ * The statements run through {@link CartStore#changeRows}: pending changes are written first, cart
+ * changes wait until they commit, and only the carts whose rows changed are dropped from memory
+ * afterwards, so they reload with the new values.
+ */
+@Service
+@Slf4j
+public class CartRevalidationService {
+
+    static final int MAX_PRODUCTS_PER_STATEMENT = 500;
+
+    private static final String REPRICE_SQL =
+            "UPDATE sale_cart_items SET unit_price = p.price, updated_at = ? FROM catalog_products p " +
+            "WHERE sale_cart_items.product_id = p.id AND sale_cart_items.unit_price <> p.price AND ";
+    private static final String CLAMP_SQL =
+            "UPDATE sale_cart_items SET quantity = p.stock_quantity, updated_at = ? FROM catalog_products p " +
+            "WHERE sale_cart_items.product_id = p.id AND sale_cart_items.quantity > p.stock_quantity " +
+            "AND p.stock_quantity > 0 AND ";
+    private static final String REMOVE_SOLD_OUT_SQL =
+            "DELETE FROM sale_cart_items WHERE sale_cart_items.product_id IN " +
+            "(SELECT id FROM catalog_products WHERE stock_quantity <= 0) AND ";
+    private static final String AFFECTED_USERS_SQL =
+            "SELECT DISTINCT ci.user_id FROM sale_cart_items ci JOIN catalog_products p ON p.id = ci.product_id " +
+            "WHERE (ci.unit_price <> p.price OR ci.quantity > p.stock_quantity) AND ci.product_id IN (";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CartStore cartStore;
+    private final Set<Long> changedProducts = ConcurrentHashMap.newKeySet();
+
+    public CartRevalidationService(JdbcTemplate jdbcTemplate, CartStore cartStore) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cartStore = cartStore;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getChangeType() == ProductChangedEvent.ChangeType.UPDATED
+                || event.getChangeType() == ProductChangedEvent.ChangeType.STOCK_CHANGED) {
+            changedProducts.add(event.getProductId());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.sale.cart-revalidation.interval-ms:1000}")
+    public void revalidateChangedProducts() {
+        if (changedProducts.isEmpty()) {
+            return;
+        }
+        Set<Long> productIds = new TreeSet<>();
+        for (Long productId : changedProducts) {
+            if (changedProducts.remove(productId)) {
+                productIds.add(productId);
+            }
+        }
+        try {
+            int changed = revalidateProducts(productIds);
+            if (changed > 0) {
+                log.info("Revalidated {} cart rows after changes to {} products", changed, productIds.size());
+            }
+        } catch (RuntimeException e) {
+            // دوباره در اجرای بعدی
+            changedProducts.addAll(productIds);
+            log.warn("Failed to revalidate carts for {} changed products: {}", productIds.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Reprices and clamps every cart row of these products
+     *
+     * @return the number of cart rows changed or removed
+     */
+    public int revalidateProducts(Collection<Long> productIds) {
+        List<Long> ids = new ArrayList<>(productIds);
+        int changed = 0;
+        for (int from = 0; from < ids.size(); from += MAX_PRODUCTS_PER_STATEMENT) {
+            List<Long> chunk = ids.subList(from, Math.min(from + MAX_PRODUCTS_PER_STATEMENT, ids.size()));
+            String scope = "sale_cart_items.product_id IN (" + placeholders(chunk.size()) + ")";
+            Integer count = cartStore.changeRows(users -> {
+                users.addAll(jdbcTemplate.queryForList(AFFECTED_USERS_SQL + placeholders(chunk.size()) + ")",
+                        Long.class, chunk.toArray()));
+                if (users.isEmpty()) {
+                    return 0;
+                }
+                return reprice(scope, chunk) + clamp(scope, chunk);
+            });
+            changed += count == null ? 0 : count;
+        }
+        return changed;
+    }
+
+    /**
+     * قیمت همه ردیف‌های یک سبد با قیمت فعلی محصول یکسان می‌شود
+     */
+    public int repriceCart(Long userId) {
+        return revalidateCart(userId, true);
+    }
+
+    /**
+     * تعداد ردیف‌های بیش از موجودی کاهش می‌یابد و ردیف‌های محصولات ناموجود حذف می‌شوند
+     */
+    public int clampCartToStock(Long userId) {
+        return revalidateCart(userId, false);
+    }
+
+    private int revalidateCart(Long userId, boolean prices) {
+        List<Object> scopeArgs = List.of(userId);
+        Integer changed = cartStore.changeRows(users -> {
+            users.add(userId);
+            return prices
+                    ? reprice("sale_cart_items.user_id = ?", scopeArgs)
+                    : clamp("sale_cart_items.user_id = ?", scopeArgs);
+        });
+        return changed == null ? 0 : changed;
+    }
+
+    private int reprice(String scope, List<?> scopeArgs) {
+        return jdbcTemplate.update(REPRICE_SQL + scope, withTimestamp(scopeArgs));
+    }
+
+    private int clamp(String scope, List<?> scopeArgs) {
+        int clamped = jdbcTemplate.update(CLAMP_SQL + scope, withTimestamp(scopeArgs));
+        return clamped + jdbcTemplate.update(REMOVE_SOLD_OUT_SQL + scope, scopeArgs.toArray());
+    }
+
+    private static Object[] withTimestamp(List<?> scopeArgs) {
+        List<Object> args = new ArrayList<>(scopeArgs.size() + 1);
+        args.add(Timestamp.valueOf(LocalDateTime.now()));
+        args.addAll(scopeArgs);
+        return args.toArray();
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
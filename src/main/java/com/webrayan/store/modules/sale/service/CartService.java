@@ -1,10 +1,11 @@
 package com.webrayan.store.modules.sale.service;
 
-import com.webrayan.store.modules.sale.entity.CartItem;
+import com.webrayan.store.modules.sale.dto.CartItemView;
+import com.webrayan.store.modules.sale.dto.CartLine;
+import com.webrayan.store.modules.sale.dto.CartSummaryDto;
 import com.webrayan.store.modules.sale.repository.CartRepository;
 import com.webrayan.store.modules.catalog.entity.Product;
 import com.webrayan.store.modules.catalog.repository.ProductRepository;
-import com.webrayan.store.modules.acl.entity.User;
 import com.webrayan.store.modules.acl.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -12,22 +13,33 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * سرویس سبد خرید
+ * <p>
+ * Carts are read from and changed in the {@link CartStore}; sale_cart_items is written behind, so
+ * the admin reports that query it directly can lag by up to one flush interval.
+ */
 @Service
 @RequiredArgsConstructor
 public class CartService {
 
+    private final CartStore cartStore;
+    private final CartRevalidationService cartRevalidationService;
     private final CartRepository cartRepository;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
 
-    @Transactional
-    public CartItem addToCart(Long userId, Long productId, Integer quantity, String selectedAttributes) {
+    public CartLine addToCart(Long userId, Long productId, Integer quantity, String selectedAttributes) {
         // بررسی وجود کاربر
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("User not found");
+        }
 
         // بررسی وجود محصول
         Product product = productRepository.findById(productId)
@@ -38,124 +50,118 @@ public class CartService {
             throw new RuntimeException("Insufficient stock. Available: " + product.getStockQuantity());
         }
 
-        // بررسی وجود آیتم در سبد
-        Optional<CartItem> existingItem = cartRepository.findByUserIdAndProductId(userId, productId);
-        
-        if (existingItem.isPresent()) {
+        return cartStore.update(userId, productId, existing -> {
+            if (existing == null) {
+                // ایجاد آیتم جدید
+                return CartLine.create(productId, quantity, product.getPrice(), selectedAttributes);
+            }
+
             // به‌روزرسانی تعداد
-            CartItem cartItem = existingItem.get();
-            int newQuantity = cartItem.getQuantity() + quantity;
-            
+            int newQuantity = existing.getQuantity() + quantity;
             if (product.getStockQuantity() < newQuantity) {
                 throw new RuntimeException("Cannot add more items. Total would exceed available stock.");
             }
-            
-            cartItem.updateQuantity(newQuantity);
-            cartItem.setSelectedAttributes(selectedAttributes);
-            return cartRepository.save(cartItem);
-        } else {
-            // ایجاد آیتم جدید
-            CartItem cartItem = new CartItem();
-            cartItem.setUser(user);
-            cartItem.setProduct(product);
-            cartItem.setQuantity(quantity);
-            cartItem.setUnitPrice(product.getPrice());
-            cartItem.setSelectedAttributes(selectedAttributes);
-            
-            return cartRepository.save(cartItem);
-        }
+            return existing.withQuantity(newQuantity).withSelectedAttributes(selectedAttributes);
+        });
     }
 
-    @Transactional
-    public CartItem updateCartItemQuantity(Long userId, Long productId, Integer newQuantity) {
-        CartItem cartItem = cartRepository.findByUserIdAndProductId(userId, productId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
+    public CartLine updateCartItemQuantity(Long userId, Long productId, Integer newQuantity) {
+        if (getCartItem(userId, productId) == null) {
+            throw new RuntimeException("Cart item not found");
+        }
 
         if (newQuantity <= 0) {
-            cartRepository.delete(cartItem);
+            cartStore.update(userId, productId, line -> null);
             return null;
         }
 
         // بررسی موجودی
-        Product product = cartItem.getProduct();
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found"));
         if (product.getStockQuantity() < newQuantity) {
             throw new RuntimeException("Insufficient stock. Available: " + product.getStockQuantity());
         }
 
-        cartItem.updateQuantity(newQuantity);
-        cartItem.updatePrice(product.getPrice()); // به‌روزرسانی قیمت
-        
-        return cartRepository.save(cartItem);
+        return cartStore.update(userId, productId, line -> {
+            if (line == null) {
+                throw new RuntimeException("Cart item not found");
+            }
+            // به‌روزرسانی قیمت
+            return line.withQuantity(newQuantity).withUnitPrice(product.getPrice());
+        });
     }
 
-    @Transactional
     public void removeFromCart(Long userId, Long productId) {
-        cartRepository.removeItemFromCart(userId, productId);
+        cartStore.update(userId, productId, line -> null);
     }
 
-    @Transactional
     public void clearCart(Long userId) {
-        cartRepository.clearCartByUser(userId);
-    }
-
-    public List<CartItem> getCartItems(Long userId) {
-        return cartRepository.findByUserId(userId);
+        cartStore.clear(userId);
+    }
+
+    public List<CartLine> getCartItems(Long userId) {
+        return cartStore.get(userId).getLines();
+    }
+
+    /**
+     * سبد به همراه نام، قیمت فعلی، موجودی و تصویر اصلی هر محصول و جمع‌ها
+     * Lines and totals come from one in-memory snapshot; the product columns are one query for the
+     * whole cart, and none when the cart is empty.
+     */
+    @Transactional(readOnly = true)
+    public CartSummaryDto getCartSummary(Long userId) {
+        CartSession cart = cartStore.get(userId);
+        List<CartItemView> items = new ArrayList<>(cart.getLines().size());
+        if (!cart.isEmpty()) {
+            Map<Long, CartItemView> products = cartRepository.findCartItemViews(
+                            cart.getLines().stream().map(CartLine::getProductId).toList()).stream()
+                    .collect(Collectors.toMap(CartItemView::getProductId, Function.identity()));
+            for (CartLine line : cart.getLines()) {
+                CartItemView item = products.get(line.getProductId());
+                if (item == null) {
+                    // محصول حذف شده است؛ ردیف با isAvailable=false نمایش داده می‌شود
+                    item = new CartItemView();
+                    item.setProductId(line.getProductId());
+                }
+                item.setQuantity(line.getQuantity());
+                item.setUnitPrice(line.getUnitPrice());
+                item.setTotalPrice(line.getTotalPrice());
+                item.setSelectedAttributes(line.getSelectedAttributes());
+                items.add(item);
+            }
+        }
+        return new CartSummaryDto(items, cart.getTotal(), cart.getItemCount(), cart.getTotalQuantity());
     }
 
     public BigDecimal getCartTotal(Long userId) {
-        BigDecimal total = cartRepository.getCartTotalByUser(userId);
-        return total != null ? total : BigDecimal.ZERO;
+        return cartStore.get(userId).getTotal();
     }
 
     public Long getCartItemCount(Long userId) {
-        Long count = cartRepository.getCartItemCountByUser(userId);
-        return count != null ? count : 0L;
+        return cartStore.get(userId).getItemCount();
     }
 
     public Long getTotalQuantity(Long userId) {
-        Long quantity = cartRepository.getTotalQuantityByUser(userId);
-        return quantity != null ? quantity : 0L;
+        return cartStore.get(userId).getTotalQuantity();
     }
 
     public boolean isProductInCart(Long userId, Long productId) {
-        return cartRepository.existsByUserIdAndProductId(userId, productId);
+        return getCartItem(userId, productId) != null;
     }
 
-    @Transactional
     public void syncCartPrices(Long userId) {
-        List<CartItem> cartItems = cartRepository.findByUserId(userId);
-        
-        for (CartItem item : cartItems) {
-            Product product = item.getProduct();
-            if (!item.getUnitPrice().equals(product.getPrice())) {
-                item.updatePrice(product.getPrice());
-                cartRepository.save(item);
-            }
-        }
+        cartRevalidationService.repriceCart(userId);
     }
 
-    @Transactional
     public void validateCartStock(Long userId) {
-        List<CartItem> cartItems = cartRepository.findByUserId(userId);
-        
-        for (CartItem item : cartItems) {
-            Product product = item.getProduct();
-            if (product.getStockQuantity() < item.getQuantity()) {
-                // کاهش تعداد یا حذف آیتم
-                if (product.getStockQuantity() > 0) {
-                    item.updateQuantity(product.getStockQuantity());
-                    cartRepository.save(item);
-                } else {
-                    cartRepository.delete(item);
-                }
-            }
-        }
+        // کاهش تعداد یا حذف آیتم
+        cartRevalidationService.clampCartToStock(userId);
     }
 
-    @Transactional
     public void cleanupOldCartItems() {
         LocalDateTime cutoffDate = LocalDateTime.now().minusDays(30); // 30 روز
-        cartRepository.deleteOldCartItems(cutoffDate);
+        // تغییرات در انتظار ابتدا نوشته می‌شوند و تغییرات جدید تا پایان حذف منتظر می‌مانند
+        cartStore.changeAllRows(() -> cartRepository.deleteOldCartItems(cutoffDate));
     }
 
     public List<Object[]> getMostAddedToCartProducts() {
@@ -166,21 +172,20 @@ public class CartService {
         return cartRepository.getUsersWithProductInCart(productId);
     }
 
-    @Transactional
-    public CartItem updateCartItemAttributes(Long userId, Long productId, String selectedAttributes) {
-        CartItem cartItem = cartRepository.findByUserIdAndProductId(userId, productId)
-                .orElseThrow(() -> new RuntimeException("Cart item not found"));
-
-        cartItem.setSelectedAttributes(selectedAttributes);
-        return cartRepository.save(cartItem);
+    public CartLine updateCartItemAttributes(Long userId, Long productId, String selectedAttributes) {
+        return cartStore.update(userId, productId, line -> {
+            if (line == null) {
+                throw new RuntimeException("Cart item not found");
+            }
+            return line.withSelectedAttributes(selectedAttributes);
+        });
     }
 
     public boolean isCartEmpty(Long userId) {
-        return getCartItemCount(userId) == 0;
+        return cartStore.get(userId).isEmpty();
     }
 
-    public CartItem getCartItem(Long userId, Long productId) {
-        return cartRepository.findByUserIdAndProductId(userId, productId)
-                .orElse(null);
+    public CartLine getCartItem(Long userId, Long productId) {
+        return cartStore.get(userId).getLine(productId);
     }
 }
@@ -0,0 +1,91 @@
+package com.webrayan.store.modules.sale.service;
+
+import com.webrayan.store.modules.sale.dto.CartLine;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * سبد خرید یک کاربر به همراه جمع‌های آن (تغییرناپذیر)
+ * <p>
+ * Total, item count and total quantity are computed once when the snapshot is built, so the
+ * cart header and summary read them without touching the database. Changes go through
+ * {@link CartStore}, which swaps in a new snapshot.
+ */
+@Getter
+public final class CartSession {
+
+    private final Long userId;
+    private final List<CartLine> lines;
+    private final BigDecimal total;
+    private final long itemCount;
+    private final long totalQuantity;
+
+    private CartSession(Long userId, List<CartLine> lines) {
+        this.userId = userId;
+        this.lines = Collections.unmodifiableList(lines);
+        BigDecimal sum = BigDecimal.ZERO;
+        long quantity = 0;
+        for (CartLine line : lines) {
+            sum = sum.add(line.getTotalPrice());
+            quantity += line.getQuantity();
+        }
+        this.total = sum;
+        this.itemCount = lines.size();
+        this.totalQuantity = quantity;
+    }
+
+    static CartSession of(Long userId, List<CartLine> lines) {
+        return new CartSession(userId, new ArrayList<>(lines));
+    }
+
+    static CartSession empty(Long userId) {
+        return new CartSession(userId, new ArrayList<>());
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    /**
+     * @return the line for the product, or null when it is not in the cart
+     */
+    public CartLine getLine(Long productId) {
+        for (CartLine line : lines) {
+            if (line.getProductId().equals(productId)) {
+                return line;
+            }
+        }
+        return null;
+    }
+
+    CartSession with(CartLine line) {
+        List<CartLine> changed = new ArrayList<>(lines.size() + 1);
+        boolean replaced = false;
+        for (CartLine existing : lines) {
+            if (existing.getProductId().equals(line.getProductId())) {
+                changed.add(line);
+                replaced = true;
+            } else {
+                changed.add(existing);
+            }
+        }
+        if (!replaced) {
+            changed.add(line);
+        }
+        return new CartSession(userId, changed);
+    }
+
+    CartSession without(Long productId) {
+        List<CartLine> changed = new ArrayList<>(lines.size());
+        for (CartLine existing : lines) {
+            if (!existing.getProductId().equals(productId)) {
+                changed.add(existing);
+            }
+        }
+        return new CartSession(userId, changed);
+    }
+}
@@ -0,0 +1,421 @@
+package com.webrayan.store.modules.sale.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.webrayan.store.modules.sale.config.CartStoreProperties;
+import com.webrayan.store.modules.sale.dto.CartLine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * نگهداری سبد خرید کاربران در حافظه با ذخیره‌سازی دسته‌ای (write-behind)
+ * <p>
+ * Each user's cart is one immutable {@link CartSession} in a bounded Caffeine map (size limit plus
+ * idle expiry), so reads and the summary totals never hit the database once the cart is loaded.
+ * A change is applied atomically per user, appended to the {@link CartJournal} and recorded as
+ * pending; the caller gets its answer once the journal record is on disk (changes made at the same
+ * time share one fsync) and without a database write. Carts are read from the database outside of
+ * the cache's per-key compute, so a slow query never holds up changes to other carts.
+ * <p>
+ * {@link #flush()} writes the latest state of every pending line in one transaction of JDBC
+ * batches and then drops the journal segments it covered. Pending changes stay in memory until
+ * they are committed and are laid over the database rows whenever a cart is (re)loaded, so a cart
+ * evicted before its flush is still correct. On startup the journal is replayed, so acknowledged
+ * changes survive a crash.
+ */
+@Component
+@Slf4j
+public class CartStore {
+
+    private static final String SELECT_CART_SQL =
+            "SELECT id, product_id, quantity, unit_price, selected_attributes, created_at, updated_at " +
+            "FROM sale_cart_items WHERE user_id = ? ORDER BY created_at, id";
+    private static final String CLEAR_SQL = "DELETE FROM sale_cart_items WHERE user_id = ?";
+    private static final String REMOVE_SQL = "DELETE FROM sale_cart_items WHERE user_id = ? AND product_id = ?";
+    private static final String UPDATE_SQL =
+            "UPDATE sale_cart_items SET quantity = ?, unit_price = ?, selected_attributes = ?, updated_at = ? " +
+            "WHERE user_id = ? AND product_id = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO sale_cart_items (user_id, product_id, quantity, unit_price, selected_attributes, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CartStoreProperties properties;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<Long, CartSession> sessions;
+    private final ConcurrentHashMap<Long, PendingCart> pending = new ConcurrentHashMap<>();
+    // changes hold the read lock while journaling, a flush takes the write lock to rotate the journal
+    private final ReadWriteLock journalLock = new ReentrantReadWriteLock();
+    // bumped whenever cart rows change in the database; a cart read across a bump is read again
+    private final AtomicLong rowsVersion = new AtomicLong();
+    private CartJournal journal;
+
+    public CartStore(JdbcTemplate jdbcTemplate, CartStoreProperties properties,
+                     PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // a flush must commit on its own even when called from inside a caller's transaction
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.sessions = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxCarts())
+                .expireAfterAccess(Duration.ofMinutes(properties.getIdleTimeoutMinutes()))
+                .build();
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        journal = new CartJournal(Paths.get(properties.getJournalDirectory()), properties.isJournalFsync());
+        List<CartJournal.Entry> entries = journal.replay();
+        for (CartJournal.Entry entry : entries) {
+            pending.merge(entry.userId, PendingCart.of(entry), PendingCart::then);
+        }
+        if (!entries.isEmpty()) {
+            log.info("Recovered {} cart changes of {} users from the journal", entries.size(), pending.size());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void flushRecovered() {
+        flush();
+    }
+
+    public CartSession get(Long userId) {
+        while (true) {
+            CartSession session = sessions.getIfPresent(userId);
+            if (session == null) {
+                session = loadAndCache(userId);
+            }
+            if (session != null) {
+                return session;
+            }
+        }
+    }
+
+    /**
+     * Changes one line of a cart atomically with respect to other changes of the same cart
+     * <p>
+     * If the journal record cannot be forced to disk the change still stays in memory and is written
+     * by the next flush, but the caller gets the error.
+     *
+     * @param change gets the current line (null when the product is not in the cart) and returns the
+     *               new one, or null to remove it; an exception thrown here leaves the cart unchanged
+     * @return the new line, or null when it was removed
+     */
+    public CartLine update(Long userId, Long productId, UnaryOperator<CartLine> change) {
+        CartLine[] result = new CartLine[1];
+        mutate(userId, session -> {
+            CartLine existing = session.getLine(productId);
+            CartLine line = change.apply(existing);
+            result[0] = line;
+            if (line == null) {
+                return existing == null ? null : CartJournal.Entry.remove(userId, productId);
+            }
+            return CartJournal.Entry.put(userId, line);
+        });
+        return result[0];
+    }
+
+    public void clear(Long userId) {
+        mutate(userId, session -> CartJournal.Entry.clear(userId));
+    }
+
+    /**
+     * Runs statements that change sale_cart_items rows directly, e.g. set-based repricing
+     * <p>
+     * Every pending change is written first, and cart changes wait until the statements have
+     * committed and the carts they touched are dropped from memory. So no change is built from a
+     * session the statements made stale, and no older line is written back over their rows.
+     *
+     * @param statements run in their own transaction; they add the users whose rows they changed to
+     *                   the given set
+     * @throws IllegalStateException when the pending changes could not be written; nothing is run
+     */
+    public synchronized <T> T changeRows(Function<Set<Long>, T> statements) {
+        return changeRows(statements, false);
+    }
+
+    /**
+     * Like {@link #changeRows(Function)} for statements that may touch any cart; every cart is
+     * dropped from memory afterwards
+     */
+    public synchronized void changeAllRows(Runnable statements) {
+        changeRows(users -> {
+            statements.run();
+            return null;
+        }, true);
+    }
+
+    /**
+     * Drops every cart from memory, e.g. after rows were changed directly in the database;
+     * pending changes are kept and laid over the rows when a cart is loaded again
+     */
+    public void invalidateAll() {
+        sessions.invalidateAll();
+    }
+
+    @Scheduled(fixedDelayString = "${app.sale.cart-store.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        Map<Long, PendingCart> snapshot;
+        List<Path> sealed;
+        journalLock.writeLock().lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            snapshot = new TreeMap<>(pending);
+            sealed = journal.rotate();
+        } catch (IOException e) {
+            log.warn("Could not rotate the cart journal, flush skipped: {}", e.getMessage());
+            return;
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(snapshot));
+        } catch (DataIntegrityViolationException e) {
+            // one cart points at a user or product that no longer exists; write the others on their own
+            if (!writeEachCart(snapshot)) {
+                return;
+            }
+        } catch (RuntimeException e) {
+            // everything stays pending and in the journal for the next flush
+            log.warn("Failed to flush {} carts: {}", snapshot.size(), e.getMessage());
+            return;
+        }
+        rowsVersion.incrementAndGet();
+        // a cart changed again since the snapshot stays pending with its newer state
+        snapshot.forEach((userId, cart) -> pending.remove(userId, cart));
+        journal.delete(sealed);
+        log.debug("Flushed {} carts", snapshot.size());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() throws IOException {
+        flush();
+        if (!pending.isEmpty()) {
+            log.warn("{} carts could not be flushed before shutdown; they are kept in the journal", pending.size());
+        }
+        journal.close();
+    }
+
+    private <T> T changeRows(Function<Set<Long>, T> statements, boolean allCarts) {
+        // same order as flush(): this monitor, then the journal lock, which keeps changes out
+        journalLock.writeLock().lock();
+        try {
+            flush();
+            if (!pending.isEmpty()) {
+                throw new IllegalStateException("Pending cart changes could not be written; cart rows left unchanged");
+            }
+            Set<Long> users = new HashSet<>();
+            T result;
+            try {
+                result = transactionTemplate.execute(status -> statements.apply(users));
+            } finally {
+                rowsVersion.incrementAndGet();
+            }
+            if (allCarts) {
+                sessions.invalidateAll();
+            } else {
+                sessions.invalidateAll(users);
+            }
+            return result;
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    private void mutate(Long userId, Function<CartSession, CartJournal.Entry> change) {
+        journalLock.readLock().lock();
+        try {
+            long[] position = new long[1];
+            CartSession changed = null;
+            while (changed == null) {
+                // loaded outside compute; if the cart is dropped again before compute runs, load it again
+                get(userId);
+                changed = sessions.asMap().computeIfPresent(userId, (id, current) -> {
+                    CartJournal.Entry entry = change.apply(current);
+                    if (entry == null) {
+                        return current;
+                    }
+                    try {
+                        position[0] = journal.append(entry);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not journal the cart change", e);
+                    }
+                    PendingCart pendingChange = PendingCart.of(entry);
+                    pending.merge(userId, pendingChange, PendingCart::then);
+                    return pendingChange.applyTo(current);
+                });
+            }
+            // outside compute, so one fsync can cover the changes of many carts
+            journal.sync(position[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not force the cart journal to disk", e);
+        } finally {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads a cart from the database and caches it unless it changed while it was being read
+     *
+     * @return the cached cart, or null when it has to be read again
+     */
+    private CartSession loadAndCache(Long userId) {
+        // version first, then the pending changes: a flush commits before it bumps the version and drops them
+        long version = rowsVersion.get();
+        PendingCart overlay = pending.get(userId);
+        CartSession loaded = load(userId, overlay);
+        return sessions.asMap().compute(userId, (id, session) -> {
+            if (session != null) {
+                return session;
+            }
+            return pending.get(id) == overlay && rowsVersion.get() == version ? loaded : null;
+        });
+    }
+
+    private CartSession load(Long userId, PendingCart overlay) {
+        List<CartLine> lines = jdbcTemplate.query(SELECT_CART_SQL, (rs, rowNum) -> {
+            Timestamp updatedAt = rs.getTimestamp("updated_at");
+            return new CartLine(rs.getLong("id"), rs.getLong("product_id"), rs.getInt("quantity"),
+                    rs.getBigDecimal("unit_price"), rs.getString("selected_attributes"),
+                    rs.getTimestamp("created_at").toLocalDateTime(),
+                    updatedAt != null ? updatedAt.toLocalDateTime() : null);
+        }, userId);
+        CartSession session = CartSession.of(userId, lines);
+        return overlay != null ? overlay.applyTo(session) : session;
+    }
+
+    private boolean writeEachCart(Map<Long, PendingCart> snapshot) {
+        for (Map.Entry<Long, PendingCart> cart : snapshot.entrySet()) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(Map.of(cart.getKey(), cart.getValue())));
+            } catch (DataIntegrityViolationException e) {
+                log.error("Dropping unwritable cart changes of user {}: {}", cart.getKey(), e.getMessage());
+                sessions.invalidate(cart.getKey());
+            } catch (RuntimeException e) {
+                log.warn("Failed to flush {} carts: {}", snapshot.size(), e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(Map<Long, PendingCart> carts) {
+        List<Object[]> clears = new ArrayList<>();
+        List<Object[]> removals = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        carts.forEach((userId, cart) -> {
+            if (cart.cleared) {
+                clears.add(new Object[]{userId});
+            }
+            cart.lines.forEach((productId, line) -> {
+                if (line == null) {
+                    removals.add(new Object[]{userId, productId});
+                    return;
+                }
+                Timestamp updatedAt = Timestamp.valueOf(line.getUpdatedAt());
+                updates.add(new Object[]{line.getQuantity(), line.getUnitPrice(), line.getSelectedAttributes(),
+                        updatedAt, userId, productId});
+                inserts.add(new Object[]{userId, productId, line.getQuantity(), line.getUnitPrice(),
+                        line.getSelectedAttributes(), Timestamp.valueOf(line.getCreatedAt()), updatedAt});
+            });
+        });
+
+        if (!clears.isEmpty()) {
+            jdbcTemplate.batchUpdate(CLEAR_SQL, clears);
+        }
+        if (!removals.isEmpty()) {
+            jdbcTemplate.batchUpdate(REMOVE_SQL, removals);
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        List<Object[]> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(inserts.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, missing);
+        }
+    }
+
+    /**
+     * Changes of one cart not yet in the database: optionally a clear, then the latest state of each
+     * touched line (null when removed). Instances are never modified, so a flush can tell whether the
+     * cart changed again while it was writing.
+     */
+    private static final class PendingCart {
+
+        private final boolean cleared;
+        private final Map<Long, CartLine> lines;
+
+        private PendingCart(boolean cleared, Map<Long, CartLine> lines) {
+            this.cleared = cleared;
+            this.lines = Collections.unmodifiableMap(lines);
+        }
+
+        static PendingCart of(CartJournal.Entry entry) {
+            Map<Long, CartLine> lines = new LinkedHashMap<>();
+            if (entry.type == CartJournal.CLEAR) {
+                return new PendingCart(true, lines);
+            }
+            lines.put(entry.productId, entry.line);
+            return new PendingCart(false, lines);
+        }
+
+        PendingCart then(PendingCart newer) {
+            if (newer.cleared) {
+                return newer;
+            }
+            Map<Long, CartLine> merged = new LinkedHashMap<>(lines);
+            merged.putAll(newer.lines);
+            return new PendingCart(cleared, merged);
+        }
+
+        CartSession applyTo(CartSession session) {
+            CartSession result = cleared ? CartSession.empty(session.getUserId()) : session;
+            for (Map.Entry<Long, CartLine> line : lines.entrySet()) {
+                result = line.getValue() == null ? result.without(line.getKey()) : result.with(line.getValue());
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.webrayan.store.modules.sale.service;
+
+import com.webrayan.store.modules.catalog.service.InventoryService;
+import com.webrayan.store.modules.sale.config.OrderExpiryProperties;
+import com.webrayan.store.modules.sale.enums.OrderStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * لغو دسته‌ای سفارش‌های در انتظاری که در مهلت تایید نشده‌اند
+ * <p>
+ * Expired PENDING orders are cancelled in chunks of {@code batchSize}, one transaction per chunk, in
+ * id order. A chunk locks its orders with {@code FOR UPDATE SKIP LOCKED} (so instances running the
+ * job at the same time split the work, and an order being confirmed right now is left for the next
+ * run), flips them with one UPDATE, writes their status histories as one JDBC batch and gives the
+ * stock back through {@link InventoryService#releaseStock} with the quantities already summed per
+ * product across the whole chunk. No order or item entity is loaded.
+ * <p>
+ * The last order id of each committed chunk is stored in {@code job_checkpoints} in the same
+ * transaction, so a run cut short by a restart or by {@code maxBatchesPerRun} resumes after it. The
+ * mark goes back to 0 once a sweep reaches the end; orders skipped as locked are picked up then.
+ */
+@Component
+@Slf4j
+public class OrderExpiryJob {
+
+    static final String CHECKPOINT = "sale.order-expiry";
+
+    private static final String CHANGED_BY = "system";
+
+    private static final String SELECT_EXPIRED_SQL =
+            "SELECT id FROM sale_orders WHERE status = ? AND created_at < ? AND id > ? " +
+            "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String CANCEL_SQL_PREFIX =
+            "UPDATE sale_orders SET status = ?, cancelled_at = ?, cancellation_reason = ?, updated_at = ? WHERE id IN (";
+    private static final String INSERT_HISTORY_SQL =
+            "INSERT INTO sale_order_status_history (order_id, old_status, new_status, changed_at, changed_by, reason) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String RELEASED_QUANTITIES_SQL_PREFIX =
+            "SELECT product_id, SUM(quantity) FROM sale_order_items WHERE order_id IN (";
+    private static final String SELECT_CHECKPOINT_SQL = "SELECT last_id FROM job_checkpoints WHERE name = ?";
+    private static final String INSERT_CHECKPOINT_SQL =
+            "INSERT INTO job_checkpoints (name, last_id, updated_at) VALUES (?, 0, ?)";
+    private static final String UPDATE_CHECKPOINT_SQL =
+            "UPDATE job_checkpoints SET last_id = ?, updated_at = ? WHERE name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InventoryService inventoryService;
+    private final OrderExpiryProperties properties;
+    private final TransactionTemplate transactionTemplate;
+
+    public OrderExpiryJob(JdbcTemplate jdbcTemplate,
+                          InventoryService inventoryService,
+                          OrderExpiryProperties properties,
+                          PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.inventoryService = inventoryService;
+        this.properties = properties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${app.sale.order-expiry.interval-ms:300000}",
+               initialDelayString = "${app.sale.order-expiry.interval-ms:300000}")
+    public void scheduledRun() {
+        if (properties.isEnabled()) {
+            run();
+        }
+    }
+
+    /**
+     * @return the number of orders cancelled by this run
+     */
+    public int run() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(properties.getPendingTimeoutHours());
+        String reason = "Order expired - not confirmed within " + properties.getPendingTimeoutHours() + " hours";
+        int batchSize = Math.max(1, properties.getBatchSize());
+        ensureCheckpoint();
+
+        int cancelled = 0;
+        for (int batch = 0; batch < Math.max(1, properties.getMaxBatchesPerRun()); batch++) {
+            Integer count = transactionTemplate.execute(status -> cancelChunk(cutoff, reason, batchSize));
+            cancelled += count == null ? 0 : count;
+            if (count == null || count < batchSize) {
+                // the sweep has reached the end
+                break;
+            }
+        }
+        if (cancelled > 0) {
+            log.info("Cancelled {} pending orders older than {}", cancelled, cutoff);
+        }
+        return cancelled;
+    }
+
+    /**
+     * @return orders cancelled; fewer than {@code batchSize} when the sweep has reached the end
+     */
+    private int cancelChunk(LocalDateTime cutoff, String reason, int batchSize) {
+        long after = jdbcTemplate.queryForObject(SELECT_CHECKPOINT_SQL, Long.class, CHECKPOINT);
+        List<Long> orderIds = jdbcTemplate.queryForList(SELECT_EXPIRED_SQL, Long.class,
+                OrderStatus.PENDING.name(), Timestamp.valueOf(cutoff), after, batchSize);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (orderIds.isEmpty()) {
+            if (after > 0) {
+                jdbcTemplate.update(UPDATE_CHECKPOINT_SQL, 0L, now, CHECKPOINT);
+            }
+            return 0;
+        }
+        String inList = placeholders(orderIds.size()) + ")";
+
+        List<Object> cancelArgs = new ArrayList<>(orderIds.size() + 4);
+        Collections.addAll(cancelArgs, OrderStatus.CANCELLED.name(), now, reason, now);
+        cancelArgs.addAll(orderIds);
+        jdbcTemplate.update(CANCEL_SQL_PREFIX + inList, cancelArgs.toArray());
+
+        List<Object[]> histories = new ArrayList<>(orderIds.size());
+        for (Long orderId : orderIds) {
+            histories.add(new Object[]{orderId, OrderStatus.PENDING.name(), OrderStatus.CANCELLED.name(),
+                    now, CHANGED_BY, reason});
+        }
+        jdbcTemplate.batchUpdate(INSERT_HISTORY_SQL, histories);
+
+        Map<Long, Integer> released = new LinkedHashMap<>();
+        jdbcTemplate.query(RELEASED_QUANTITIES_SQL_PREFIX + inList + " GROUP BY product_id",
+                row -> {
+                    released.put(row.getLong(1), row.getInt(2));
+                }, orderIds.toArray());
+        inventoryService.releaseStock(released);
+
+        // a short chunk is the end of the sweep; the next one starts from the beginning again
+        long mark = orderIds.size() < batchSize ? 0L : orderIds.get(orderIds.size() - 1);
+        jdbcTemplate.update(UPDATE_CHECKPOINT_SQL, mark, now, CHECKPOINT);
+        return orderIds.size();
+    }
+
+    private void ensureCheckpoint() {
+        List<Long> existing = jdbcTemplate.queryForList(SELECT_CHECKPOINT_SQL, Long.class, CHECKPOINT);
+        if (!existing.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_CHECKPOINT_SQL, CHECKPOINT, Timestamp.valueOf(LocalDateTime.now()));
+        } catch (DuplicateKeyException e) {
+            // another instance created it first
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
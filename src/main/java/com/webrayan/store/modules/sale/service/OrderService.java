@@ -1,24 +1,34 @@
 package com.webrayan.store.modules.sale.service;
 
+import com.webrayan.store.core.common.dto.CursorPage;
+import com.webrayan.store.core.exception.BadRequestException;
+import com.webrayan.store.core.util.KeysetCursor;
 import com.webrayan.store.modules.sale.entity.Order;
 import com.webrayan.store.modules.sale.entity.OrderItem;
-import com.webrayan.store.modules.sale.entity.CartItem;
+import com.webrayan.store.modules.sale.dto.CartLine;
 import com.webrayan.store.modules.sale.enums.OrderStatus;
 import com.webrayan.store.modules.sale.repository.OrderRepository;
-import com.webrayan.store.modules.sale.repository.CartRepository;
 import com.webrayan.store.modules.catalog.entity.Product;
 import com.webrayan.store.modules.catalog.repository.ProductRepository;
+import com.webrayan.store.modules.catalog.service.InventoryService;
 import com.webrayan.store.modules.acl.entity.User;
 import com.webrayan.store.modules.acl.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -27,9 +37,14 @@ import java.util.UUID;
 public class OrderService {
 
     private final OrderRepository orderRepository;
-    private final CartRepository cartRepository;
+    private final CartStore cartStore;
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
+    private final InventoryService inventoryService;
+    private final OrderExpiryJob orderExpiryJob;
+
+    private static final Sort NEWEST_ORDERS_FIRST = Sort.by(Sort.Order.desc("orderDate"), Sort.Order.desc("id"));
+    private static final Sort OLDEST_ORDERS_FIRST = Sort.by(Sort.Order.asc("orderDate"), Sort.Order.asc("id"));
 
     @Transactional
     public Order createOrderFromCart(Long userId, String deliveryAddress, String deliveryCity, 
@@ -38,10 +53,13 @@ public class OrderService {
                                    String customerNotes) {
         
         // دریافت آیتم‌های سبد خرید
-        List<CartItem> cartItems = cartRepository.findByUserId(userId);
+        List<CartLine> cartItems = cartStore.get(userId).getLines();
         if (cartItems.isEmpty()) {
             throw new RuntimeException("Cart is empty");
         }
+        Map<Long, Product> products = new HashMap<>();
+        productRepository.findAllById(cartItems.stream().map(CartLine::getProductId).toList())
+                .forEach(product -> products.put(product.getId(), product));
 
         // دریافت کاربر
         User customer = userRepository.findById(userId)
@@ -66,12 +84,11 @@ public class OrderService {
 
         // تبدیل آیتم‌های سبد به آیتم‌های سفارش
         BigDecimal subtotal = BigDecimal.ZERO;
-        for (CartItem cartItem : cartItems) {
-            Product product = cartItem.getProduct();
-            
-            // بررسی موجودی
-            if (product.getStockQuantity() < cartItem.getQuantity()) {
-                throw new RuntimeException("Insufficient stock for product: " + product.getName());
+        Map<Long, Integer> reservedQuantities = new HashMap<>();
+        for (CartLine cartItem : cartItems) {
+            Product product = products.get(cartItem.getProductId());
+            if (product == null) {
+                throw new RuntimeException("Product not found");
             }
 
             OrderItem orderItem = new OrderItem();
@@ -87,20 +104,23 @@ public class OrderService {
 
             order.addOrderItem(orderItem);
             subtotal = subtotal.add(cartItem.getTotalPrice());
-
-            // کاهش موجودی محصول
-            product.setStockQuantity(product.getStockQuantity() - cartItem.getQuantity());
-            productRepository.save(product);
+            reservedQuantities.merge(product.getId(), cartItem.getQuantity(), Integer::sum);
         }
 
+        // کاهش موجودی با یک به‌روزرسانی شرطی برای هر محصول؛ در صورت کمبود، کل سفارش برگشت می‌خورد
+        inventoryService.reserveStock(reservedQuantities);
+
         order.setSubtotal(subtotal);
         order.setTotalAmount(order.calculateTotal());
 
         // ذخیره سفارش
         Order savedOrder = orderRepository.save(order);
 
-        // پاک کردن سبد خرید
-        cartRepository.clearCartByUser(userId);
+        // حذف اقلام سفارش‌داده‌شده از سبد، فقط پس از commit سفارش؛ اقلامی که در این فاصله اضافه شده‌اند می‌مانند
+        afterCommit(() -> reservedQuantities.forEach((productId, quantity) ->
+                cartStore.update(userId, productId, line -> line == null || line.getQuantity() <= quantity
+                        ? null
+                        : line.withQuantity(line.getQuantity() - quantity))));
 
         return savedOrder;
     }
@@ -124,11 +144,7 @@ public class OrderService {
         }
 
         // بازگردانی موجودی محصولات
-        for (OrderItem item : order.getOrderItems()) {
-            Product product = item.getProduct();
-            product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
-            productRepository.save(product);
-        }
+        restoreProductStock(order);
 
         order.updateStatus(OrderStatus.CANCELLED, reason);
         return orderRepository.save(order);
@@ -206,14 +222,26 @@ public class OrderService {
         return orderRepository.sumTotalSpentByCustomer(customerId);
     }
 
-    @Transactional
-    public void processExpiredPendingOrders() {
-        LocalDateTime cutoffDate = LocalDateTime.now().minusHours(24); // 24 ساعت
-        List<Order> expiredOrders = orderRepository.findExpiredPendingOrders(cutoffDate);
-        
-        for (Order order : expiredOrders) {
-            cancelOrder(order.getId(), "Order expired - not confirmed within 24 hours");
+    /**
+     * لغو سفارش‌های در انتظار منقضی شده؛ هر دسته در تراکنش جداگانه (see {@link OrderExpiryJob})
+     *
+     * @return the number of orders cancelled
+     */
+    public int processExpiredPendingOrders() {
+        return orderExpiryJob.run();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     private String generateOrderNumber() {
@@ -285,22 +313,47 @@ public class OrderService {
         }
     }
 
+    /**
+     * جستجوی سفارشات ادمین با صفحه‌بندی keyset روی (orderDate, id)، جدیدترین اول
+     * Unlike {@link #findOrdersForAdmin} no COUNT query is issued and deep pages cost the same as the first one.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Order> findOrdersForAdminByCursor(String search, OrderStatus status,
+                                                        LocalDateTime startDate, LocalDateTime endDate,
+                                                        String cursor, int size) {
+        KeysetCursor position = KeysetCursor.decode(cursor);
+        if (position != null && position.getSortValue() == null) {
+            throw new BadRequestException("نشانگر صفحه نامعتبر است", cursor);
+        }
+        int pageSize = KeysetCursor.pageSize(size);
+        Slice<Order> slice;
+        if (position == null) {
+            slice = orderRepository.findSliceWithFilters(status, startDate, endDate, search,
+                    PageRequest.of(0, pageSize, NEWEST_ORDERS_FIRST));
+        } else if (position.isBackward()) {
+            slice = orderRepository.findSliceWithFiltersNewerThan(status, startDate, endDate, search,
+                    position.getSortValue(), position.getId(), PageRequest.of(0, pageSize, OLDEST_ORDERS_FIRST));
+        } else {
+            slice = orderRepository.findSliceWithFiltersOlderThan(status, startDate, endDate, search,
+                    position.getSortValue(), position.getId(), PageRequest.of(0, pageSize, NEWEST_ORDERS_FIRST));
+        }
+        return CursorPage.of(slice, position, Order::getOrderDate, Order::getId);
+    }
+
     /**
      * دریافت سفارش با جزئیات کامل برای نمایش
+     * A fixed number of selects however many items the order has: the order with customer,
+     * shipping and items with their products through {@link Order#DETAIL_GRAPH}, then one select
+     * each for payments and status histories.
      */
     @Transactional(readOnly = true)
     public Order getOrderWithDetails(Long id) {
-        Order order = orderRepository.findById(id)
+        Order order = orderRepository.findDetailById(id)
                 .orElseThrow(() -> new RuntimeException("سفارش یافت نشد"));
-        
-        // Force loading of lazy collections
-        order.getOrderItems().size();
+
         order.getPayments().size();
         order.getStatusHistories().size();
-        if (order.getShipping() != null) {
-            order.getShipping().getId();
-        }
-        
+
         return order;
     }
 
@@ -350,11 +403,11 @@ public class OrderService {
      * بازگردانی موجودی محصولات هنگام لغو سفارش
      */
     private void restoreProductStock(Order order) {
+        Map<Long, Integer> releasedQuantities = new HashMap<>();
         for (OrderItem item : order.getOrderItems()) {
-            Product product = item.getProduct();
-            product.setStockQuantity(product.getStockQuantity() + item.getQuantity());
-            productRepository.save(product);
+            releasedQuantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
         }
+        inventoryService.releaseStock(releasedQuantities);
     }
 
     /**
@@ -0,0 +1,62 @@
+package com.webrayan.store.modules.search.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * تنظیمات جستجوی محصولات (app.search.*)
+ * Defaults mirror search-configuration.properties so the index behaves the same
+ * whether or not that file is on the active configuration path.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.search")
+public class SearchProperties {
+
+    private boolean enabled = true;
+
+    private int maxPageSize = 100;
+
+    private int maxTotalResults = 10000;
+
+    private int maxKeywordLength = 200;
+
+    private int minKeywordLength = 2;
+
+    /**
+     * Maximum number of indexed terms a trailing query prefix may expand to
+     */
+    private int maxPrefixExpansions = 50;
+
+    private Scoring scoring = new Scoring();
+
+    @Data
+    public static class Scoring {
+
+        /**
+         * Weight of matches in name and SKU
+         */
+        private double titleWeight = 2.0;
+
+        /**
+         * Weight of matches in short description, description and searchable attributes
+         */
+        private double descriptionWeight = 1.0;
+
+        /**
+         * Boost for recently created products
+         */
+        private double dateWeight = 0.5;
+
+        /**
+         * Boost for frequently viewed / sold products
+         */
+        private double popularityWeight = 0.3;
+
+        /**
+         * Boost for discounted products
+         */
+        private double priceWeight = 0.2;
+    }
+}
@@ -0,0 +1,27 @@
+package com.webrayan.store.modules.search.dto;
+
+import com.webrayan.store.modules.catalog.enums.AttributeType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * فیلتر یک ویژگی دسته‌بندی همراه با تعداد محصولات هر مقدار
+ * Numeric attributes report min/max and equal-width ranges instead of distinct values.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttributeFacet {
+    private Long attributeId;
+    private String name;
+    private AttributeType type;
+    private List<FacetValueCount> values = new ArrayList<>();
+    private BigDecimal min;
+    private BigDecimal max;
+    private List<FacetRangeCount> ranges = new ArrayList<>();
+}
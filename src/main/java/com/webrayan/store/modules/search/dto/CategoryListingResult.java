@@ -0,0 +1,20 @@
+package com.webrayan.store.modules.search.dto;
+
+import com.webrayan.store.modules.catalog.dto.ProductSummary;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+/**
+ * لیست محصولات یک دسته‌بندی به همراه شمارش فیلترها
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategoryListingResult {
+    private Page<ProductSummary> products;
+    private List<AttributeFacet> facets;
+}
@@ -0,0 +1,19 @@
+package com.webrayan.store.modules.search.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * تعداد محصولات در یک بازه عددی (from شامل، to شامل فقط برای آخرین بازه)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetRangeCount {
+    private BigDecimal from;
+    private BigDecimal to;
+    private long count;
+}
@@ -0,0 +1,17 @@
+package com.webrayan.store.modules.search.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * تعداد محصولات برای یک مقدار ویژگی
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetValueCount {
+    private String value;
+    private long count;
+    private boolean selected;
+}
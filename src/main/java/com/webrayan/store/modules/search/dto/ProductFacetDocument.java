@@ -0,0 +1,32 @@
+package com.webrayan.store.modules.search.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshot of a product's filterable attribute values fed into the facet index
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFacetDocument {
+
+    private Long productId;
+    private Long categoryId;
+    private boolean visible;
+    private List<FacetValue> values = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class FacetValue {
+        private Long attributeId;
+        private String value;
+        private BigDecimal numericValue;
+    }
+}
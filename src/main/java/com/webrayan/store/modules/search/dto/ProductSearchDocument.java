@@ -0,0 +1,35 @@
+package com.webrayan.store.modules.search.dto;
+
+import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snapshot of the product fields fed into the in-memory search index
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchDocument {
+
+    private Long productId;
+    private Long categoryId;
+    private String name;
+    private String shortDescription;
+    private String description;
+    private String sku;
+    private List<String> attributeValues = new ArrayList<>();
+    private ProductStatus status;
+    private Boolean isActive;
+    private BigDecimal price;
+    private BigDecimal discountPrice;
+    private Long viewsCount;
+    private Long salesCount;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,58 @@
+package com.webrayan.store.modules.search.service;
+
+import com.webrayan.store.modules.catalog.enums.AttributeType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * نرمال‌سازی مقدار ذخیره شده یک ویژگی به مقادیر قابل فیلتر
+ */
+final class FacetValues {
+
+    private FacetValues() {
+    }
+
+    static List<String> split(AttributeType type, String rawValue) {
+        List<String> result = new ArrayList<>();
+        if (rawValue == null || rawValue.isBlank()) {
+            return result;
+        }
+        String value = rawValue.trim();
+        if (type == AttributeType.BOOLEAN || type == AttributeType.CHECKBOX) {
+            result.add(Boolean.toString(Boolean.parseBoolean(value) || "1".equals(value)));
+            return result;
+        }
+        if (type == AttributeType.MULTI_SELECT) {
+            // مقدار چندگانه به صورت "a,b" یا ["a","b"] ذخیره می‌شود
+            for (String part : value.replaceAll("[\\[\\]\"]", "").split(",")) {
+                String trimmed = part.trim();
+                if (!trimmed.isEmpty() && !result.contains(trimmed)) {
+                    result.add(trimmed);
+                }
+            }
+            return result;
+        }
+        result.add(type == AttributeType.COLOR ? value.toLowerCase(Locale.ROOT) : value);
+        return result;
+    }
+
+    /**
+     * numeric_value در صورت وجود، وگرنه تلاش برای تبدیل مقدار متنی
+     */
+    static BigDecimal number(BigDecimal numericValue, String rawValue) {
+        if (numericValue != null) {
+            return numericValue;
+        }
+        if (rawValue == null || rawValue.isBlank()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(rawValue.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
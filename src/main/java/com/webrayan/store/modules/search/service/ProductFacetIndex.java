@@ -0,0 +1,397 @@
+package com.webrayan.store.modules.search.service;
+
+import com.webrayan.store.modules.catalog.enums.AttributeType;
+import com.webrayan.store.modules.search.dto.AttributeFacet;
+import com.webrayan.store.modules.search.dto.FacetRangeCount;
+import com.webrayan.store.modules.search.dto.FacetValueCount;
+import com.webrayan.store.modules.search.dto.ProductFacetDocument;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ایندکس فیلترهای دسته‌بندی (faceted navigation)
+ * <p>
+ * Every category numbers its products with dense ordinals and keeps one {@link BitSet} per
+ * filterable attribute value (and per distinct numeric value for NUMBER/DECIMAL attributes).
+ * Filtering a listing and counting the remaining options is then a handful of bitmap
+ * AND/OR operations instead of one JOIN per attribute on catalog_product_attribute_values.
+ */
+@Component
+public class ProductFacetIndex {
+
+    private static final int NUMERIC_RANGE_BUCKETS = 5;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Long, CategoryFacets> categories = new HashMap<>();
+    private Map<Long, Long> categoryByProduct = new HashMap<>();
+    private Map<Long, List<FacetAttribute>> attributesByCategory = new HashMap<>();
+
+    /**
+     * Replace the filterable attribute definitions and all product documents at once
+     */
+    public void replaceAll(Collection<FacetAttribute> attributes, Collection<ProductFacetDocument> documents) {
+        Map<Long, List<FacetAttribute>> newAttributes = new HashMap<>();
+        for (FacetAttribute attribute : attributes) {
+            newAttributes.computeIfAbsent(attribute.getCategoryId(), id -> new ArrayList<>()).add(attribute);
+        }
+        newAttributes.values().forEach(list -> list.sort(Comparator.comparing(FacetAttribute::getSortOrder)));
+
+        Map<Long, CategoryFacets> newCategories = new HashMap<>();
+        Map<Long, Long> newCategoryByProduct = new HashMap<>();
+        for (ProductFacetDocument document : documents) {
+            addInternal(document, newCategories, newCategoryByProduct, newAttributes);
+        }
+
+        lock.writeLock().lock();
+        try {
+            this.attributesByCategory = newAttributes;
+            this.categories = newCategories;
+            this.categoryByProduct = newCategoryByProduct;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void index(ProductFacetDocument document) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(document.getProductId());
+            addInternal(document, categories, categoryByProduct, attributesByCategory);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * فیلتر محصولات یک دسته‌بندی و محاسبه تعداد هر گزینه
+     * Counts for an attribute ignore that attribute's own selection (disjunctive faceting),
+     * so choosing "red" still shows how many products are "blue".
+     *
+     * @param valueFilters attributeId -> accepted values (OR within an attribute)
+     * @param rangeFilters attributeId -> numeric range
+     */
+    public FacetQueryResult query(Long categoryId,
+                                  Map<Long, Set<String>> valueFilters,
+                                  Map<Long, NumericRange> rangeFilters) {
+        lock.readLock().lock();
+        try {
+            CategoryFacets facets = categories.get(categoryId);
+            List<FacetAttribute> attributes = attributesByCategory.getOrDefault(categoryId, List.of());
+            if (facets == null) {
+                return new FacetQueryResult(List.of(), emptyFacets(attributes, valueFilters));
+            }
+
+            Map<Long, BitSet> selections = new HashMap<>();
+            for (FacetAttribute attribute : attributes) {
+                BitSet selection = attribute.isNumeric()
+                        ? facets.rangeBitmap(attribute.getId(), rangeFilters.get(attribute.getId()))
+                        : facets.valuesBitmap(attribute.getId(), valueFilters.get(attribute.getId()));
+                if (selection != null) {
+                    selections.put(attribute.getId(), selection);
+                }
+            }
+
+            BitSet matching = (BitSet) facets.visible.clone();
+            selections.values().forEach(matching::and);
+
+            List<AttributeFacet> result = new ArrayList<>(attributes.size());
+            BitSet scratch = new BitSet();
+            for (FacetAttribute attribute : attributes) {
+                BitSet others = (BitSet) facets.visible.clone();
+                selections.forEach((attributeId, selection) -> {
+                    if (!attributeId.equals(attribute.getId())) {
+                        others.and(selection);
+                    }
+                });
+                result.add(attribute.isNumeric()
+                        ? numericFacet(attribute, facets, others, scratch)
+                        : valueFacet(attribute, facets, others, scratch, valueFilters.get(attribute.getId())));
+            }
+
+            List<Long> productIds = new ArrayList<>(matching.cardinality());
+            for (int ordinal = matching.nextSetBit(0); ordinal >= 0; ordinal = matching.nextSetBit(ordinal + 1)) {
+                productIds.add(facets.productIdByOrdinal.get(ordinal));
+            }
+            productIds.sort(Comparator.reverseOrder());
+            return new FacetQueryResult(productIds, result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private AttributeFacet valueFacet(FacetAttribute attribute, CategoryFacets facets, BitSet others,
+                                      BitSet scratch, Set<String> selectedValues) {
+        List<FacetValueCount> counts = new ArrayList<>();
+        for (Map.Entry<String, BitSet> entry : facets.values.getOrDefault(attribute.getId(), Map.of()).entrySet()) {
+            long count = intersectionCount(others, entry.getValue(), scratch);
+            boolean selected = selectedValues != null && selectedValues.contains(entry.getKey());
+            if (count > 0 || selected) {
+                counts.add(new FacetValueCount(entry.getKey(), count, selected));
+            }
+        }
+        counts.sort(Comparator.comparingLong(FacetValueCount::getCount).reversed()
+                .thenComparing(FacetValueCount::getValue));
+        return new AttributeFacet(attribute.getId(), attribute.getName(), attribute.getType(),
+                counts, null, null, new ArrayList<>());
+    }
+
+    private AttributeFacet numericFacet(FacetAttribute attribute, CategoryFacets facets, BitSet others, BitSet scratch) {
+        NavigableMap<BigDecimal, BitSet> numbers = facets.numbers.getOrDefault(attribute.getId(), new TreeMap<>());
+        BigDecimal min = null;
+        BigDecimal max = null;
+        for (Map.Entry<BigDecimal, BitSet> entry : numbers.entrySet()) {
+            if (others.intersects(entry.getValue())) {
+                if (min == null) {
+                    min = entry.getKey();
+                }
+                max = entry.getKey();
+            }
+        }
+
+        List<FacetRangeCount> ranges = new ArrayList<>();
+        if (min != null) {
+            if (min.compareTo(max) == 0) {
+                ranges.add(new FacetRangeCount(min, max, rangeCount(numbers, min, max, true, others, scratch)));
+            } else {
+                // عرض بازه یک رقم دقیق‌تر از خود مقادیر؛ مرز بازه‌ها هیچ‌گاه از max جلو نمی‌زند
+                int scale = Math.max(4, Math.max(min.scale(), max.scale()) + 1);
+                BigDecimal width = max.subtract(min).divide(BigDecimal.valueOf(NUMERIC_RANGE_BUCKETS), scale, RoundingMode.CEILING);
+                BigDecimal from = min;
+                for (int i = 0; i < NUMERIC_RANGE_BUCKETS; i++) {
+                    boolean last = i == NUMERIC_RANGE_BUCKETS - 1;
+                    BigDecimal to = last ? max : from.add(width).min(max);
+                    ranges.add(new FacetRangeCount(from, to, rangeCount(numbers, from, to, last, others, scratch)));
+                    from = to;
+                }
+            }
+        }
+        return new AttributeFacet(attribute.getId(), attribute.getName(), attribute.getType(),
+                new ArrayList<>(), min, max, ranges);
+    }
+
+    private static long rangeCount(NavigableMap<BigDecimal, BitSet> numbers, BigDecimal from, BigDecimal to,
+                                   boolean inclusiveTo, BitSet others, BitSet scratch) {
+        scratch.clear();
+        numbers.subMap(from, true, to, inclusiveTo).values().forEach(scratch::or);
+        scratch.and(others);
+        return scratch.cardinality();
+    }
+
+    private static long intersectionCount(BitSet left, BitSet right, BitSet scratch) {
+        scratch.clear();
+        scratch.or(left);
+        scratch.and(right);
+        return scratch.cardinality();
+    }
+
+    private static List<AttributeFacet> emptyFacets(List<FacetAttribute> attributes, Map<Long, Set<String>> valueFilters) {
+        List<AttributeFacet> result = new ArrayList<>(attributes.size());
+        for (FacetAttribute attribute : attributes) {
+            List<FacetValueCount> selected = new ArrayList<>();
+            valueFilters.getOrDefault(attribute.getId(), Set.of())
+                    .forEach(value -> selected.add(new FacetValueCount(value, 0, true)));
+            result.add(new AttributeFacet(attribute.getId(), attribute.getName(), attribute.getType(),
+                    selected, null, null, new ArrayList<>()));
+        }
+        return result;
+    }
+
+    private void removeInternal(Long productId) {
+        Long categoryId = categoryByProduct.remove(productId);
+        if (categoryId == null) {
+            return;
+        }
+        CategoryFacets facets = categories.get(categoryId);
+        if (facets != null) {
+            facets.remove(productId);
+        }
+    }
+
+    private static void addInternal(ProductFacetDocument document,
+                                    Map<Long, CategoryFacets> targetCategories,
+                                    Map<Long, Long> targetCategoryByProduct,
+                                    Map<Long, List<FacetAttribute>> attributes) {
+        if (document.getCategoryId() == null) {
+            return;
+        }
+        Map<Long, FacetAttribute> categoryAttributes = new HashMap<>();
+        for (FacetAttribute attribute : attributes.getOrDefault(document.getCategoryId(), List.of())) {
+            categoryAttributes.put(attribute.getId(), attribute);
+        }
+        targetCategories.computeIfAbsent(document.getCategoryId(), id -> new CategoryFacets())
+                .add(document, categoryAttributes);
+        targetCategoryByProduct.put(document.getProductId(), document.getCategoryId());
+    }
+
+    /**
+     * Bitmaps of one category; ordinals of removed products are reused
+     */
+    private static final class CategoryFacets {
+
+        private final Map<Long, Integer> ordinalByProductId = new HashMap<>();
+        private final List<Long> productIdByOrdinal = new ArrayList<>();
+        private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+        private final Map<Integer, List<Runnable>> cleanupByOrdinal = new HashMap<>();
+        private final BitSet visible = new BitSet();
+        private final Map<Long, Map<String, BitSet>> values = new HashMap<>();
+        private final Map<Long, NavigableMap<BigDecimal, BitSet>> numbers = new HashMap<>();
+
+        void add(ProductFacetDocument document, Map<Long, FacetAttribute> attributes) {
+            int ordinal;
+            if (freeOrdinals.isEmpty()) {
+                ordinal = productIdByOrdinal.size();
+                productIdByOrdinal.add(document.getProductId());
+            } else {
+                ordinal = freeOrdinals.pop();
+                productIdByOrdinal.set(ordinal, document.getProductId());
+            }
+            ordinalByProductId.put(document.getProductId(), ordinal);
+            visible.set(ordinal, document.isVisible());
+
+            List<Runnable> cleanup = new ArrayList<>();
+            for (ProductFacetDocument.FacetValue facetValue : document.getValues()) {
+                FacetAttribute attribute = attributes.get(facetValue.getAttributeId());
+                if (attribute == null) {
+                    continue;
+                }
+                if (attribute.isNumeric()) {
+                    BigDecimal number = FacetValues.number(facetValue.getNumericValue(), facetValue.getValue());
+                    if (number != null) {
+                        BigDecimal key = number.stripTrailingZeros();
+                        NavigableMap<BigDecimal, BitSet> attributeNumbers =
+                                numbers.computeIfAbsent(attribute.getId(), id -> new TreeMap<>());
+                        attributeNumbers.computeIfAbsent(key, k -> new BitSet()).set(ordinal);
+                        cleanup.add(() -> clearBit(attributeNumbers, key, ordinal));
+                    }
+                } else {
+                    for (String value : FacetValues.split(attribute.getType(), facetValue.getValue())) {
+                        Map<String, BitSet> attributeValues = values.computeIfAbsent(attribute.getId(), id -> new HashMap<>());
+                        attributeValues.computeIfAbsent(value, v -> new BitSet()).set(ordinal);
+                        cleanup.add(() -> clearBit(attributeValues, value, ordinal));
+                    }
+                }
+            }
+            cleanupByOrdinal.put(ordinal, cleanup);
+        }
+
+        void remove(Long productId) {
+            Integer ordinal = ordinalByProductId.remove(productId);
+            if (ordinal == null) {
+                return;
+            }
+            visible.clear(ordinal);
+            List<Runnable> cleanup = cleanupByOrdinal.remove(ordinal);
+            if (cleanup != null) {
+                cleanup.forEach(Runnable::run);
+            }
+            productIdByOrdinal.set(ordinal, null);
+            freeOrdinals.push(ordinal);
+        }
+
+        BitSet valuesBitmap(Long attributeId, Set<String> selectedValues) {
+            if (selectedValues == null || selectedValues.isEmpty()) {
+                return null;
+            }
+            BitSet union = new BitSet();
+            Map<String, BitSet> attributeValues = values.getOrDefault(attributeId, Map.of());
+            for (String value : selectedValues) {
+                BitSet bitmap = attributeValues.get(value);
+                if (bitmap != null) {
+                    union.or(bitmap);
+                }
+            }
+            return union;
+        }
+
+        BitSet rangeBitmap(Long attributeId, NumericRange range) {
+            if (range == null || (range.getMin() == null && range.getMax() == null)) {
+                return null;
+            }
+            NavigableMap<BigDecimal, BitSet> attributeNumbers = numbers.getOrDefault(attributeId, new TreeMap<>());
+            NavigableMap<BigDecimal, BitSet> inRange = attributeNumbers;
+            if (range.getMin() != null) {
+                inRange = inRange.tailMap(range.getMin(), true);
+            }
+            if (range.getMax() != null) {
+                inRange = inRange.headMap(range.getMax(), true);
+            }
+            BitSet union = new BitSet();
+            inRange.values().forEach(union::or);
+            return union;
+        }
+
+        private static <K> void clearBit(Map<K, BitSet> bitmaps, K key, int ordinal) {
+            BitSet bitmap = bitmaps.get(key);
+            if (bitmap != null) {
+                bitmap.clear(ordinal);
+                if (bitmap.isEmpty()) {
+                    bitmaps.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Filterable attribute definition cached with the index
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class FacetAttribute {
+        private final Long id;
+        private final Long categoryId;
+        private final String name;
+        private final AttributeType type;
+        private final Integer sortOrder;
+
+        public boolean isNumeric() {
+            return type == AttributeType.NUMBER || type == AttributeType.DECIMAL;
+        }
+    }
+
+    /**
+     * Inclusive numeric range; a null bound is open
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class NumericRange {
+        private final BigDecimal min;
+        private final BigDecimal max;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class FacetQueryResult {
+        /**
+         * Matching product ids, newest (highest id) first
+         */
+        private final List<Long> productIds;
+        private final List<AttributeFacet> facets;
+    }
+}
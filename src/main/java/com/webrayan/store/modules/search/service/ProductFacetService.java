@@ -0,0 +1,135 @@
+package com.webrayan.store.modules.search.service;
+
+import com.webrayan.store.modules.catalog.entity.Category;
+import com.webrayan.store.modules.catalog.dto.ProductSummary;
+import com.webrayan.store.modules.catalog.service.ProductSummaryService;
+import com.webrayan.store.modules.search.config.SearchProperties;
+import com.webrayan.store.modules.search.dto.CategoryListingResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * لیست محصولات دسته‌بندی با فیلتر ویژگی‌ها و شمارش گزینه‌ها
+ * Filtering and counting happen in {@link ProductFacetIndex}; only the requested page is read from the database.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ProductFacetService {
+
+    public static final String VALUE_FILTER_PREFIX = "attr_";
+    public static final String RANGE_FILTER_PREFIX = "range_";
+
+    private final ProductFacetIndex productFacetIndex;
+    private final ProductSummaryService productSummaryService;
+    private final SearchProperties searchProperties;
+
+    public CategoryListingResult getCategoryListing(Category category,
+                                                    Map<Long, Set<String>> valueFilters,
+                                                    Map<Long, ProductFacetIndex.NumericRange> rangeFilters,
+                                                    Pageable pageable) {
+        Pageable page = capPageSize(pageable);
+        if (!searchProperties.isEnabled()) {
+            Page<ProductSummary> products = productSummaryService.getProductsByCategory(category.getId(), page);
+            return new CategoryListingResult(products, new ArrayList<>());
+        }
+
+        ProductFacetIndex.FacetQueryResult result = productFacetIndex.query(category.getId(), valueFilters, rangeFilters);
+        List<Long> ids = result.getProductIds();
+        if (ids.isEmpty()) {
+            return new CategoryListingResult(Page.empty(page), result.getFacets());
+        }
+        if (page.getSort().isSorted()) {
+            Page<ProductSummary> products = productSummaryService.getCategoryPage(category.getId(), new HashSet<>(ids), page);
+            return new CategoryListingResult(products, result.getFacets());
+        }
+
+        // بدون مرتب‌سازی صریح: جدیدترین محصولات اول، فقط شناسه‌های همین صفحه بارگذاری می‌شوند
+        if (page.getOffset() >= ids.size()) {
+            return new CategoryListingResult(new PageImpl<>(List.of(), page, ids.size()), result.getFacets());
+        }
+        int end = (int) Math.min(page.getOffset() + page.getPageSize(), ids.size());
+        List<ProductSummary> products = productSummaryService.getSummariesInOrder(ids.subList((int) page.getOffset(), end));
+        return new CategoryListingResult(new PageImpl<>(products, page, ids.size()), result.getFacets());
+    }
+
+    /**
+     * تبدیل پارامترهای درخواست به فیلتر: attr_{id}=value (قابل تکرار) و range_{id}=min:max
+     */
+    public static Map<Long, Set<String>> parseValueFilters(Map<String, List<String>> parameters) {
+        Map<Long, Set<String>> filters = new HashMap<>();
+        parameters.forEach((name, values) -> {
+            Long attributeId = attributeId(name, VALUE_FILTER_PREFIX);
+            if (attributeId == null || values == null) {
+                return;
+            }
+            Set<String> accepted = filters.computeIfAbsent(attributeId, id -> new LinkedHashSet<>());
+            for (String value : values) {
+                if (value != null && !value.isBlank()) {
+                    accepted.add(value.trim());
+                }
+            }
+        });
+        filters.values().removeIf(Set::isEmpty);
+        return filters;
+    }
+
+    public static Map<Long, ProductFacetIndex.NumericRange> parseRangeFilters(Map<String, List<String>> parameters) {
+        Map<Long, ProductFacetIndex.NumericRange> filters = new HashMap<>();
+        parameters.forEach((name, values) -> {
+            Long attributeId = attributeId(name, RANGE_FILTER_PREFIX);
+            if (attributeId == null || values == null || values.isEmpty()) {
+                return;
+            }
+            String[] bounds = values.get(0).split(":", -1);
+            if (bounds.length != 2) {
+                throw new IllegalArgumentException("Invalid range filter for attribute " + attributeId + ", expected min:max");
+            }
+            filters.put(attributeId, new ProductFacetIndex.NumericRange(bound(bounds[0]), bound(bounds[1])));
+        });
+        return filters;
+    }
+
+    private static Long attributeId(String parameterName, String prefix) {
+        if (!parameterName.startsWith(prefix)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(parameterName.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static BigDecimal bound(String value) {
+        if (value.isBlank()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid numeric range bound: " + value);
+        }
+    }
+
+    private Pageable capPageSize(Pageable pageable) {
+        if (pageable.getPageSize() <= searchProperties.getMaxPageSize()) {
+            return pageable;
+        }
+        return PageRequest.of(pageable.getPageNumber(), searchProperties.getMaxPageSize(), pageable.getSort());
+    }
+}
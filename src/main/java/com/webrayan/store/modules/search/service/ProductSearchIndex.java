@@ -0,0 +1,350 @@
+package com.webrayan.store.modules.search.service;
+
+import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import com.webrayan.store.modules.search.config.SearchProperties;
+import com.webrayan.store.modules.search.dto.ProductSearchDocument;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ایندکس معکوس درون‌حافظه‌ای برای جستجوی محصولات
+ * <p>
+ * Postings map each normalized term to the products containing it together with a
+ * pre-weighted term frequency (name/SKU use the title weight, descriptions and searchable
+ * attribute values use the description weight). A query only touches the posting lists of
+ * its own terms, so latency depends on how many products match, not on catalog size.
+ * <p>
+ * Writers (product create/update/delete) are rare compared to searches, so a single
+ * read/write lock keeps the postings and the document table consistent with each other.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductSearchIndex {
+
+    private static final double PREFIX_MATCH_FACTOR = 0.5;
+    private static final double RECENCY_HALF_LIFE_DAYS = 30.0;
+
+    private final SearchProperties searchProperties;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private Map<Long, IndexedProduct> documents = new HashMap<>();
+
+    /**
+     * Add or replace a single product
+     */
+    public void index(ProductSearchDocument document) {
+        IndexedProduct indexed = analyze(document);
+        lock.writeLock().lock();
+        try {
+            removeInternal(document.getProductId());
+            addInternal(indexed, postings, documents);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replace the whole index; the new structures are built off-lock and swapped in at once
+     */
+    public void replaceAll(Collection<ProductSearchDocument> allDocuments) {
+        NavigableMap<String, Map<Long, Float>> newPostings = new TreeMap<>();
+        Map<Long, IndexedProduct> newDocuments = new HashMap<>(Math.max(16, allDocuments.size() * 2));
+        for (ProductSearchDocument document : allDocuments) {
+            addInternal(analyze(document), newPostings, newDocuments);
+        }
+
+        lock.writeLock().lock();
+        try {
+            this.postings = newPostings;
+            this.documents = newDocuments;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranked search; every query token must match (exactly or, with a lower weight, as a prefix)
+     *
+     * @param query   raw user keyword
+     * @param filter  visibility / status restriction
+     * @param limit   maximum number of hits to return (the total match count is always exact)
+     */
+    public SearchResult search(String query, SearchFilter filter, int limit) {
+        List<String> queryTokens = SearchTokenizer.tokenize(query);
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return new SearchResult(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String token : queryTokens) {
+                Map<Long, Double> tokenScores = scoreToken(token);
+                if (tokenScores.isEmpty()) {
+                    return new SearchResult(List.of(), 0);
+                }
+                scores = scores == null ? tokenScores : intersect(scores, tokenScores);
+                if (scores.isEmpty()) {
+                    return new SearchResult(List.of(), 0);
+                }
+            }
+
+            long todayEpochDay = LocalDate.now().toEpochDay();
+            PriorityQueue<SearchHit> topHits = new PriorityQueue<>(Comparator.comparingDouble(SearchHit::getScore));
+            int total = 0;
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                IndexedProduct product = documents.get(entry.getKey());
+                if (product == null || !filter.accepts(product)) {
+                    continue;
+                }
+                total++;
+                double score = entry.getValue() + staticBoost(product, todayEpochDay);
+                if (topHits.size() < limit) {
+                    topHits.add(new SearchHit(product.productId, score));
+                } else if (topHits.peek().getScore() < score) {
+                    topHits.poll();
+                    topHits.add(new SearchHit(product.productId, score));
+                }
+            }
+
+            List<SearchHit> hits = new ArrayList<>(topHits);
+            hits.sort(Comparator.comparingDouble(SearchHit::getScore).reversed()
+                    .thenComparing(SearchHit::getProductId, Comparator.reverseOrder()));
+            return new SearchResult(hits, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Double> scoreToken(String token) {
+        Map<Long, Double> tokenScores = new HashMap<>();
+        int documentCount = Math.max(1, documents.size());
+
+        Map<Long, Float> exact = postings.get(token);
+        if (exact != null) {
+            accumulate(tokenScores, exact, idf(documentCount, exact.size()));
+        }
+
+        int expansions = 0;
+        for (Map.Entry<String, Map<Long, Float>> entry : postings.subMap(token, false, token + Character.MAX_VALUE, false).entrySet()) {
+            if (++expansions > searchProperties.getMaxPrefixExpansions()) {
+                break;
+            }
+            accumulate(tokenScores, entry.getValue(), idf(documentCount, entry.getValue().size()) * PREFIX_MATCH_FACTOR);
+        }
+        return tokenScores;
+    }
+
+    private static void accumulate(Map<Long, Double> target, Map<Long, Float> postingList, double idf) {
+        for (Map.Entry<Long, Float> posting : postingList.entrySet()) {
+            target.merge(posting.getKey(), posting.getValue() * idf, Math::max);
+        }
+    }
+
+    private static Map<Long, Double> intersect(Map<Long, Double> left, Map<Long, Double> right) {
+        Map<Long, Double> smaller = left.size() <= right.size() ? left : right;
+        Map<Long, Double> larger = smaller == left ? right : left;
+        Map<Long, Double> result = new HashMap<>();
+        for (Map.Entry<Long, Double> entry : smaller.entrySet()) {
+            Double other = larger.get(entry.getKey());
+            if (other != null) {
+                result.put(entry.getKey(), entry.getValue() + other);
+            }
+        }
+        return result;
+    }
+
+    private static double idf(int documentCount, int documentFrequency) {
+        return Math.log(1.0 + (double) documentCount / documentFrequency);
+    }
+
+    private double staticBoost(IndexedProduct product, long todayEpochDay) {
+        SearchProperties.Scoring scoring = searchProperties.getScoring();
+        double recency = 0;
+        if (product.createdEpochDay != null) {
+            long ageDays = Math.max(0, todayEpochDay - product.createdEpochDay);
+            recency = Math.pow(0.5, ageDays / RECENCY_HALF_LIFE_DAYS);
+        }
+        return scoring.getDateWeight() * recency
+                + scoring.getPopularityWeight() * product.popularity
+                + scoring.getPriceWeight() * product.discountRatio;
+    }
+
+    private IndexedProduct analyze(ProductSearchDocument document) {
+        SearchProperties.Scoring scoring = searchProperties.getScoring();
+        Map<String, Float> termWeights = new HashMap<>();
+
+        addField(termWeights, document.getName(), scoring.getTitleWeight());
+        addField(termWeights, document.getSku(), scoring.getTitleWeight());
+        String compactSku = SearchTokenizer.compact(document.getSku());
+        if (!compactSku.isEmpty()) {
+            termWeights.merge(compactSku, (float) scoring.getTitleWeight(), Float::sum);
+        }
+        addField(termWeights, document.getShortDescription(), scoring.getDescriptionWeight());
+        addField(termWeights, document.getDescription(), scoring.getDescriptionWeight());
+        if (document.getAttributeValues() != null) {
+            for (String value : document.getAttributeValues()) {
+                addField(termWeights, value, scoring.getDescriptionWeight());
+            }
+        }
+
+        long views = document.getViewsCount() != null ? document.getViewsCount() : 0L;
+        long sales = document.getSalesCount() != null ? document.getSalesCount() : 0L;
+        double popularity = 1.0 - 1.0 / (1.0 + Math.log1p(views + sales));
+
+        return new IndexedProduct(
+                document.getProductId(),
+                document.getCategoryId(),
+                document.getStatus(),
+                Boolean.TRUE.equals(document.getIsActive()),
+                document.getCreatedAt() != null
+                        ? document.getCreatedAt().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay()
+                        : null,
+                popularity,
+                discountRatio(document.getPrice(), document.getDiscountPrice()),
+                termWeights);
+    }
+
+    /**
+     * Per-field term frequency is dampened logarithmically before weighting
+     */
+    private static void addField(Map<String, Float> termWeights, String text, double fieldWeight) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : SearchTokenizer.tokenize(text)) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            float weight = (float) (fieldWeight * (1.0 + Math.log(entry.getValue())));
+            termWeights.merge(entry.getKey(), weight, Float::sum);
+        }
+    }
+
+    private static double discountRatio(BigDecimal price, BigDecimal discountPrice) {
+        if (price == null || discountPrice == null || price.signum() <= 0 || discountPrice.compareTo(price) >= 0) {
+            return 0;
+        }
+        return price.subtract(discountPrice).divide(price, 4, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    private void removeInternal(Long productId) {
+        IndexedProduct existing = documents.remove(productId);
+        if (existing == null) {
+            return;
+        }
+        for (String term : existing.termWeights.keySet()) {
+            Map<Long, Float> postingList = postings.get(term);
+            if (postingList != null) {
+                postingList.remove(productId);
+                if (postingList.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private static void addInternal(IndexedProduct product,
+                                    NavigableMap<String, Map<Long, Float>> targetPostings,
+                                    Map<Long, IndexedProduct> targetDocuments) {
+        targetDocuments.put(product.productId, product);
+        for (Map.Entry<String, Float> entry : product.termWeights.entrySet()) {
+            targetPostings.computeIfAbsent(entry.getKey(), term -> new HashMap<>())
+                    .put(product.productId, entry.getValue());
+        }
+    }
+
+    /**
+     * Analyzed, immutable view of one product inside the index
+     */
+    @RequiredArgsConstructor
+    static final class IndexedProduct {
+        final Long productId;
+        final Long categoryId;
+        final ProductStatus status;
+        final boolean active;
+        final Long createdEpochDay;
+        final double popularity;
+        final double discountRatio;
+        final Map<String, Float> termWeights;
+    }
+
+    /**
+     * Restriction applied to matches before ranking
+     */
+    @RequiredArgsConstructor
+    public static class SearchFilter {
+
+        private final boolean publishedOnly;
+        private final ProductStatus status;
+
+        /**
+         * Storefront search: active and published products only
+         */
+        public static SearchFilter storefront() {
+            return new SearchFilter(true, null);
+        }
+
+        /**
+         * Admin search: every product, optionally restricted to one status
+         */
+        public static SearchFilter admin(ProductStatus status) {
+            return new SearchFilter(false, status);
+        }
+
+        boolean accepts(IndexedProduct product) {
+            if (publishedOnly && (!product.active || product.status != ProductStatus.PUBLISHED)) {
+                return false;
+            }
+            return status == null || status == product.status;
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class SearchHit {
+        private final Long productId;
+        private final double score;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class SearchResult {
+        private final List<SearchHit> hits;
+        private final int totalMatches;
+    }
+}
@@ -0,0 +1,236 @@
+package com.webrayan.store.modules.search.service;
+
+import com.webrayan.store.modules.catalog.entity.CategoryAttribute;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import com.webrayan.store.modules.catalog.event.CategoryAttributeChangedEvent;
+import com.webrayan.store.modules.catalog.event.ProductChangedEvent;
+import com.webrayan.store.modules.catalog.repository.ProductAttributeValueRepository;
+import com.webrayan.store.modules.catalog.repository.ProductRepository;
+import com.webrayan.store.modules.catalog.service.CategoryAttributeService;
+import com.webrayan.store.modules.search.config.SearchProperties;
+import com.webrayan.store.modules.search.dto.ProductFacetDocument;
+import com.webrayan.store.modules.search.dto.ProductSearchDocument;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * همگام‌سازی ایندکس جستجو و ایندکس فیلترها با جدول محصولات
+ * Both indexes are built once when the application is ready and then kept current from
+ * {@link ProductChangedEvent}s published by ProductService after each commit. A change to a
+ * category attribute definition rebuilds them, since it can affect every product of the category.
+ * <p>
+ * A rebuild reads its snapshot outside any lock, so products changed while it runs are collected
+ * and indexed again after the snapshot is swapped in; otherwise the older snapshot would overwrite
+ * the update their events already applied. Rebuilds run one at a time.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndexer {
+
+    private static final int REBUILD_BATCH_SIZE = 500;
+
+    private final ProductRepository productRepository;
+    private final ProductAttributeValueRepository productAttributeValueRepository;
+    private final CategoryAttributeService categoryAttributeService;
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductFacetIndex productFacetIndex;
+    private final SearchProperties searchProperties;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    /**
+     * Products changed while a rebuild is running, null otherwise
+     */
+    private volatile Set<Long> changedDuringRebuild;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuildIndex() {
+        if (!searchProperties.isEnabled()) {
+            return;
+        }
+
+        rebuildLock.lock();
+        try {
+            changedDuringRebuild = ConcurrentHashMap.newKeySet();
+            rebuild();
+        } finally {
+            changedDuringRebuild = null;
+            rebuildLock.unlock();
+        }
+    }
+
+    private void rebuild() {
+        long startTime = System.currentTimeMillis();
+        List<ProductFacetIndex.FacetAttribute> facetAttributes = categoryAttributeService.getAllFilterableAttributes().stream()
+                .map(this::toFacetAttribute)
+                .toList();
+        List<ProductSearchDocument> documents = new ArrayList<>();
+        List<ProductFacetDocument> facetDocuments = new ArrayList<>();
+        Long lastId = 0L;
+        while (true) {
+            List<Product> batch = productRepository.findBatchAfterId(lastId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            documents.addAll(toDocuments(batch));
+            facetDocuments.addAll(toFacetDocuments(batch));
+            lastId = batch.get(batch.size() - 1).getId();
+            // جلوگیری از رشد persistence context در کاتالوگ‌های بزرگ
+            entityManager.clear();
+        }
+
+        productSearchIndex.replaceAll(documents);
+        productFacetIndex.replaceAll(facetAttributes, facetDocuments);
+        // تغییرات حین ساخت دوباره خوانده می‌شوند تا snapshot قدیمی‌تر جای آن‌ها را نگیرد
+        Set<Long> changed = changedDuringRebuild;
+        changedDuringRebuild = null;
+        int reindexed = reindex(new HashSet<>(changed));
+        log.info("Product search and facet indexes built: {} products in {} ms ({} changed meanwhile)",
+                documents.size(), System.currentTimeMillis() - startTime, reindexed);
+    }
+
+    /**
+     * Re-reads the given products and indexes their current state, dropping the ones that are gone
+     */
+    private int reindex(Set<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return 0;
+        }
+        entityManager.clear();
+        List<Product> products = productRepository.findByIdIn(productIds);
+        toDocuments(products).forEach(productSearchIndex::index);
+        toFacetDocuments(products).forEach(productFacetIndex::index);
+        products.forEach(product -> productIds.remove(product.getId()));
+        productIds.forEach(this::removeProduct);
+        return products.size() + productIds.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        // رزرو موجودی در checkout وضعیت را تغییر نمی‌دهد؛ هر checkout نباید باعث بارگذاری مجدد محصول شود.
+        // ویرایش موجودی (STOCK_CHANGED) می‌تواند وضعیت را بین OUT_OF_STOCK و PUBLISHED جابه‌جا کند
+        if (!searchProperties.isEnabled()
+                || event.getChangeType() == ProductChangedEvent.ChangeType.STOCK_RESERVED) {
+            return;
+        }
+
+        Set<Long> changed = changedDuringRebuild;
+        if (changed != null) {
+            changed.add(event.getProductId());
+        }
+        try {
+            if (event.isDeleted()) {
+                removeProduct(event.getProductId());
+                return;
+            }
+            productRepository.findById(event.getProductId())
+                    .ifPresentOrElse(
+                            product -> {
+                                toDocuments(List.of(product)).forEach(productSearchIndex::index);
+                                toFacetDocuments(List.of(product)).forEach(productFacetIndex::index);
+                            },
+                            () -> removeProduct(event.getProductId()));
+        } catch (Exception e) {
+            log.error("Failed to update search index for product {}: {}", event.getProductId(), e.getMessage(), e);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onCategoryAttributeChanged(CategoryAttributeChangedEvent event) {
+        try {
+            rebuildIndex();
+        } catch (Exception e) {
+            log.error("Failed to rebuild indexes after attribute {} changed: {}", event.getAttributeId(), e.getMessage(), e);
+        }
+    }
+
+    private void removeProduct(Long productId) {
+        productSearchIndex.remove(productId);
+        productFacetIndex.remove(productId);
+    }
+
+    private ProductFacetIndex.FacetAttribute toFacetAttribute(CategoryAttribute attribute) {
+        return new ProductFacetIndex.FacetAttribute(
+                attribute.getId(),
+                attribute.getCategory().getId(),
+                attribute.getName(),
+                attribute.getType(),
+                attribute.getSortOrder() != null ? attribute.getSortOrder() : 0);
+    }
+
+    private List<ProductFacetDocument> toFacetDocuments(List<Product> products) {
+        List<Long> productIds = products.stream().map(Product::getId).toList();
+        Map<Long, List<ProductFacetDocument.FacetValue>> values = new HashMap<>();
+        for (Object[] row : productAttributeValueRepository.findFilterableValuesByProductIds(productIds)) {
+            values.computeIfAbsent((Long) row[0], id -> new ArrayList<>())
+                    .add(new ProductFacetDocument.FacetValue((Long) row[1], (String) row[2], (BigDecimal) row[3]));
+        }
+
+        List<ProductFacetDocument> documents = new ArrayList<>(products.size());
+        for (Product product : products) {
+            documents.add(new ProductFacetDocument(
+                    product.getId(),
+                    product.getCategory() != null ? product.getCategory().getId() : null,
+                    Boolean.TRUE.equals(product.getIsActive()) && product.getStatus() == ProductStatus.PUBLISHED,
+                    values.getOrDefault(product.getId(), new ArrayList<>())));
+        }
+        return documents;
+    }
+
+    private List<ProductSearchDocument> toDocuments(List<Product> products) {
+        List<Long> productIds = products.stream().map(Product::getId).toList();
+        Map<Long, List<String>> attributeValues = new HashMap<>();
+        for (Object[] row : productAttributeValueRepository.findSearchableValuesByProductIds(productIds)) {
+            if (row[1] != null) {
+                attributeValues.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((String) row[1]);
+            }
+        }
+
+        List<ProductSearchDocument> documents = new ArrayList<>(products.size());
+        for (Product product : products) {
+            documents.add(new ProductSearchDocument(
+                    product.getId(),
+                    product.getCategory() != null ? product.getCategory().getId() : null,
+                    product.getName(),
+                    product.getShortDescription(),
+                    product.getDescription(),
+                    product.getSku(),
+                    attributeValues.getOrDefault(product.getId(), List.of()),
+                    product.getStatus(),
+                    product.getIsActive(),
+                    product.getPrice(),
+                    product.getDiscountPrice(),
+                    product.getViewsCount(),
+                    product.getSalesCount(),
+                    product.getCreatedAt()));
+        }
+        return documents;
+    }
+}
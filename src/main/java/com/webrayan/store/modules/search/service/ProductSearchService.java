@@ -0,0 +1,114 @@
+package com.webrayan.store.modules.search.service;
+
+import com.webrayan.store.modules.catalog.dto.ProductSummary;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import com.webrayan.store.modules.catalog.repository.ProductRepository;
+import com.webrayan.store.modules.catalog.service.ProductSummaryService;
+import com.webrayan.store.modules.search.config.SearchProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * جستجوی محصولات بر پایه ایندکس درون‌حافظه‌ای
+ * Only the ids of the requested page are loaded from the database.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ProductSearchService {
+
+    private final ProductSearchIndex productSearchIndex;
+    private final ProductRepository productRepository;
+    private final ProductSummaryService productSummaryService;
+    private final SearchProperties searchProperties;
+
+    /**
+     * جستجوی فروشگاه: فقط محصولات فعال و منتشر شده، مرتب بر اساس امتیاز
+     */
+    public Page<ProductSummary> searchProducts(String keyword, Pageable pageable) {
+        String normalizedKeyword = normalizeKeyword(keyword);
+        Pageable page = capPageSize(pageable);
+        if (normalizedKeyword == null || !searchProperties.isEnabled()) {
+            return Page.empty(page);
+        }
+
+        int limit = (int) Math.min(page.getOffset() + page.getPageSize(), searchProperties.getMaxTotalResults());
+        ProductSearchIndex.SearchResult result = productSearchIndex.search(
+                normalizedKeyword, ProductSearchIndex.SearchFilter.storefront(), limit);
+
+        List<ProductSearchIndex.SearchHit> hits = result.getHits();
+        if (page.getOffset() >= hits.size()) {
+            return new PageImpl<>(List.of(), page, result.getTotalMatches());
+        }
+        List<Long> pageIds = hits.subList((int) page.getOffset(), hits.size()).stream()
+                .map(ProductSearchIndex.SearchHit::getProductId)
+                .toList();
+        long total = Math.min(result.getTotalMatches(), searchProperties.getMaxTotalResults());
+        return new PageImpl<>(productSummaryService.getSummariesInOrder(pageIds), page, total);
+    }
+
+    /**
+     * جستجوی پنل ادمین در همه محصولات، مرتب بر اساس امتیاز
+     * The page is cut from the hit list in memory and only its ids are loaded; the requested sort only
+     * applies to the LIKE fallback for keywords too short for the index.
+     */
+    public Page<Product> searchProductsForAdmin(String keyword, ProductStatus status, Pageable pageable) {
+        String normalizedKeyword = normalizeKeyword(keyword);
+        if (!searchProperties.isEnabled() || normalizedKeyword == null) {
+            // عبارت‌های خیلی کوتاه (مثل یک حرف از SKU) همچنان با LIKE جستجو می‌شوند
+            return status != null
+                    ? productRepository.findByNameContainingOrSkuContainingAndStatus(keyword, status, pageable)
+                    : productRepository.findByNameContainingOrSkuContaining(keyword, pageable);
+        }
+
+        Pageable page = capPageSize(pageable);
+        int limit = (int) Math.min(page.getOffset() + page.getPageSize(), searchProperties.getMaxTotalResults());
+        ProductSearchIndex.SearchResult result = productSearchIndex.search(
+                normalizedKeyword, ProductSearchIndex.SearchFilter.admin(status), limit);
+
+        List<ProductSearchIndex.SearchHit> hits = result.getHits();
+        long total = Math.min(result.getTotalMatches(), searchProperties.getMaxTotalResults());
+        if (page.getOffset() >= hits.size()) {
+            return new PageImpl<>(List.of(), page, total);
+        }
+        List<Long> pageIds = hits.subList((int) page.getOffset(), hits.size()).stream()
+                .map(ProductSearchIndex.SearchHit::getProductId)
+                .toList();
+        Map<Long, Product> byId = new HashMap<>();
+        productRepository.findByIdIn(pageIds).forEach(product -> byId.put(product.getId(), product));
+        List<Product> products = pageIds.stream().map(byId::get).filter(Objects::nonNull).toList();
+        return new PageImpl<>(products, page, total);
+    }
+
+    private String normalizeKeyword(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        String trimmed = keyword.trim();
+        if (trimmed.length() < searchProperties.getMinKeywordLength()) {
+            return null;
+        }
+        if (trimmed.length() > searchProperties.getMaxKeywordLength()) {
+            trimmed = trimmed.substring(0, searchProperties.getMaxKeywordLength());
+        }
+        return trimmed;
+    }
+
+    private Pageable capPageSize(Pageable pageable) {
+        if (pageable.getPageSize() <= searchProperties.getMaxPageSize()) {
+            return pageable;
+        }
+        return PageRequest.of(pageable.getPageNumber(), searchProperties.getMaxPageSize(), pageable.getSort());
+    }
+}
@@ -0,0 +1,77 @@
+package com.webrayan.store.modules.search.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * تبدیل متن به توکن‌های قابل جستجو
+ * Lower-cases, unifies Arabic/Persian letter variants and digits, and splits on non letter/digit characters.
+ */
+final class SearchTokenizer {
+
+    private static final char ZERO_WIDTH_NON_JOINER = '‌';
+
+    private SearchTokenizer() {
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        String normalized = normalize(text);
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                current.append(c);
+            } else if (current.length() > 0) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * SKUs are also indexed as one compact term so "ABC-123" matches "abc123"
+     */
+    static String compact(String text) {
+        if (text == null) {
+            return "";
+        }
+        return String.join("", tokenize(text));
+    }
+
+    static String normalize(String text) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(lower.length());
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            switch (c) {
+                case 'ي', 'ى' -> sb.append('ی');
+                case 'ك' -> sb.append('ک');
+                case 'ة' -> sb.append('ه');
+                case 'أ', 'إ', 'آ' -> sb.append('ا');
+                case ZERO_WIDTH_NON_JOINER -> {
+                    // نیم‌فاصله حذف می‌شود تا «می‌شود» و «میشود» یکسان باشند
+                }
+                default -> {
+                    if (c >= '۰' && c <= '۹') {
+                        sb.append((char) ('0' + (c - '۰')));
+                    } else if (c >= '٠' && c <= '٩') {
+                        sb.append((char) ('0' + (c - '٠')));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
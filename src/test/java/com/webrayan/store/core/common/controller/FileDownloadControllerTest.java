@@ -0,0 +1,190 @@
+package com.webrayan.store.core.common.controller;
+
+import com.webrayan.store.core.config.FileServingProperties;
+import com.webrayan.store.core.service.FileStorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.head;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class FileDownloadControllerTest {
+
+    private static final String REF = "products/originals/3f2b8c1e-0d4a-4e7b-9c61-2a5d8e9f0b17_shoe.jpg";
+    private static final String CONTENT = "0123456789abcdefghij";
+
+    @TempDir
+    Path tempDir;
+
+    private FileStorageService fileStorageService;
+    private FileServingProperties properties;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path file = tempDir.resolve("shoe.jpg");
+        Files.writeString(file, CONTENT, StandardCharsets.US_ASCII);
+
+        fileStorageService = mock(FileStorageService.class);
+        when(fileStorageService.getLocalPath(REF)).thenReturn(file);
+        when(fileStorageService.isImmutable(anyString())).thenReturn(true);
+        properties = new FileServingProperties();
+
+        FileDownloadController controller = new FileDownloadController();
+        ReflectionTestUtils.setField(controller, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(controller, "properties", properties);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void serveFile_ShouldStreamWholeFileWithImmutableCaching() throws Exception {
+        mockMvc.perform(get("/uploads/" + REF))
+                .andExpect(status().isOk())
+                .andExpect(content().string(CONTENT))
+                .andExpect(content().contentType("image/jpeg"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length()))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public, immutable"))
+                .andExpect(header().exists(HttpHeaders.ETAG));
+
+        mockMvc.perform(get("/api/files/download/" + REF))
+                .andExpect(status().isOk())
+                .andExpect(content().string(CONTENT));
+    }
+
+    @Test
+    void serveFile_MutableReference_ShouldUseShortMaxAge() throws Exception {
+        when(fileStorageService.isImmutable(REF)).thenReturn(false);
+
+        mockMvc.perform(get("/uploads/" + REF))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=3600, public"));
+    }
+
+    @Test
+    void serveFile_Range_ShouldSendOnlyThatRange() throws Exception {
+        mockMvc.perform(get("/uploads/" + REF).header(HttpHeaders.RANGE, "bytes=5-9"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("56789"))
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 5-9/20"))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 5));
+
+        mockMvc.perform(get("/uploads/" + REF).header(HttpHeaders.RANGE, "bytes=-4"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("ghij"))
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 16-19/20"));
+    }
+
+    @Test
+    void serveFile_UnsatisfiableRange_ShouldReturn416() throws Exception {
+        mockMvc.perform(get("/uploads/" + REF).header(HttpHeaders.RANGE, "bytes=20-30"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */20"));
+    }
+
+    @Test
+    void serveFile_StaleIfRangeOrMultipleRanges_ShouldSendWholeFile() throws Exception {
+        mockMvc.perform(get("/uploads/" + REF)
+                        .header(HttpHeaders.RANGE, "bytes=0-3")
+                        .header(HttpHeaders.IF_RANGE, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(content().string(CONTENT));
+
+        mockMvc.perform(get("/uploads/" + REF).header(HttpHeaders.RANGE, "bytes=0-1,5-6"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(CONTENT));
+    }
+
+    @Test
+    void serveFile_ConditionalRequests_ShouldReturn304() throws Exception {
+        MvcResult first = mockMvc.perform(get("/uploads/" + REF)).andReturn();
+        String etag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        String lastModified = first.getResponse().getHeader(HttpHeaders.LAST_MODIFIED);
+
+        mockMvc.perform(get("/uploads/" + REF).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(get("/uploads/" + REF).header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/uploads/" + REF)
+                        .header(HttpHeaders.RANGE, "bytes=0-3")
+                        .header(HttpHeaders.IF_RANGE, etag))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("0123"));
+    }
+
+    @Test
+    void serveFile_SendfileSupported_ShouldLeaveTheBodyToTheConnector() throws Exception {
+        properties.setSendfileThresholdBytes(0);
+
+        MvcResult result = mockMvc.perform(get("/uploads/" + REF)
+                        .requestAttr(FileDownloadController.SENDFILE_SUPPORTED, Boolean.TRUE)
+                        .header(HttpHeaders.RANGE, "bytes=2-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string(""))
+                .andExpect(request().attribute(FileDownloadController.SENDFILE_START, 2L))
+                .andExpect(request().attribute(FileDownloadController.SENDFILE_END, 20L))
+                .andReturn();
+
+        assertEquals(tempDir.resolve("shoe.jpg").toAbsolutePath().toString(),
+                result.getRequest().getAttribute(FileDownloadController.SENDFILE_FILENAME));
+    }
+
+    @Test
+    void serveFile_HeadRequest_ShouldSendHeadersOnly() throws Exception {
+        mockMvc.perform(head("/uploads/" + REF))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length()))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void serveFile_StorageWithoutLocalFiles_ShouldStreamTheRangeFromTheStore() throws Exception {
+        String remote = "products/originals/remote.png";
+        when(fileStorageService.getFileMetadata(remote)).thenReturn(new FileStorageService.FileMetadata(
+                "remote.png", CONTENT.length(), "image/png", LocalDateTime.now(), LocalDateTime.now()));
+        when(fileStorageService.openStream(remote, 4, 3))
+                .thenReturn(new ByteArrayInputStream(CONTENT.substring(4, 7).getBytes(StandardCharsets.US_ASCII)));
+        when(fileStorageService.getFileMetadata("products/originals/gone.png")).thenThrow(new IOException("gone"));
+
+        mockMvc.perform(get("/api/files/download/" + remote).header(HttpHeaders.RANGE, "bytes=4-6"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().string("456"))
+                .andExpect(content().contentType("image/png"))
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 4-6/20"))
+                .andExpect(header().exists(HttpHeaders.ETAG));
+        mockMvc.perform(get("/api/files/download/products/originals/gone.png")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void serveFile_MissingOrEscapingReference_ShouldBeRejected() throws Exception {
+        when(fileStorageService.getLocalPath("products/missing.jpg")).thenReturn(tempDir.resolve("missing.jpg"));
+        when(fileStorageService.getLocalPath("outside.jpg")).thenThrow(new SecurityException("outside"));
+
+        mockMvc.perform(get("/uploads/products/missing.jpg")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/uploads/outside.jpg")).andExpect(status().isBadRequest());
+        mockMvc.perform(get(URI.create("/uploads/products/%2E%2E/%2E%2E/secret.txt"))).andExpect(status().isBadRequest());
+        mockMvc.perform(get(URI.create("/uploads/products%5C..%5Csecret.txt"))).andExpect(status().isBadRequest());
+        verify(fileStorageService, times(2)).getLocalPath(anyString());
+    }
+}
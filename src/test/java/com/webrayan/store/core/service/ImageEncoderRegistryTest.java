@@ -0,0 +1,96 @@
+package com.webrayan.store.core.service;
+
+import com.webrayan.store.core.service.impl.encoder.JpegImageEncoder;
+import com.webrayan.store.core.service.impl.encoder.PngImageEncoder;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageEncoderRegistryTest {
+
+    private final ImageEncoderRegistry registry =
+            new ImageEncoderRegistry(List.of(new JpegImageEncoder(), new PngImageEncoder()));
+
+    @Test
+    void supports_ShouldOnlyReportFormatsWithAnEncoder() {
+        assertTrue(registry.supports("JPEG"));
+        assertTrue(registry.supports("png"));
+        assertFalse(registry.supports("heic"));
+        assertEquals(ImageIO.getImageWritersByFormatName("webp").hasNext(), registry.supports("webp"));
+    }
+
+    @Test
+    void encode_UnsupportedFormat_ShouldReportTheFormatActuallyWritten() throws IOException {
+        ImageEncoderRegistry.EncodedImage opaque = registry.encode(image(false), "heic", 0.8f);
+        ImageEncoderRegistry.EncodedImage transparent = registry.encode(image(true), "heic", 0.8f);
+
+        assertEquals("jpg", opaque.getFormat());
+        assertEquals("image/jpeg", opaque.getContentType());
+        assertEquals("png", transparent.getFormat());
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(transparent.getData())));
+    }
+
+    @Test
+    void encode_JpegQuality_ShouldControlOutputSize() throws IOException {
+        BufferedImage photo = noise();
+
+        int low = registry.encode(photo, "jpg", 0.3f).getData().length;
+        int high = registry.encode(photo, "jpg", 0.95f).getData().length;
+
+        assertTrue(low < high, low + " >= " + high);
+    }
+
+    @Test
+    void encodeSmallest_ShouldPickTheSmallestCandidate() throws IOException {
+        BufferedImage photo = noise();
+        BufferedImage flat = image(false);
+
+        assertEquals("jpg", registry.encodeSmallest(photo, List.of("png", "jpg"), 0.8f).getFormat());
+        assertEquals("png", registry.encodeSmallest(flat, List.of("jpg", "png"), 0.8f).getFormat());
+    }
+
+    @Test
+    void encodeSmallest_TransparentImage_ShouldNotPickJpeg() throws IOException {
+        ImageEncoderRegistry.EncodedImage encoded = registry.encodeSmallest(noiseWithHole(), List.of("jpg", "png"), 0.3f);
+
+        assertEquals("png", encoded.getFormat());
+    }
+
+    private BufferedImage image(boolean transparent) {
+        BufferedImage image = new BufferedImage(200, 200,
+                transparent ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(new Color(30, 120, 200));
+        g2d.fillRect(0, 0, 100, 200);
+        g2d.dispose();
+        return image;
+    }
+
+    private BufferedImage noise() {
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        return image;
+    }
+
+    private BufferedImage noiseWithHole() {
+        BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.drawImage(noise(), 0, 0, null);
+        g2d.dispose();
+        image.setRGB(0, 0, 0x00FFFFFF);
+        return image;
+    }
+}
@@ -0,0 +1,152 @@
+package com.webrayan.store.core.service.impl;
+
+import com.webrayan.store.core.config.DerivedImageProperties;
+import com.webrayan.store.core.config.FileUploadConfig;
+import com.webrayan.store.core.exception.BadRequestException;
+import com.webrayan.store.core.exception.ResourceNotFoundException;
+import com.webrayan.store.core.service.DerivedImageService.DerivedImage;
+import com.webrayan.store.core.service.FileStorageService;
+import com.webrayan.store.core.service.ImageProcessingService;
+import com.webrayan.store.support.ConcurrencyHarness;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DiskDerivedImageServiceTest {
+
+    private static final LocalDateTime MODIFIED = LocalDateTime.of(2026, 1, 1, 12, 0);
+
+    @TempDir
+    Path tempDir;
+
+    private FileStorageService fileStorageService;
+    private ImageProcessingService imageProcessingService;
+    private DerivedImageProperties properties;
+    private DiskDerivedImageService derivedImageService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fileStorageService = mock(FileStorageService.class);
+        imageProcessingService = mock(ImageProcessingService.class);
+        properties = new DerivedImageProperties();
+        properties.setCacheDirectory(tempDir.toString());
+
+        when(fileStorageService.fileExists(startsWith("products/originals/"))).thenReturn(true);
+        when(fileStorageService.fileExists("products/originals/missing.jpg")).thenReturn(false);
+        when(fileStorageService.getFileMetadata(anyString())).thenAnswer(invocation ->
+                new FileStorageService.FileMetadata(invocation.getArgument(0), 3, "image/jpeg", MODIFIED, MODIFIED));
+        when(fileStorageService.retrieveFile(anyString())).thenReturn(new byte[]{1, 2, 3});
+        when(imageProcessingService.renderVariant(any(byte[].class), any(), anyString(), any())).thenAnswer(invocation -> {
+            ImageProcessingService.ImageSize size = invocation.getArgument(1);
+            return new ImageProcessingService.ProcessedImageVariant(size.getName(), size.getWidth(), size.getHeight(),
+                    invocation.getArgument(2), 10, new byte[10]);
+        });
+
+        derivedImageService = newService();
+    }
+
+    @Test
+    void getVariant_ShouldRenderOnceAndServeLaterRequestsFromDisk() throws Exception {
+        DerivedImage first = derivedImageService.getVariant("a.jpg", 300, 300, "png");
+        DerivedImage second = derivedImageService.getVariant("a.jpg", 300, 300, "png");
+
+        assertTrue(Files.exists(first.getPath()));
+        assertEquals(first.getPath(), second.getPath());
+        assertEquals(first.getEtag(), second.getEtag());
+        assertTrue(first.getEtag().matches("\"[0-9a-f]{64}\""));
+        assertEquals("image/png", first.getContentType());
+        verify(imageProcessingService, times(1)).renderVariant(any(byte[].class), any(), anyString(), any());
+    }
+
+    @Test
+    void getVariant_ConcurrentMisses_ShouldShareOneRender() throws Exception {
+        when(imageProcessingService.renderVariant(any(byte[].class), any(), anyString(), any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return new ImageProcessingService.ProcessedImageVariant("300x300", 300, 300, "jpg", 10, new byte[10]);
+        });
+
+        List<ConcurrencyHarness.Outcome<DerivedImage>> outcomes =
+                ConcurrencyHarness.run(8, () -> derivedImageService.getVariant("a.jpg", 300, 300, "jpg"));
+
+        assertEquals(8, ConcurrencyHarness.successes(outcomes));
+        verify(imageProcessingService, times(1)).renderVariant(any(byte[].class), any(), anyString(), any());
+    }
+
+    @Test
+    void getVariant_OverCapacity_ShouldEvictLeastRecentlyUsed() throws Exception {
+        properties.setMaxCacheBytes(25);
+        DerivedImage a = derivedImageService.getVariant("a.jpg", 150, 150, "jpg");
+        DerivedImage b = derivedImageService.getVariant("b.jpg", 150, 150, "jpg");
+        derivedImageService.getVariant("a.jpg", 150, 150, "jpg");
+
+        DerivedImage c = derivedImageService.getVariant("c.jpg", 150, 150, "jpg");
+
+        assertTrue(Files.exists(a.getPath()));
+        assertFalse(Files.exists(b.getPath()));
+        assertTrue(Files.exists(c.getPath()));
+        assertEquals(20, derivedImageService.getCachedBytes());
+    }
+
+    @Test
+    void getVariant_EvictedWhileBeingServed_ShouldStillReadTheWholeVariant() throws Exception {
+        properties.setMaxCacheBytes(15);
+        try (DerivedImage served = derivedImageService.getVariant("a.jpg", 150, 150, "jpg")) {
+            derivedImageService.getVariant("b.jpg", 150, 150, "jpg").close();
+
+            assertFalse(Files.exists(served.getPath()));
+            assertEquals(10, served.getInputStream().readAllBytes().length);
+        }
+    }
+
+    @Test
+    void getVariant_FileRemovedBehindTheIndex_ShouldRenderAgain() throws Exception {
+        DerivedImage first = derivedImageService.getVariant("a.jpg", 300, 300, "jpg");
+        first.close();
+        Files.delete(first.getPath());
+
+        try (DerivedImage second = derivedImageService.getVariant("a.jpg", 300, 300, "jpg")) {
+            assertEquals(10, second.getInputStream().readAllBytes().length);
+        }
+        verify(imageProcessingService, times(2)).renderVariant(any(byte[].class), any(), anyString(), any());
+    }
+
+    @Test
+    void init_ShouldRebuildIndexFromCacheDirectory() throws Exception {
+        DerivedImage rendered = derivedImageService.getVariant("a.jpg", 600, 600, "jpg");
+
+        DiskDerivedImageService restarted = newService();
+        DerivedImage cached = restarted.getVariant("a.jpg", 600, 600, "jpg");
+
+        assertEquals(rendered.getEtag(), cached.getEtag());
+        assertEquals(10, restarted.getCachedBytes());
+        verify(imageProcessingService, times(1)).renderVariant(any(byte[].class), any(), anyString(), any());
+    }
+
+    @Test
+    void getVariant_WithUnsupportedRequest_ShouldBeRejected() {
+        assertThrows(BadRequestException.class, () -> derivedImageService.getVariant("a.jpg", 301, 300, "jpg"));
+        assertThrows(BadRequestException.class, () -> derivedImageService.getVariant("a.jpg", 300, 300, "bmp"));
+        assertThrows(BadRequestException.class, () -> derivedImageService.getVariant("..", 300, 300, "jpg"));
+        assertThrows(ResourceNotFoundException.class, () -> derivedImageService.getVariant("missing.jpg", 300, 300, "jpg"));
+    }
+
+    private DiskDerivedImageService newService() throws Exception {
+        DiskDerivedImageService service = new DiskDerivedImageService();
+        ReflectionTestUtils.setField(service, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(service, "imageProcessingService", imageProcessingService);
+        ReflectionTestUtils.setField(service, "fileUploadConfig", new FileUploadConfig());
+        ReflectionTestUtils.setField(service, "properties", properties);
+        service.init();
+        return service;
+    }
+}
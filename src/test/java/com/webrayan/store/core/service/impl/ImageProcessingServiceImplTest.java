@@ -0,0 +1,272 @@
+package com.webrayan.store.core.service.impl;
+
+import com.webrayan.store.core.config.FileUploadConfig;
+import com.webrayan.store.core.service.ImageEncoderRegistry;
+import com.webrayan.store.core.service.ImageProcessingService;
+import com.webrayan.store.core.service.ImageProcessingService.ImageProcessingOptions;
+import com.webrayan.store.core.service.ImageProcessingService.ImageProcessingResult;
+import com.webrayan.store.core.service.ImageProcessingService.ImageSize;
+import com.webrayan.store.core.service.ImageProcessingService.ProcessedImageVariant;
+import com.webrayan.store.core.service.ImageProcessingService.WatermarkOptions;
+import com.webrayan.store.core.service.impl.encoder.JpegImageEncoder;
+import com.webrayan.store.core.service.impl.encoder.PngImageEncoder;
+import com.webrayan.store.support.ConcurrencyHarness;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageProcessingServiceImplTest {
+
+    private ImageProcessingServiceImpl imageProcessingService;
+
+    @BeforeEach
+    void setUp() {
+        FileUploadConfig config = new FileUploadConfig();
+        config.setImageProcessingThreads(2);
+        imageProcessingService = new ImageProcessingServiceImpl();
+        ReflectionTestUtils.setField(imageProcessingService, "fileUploadConfig", config);
+        ReflectionTestUtils.setField(imageProcessingService, "encoderRegistry", encoderRegistry());
+        imageProcessingService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageProcessingService.shutdown();
+    }
+
+    @Test
+    void processImage_ShouldRenderEveryVariantInRequestedOrder() throws IOException {
+        ImageProcessingOptions options = options(false);
+
+        ImageProcessingResult result = imageProcessingService.processImage(png("photo.png", 800, 400, false), options);
+
+        List<ProcessedImageVariant> variants = result.getVariants();
+        assertEquals(List.of("thumbnail", "small", "medium", "original"),
+                variants.stream().map(ProcessedImageVariant::getSizeName).toList());
+        assertEquals(150, variants.get(0).getWidth());
+        assertEquals(75, variants.get(0).getHeight());
+        assertEquals(800, variants.get(3).getWidth());
+        assertEquals(800, result.getMetadata().getWidth());
+
+        // ابعاد گزارش شده با داده رمزگذاری شده یکی است
+        for (ProcessedImageVariant variant : variants) {
+            BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(variant.getImageData()));
+            assertEquals(variant.getWidth(), decoded.getWidth());
+            assertEquals(variant.getImageData().length, variant.getFileSize());
+        }
+    }
+
+    @Test
+    void processImage_WebpWithoutEncoder_ShouldKeepSourceFormatAndAlpha() throws IOException {
+        ImageProcessingOptions options = options(false);
+        options.setEnableWebpConversion(true);
+
+        ImageProcessingResult result = imageProcessingService.processImage(png("alpha.png", 300, 300, true), options);
+
+        for (ProcessedImageVariant variant : result.getVariants()) {
+            if (!ImageIO.getImageWritersByFormatName("webp").hasNext()) {
+                assertEquals("png", variant.getFormat());
+                assertTrue(ImageIO.read(new ByteArrayInputStream(variant.getImageData())).getColorModel().hasAlpha());
+            }
+            assertTrue(variant.getFileSize() > 0);
+        }
+    }
+
+    @Test
+    void processImage_WithCandidateFormats_ShouldKeepSmallestEncoding() throws IOException {
+        ImageProcessingOptions options = options(false);
+        options.setCandidateFormats(List.of("webp", "jpg", "png"));
+
+        // flat two-colour artwork compresses far better as PNG than as JPEG
+        ImageProcessingResult result = imageProcessingService.processImage(png("logo.png", 400, 400, false), options);
+
+        for (ProcessedImageVariant variant : result.getVariants()) {
+            if (!ImageIO.getImageWritersByFormatName("webp").hasNext()) {
+                assertEquals("png", variant.getFormat());
+            }
+            assertEquals(variant.getImageData().length, variant.getFileSize());
+        }
+    }
+
+    @Test
+    void optimizeImage_WithoutEncoder_ShouldFailInsteadOfReturningEmptyData() throws IOException {
+        byte[] source = png("photo.png", 50, 50, false).getBytes();
+
+        assertThrows(IOException.class, () -> imageProcessingService.optimizeImage(source, "heic", 0.8f));
+        assertTrue(imageProcessingService.optimizeImage(source, "jpg", 0.5f).length > 0);
+    }
+
+    @Test
+    void processImage_WithWatermark_ShouldNotChangeDimensions() throws IOException {
+        ImageProcessingResult result = imageProcessingService.processImage(png("mark.png", 640, 480, false), options(true));
+
+        ProcessedImageVariant original = result.getVariants().get(result.getVariants().size() - 1);
+        assertEquals(640, original.getWidth());
+        assertEquals(480, original.getHeight());
+    }
+
+    @Test
+    void processImages_ShouldKeepFileOrder() throws IOException {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            files.add(png("file-" + i + ".png", 200 + i * 10, 100, false));
+        }
+
+        List<ImageProcessingResult> results = imageProcessingService.processImages(files, options(false));
+
+        assertEquals(6, results.size());
+        for (int i = 0; i < 6; i++) {
+            assertEquals("file-" + i + ".png", results.get(i).getOriginalFilename());
+            assertEquals(200 + i * 10, results.get(i).getMetadata().getWidth());
+        }
+    }
+
+    @Test
+    void processImages_InvalidFile_ShouldFailWholeBatch() {
+        List<MultipartFile> files = List.of(
+                new MockMultipartFile("file", "broken.png", "image/png", new byte[]{1, 2, 3}));
+
+        assertThrows(IOException.class, () -> imageProcessingService.processImages(files, options(false)));
+    }
+
+    @Test
+    void renderVariant_LargeSource_ShouldDecodeSubsampledToRequestedSize() throws IOException {
+        byte[] source = png("large.png", 4000, 3000, false).getBytes();
+
+        ProcessedImageVariant variant = imageProcessingService.renderVariant(
+                source, new ImageSize("small", 300, 300), "png", new ImageProcessingOptions());
+
+        assertEquals(300, variant.getWidth());
+        assertEquals(225, variant.getHeight());
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(variant.getImageData()));
+        assertEquals(300, decoded.getWidth());
+    }
+
+    @Test
+    void renderVariant_CropMode_ShouldReadCentredRegion() throws IOException {
+        ImageProcessingOptions options = new ImageProcessingOptions();
+        options.setResizeMode(ImageProcessingService.ResizeMode.CROP);
+
+        ProcessedImageVariant variant = imageProcessingService.renderVariant(
+                png("wide.png", 4000, 1000, false).getBytes(), new ImageSize("square", 200, 200), "png", options);
+
+        assertEquals(200, variant.getWidth());
+        assertEquals(200, variant.getHeight());
+    }
+
+    @Test
+    void processImage_OverPixelLimit_ShouldBeRejectedBeforeDecoding() throws IOException {
+        FileUploadConfig config = new FileUploadConfig();
+        config.setMaxImagePixels(10_000L);
+        ImageProcessingServiceImpl limited = newService(config);
+        try {
+            MockMultipartFile file = png("huge.png", 200, 100, false);
+            assertThrows(IOException.class, () -> limited.processImage(file, options(false)));
+        } finally {
+            limited.shutdown();
+        }
+    }
+
+    @Test
+    void processImage_ImagesLargerThanBudget_ShouldRunOneAtATime() throws Exception {
+        FileUploadConfig config = new FileUploadConfig();
+        config.setImageProcessingThreads(4);
+        config.setDecodedPixelBudget(1024L);
+        ImageProcessingServiceImpl budgeted = newService(config);
+        try {
+            MockMultipartFile file = png("budget.png", 64, 64, false);
+            List<ConcurrencyHarness.Outcome<ImageProcessingResult>> outcomes =
+                    ConcurrencyHarness.run(6, () -> budgeted.processImage(file, options(false)));
+
+            assertEquals(6, ConcurrencyHarness.successes(outcomes));
+        } finally {
+            budgeted.shutdown();
+        }
+    }
+
+    @Test
+    void computePerceptualHash_ShouldMatchResizedCopyAndDifferFromOtherImage() throws IOException {
+        byte[] photo = encodePng(scene(800, 600, false));
+        byte[] smaller = imageProcessingService.resizeImage(photo, 400, 300, ImageProcessingService.ResizeMode.EXACT);
+        byte[] mirrored = encodePng(scene(800, 600, true));
+
+        long hash = imageProcessingService.computePerceptualHash(photo);
+
+        assertTrue(Long.bitCount(hash ^ imageProcessingService.computePerceptualHash(smaller)) <= 4);
+        assertTrue(Long.bitCount(hash ^ imageProcessingService.computePerceptualHash(mirrored)) > 16);
+    }
+
+    private ImageProcessingServiceImpl newService(FileUploadConfig config) {
+        ImageProcessingServiceImpl service = new ImageProcessingServiceImpl();
+        ReflectionTestUtils.setField(service, "fileUploadConfig", config);
+        ReflectionTestUtils.setField(service, "encoderRegistry", encoderRegistry());
+        service.init();
+        return service;
+    }
+
+    private ImageEncoderRegistry encoderRegistry() {
+        return new ImageEncoderRegistry(List.of(new JpegImageEncoder(), new PngImageEncoder()));
+    }
+
+    private ImageProcessingOptions options(boolean watermark) {
+        ImageProcessingOptions options = new ImageProcessingOptions();
+        options.setSizes(List.of(
+                new ImageSize("thumbnail", 150, 150),
+                new ImageSize("small", 300, 300),
+                new ImageSize("medium", 600, 600)));
+        options.setEnableWebpConversion(false);
+        if (watermark) {
+            WatermarkOptions watermarkOptions = new WatermarkOptions();
+            watermarkOptions.setText("webrayan");
+            options.setEnableWatermark(true);
+            options.setWatermarkOptions(watermarkOptions);
+        }
+        return options;
+    }
+
+    private BufferedImage scene(int width, int height, boolean mirrored) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        if (mirrored) {
+            g2d.translate(width, 0);
+            g2d.scale(-1, 1);
+        }
+        g2d.setPaint(new GradientPaint(0, 0, Color.BLACK, width, 0, Color.WHITE));
+        g2d.fillRect(0, 0, width, height);
+        g2d.setColor(new Color(200, 40, 40));
+        g2d.fillOval(width / 8, height / 4, width / 4, height / 2);
+        g2d.dispose();
+        return image;
+    }
+
+    private byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private MockMultipartFile png(String name, int width, int height, boolean alpha) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(new Color(30, 120, 200, alpha ? 128 : 255));
+        g2d.fillRect(0, 0, width / 2, height);
+        g2d.dispose();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return new MockMultipartFile("file", name, "image/png", outputStream.toByteArray());
+    }
+}
@@ -3,6 +3,7 @@ package com.webrayan.store.core.service.impl;
 import com.webrayan.store.core.config.FileUploadConfig;
 import com.webrayan.store.core.service.FileStorageService;
 import com.webrayan.store.core.validation.FileValidationService;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
@@ -19,6 +20,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -273,4 +275,97 @@ class LocalFileStorageServiceTest {
             fileStorageService.storeFile(file, "../../../etc");
         });
     }
+
+    @Test
+    void storeFile_ContentAddressed_ShouldShardByHashAndStoreIdenticalContentOnce() throws IOException {
+        useStorage(true);
+        byte[] content = "same bytes".getBytes();
+
+        FileStorageService.FileStorageResult first = fileStorageService.storeFile(
+                new MockMultipartFile("file", "Photo.JPG", "image/jpeg", content), "products");
+        FileStorageService.FileStorageResult second = fileStorageService.storeFile(content, "copy.jpg", "image/jpeg", "products");
+
+        String hash = first.getContentHash();
+        assertEquals(hash + ".jpg", first.getFileReference());
+        assertEquals(first.getFileReference(), second.getFileReference());
+        Path sharded = uploadDir().resolve("products").resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4))
+                .resolve(hash + ".jpg");
+        assertEquals(sharded, fileStorageService.getLocalPath("products/" + first.getFileReference()));
+        assertArrayEquals(content, fileStorageService.retrieveFile("products/" + first.getFileReference()));
+        assertTrue(fileStorageService.isImmutable("products/" + first.getFileReference()));
+        assertStagingEmpty();
+    }
+
+    @Test
+    void storeFile_UuidNames_ShouldStillBeWrittenThroughStaging() throws IOException {
+        useStorage(false);
+
+        FileStorageService.FileStorageResult result = fileStorageService.storeFile(
+                "variant".getBytes(), "small.webp", "image/webp", "products/variants");
+
+        assertTrue(result.getFileReference().endsWith("_small.webp"));
+        assertTrue(Files.isRegularFile(uploadDir().resolve("products/variants").resolve(result.getFileReference())));
+        assertTrue(fileStorageService.isImmutable("products/variants/" + result.getFileReference()));
+        assertStagingEmpty();
+    }
+
+    @Test
+    void migrateToContentAddressed_ShouldKeepTheOldReferenceReadable() throws IOException {
+        useStorage(false);
+        byte[] content = "legacy upload".getBytes();
+        String legacy = fileStorageService.storeFile(content, "shoe.png", "image/png", "products").getFileReference();
+
+        String migrated = fileStorageService.migrateToContentAddressed("products/" + legacy);
+
+        assertTrue(migrated.matches("[0-9a-f]{64}\\.png"));
+        assertEquals(migrated, fileStorageService.migrateToContentAddressed("products/" + migrated));
+        assertArrayEquals(content, fileStorageService.retrieveFile("products/" + migrated));
+        assertArrayEquals(content, fileStorageService.retrieveFile("products/" + legacy));
+
+        assertTrue(fileStorageService.deleteFile("products/" + legacy));
+        assertArrayEquals(content, fileStorageService.retrieveFile("products/" + migrated));
+        assertStagingEmpty();
+    }
+
+    @Test
+    void getLocalPath_BareFilename_ShouldResolveUnderTheRootWithoutSearchingSubdirectories() throws IOException {
+        useStorage(false);
+        Files.createDirectories(uploadDir().resolve("products"));
+        Files.writeString(uploadDir().resolve("products/logo.png"), "nested");
+        Files.writeString(uploadDir().resolve("banner.png"), "root");
+
+        assertEquals(uploadDir().resolve("banner.png").toAbsolutePath(), fileStorageService.getLocalPath("banner.png"));
+        assertFalse(Files.exists(fileStorageService.getLocalPath("logo.png")));
+        assertFalse(fileStorageService.fileExists("logo.png"));
+    }
+
+    @Test
+    void getLocalPath_StagingFile_ShouldBeRejected() throws IOException {
+        useStorage(false);
+        Files.writeString(uploadDir().resolve(".staging/partial.tmp"), "half written");
+
+        assertThrows(SecurityException.class, () -> fileStorageService.getLocalPath(".staging/partial.tmp"));
+        assertThrows(SecurityException.class, () -> fileStorageService.getLocalPath("products/../.staging/partial.tmp"));
+    }
+
+    private void useStorage(boolean contentAddressed) {
+        lenient().when(fileUploadConfig.getUploadDirectory()).thenReturn(uploadDir().toString());
+        lenient().when(fileUploadConfig.getTempDirectory()).thenReturn(tempDir.resolve("temp").toString());
+        lenient().when(fileUploadConfig.isContentAddressed()).thenReturn(contentAddressed);
+        lenient().when(fileValidationService.validateFile(any()))
+                .thenReturn(FileValidationService.FileValidationResult.valid());
+        lenient().when(fileValidationService.generateSecureFilename(any()))
+                .thenAnswer(invocation -> invocation.getArgument(0, String.class).toLowerCase());
+        fileStorageService.init();
+    }
+
+    private Path uploadDir() {
+        return tempDir.resolve("uploads");
+    }
+
+    private void assertStagingEmpty() throws IOException {
+        try (var staged = Files.list(uploadDir().resolve(".staging"))) {
+            assertEquals(0, staged.count());
+        }
+    }
 }
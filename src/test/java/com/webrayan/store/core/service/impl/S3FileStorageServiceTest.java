@@ -0,0 +1,201 @@
+package com.webrayan.store.core.service.impl;
+
+import com.webrayan.store.core.config.FileUploadConfig;
+import com.webrayan.store.core.config.S3StorageProperties;
+import com.webrayan.store.core.service.FileStorageService;
+import com.webrayan.store.core.validation.FileValidationService;
+import com.webrayan.store.support.FakeS3Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class S3FileStorageServiceTest {
+
+    private static final String BUCKET = "uploads";
+    private static final int PART_SIZE = (int) S3StorageProperties.MIN_PART_SIZE_BYTES;
+
+    private FakeS3Server s3;
+    private FileUploadConfig fileUploadConfig;
+    private FileValidationService fileValidationService;
+    private S3FileStorageService storage;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        s3 = new FakeS3Server();
+
+        S3StorageProperties properties = new S3StorageProperties();
+        properties.setEndpoint(s3.endpoint());
+        properties.setBucket(BUCKET);
+        properties.setAccessKey("test");
+        properties.setSecretKey("test-secret");
+        properties.setMultipartThresholdBytes(PART_SIZE);
+        properties.setPartSizeBytes(PART_SIZE);
+
+        fileUploadConfig = new FileUploadConfig();
+        fileValidationService = mock(FileValidationService.class);
+        when(fileValidationService.validateFile(any())).thenReturn(FileValidationService.FileValidationResult.valid());
+        when(fileValidationService.generateSecureFilename(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        storage = new S3FileStorageService();
+        ReflectionTestUtils.setField(storage, "properties", properties);
+        ReflectionTestUtils.setField(storage, "fileUploadConfig", fileUploadConfig);
+        ReflectionTestUtils.setField(storage, "fileValidationService", fileValidationService);
+        storage.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        storage.close();
+        s3.close();
+    }
+
+    @Test
+    void storeFile_SmallFile_ShouldPutAndReadBack() throws IOException {
+        FileStorageService.FileStorageResult result =
+                storage.storeFile("shoe bytes".getBytes(), "shoe.jpg", "image/jpeg", "products/originals");
+        String reference = "products/originals/" + result.getFileReference();
+
+        assertTrue(result.getFileReference().endsWith("_shoe.jpg"));
+        assertEquals(sha256("shoe bytes".getBytes()), result.getContentHash());
+        assertTrue(s3.contains(BUCKET, reference));
+        assertEquals(0, s3.completedMultipartUploads());
+        assertEquals("shoe bytes", new String(storage.retrieveFile(reference)));
+        assertEquals(10, storage.getFileMetadata(reference).getSize());
+        assertEquals("image/jpeg", storage.getFileMetadata(reference).getContentType());
+        assertTrue(storage.isImmutable(reference));
+        assertNull(storage.getLocalPath(reference));
+        assertEquals("/api/files/download/" + reference, storage.getFileUrl(reference));
+        try (InputStream range = storage.openStream(reference, 5, 3)) {
+            assertEquals("byt", new String(range.readAllBytes()));
+        }
+    }
+
+    @Test
+    void storeFile_LargeUpload_ShouldStreamItAsMultipartParts() throws IOException {
+        byte[] content = randomBytes(2 * PART_SIZE + 1234);
+
+        FileStorageService.FileStorageResult result = storage.storeFile(
+                multipartFile("catalogue.png", content, new ByteArrayInputStream(content)), "products/originals");
+
+        assertEquals(1, s3.completedMultipartUploads());
+        assertArrayEquals(content, s3.content(BUCKET, "products/originals/" + result.getFileReference()));
+        assertEquals(sha256(content), result.getContentHash());
+    }
+
+    @Test
+    void storeFile_UploadFailingHalfway_ShouldAbortTheMultipartUpload() {
+        byte[] content = randomBytes(2 * PART_SIZE);
+        InputStream failing = new FilterInputStream(new ByteArrayInputStream(content)) {
+            private int read;
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (read > PART_SIZE + 100) {
+                    throw new IOException("client went away");
+                }
+                int count = super.read(buffer, offset, length);
+                read += Math.max(count, 0);
+                return count;
+            }
+        };
+
+        assertThrows(IOException.class,
+                () -> storage.storeFile(multipartFile("catalogue.png", content, failing), "products/originals"));
+        assertEquals(1, s3.abortedMultipartUploads());
+        assertEquals(0, s3.pendingMultipartUploads());
+        assertTrue(s3.keys(BUCKET).isEmpty());
+    }
+
+    @Test
+    void storeFile_ContentAddressed_ShouldStoreEachContentOnceInItsShard() throws IOException {
+        fileUploadConfig.setContentAddressed(true);
+        String hash = sha256("bag bytes".getBytes());
+
+        String first = storage.storeFile("bag bytes".getBytes(), "bag.JPG", "image/jpeg", "products/originals").getFileReference();
+        String second = storage.storeFile("bag bytes".getBytes(), "other.jpg", "image/jpeg", "products/originals").getFileReference();
+
+        assertEquals(hash + ".jpg", first);
+        assertEquals(first, second);
+        String key = "products/originals/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + first;
+        assertEquals(List.of(key), s3.keys(BUCKET));
+        assertEquals("bag bytes", new String(storage.retrieveFile("products/originals/" + first)));
+        assertEquals("bag bytes", new String(storage.retrieveFile(key)));
+    }
+
+    @Test
+    void copyMoveAndDelete_ShouldWorkServerSide() throws IOException {
+        String reference = "products/originals/"
+                + storage.storeFile("hat bytes".getBytes(), "hat.jpg", "image/jpeg", "products/originals").getFileReference();
+
+        String copy = "products/archive/" + storage.copyFile(reference, "products/archive");
+        String moved = "products/trash/" + storage.moveFile(reference, "products/trash");
+
+        assertEquals("hat bytes", new String(storage.retrieveFile(copy)));
+        assertEquals("hat bytes", new String(storage.retrieveFile(moved)));
+        assertFalse(storage.fileExists(reference));
+        assertTrue(storage.deleteFile(copy));
+        assertFalse(storage.deleteFile(copy));
+        assertThrows(IOException.class, () -> storage.retrieveFile(copy));
+    }
+
+    @Test
+    void migrateToContentAddressed_ShouldCopyToTheHashNameAndKeepTheOldObject() throws IOException {
+        String reference = "products/originals/"
+                + storage.storeFile("cap bytes".getBytes(), "cap.png", "image/png", "products/originals").getFileReference();
+
+        String migrated = storage.migrateToContentAddressed(reference);
+
+        assertEquals(sha256("cap bytes".getBytes()) + ".png", migrated);
+        assertEquals("cap bytes", new String(storage.retrieveFile("products/originals/" + migrated)));
+        assertTrue(storage.fileExists(reference));
+        assertEquals(migrated, storage.migrateToContentAddressed("products/originals/" + migrated));
+    }
+
+    @Test
+    void references_OutsideTheStorage_ShouldBeRejected() {
+        assertThrows(SecurityException.class, () -> storage.retrieveFile("products/../../etc/passwd"));
+        assertThrows(SecurityException.class, () -> storage.retrieveFile(".staging/upload"));
+        assertThrows(SecurityException.class,
+                () -> storage.storeFile("x".getBytes(), "x.jpg", "image/jpeg", "products/../.."));
+        assertFalse(storage.fileExists("/absolute.jpg"));
+    }
+
+    private MultipartFile multipartFile(String filename, byte[] content, InputStream input) throws IOException {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getOriginalFilename()).thenReturn(filename);
+        when(file.getContentType()).thenReturn("image/png");
+        when(file.getSize()).thenReturn((long) content.length);
+        when(file.getInputStream()).thenReturn(input);
+        return file;
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        return content;
+    }
+
+    private String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
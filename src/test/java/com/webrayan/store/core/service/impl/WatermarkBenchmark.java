@@ -0,0 +1,93 @@
+package com.webrayan.store.core.service.impl;
+
+import com.webrayan.store.core.service.ImageProcessingService.WatermarkOptions;
+import com.webrayan.store.core.service.impl.encoder.JpegImageEncoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-variant watermark cost: text rasterized on every image (the previous path, with and without
+ * the JPEG re-encode addWatermark did) against the cached tile composited into the raster.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.openjdk.jmh.Main WatermarkBenchmark"}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WatermarkBenchmark {
+
+    @Param({"300", "1200"})
+    public int size;
+
+    private final JpegImageEncoder jpegEncoder = new JpegImageEncoder();
+    private final WatermarkRenderer renderer = new WatermarkRenderer();
+    private WatermarkOptions options;
+    private BufferedImage image;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        options = new WatermarkOptions();
+        options.setText("Iran ECommerce");
+        image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, new Color(30, 120, 200), size, size, new Color(230, 200, 40)));
+        g2d.fillRect(0, 0, size, size);
+        g2d.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage textPerImage() {
+        drawText(image, options);
+        return image;
+    }
+
+    @Benchmark
+    public byte[] textPerImageWithEncode() throws IOException {
+        drawText(image, options);
+        return jpegEncoder.encode(image, 0.85f);
+    }
+
+    @Benchmark
+    public BufferedImage cachedTile() {
+        renderer.apply(image, options);
+        return image;
+    }
+
+    /**
+     * The drawing done for every variant before tiles were cached
+     */
+    private static void drawText(BufferedImage image, WatermarkOptions watermarkOptions) {
+        Graphics2D g2d = image.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setFont(new Font(Font.SANS_SERIF, Font.BOLD, watermarkOptions.getFontSize()));
+
+        FontMetrics fontMetrics = g2d.getFontMetrics();
+        int textWidth = fontMetrics.stringWidth(watermarkOptions.getText());
+        int textHeight = fontMetrics.getHeight();
+        Point position = WatermarkRenderer.position(image.getWidth(), image.getHeight(), textWidth, textHeight,
+                watermarkOptions.getPosition(), watermarkOptions.getMargin());
+
+        g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, watermarkOptions.getOpacity()));
+        g2d.setColor(Color.decode(watermarkOptions.getBackgroundColor()));
+        g2d.fillRect(position.x - 5, position.y - textHeight + 5, textWidth + 10, textHeight);
+        g2d.setColor(Color.decode(watermarkOptions.getFontColor()));
+        g2d.drawString(watermarkOptions.getText(), position.x, position.y);
+        g2d.dispose();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WatermarkBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,100 @@
+package com.webrayan.store.core.service.impl;
+
+import com.webrayan.store.core.service.ImageProcessingService.WatermarkOptions;
+import com.webrayan.store.core.service.ImageProcessingService.WatermarkPosition;
+import com.webrayan.store.support.ConcurrencyHarness;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WatermarkRendererTest {
+
+    private final WatermarkRenderer renderer = new WatermarkRenderer();
+
+    @Test
+    void apply_ShouldReuseTileForSameOptions() throws Exception {
+        List<ConcurrencyHarness.Outcome<Boolean>> outcomes = ConcurrencyHarness.run(8, () -> {
+            renderer.apply(image(BufferedImage.TYPE_INT_RGB), options("webrayan", 0.5f));
+            return true;
+        });
+        assertEquals(8, ConcurrencyHarness.successes(outcomes));
+        assertEquals(1, renderer.cachedTiles());
+
+        renderer.apply(image(BufferedImage.TYPE_INT_RGB), options("webrayan", 0.8f));
+        assertEquals(2, renderer.cachedTiles());
+    }
+
+    @Test
+    void apply_ShouldOnlyTouchTheWatermarkCorner() {
+        BufferedImage image = image(BufferedImage.TYPE_INT_RGB);
+
+        renderer.apply(image, options("webrayan", 0.5f));
+
+        assertEquals(Color.GRAY.getRGB(), image.getRGB(0, 0));
+        assertEquals(Color.GRAY.getRGB(), image.getRGB(399, 0));
+        assertEquals(Color.GRAY.getRGB(), image.getRGB(0, 299));
+        assertTrue(changedPixels(image, 200, 250, 400, 300) > 0);
+    }
+
+    @Test
+    void apply_ShouldMatchJava2dCompositingOnOtherRasterTypes() {
+        BufferedImage direct = image(BufferedImage.TYPE_INT_RGB);
+        BufferedImage viaGraphics = image(BufferedImage.TYPE_3BYTE_BGR);
+        WatermarkOptions options = options("webrayan", 0.6f);
+        options.setPosition(WatermarkPosition.CENTER);
+
+        renderer.apply(direct, options);
+        renderer.apply(viaGraphics, options);
+
+        for (int y = 0; y < direct.getHeight(); y++) {
+            for (int x = 0; x < direct.getWidth(); x++) {
+                Color a = new Color(direct.getRGB(x, y));
+                Color b = new Color(viaGraphics.getRGB(x, y));
+                assertTrue(Math.abs(a.getRed() - b.getRed()) <= 2
+                        && Math.abs(a.getGreen() - b.getGreen()) <= 2
+                        && Math.abs(a.getBlue() - b.getBlue()) <= 2, "pixel " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void apply_TransparentWatermark_ShouldLeaveImageUnchanged() {
+        BufferedImage image = image(BufferedImage.TYPE_INT_ARGB);
+
+        renderer.apply(image, options("webrayan", 0f));
+
+        assertEquals(0, changedPixels(image, 0, 0, 400, 300));
+    }
+
+    private WatermarkOptions options(String text, float opacity) {
+        WatermarkOptions options = new WatermarkOptions();
+        options.setText(text);
+        options.setOpacity(opacity);
+        return options;
+    }
+
+    private BufferedImage image(int type) {
+        BufferedImage image = new BufferedImage(400, 300, type);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(Color.GRAY);
+        g2d.fillRect(0, 0, 400, 300);
+        g2d.dispose();
+        return image;
+    }
+
+    private int changedPixels(BufferedImage image, int fromX, int fromY, int toX, int toY) {
+        int changed = 0;
+        for (int y = fromY; y < toY; y++) {
+            for (int x = fromX; x < toX; x++) {
+                if (image.getRGB(x, y) != Color.GRAY.getRGB()) {
+                    changed++;
+                }
+            }
+        }
+        return changed;
+    }
+}
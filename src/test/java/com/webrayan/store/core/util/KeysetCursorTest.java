@@ -0,0 +1,54 @@
+package com.webrayan.store.core.util;
+
+import com.webrayan.store.core.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeysetCursorTest {
+
+    @Test
+    void encodeDecode_ShouldRoundTrip() {
+        LocalDateTime createdAt = LocalDateTime.of(2026, 3, 1, 10, 15, 30, 123456000);
+
+        KeysetCursor decoded = KeysetCursor.decode(KeysetCursor.before(createdAt, 42L).encode());
+
+        assertEquals(createdAt, decoded.getSortValue());
+        assertEquals(42L, decoded.getId());
+        assertTrue(decoded.isBackward());
+    }
+
+    @Test
+    void encodeDecode_WithoutSortValue_ShouldKeepIdOnly() {
+        KeysetCursor decoded = KeysetCursor.decode(KeysetCursor.after(null, 7L).encode());
+
+        assertNull(decoded.getSortValue());
+        assertEquals(7L, decoded.getId());
+        assertFalse(decoded.isBackward());
+    }
+
+    @Test
+    void decode_BlankCursor_ShouldMeanFirstPage() {
+        assertNull(KeysetCursor.decode(null));
+        assertNull(KeysetCursor.decode(""));
+    }
+
+    @Test
+    void decode_TamperedCursor_ShouldThrowBadRequest() {
+        String forged = Base64.getUrlEncoder().encodeToString("x|2026-01-01T00:00|1".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode(forged));
+        assertThrows(BadRequestException.class, () -> KeysetCursor.decode("%%%"));
+    }
+
+    @Test
+    void pageSize_ShouldBeCapped() {
+        assertEquals(KeysetCursor.MAX_PAGE_SIZE, KeysetCursor.pageSize(100000));
+        assertEquals(1, KeysetCursor.pageSize(0));
+        assertEquals(20, KeysetCursor.pageSize(20));
+    }
+}
@@ -0,0 +1,79 @@
+package com.webrayan.store.modules.catalog.controller;
+
+import com.webrayan.store.core.common.dto.CursorPage;
+import com.webrayan.store.core.exception.BadRequestException;
+import com.webrayan.store.modules.catalog.dto.ProductSummary;
+import com.webrayan.store.modules.catalog.service.CategoryService;
+import com.webrayan.store.modules.catalog.service.ProductSummaryService;
+import com.webrayan.store.modules.search.dto.CategoryListingResult;
+import com.webrayan.store.modules.search.service.ProductFacetService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProductControllerTest {
+
+    @InjectMocks
+    private ProductController productController;
+
+    @Mock
+    private ProductSummaryService productSummaryService;
+
+    @Mock
+    private CategoryService categoryService;
+
+    @Mock
+    private ProductFacetService productFacetService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void getProductsByCursor_ShouldReturnThePage() {
+        CursorPage<ProductSummary> page = new CursorPage<>(List.of(), 20, false, false, null, null);
+        when(productSummaryService.getActiveProductsByCursor(null, null, 20)).thenReturn(page);
+
+        ResponseEntity<CursorPage<ProductSummary>> response = productController.getProductsByCursor(null, 20, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(page, response.getBody());
+    }
+
+    @Test
+    void getProductsByCursor_WithTamperedCursor_ShouldReturnBadRequest() {
+        when(productSummaryService.getActiveProductsByCursor(null, "not-a-cursor", 20))
+                .thenThrow(new BadRequestException("نشانگر صفحه نامعتبر است", "not-a-cursor"));
+
+        ResponseEntity<CursorPage<ProductSummary>> response = productController.getProductsByCursor("not-a-cursor", 20, null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void getFacetedProductsByCategory_WithMalformedRange_ShouldReturnBadRequest() {
+        for (String range : List.of("10", "abc:20", "1:2:3")) {
+            MultiValueMap<String, String> parameters = new LinkedMultiValueMap<>();
+            parameters.add("range_7", range);
+
+            ResponseEntity<CategoryListingResult> response =
+                    productController.getFacetedProductsByCategory(3L, parameters, Pageable.unpaged());
+
+            assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode(), range);
+        }
+        verifyNoInteractions(categoryService, productFacetService);
+    }
+}
@@ -0,0 +1,101 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.webrayan.store.modules.catalog.dto.CategoryTreeNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategoryTreeTest {
+
+    private CategoryTree tree;
+
+    @BeforeEach
+    void setUp() {
+        // 1 دیجیتال ← 2 موبایل ← 4 گوشی هوشمند
+        //           ← 3 لپ‌تاپ (غیرفعال)
+        // 5 پوشاک
+        tree = CategoryTree.build(List.of(
+                row(4L, 2L, "گوشی هوشمند", true, 0),
+                row(1L, null, "دیجیتال", true, 1),
+                row(3L, 1L, "لپ‌تاپ", false, 0),
+                row(2L, 1L, "موبایل", true, 1),
+                row(5L, null, "پوشاک", true, 0)
+        ));
+    }
+
+    @Test
+    void build_ShouldSortSiblingsAndComputeDepth() {
+        assertEquals(List.of(5L, 1L), ids(tree.getRoots()));
+        assertEquals(List.of(3L, 2L), ids(tree.find(1L).orElseThrow().getChildren()));
+        assertEquals(2, tree.find(4L).orElseThrow().getDepth());
+        assertEquals(2L, tree.find(4L).orElseThrow().getParentId());
+    }
+
+    @Test
+    void node_ShouldSerializeFlatWithChildIdsOnly() throws Exception {
+        JsonNode json = new ObjectMapper().valueToTree(tree.find(1L).orElseThrow());
+
+        assertFalse(json.has("children"));
+        assertEquals("[3,2]", json.get("subcategoryIds").toString());
+        assertTrue(json.get("isActive").asBoolean());
+        assertFalse(json.has("active"));
+        assertFalse(json.has("root"));
+        assertEquals("دیجیتال", json.get("name").asText());
+    }
+
+    @Test
+    void activeChildren_ShouldSkipInactiveCategories() {
+        assertEquals(List.of(2L), ids(tree.getActiveChildren(1L)));
+        assertTrue(tree.getActiveChildren(99L).isEmpty());
+    }
+
+    @Test
+    void breadcrumb_ShouldRunFromRootToCategory() {
+        assertEquals(List.of(1L, 2L, 4L), ids(tree.getBreadcrumb(4L)));
+        assertTrue(tree.getBreadcrumb(99L).isEmpty());
+    }
+
+    @Test
+    void descendantIds_ShouldIncludeWholeSubtree() {
+        assertEquals(Set.of(1L, 2L, 3L, 4L), tree.getDescendantIds(1L));
+        assertEquals(Set.of(4L), tree.getDescendantIds(4L));
+        assertTrue(tree.getDescendantIds(99L).isEmpty());
+    }
+
+    @Test
+    void wouldCreateCycle_ShouldRejectSelfAndDescendantsAsParent() {
+        assertTrue(tree.wouldCreateCycle(1L, 1L));
+        assertTrue(tree.wouldCreateCycle(1L, 4L));
+        assertFalse(tree.wouldCreateCycle(4L, 5L));
+        assertFalse(tree.wouldCreateCycle(2L, null));
+    }
+
+    @Test
+    void build_ShouldLeaveOutCategoriesInParentCycle() {
+        CategoryTree broken = CategoryTree.build(List.of(
+                row(1L, null, "ریشه", true, 0),
+                row(2L, 3L, "الف", true, 0),
+                row(3L, 2L, "ب", true, 0)
+        ));
+
+        assertEquals(1, broken.size());
+        assertTrue(broken.find(2L).isEmpty());
+    }
+
+    private Object[] row(Long id, Long parentId, String name, boolean active, int sortOrder) {
+        return new Object[]{id, parentId, name, "slug-" + id, active, sortOrder};
+    }
+
+    private List<Long> ids(List<CategoryTreeNode> nodes) {
+        List<Long> ids = new ArrayList<>();
+        nodes.forEach(node -> ids.add(node.getId()));
+        return ids;
+    }
+}
@@ -0,0 +1,222 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.modules.catalog.config.HotStockProperties;
+import com.webrayan.store.modules.catalog.event.ProductChangedEvent;
+import com.webrayan.store.modules.catalog.exception.HotStockRetiringException;
+import com.webrayan.store.modules.catalog.exception.InsufficientStockException;
+import com.webrayan.store.support.ConcurrencyHarness;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class HotStockLedgerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private HotStockLedger hotStockLedger;
+    private InventoryService inventoryService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:hot-stock;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE catalog_products (id BIGINT PRIMARY KEY, stock_quantity INT NOT NULL)");
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        HotStockProperties properties = new HotStockProperties();
+        properties.setEnabled(true);
+        properties.setShards(4);
+        hotStockLedger = new HotStockLedger(jdbcTemplate, properties, transactionManager);
+        inventoryService = new InventoryService(jdbcTemplate, hotStockLedger, mock(ApplicationEventPublisher.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE catalog_products");
+    }
+
+    @Test
+    void reserveStock_ParallelCheckoutsOnHotProduct_ShouldSellExactlyTheStock() throws Exception {
+        insertProduct(1L, 40);
+        hotStockLedger.activate(1L);
+
+        List<ConcurrencyHarness.Outcome<Void>> outcomes = ConcurrencyHarness.run(64, () -> checkout(Map.of(1L, 1)));
+
+        assertEquals(40, ConcurrencyHarness.successes(outcomes));
+        assertEquals(0, hotStockLedger.available(1L));
+        // تا قبل از reconcile پایگاه داده دست نخورده است
+        assertEquals(40, stockOf(1L));
+
+        hotStockLedger.reconcile();
+
+        assertEquals(0, stockOf(1L));
+    }
+
+    @Test
+    void reserveStock_WhenColdLineFails_ShouldReturnHotUnits() {
+        insertProduct(1L, 10);
+        insertProduct(2L, 0);
+        hotStockLedger.activate(1L);
+
+        assertThrows(InsufficientStockException.class, () -> checkout(Map.of(1L, 3, 2L, 1)));
+
+        assertEquals(10, hotStockLedger.available(1L));
+        hotStockLedger.reconcile();
+        assertEquals(10, stockOf(1L));
+    }
+
+    @Test
+    void reserveStock_ShouldCollectUnitsAcrossShards() {
+        insertProduct(1L, 8);
+        hotStockLedger.activate(1L);
+
+        checkout(Map.of(1L, 7));
+
+        assertEquals(1, hotStockLedger.available(1L));
+        assertThrows(InsufficientStockException.class, () -> checkout(Map.of(1L, 2)));
+    }
+
+    @Test
+    void releaseStock_ShouldReturnUnitsToLedgerAndDatabase() {
+        insertProduct(1L, 5);
+        hotStockLedger.activate(1L);
+        checkout(Map.of(1L, 5));
+
+        transactionTemplate.executeWithoutResult(status -> inventoryService.releaseStock(Map.of(1L, 2)));
+        hotStockLedger.reconcile();
+
+        assertEquals(2, hotStockLedger.available(1L));
+        assertEquals(2, stockOf(1L));
+    }
+
+    @Test
+    void deactivate_ShouldFlushDeltaAndFallBackToDatabase() {
+        insertProduct(1L, 5);
+        hotStockLedger.activate(1L);
+        checkout(Map.of(1L, 2));
+
+        hotStockLedger.deactivate(1L);
+        hotStockLedger.reconcile();
+
+        assertFalse(hotStockLedger.isHot(1L));
+        assertEquals(3, stockOf(1L));
+        checkout(Map.of(1L, 3));
+        assertEquals(0, stockOf(1L));
+    }
+
+    @Test
+    void deactivate_WithOpenReservation_ShouldReturnAtOnceAndRetireAfterItCommits() {
+        insertProduct(1L, 5);
+        hotStockLedger.activate(1L);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            inventoryService.reserveStock(Map.of(1L, 2));
+            hotStockLedger.deactivate(1L);
+            hotStockLedger.reconcile();
+            // the checkout is still open: the ledger stays until its units are written
+            assertTrue(hotStockLedger.isHot(1L));
+            assertEquals(5, stockOf(1L));
+        });
+        hotStockLedger.reconcile();
+
+        assertFalse(hotStockLedger.isHot(1L));
+        assertEquals(3, stockOf(1L));
+    }
+
+    @Test
+    void reserveStock_WhileTheLedgerRetires_ShouldFailFastWithARetryableError() throws Exception {
+        insertProduct(1L, 5);
+        hotStockLedger.activate(1L);
+        ExecutorService otherCheckout = Executors.newSingleThreadExecutor();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                inventoryService.reserveStock(Map.of(1L, 2));
+                hotStockLedger.deactivate(1L);
+
+                // the retirement waits for this open checkout; the other one must not wait for the retirement
+                Future<Void> blocked = otherCheckout.submit(() -> checkout(Map.of(1L, 1)));
+                ExecutionException failure = assertThrows(ExecutionException.class,
+                        () -> blocked.get(1, TimeUnit.SECONDS));
+                assertInstanceOf(HotStockRetiringException.class, failure.getCause());
+            });
+        } finally {
+            otherCheckout.shutdownNow();
+        }
+        hotStockLedger.reconcile();
+
+        checkout(Map.of(1L, 1));
+        assertEquals(2, stockOf(1L));
+    }
+
+    @Test
+    void reconcile_WhenTheRowHasFewerUnitsThanSold_ShouldStopAtZeroAndReseed() {
+        insertProduct(1L, 5);
+        hotStockLedger.activate(1L);
+        checkout(Map.of(1L, 4));
+        jdbcTemplate.update("UPDATE catalog_products SET stock_quantity = 2 WHERE id = 1");
+
+        hotStockLedger.reconcile();
+
+        assertEquals(0, stockOf(1L));
+        assertTrue(hotStockLedger.isHot(1L));
+        assertEquals(0, hotStockLedger.available(1L));
+        assertThrows(InsufficientStockException.class, () -> checkout(Map.of(1L, 1)));
+    }
+
+    @Test
+    void stockEdit_ShouldReseedTheLedgerFromTheDatabase() {
+        insertProduct(1L, 5);
+        hotStockLedger.activate(1L);
+        checkout(Map.of(1L, 1));
+        hotStockLedger.reconcile();
+        jdbcTemplate.update("UPDATE catalog_products SET stock_quantity = 20 WHERE id = 1");
+
+        hotStockLedger.onProductChanged(new ProductChangedEvent(1L, ProductChangedEvent.ChangeType.STOCK_CHANGED));
+        hotStockLedger.reconcile();
+
+        assertEquals(20, hotStockLedger.available(1L));
+    }
+
+    @Test
+    void rebalance_ShouldSpreadRemainingUnitsEvenly() {
+        HotStockLedger.ProductLedger ledger = new HotStockLedger.ProductLedger(1L, 4, 0);
+        ledger.release(12);
+
+        ledger.rebalance();
+
+        for (int shard = 0; shard < 4; shard++) {
+            assertEquals(3, ledger.shardAvailable(shard));
+        }
+    }
+
+    private Void checkout(Map<Long, Integer> quantities) {
+        transactionTemplate.executeWithoutResult(status -> inventoryService.reserveStock(quantities));
+        return null;
+    }
+
+    private void insertProduct(Long id, int stock) {
+        jdbcTemplate.update("INSERT INTO catalog_products (id, stock_quantity) VALUES (?, ?)", id, stock);
+    }
+
+    private int stockOf(Long id) {
+        return jdbcTemplate.queryForObject("SELECT stock_quantity FROM catalog_products WHERE id = ?", Integer.class, id);
+    }
+}
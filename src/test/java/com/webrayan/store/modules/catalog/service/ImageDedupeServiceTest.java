@@ -0,0 +1,116 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.core.common.entity.Image;
+import com.webrayan.store.core.config.JpaConfig;
+import com.webrayan.store.core.exception.BadRequestException;
+import com.webrayan.store.modules.catalog.dto.NearDuplicateImageDto;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.entity.ProductImage;
+import com.webrayan.store.support.CatalogFixtures;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, ImageDedupeService.class})
+class ImageDedupeServiceTest {
+
+    private static final long BASE = 0x5A5A_F00F_1234_8001L;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ImageDedupeService imageDedupeService;
+
+    private CatalogFixtures fixtures;
+
+    @BeforeEach
+    void setUp() {
+        fixtures = new CatalogFixtures(entityManager, "dedupe-seller", "کفش");
+    }
+
+    @Test
+    void findNearDuplicates_ShouldPairSimilarContentAndSkipIdenticalCopies() {
+        Long shoeA = product("shoe-a");
+        Long shoeB = product("shoe-b");
+        Long bag = product("bag");
+        Image original = image(shoeA, "sha-1", BASE);
+        // the same file reused by another product is not a near-duplicate of itself
+        image(shoeB, "sha-1", BASE);
+        Image resaved = image(shoeB, "sha-2", BASE ^ 0b1011);
+        image(bag, "sha-3", ~BASE);
+
+        List<NearDuplicateImageDto> report = imageDedupeService.findNearDuplicates(6, 100);
+
+        assertEquals(1, report.size());
+        NearDuplicateImageDto pair = report.get(0);
+        assertEquals(3, pair.getDistance());
+        assertEquals(original.getId(), pair.getImageId());
+        assertEquals(resaved.getId(), pair.getOtherImageId());
+        assertEquals(List.of(shoeA, shoeB), pair.getProductIds());
+        assertEquals(List.of(shoeB), pair.getOtherProductIds());
+    }
+
+    @Test
+    void findNearDuplicates_ShouldHonourDistanceAcrossHashBlocks() {
+        Long product = product("lamp");
+        image(product, "sha-1", BASE);
+        // differing bits spread over the whole hash, so no two fall into the same block
+        image(product, "sha-2", BASE ^ 0x8000_0000_0000_0001L ^ 0x0000_0001_0000_0000L);
+
+        assertEquals(1, imageDedupeService.findNearDuplicates(3, 100).size());
+        assertTrue(imageDedupeService.findNearDuplicates(2, 100).isEmpty());
+        assertThrows(BadRequestException.class, () -> imageDedupeService.findNearDuplicates(-1, 100));
+    }
+
+    @Test
+    void findNearDuplicates_ShouldKeepOnlyTheClosestPairsUpToTheLimit() {
+        Long product = product("mug");
+        Image base = image(product, "sha-1", BASE);
+        Image oneBit = image(product, "sha-2", BASE ^ 0b1);
+        Image threeBits = image(product, "sha-3", BASE ^ 0b111);
+
+        List<NearDuplicateImageDto> report = imageDedupeService.findNearDuplicates(16, 2);
+
+        // three pairs match, each sharing most blocks, but each is reported once and only the two closest
+        assertEquals(2, report.size());
+        assertEquals(1, report.get(0).getDistance());
+        assertEquals(base.getId(), report.get(0).getImageId());
+        assertEquals(oneBit.getId(), report.get(0).getOtherImageId());
+        assertEquals(2, report.get(1).getDistance());
+        assertEquals(oneBit.getId(), report.get(1).getImageId());
+        assertEquals(threeBits.getId(), report.get(1).getOtherImageId());
+        assertTrue(imageDedupeService.findNearDuplicates(16, 0).isEmpty());
+    }
+
+    private Long product(String slug) {
+        return fixtures.product(slug).getId();
+    }
+
+    private Image image(Long productId, String contentHash, long perceptualHash) {
+        Image image = new Image();
+        image.setFilename(contentHash + ".jpg");
+        image.setUrl("/files/" + contentHash + ".jpg");
+        image.setContentHash(contentHash);
+        image.setPerceptualHash(perceptualHash);
+
+        ProductImage productImage = new ProductImage();
+        productImage.setProduct(entityManager.getReference(Product.class, productId));
+        productImage.setImage(image);
+        entityManager.persist(productImage);
+        entityManager.flush();
+        return image;
+    }
+}
@@ -0,0 +1,250 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.core.config.FileUploadConfig;
+import com.webrayan.store.core.config.JpaConfig;
+import com.webrayan.store.core.exception.ResourceNotFoundException;
+import com.webrayan.store.core.service.FileStorageService;
+import com.webrayan.store.core.service.ImageProcessingService;
+import com.webrayan.store.modules.catalog.config.ImageJobProperties;
+import com.webrayan.store.modules.catalog.dto.ImageJobDto;
+import com.webrayan.store.modules.catalog.entity.ImageProcessingJob;
+import com.webrayan.store.modules.catalog.entity.ProductImageVariant;
+import com.webrayan.store.modules.catalog.enums.ImageJobStatus;
+import com.webrayan.store.modules.catalog.repository.ImageProcessingJobRepository;
+import com.webrayan.store.modules.catalog.repository.ProductImageVariantRepository;
+import com.webrayan.store.support.CatalogFixtures;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * The worker runs jobs on its own threads with their own transactions, so this test commits its
+ * fixtures instead of relying on the per-test rollback.
+ */
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({JpaConfig.class, FileUploadConfig.class, ImageJobProperties.class, ImageJobService.class, ImageJobWorker.class})
+@TestPropertySource(properties = {
+        "app.catalog.image-jobs.poll-interval-ms=3600000",
+        "app.catalog.image-jobs.max-attempts=2",
+        "app.catalog.image-jobs.retry-delay-ms=0",
+        "app.catalog.image-jobs.pregenerate-sizes=true"
+})
+class ImageJobWorkerTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ImageJobService imageJobService;
+
+    @Autowired
+    private ImageJobWorker imageJobWorker;
+
+    @Autowired
+    private ImageProcessingJobRepository jobRepository;
+
+    @Autowired
+    private ProductImageVariantRepository variantRepository;
+
+    @MockitoBean
+    private FileStorageService fileStorageService;
+
+    @MockitoBean
+    private ImageProcessingService imageProcessingService;
+
+    private TransactionTemplate transactionTemplate;
+    private Long productId;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        productId = transactionTemplate.execute(status ->
+                new CatalogFixtures(entityManager, "image-seller", "دوربین").product("camera-1").getId());
+
+        when(fileStorageService.storeFile(any(MultipartFile.class), anyString())).thenAnswer(invocation -> {
+            MultipartFile file = invocation.getArgument(0);
+            return new FileStorageService.FileStorageResult("orig_" + file.getOriginalFilename(),
+                    file.getOriginalFilename(), file.getSize(), file.getContentType(), "/tmp/orig");
+        });
+        when(fileStorageService.storeFile(any(byte[].class), anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            byte[] content = invocation.getArgument(0);
+            return new FileStorageService.FileStorageResult("variant_" + invocation.getArgument(1),
+                    invocation.getArgument(1), content.length, invocation.getArgument(2), "/tmp/variant");
+        });
+        when(fileStorageService.getFileUrl(anyString())).thenAnswer(invocation -> "/files/" + invocation.getArgument(0));
+        when(fileStorageService.retrieveFile(anyString())).thenReturn(new byte[]{1, 2, 3});
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.createQuery("DELETE FROM ProductImageVariant").executeUpdate();
+            entityManager.createQuery("DELETE FROM ImageProcessingJob").executeUpdate();
+            entityManager.createQuery("DELETE FROM ProductImage").executeUpdate();
+            entityManager.createQuery("DELETE FROM Image").executeUpdate();
+            entityManager.createQuery("DELETE FROM Product").executeUpdate();
+            entityManager.createQuery("DELETE FROM Category").executeUpdate();
+            entityManager.createQuery("DELETE FROM User").executeUpdate();
+        });
+    }
+
+    @Test
+    void enqueue_ShouldStoreOriginalAndReturnWithoutProcessing() throws Exception {
+        ImageJobDto job = imageJobService.enqueue(productId, upload("front.jpg"), false);
+
+        assertNotNull(job.getJobId());
+        assertEquals(ImageJobStatus.PENDING, job.getStatus());
+        // four configured sizes plus the original
+        assertEquals(5, job.getTotalVariants());
+        assertEquals(0, job.getProgressPercent());
+        verify(fileStorageService).storeFile(any(MultipartFile.class), eq("products/originals"));
+        verifyNoInteractions(imageProcessingService);
+
+        ImageProcessingJob stored = jobRepository.findById(job.getJobId()).orElseThrow();
+        assertEquals("products/originals/orig_front.jpg", stored.getSourceReference());
+    }
+
+    @Test
+    void poll_ShouldRenderVariantsAndCompleteJob() throws Exception {
+        when(imageProcessingService.processImage(any(byte[].class), anyString(), anyString(), any()))
+                .thenReturn(result("thumbnail", "original"));
+        ImageJobDto job = imageJobService.enqueue(productId, upload("front.jpg"), true);
+
+        imageJobWorker.poll();
+        ImageJobDto done = awaitStatus(job.getJobId(), ImageJobStatus.COMPLETED);
+
+        assertEquals(100, done.getProgressPercent());
+        assertEquals(1, done.getAttempts());
+        assertEquals(2, variantRepository.findByProductImageId(done.getProductImageId()).size());
+        verify(fileStorageService, times(2)).storeFile(any(byte[].class), anyString(), anyString(), eq("products/variants"));
+    }
+
+    @Test
+    void failingJob_ShouldBeRetriedThenMarkedFailed() throws Exception {
+        when(imageProcessingService.processImage(any(byte[].class), anyString(), anyString(), any()))
+                .thenThrow(new IOException("corrupt image"));
+        ImageJobDto job = imageJobService.enqueue(productId, upload("broken.jpg"), false);
+
+        imageJobWorker.poll();
+        ImageJobDto retry = awaitStatus(job.getJobId(), ImageJobStatus.PENDING, 1);
+        assertEquals("corrupt image", retry.getErrorMessage());
+
+        imageJobWorker.poll();
+        ImageJobDto failed = awaitStatus(job.getJobId(), ImageJobStatus.FAILED);
+        assertEquals(2, failed.getAttempts());
+        assertTrue(variantRepository.findByProductImageId(failed.getProductImageId()).isEmpty());
+    }
+
+    @Test
+    void runningJobOfDeadWorker_ShouldBeRequeuedAndCompleted() throws Exception {
+        when(imageProcessingService.processImage(any(byte[].class), anyString(), anyString(), any()))
+                .thenReturn(result("small"));
+        ImageJobDto job = imageJobService.enqueue(productId, upload("front.jpg"), false);
+        // simulates a worker that claimed the job and then died with the process
+        transactionTemplate.executeWithoutResult(status -> {
+            ImageProcessingJob stale = entityManager.find(ImageProcessingJob.class, job.getJobId());
+            stale.setStatus(ImageJobStatus.RUNNING);
+            stale.setAttempts(1);
+            stale.setStartedAt(LocalDateTime.now().minusHours(1));
+        });
+
+        imageJobWorker.poll();
+        ImageJobDto done = awaitStatus(job.getJobId(), ImageJobStatus.COMPLETED);
+
+        assertEquals(2, done.getAttempts());
+        assertEquals(1, variantRepository.findByProductImageId(done.getProductImageId()).size());
+    }
+
+    @Test
+    void identicalUpload_ShouldReuseOriginalAndVariantsWithoutProcessing() throws Exception {
+        when(fileStorageService.storeFile(any(MultipartFile.class), anyString())).thenAnswer(invocation -> {
+            MultipartFile file = invocation.getArgument(0);
+            return new FileStorageService.FileStorageResult("orig_" + file.getOriginalFilename(),
+                    file.getOriginalFilename(), file.getSize(), file.getContentType(), "/tmp/orig", "same-sha256");
+        });
+        when(fileStorageService.fileExists("products/originals/orig_front.jpg")).thenReturn(true);
+        when(imageProcessingService.processImage(any(byte[].class), anyString(), anyString(), any()))
+                .thenReturn(result("thumbnail", "original"));
+        ImageJobDto first = imageJobService.enqueue(productId, upload("front.jpg"), true);
+        imageJobWorker.poll();
+        awaitStatus(first.getJobId(), ImageJobStatus.COMPLETED);
+
+        ImageJobDto second = imageJobService.enqueue(productId, upload("copy.jpg"), false);
+
+        assertEquals(ImageJobStatus.COMPLETED, second.getStatus());
+        assertEquals(2, second.getTotalVariants());
+        assertEquals("products/originals/orig_front.jpg",
+                jobRepository.findById(second.getJobId()).orElseThrow().getSourceReference());
+        assertEquals(referencesOf(first), referencesOf(second));
+        verify(fileStorageService).deleteFile("products/originals/orig_copy.jpg");
+        verify(imageProcessingService, times(1)).processImage(any(byte[].class), anyString(), anyString(), any());
+    }
+
+    @Test
+    void getStatus_WithUnknownJob_ShouldThrow() {
+        assertThrows(ResourceNotFoundException.class, () -> imageJobService.getStatus(-1L));
+    }
+
+    private Set<String> referencesOf(ImageJobDto job) {
+        return variantRepository.findByProductImageId(job.getProductImageId()).stream()
+                .map(ProductImageVariant::getFileReference)
+                .collect(Collectors.toSet());
+    }
+
+    private MockMultipartFile upload(String filename) {
+        return new MockMultipartFile("file", filename, "image/jpeg", new byte[]{1, 2, 3});
+    }
+
+    private ImageProcessingService.ImageProcessingResult result(String... sizeNames) {
+        List<ImageProcessingService.ProcessedImageVariant> variants = java.util.Arrays.stream(sizeNames)
+                .map(name -> new ImageProcessingService.ProcessedImageVariant(name, 10, 10, "jpg", 3, new byte[]{1, 2, 3}))
+                .toList();
+        return new ImageProcessingService.ImageProcessingResult("front.jpg", variants, null);
+    }
+
+    private ImageJobDto awaitStatus(Long jobId, ImageJobStatus expected) throws InterruptedException {
+        return awaitStatus(jobId, expected, 0);
+    }
+
+    private ImageJobDto awaitStatus(Long jobId, ImageJobStatus expected, int minAttempts) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        ImageJobDto job = imageJobService.getStatus(jobId);
+        while ((job.getStatus() != expected || job.getAttempts() < minAttempts) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            job = imageJobService.getStatus(jobId);
+        }
+        assertEquals(expected, job.getStatus());
+        return job;
+    }
+}
@@ -0,0 +1,204 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.core.common.entity.Image;
+import com.webrayan.store.core.config.FileUploadConfig;
+import com.webrayan.store.core.config.JpaConfig;
+import com.webrayan.store.core.exception.BadRequestException;
+import com.webrayan.store.core.service.FileStorageService;
+import com.webrayan.store.core.service.impl.LocalFileStorageService;
+import com.webrayan.store.core.validation.FileValidationService;
+import com.webrayan.store.modules.catalog.config.ImageJobProperties;
+import com.webrayan.store.modules.catalog.dto.StorageMigrationResultDto;
+import com.webrayan.store.modules.catalog.entity.ImageProcessingJob;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.entity.ProductImage;
+import com.webrayan.store.modules.catalog.entity.ProductImageVariant;
+import com.webrayan.store.modules.catalog.event.ImageUrlsChangedEvent;
+import com.webrayan.store.support.CatalogFixtures;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, ImageJobProperties.class, ImageStorageMigrationService.class,
+        FileUploadConfig.class, FileValidationService.class, LocalFileStorageService.class,
+        ImageStorageMigrationServiceTest.LateUpload.class})
+class ImageStorageMigrationServiceTest {
+
+    @TempDir
+    static Path uploads;
+
+    @DynamicPropertySource
+    static void storageDirectories(DynamicPropertyRegistry registry) {
+        registry.add("app.file-upload.upload-directory", () -> uploads.resolve("files").toString());
+        registry.add("app.file-upload.temp-directory", () -> uploads.resolve("temp").toString());
+    }
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ImageStorageMigrationService migrationService;
+
+    @Autowired
+    private LateUpload lateUpload;
+
+    private CatalogFixtures fixtures;
+
+    @BeforeEach
+    void setUp() {
+        fixtures = new CatalogFixtures(entityManager, "migration-seller", "کیف");
+    }
+
+    @Test
+    void migrate_ShouldRewriteEveryReferenceToTheContentAddressedName() throws IOException {
+        String original = store("original bytes", "bag.jpg", "products/originals");
+        String variant = "products/variants/" + store("variant bytes", "original.webp", "products/variants");
+        ProductImage first = productImage("bag-a", original);
+        // an identical upload shares the stored original
+        ProductImage second = productImage("bag-b", original);
+        ProductImageVariant firstVariant = variant(first, variant);
+        ProductImageVariant secondVariant = variant(second, variant);
+        ImageProcessingJob job = job(first, "products/originals/" + original);
+        ProductImage missing = productImage("bag-c", "0b6bc0f4-3f6e-4c55-9c2b-6ad8f5a0f4d1_gone.jpg");
+        entityManager.flush();
+        entityManager.clear();
+
+        StorageMigrationResultDto result = migrationService.migrate(1, true);
+
+        assertEquals(1, result.getMigratedOriginals());
+        assertEquals(1, result.getMigratedVariants());
+        assertEquals(1, result.getFailed());
+        assertEquals(2, result.getRemovedLegacyFiles());
+
+        Image firstImage = entityManager.find(Image.class, first.getImage().getId());
+        Image secondImage = entityManager.find(Image.class, second.getImage().getId());
+        assertTrue(firstImage.getFilename().matches("[0-9a-f]{64}\\.jpg"));
+        assertEquals(firstImage.getFilename(), secondImage.getFilename());
+        String migratedOriginal = "products/originals/" + firstImage.getFilename();
+        assertEquals(fileStorageService.getFileUrl(migratedOriginal), firstImage.getUrl());
+        assertEquals(migratedOriginal, entityManager.find(ImageProcessingJob.class, job.getId()).getSourceReference());
+        assertEquals("original bytes", new String(fileStorageService.retrieveFile(migratedOriginal)));
+        assertFalse(fileStorageService.fileExists("products/originals/" + original));
+
+        String migratedVariant = entityManager.find(ProductImageVariant.class, firstVariant.getId()).getFileReference();
+        assertTrue(migratedVariant.matches("products/variants/[0-9a-f]{64}\\.webp"));
+        assertEquals(migratedVariant, entityManager.find(ProductImageVariant.class, secondVariant.getId()).getFileReference());
+        assertEquals("variant bytes", new String(fileStorageService.retrieveFile(migratedVariant)));
+
+        // rows whose file could not be read keep their reference
+        assertEquals("0b6bc0f4-3f6e-4c55-9c2b-6ad8f5a0f4d1_gone.jpg",
+                entityManager.find(Image.class, missing.getImage().getId()).getFilename());
+
+        StorageMigrationResultDto rerun = migrationService.migrate(100, false);
+        assertEquals(0, rerun.getMigratedOriginals());
+        assertEquals(0, rerun.getMigratedVariants());
+    }
+
+    @Test
+    void migrate_UploadReusingTheLegacyFileMeanwhile_ShouldKeepIt() throws IOException {
+        String original = store("shared bytes", "vase.jpg", "products/originals");
+        productImage("vase-a", original);
+        entityManager.flush();
+        entityManager.clear();
+        lateUpload.filename = original;
+
+        StorageMigrationResultDto result = migrationService.migrate(1, true);
+
+        // the late row keeps the legacy file alive until the walk reaches and renames it too
+        assertEquals(0, result.getFailed());
+        assertEquals(2, result.getMigratedOriginals());
+        assertEquals(1, result.getRemovedLegacyFiles());
+        Image late = entityManager.find(Image.class, lateUpload.insertedId);
+        assertNotEquals(original, late.getFilename());
+        assertTrue(fileStorageService.fileExists("products/originals/" + late.getFilename()));
+        assertFalse(fileStorageService.fileExists("products/originals/" + original));
+    }
+
+    @Test
+    void migrate_InvalidBatchSize_ShouldBeRejected() {
+        assertThrows(BadRequestException.class, () -> migrationService.migrate(0, false));
+        assertThrows(BadRequestException.class,
+                () -> migrationService.migrate(ImageStorageMigrationService.MAX_BATCH_SIZE + 1, false));
+    }
+
+    private String store(String content, String filename, String directory) throws IOException {
+        return fileStorageService.storeFile(content.getBytes(), filename, "image/jpeg", directory).getFileReference();
+    }
+
+    private ProductImage productImage(String slug, String filename) {
+        Product product = fixtures.product(slug);
+
+        Image image = new Image();
+        image.setFilename(filename);
+        image.setUrl(fileStorageService.getFileUrl("products/originals/" + filename));
+
+        ProductImage productImage = new ProductImage();
+        productImage.setProduct(product);
+        productImage.setImage(image);
+        entityManager.persist(productImage);
+        return productImage;
+    }
+
+    private ProductImageVariant variant(ProductImage productImage, String reference) {
+        ProductImageVariant variant = new ProductImageVariant(null, productImage, "original", 10, 10, "webp", 13L,
+                reference, fileStorageService.getFileUrl(reference));
+        entityManager.persist(variant);
+        return variant;
+    }
+
+    private ImageProcessingJob job(ProductImage productImage, String sourceReference) {
+        ImageProcessingJob job = new ImageProcessingJob();
+        job.setProductImage(productImage);
+        job.setSourceReference(sourceReference);
+        job.setNextAttemptAt(LocalDateTime.now());
+        entityManager.persist(job);
+        return job;
+    }
+
+    /**
+     * An identical upload that picks the legacy file as its duplicate and inserts its row right after
+     * the batch renamed the others
+     */
+    static class LateUpload {
+
+        @Autowired
+        private EntityManager entityManager;
+
+        private String filename;
+        private Long insertedId;
+
+        @EventListener
+        public void onImageUrlsChanged(ImageUrlsChangedEvent event) {
+            if (filename != null) {
+                Image image = new Image();
+                image.setFilename(filename);
+                image.setUrl("/files/products/originals/" + filename);
+                entityManager.persist(image);
+                entityManager.flush();
+                insertedId = image.getId();
+                filename = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.modules.catalog.config.HotStockProperties;
+import com.webrayan.store.modules.catalog.exception.InsufficientStockException;
+import com.webrayan.store.support.ConcurrencyHarness;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * چند checkout همزمان روی پایگاه داده واقعی (H2) برای اطمینان از عدم فروش بیش از موجودی
+ */
+class InventoryServiceConcurrencyTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private InventoryService inventoryService;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:inventory;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE catalog_products (id BIGINT PRIMARY KEY, stock_quantity INT NOT NULL)");
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        HotStockLedger hotStockLedger = new HotStockLedger(jdbcTemplate, new HotStockProperties(), transactionManager);
+        inventoryService = new InventoryService(jdbcTemplate, hotStockLedger, mock(ApplicationEventPublisher.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE catalog_products");
+    }
+
+    @Test
+    void reserveStock_ParallelCheckoutsForLastUnit_ShouldSellItOnce() throws Exception {
+        insertProduct(1L, 1);
+
+        List<ConcurrencyHarness.Outcome<Void>> outcomes = ConcurrencyHarness.run(20, () -> checkout(Map.of(1L, 1)));
+
+        assertEquals(1, ConcurrencyHarness.successes(outcomes));
+        outcomes.stream().filter(outcome -> !outcome.succeeded())
+                .forEach(outcome -> assertInstanceOf(InsufficientStockException.class, outcome.getError()));
+        assertEquals(0, stockOf(1L));
+    }
+
+    @Test
+    void reserveStock_ShouldNeverGoBelowZero() throws Exception {
+        insertProduct(1L, 10);
+
+        List<ConcurrencyHarness.Outcome<Void>> outcomes = ConcurrencyHarness.run(25, () -> checkout(Map.of(1L, 1)));
+
+        assertEquals(10, ConcurrencyHarness.successes(outcomes));
+        assertEquals(0, stockOf(1L));
+    }
+
+    @Test
+    void reserveStock_WhenOneLineFails_ShouldRollBackWholeCart() throws Exception {
+        insertProduct(1L, 5);
+        insertProduct(2L, 1);
+
+        List<ConcurrencyHarness.Outcome<Void>> outcomes = ConcurrencyHarness.run(10, () -> checkout(Map.of(1L, 1, 2L, 1)));
+
+        assertEquals(1, ConcurrencyHarness.successes(outcomes));
+        assertEquals(4, stockOf(1L));
+        assertEquals(0, stockOf(2L));
+    }
+
+    @Test
+    void releaseStock_ShouldAddQuantitiesBack() {
+        insertProduct(1L, 0);
+
+        transactionTemplate.executeWithoutResult(status -> inventoryService.releaseStock(Map.of(1L, 3)));
+
+        assertEquals(3, stockOf(1L));
+    }
+
+    @Test
+    void reserveStock_WithInvalidQuantity_ShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> inventoryService.reserveStock(Map.of(1L, 0)));
+    }
+
+    private Void checkout(Map<Long, Integer> quantities) {
+        transactionTemplate.executeWithoutResult(status -> inventoryService.reserveStock(quantities));
+        return null;
+    }
+
+    private void insertProduct(Long id, int stock) {
+        jdbcTemplate.update("INSERT INTO catalog_products (id, stock_quantity) VALUES (?, ?)", id, stock);
+    }
+
+    private int stockOf(Long id) {
+        return jdbcTemplate.queryForObject("SELECT stock_quantity FROM catalog_products WHERE id = ?", Integer.class, id);
+    }
+}
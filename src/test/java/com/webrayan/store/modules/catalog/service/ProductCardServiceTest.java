@@ -0,0 +1,113 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.core.common.entity.Image;
+import com.webrayan.store.core.config.JpaConfig;
+import com.webrayan.store.modules.catalog.dto.ProductCardView;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.entity.ProductImage;
+import com.webrayan.store.support.CatalogFixtures;
+import com.webrayan.store.support.QueryCounter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, ProductCardService.class})
+class ProductCardServiceTest {
+
+    private static final int PAGE_SIZE = 12;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProductCardService productCardService;
+
+    private QueryCounter queryCounter;
+    private List<Product> page;
+
+    @BeforeEach
+    void setUp() {
+        queryCounter = new QueryCounter(entityManagerFactory);
+
+        CatalogFixtures fixtures = new CatalogFixtures(entityManager, "seller", "موبایل");
+
+        page = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Product product = fixtures.product("product-" + i);
+            // محصولات زوج دو تصویر دارند که دومی تصویر اصلی است
+            if (i % 2 == 0) {
+                addImage(product, "/uploads/" + i + "-a.jpg", false, 0);
+                addImage(product, "/uploads/" + i + "-primary.jpg", true, 1);
+            }
+            page.add(product);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void getCards_ShouldResolveWholeGridPageInTwoQueries() {
+        queryCounter.reset();
+
+        Map<Long, ProductCardView> cards = productCardService.getCards(page);
+
+        assertEquals(2, queryCounter.count());
+        assertEquals(PAGE_SIZE, cards.size());
+
+        ProductCardView withImages = cards.get(page.get(0).getId());
+        assertEquals("/uploads/0-primary.jpg", withImages.getFirstImageUrl());
+        assertEquals(2, withImages.getImageCount());
+        assertEquals("موبایل", withImages.getCategoryName());
+        assertEquals("Sara Ahmadi", withImages.getSellerName());
+
+        ProductCardView withoutImages = cards.get(page.get(1).getId());
+        assertFalse(withoutImages.hasImage());
+        assertEquals(0, withoutImages.getImageCount());
+    }
+
+    @Test
+    void getCards_ShouldKeepPageOrder() {
+        List<Long> expected = page.stream().map(Product::getId).toList();
+
+        assertEquals(expected, new ArrayList<>(productCardService.getCards(page).keySet()));
+    }
+
+    @Test
+    void getCards_EmptyPage_ShouldNotQuery() {
+        queryCounter.reset();
+
+        assertTrue(productCardService.getCards(List.of()).isEmpty());
+        assertEquals(0, queryCounter.count());
+    }
+
+    private void addImage(Product product, String url, boolean primary, int sortOrder) {
+        Image image = new Image();
+        image.setUrl(url);
+        entityManager.persist(image);
+
+        ProductImage productImage = new ProductImage();
+        productImage.setProduct(product);
+        productImage.setImage(image);
+        productImage.setIsPrimary(primary);
+        productImage.setSortOrder(sortOrder);
+        entityManager.persist(productImage);
+    }
+}
@@ -0,0 +1,193 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.core.common.repository.ImageRepository;
+import com.webrayan.store.core.config.CacheConfig;
+import com.webrayan.store.core.config.FileUploadConfig;
+import com.webrayan.store.core.service.FileStorageService;
+import com.webrayan.store.modules.catalog.config.ImageJobProperties;
+import com.webrayan.store.modules.catalog.dto.ProductDetailDto;
+import com.webrayan.store.modules.catalog.entity.Category;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.entity.ProductImage;
+import com.webrayan.store.modules.catalog.event.CategoryChangedEvent;
+import com.webrayan.store.modules.catalog.event.ImageUrlsChangedEvent;
+import com.webrayan.store.modules.catalog.event.ProductChangedEvent;
+import com.webrayan.store.modules.catalog.repository.ImageProcessingJobRepository;
+import com.webrayan.store.modules.catalog.repository.ProductImageRepository;
+import com.webrayan.store.modules.catalog.repository.ProductImageVariantRepository;
+import com.webrayan.store.modules.catalog.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProductDetailServiceTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ProductDetailService productDetailService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(CacheConfig.PRODUCT_DETAILS, CacheConfig.PRODUCT_SLUGS);
+        productDetailService = new ProductDetailService(productRepository, cacheManager, transactionManager);
+    }
+
+    @Test
+    void getProductDetail_ShouldServeSecondCallFromCache() {
+        when(productRepository.findByIdWithImages(1L)).thenReturn(Optional.of(product(1L, "phone")));
+
+        ProductDetailDto first = productDetailService.getProductDetail(1L).orElseThrow();
+        ProductDetailDto second = productDetailService.getProductDetail(1L).orElseThrow();
+
+        assertSame(first, second);
+        assertEquals("/images/no-image.png", first.getPrimaryImageUrl());
+        verify(productRepository, times(1)).findByIdWithImages(1L);
+        verify(transactionManager, times(1)).getTransaction(any());
+    }
+
+    @Test
+    void getProductDetailBySlug_ShouldReuseDetailCachedById() {
+        when(productRepository.findByIdWithImages(1L)).thenReturn(Optional.of(product(1L, "phone")));
+        when(productRepository.findBySlug("phone")).thenReturn(Optional.of(product(1L, "phone")));
+
+        productDetailService.getProductDetailBySlug("phone");
+        productDetailService.getProductDetailBySlug("phone");
+        productDetailService.getProductDetail(1L);
+
+        verify(productRepository, times(1)).findBySlug("phone");
+        verify(productRepository, never()).findByIdWithImages(1L);
+    }
+
+    @Test
+    void onProductChanged_ShouldEvictAndReloadRenamedSlug() {
+        when(productRepository.findBySlug("phone")).thenReturn(Optional.of(product(1L, "phone")));
+        productDetailService.getProductDetailBySlug("phone");
+
+        productDetailService.onProductChanged(new ProductChangedEvent(1L, ProductChangedEvent.ChangeType.UPDATED));
+        when(productRepository.findBySlug("phone")).thenReturn(Optional.empty());
+        when(productRepository.findByIdWithImages(1L)).thenReturn(Optional.of(product(1L, "new-phone")));
+
+        assertTrue(productDetailService.getProductDetailBySlug("phone").isEmpty());
+        assertEquals("new-phone", productDetailService.getProductDetail(1L).orElseThrow().getSlug());
+    }
+
+    @Test
+    void getProductDetail_ChangedDuringTheRead_ShouldNotCacheTheOldDetail() {
+        when(productRepository.findByIdWithImages(1L)).thenAnswer(invocation -> {
+            // the product is saved and its change event handled while this read is still running
+            productDetailService.onProductChanged(new ProductChangedEvent(1L, ProductChangedEvent.ChangeType.UPDATED));
+            return Optional.of(product(1L, "phone"));
+        }).thenReturn(Optional.of(product(1L, "new-phone")));
+
+        assertEquals("phone", productDetailService.getProductDetail(1L).orElseThrow().getSlug());
+
+        assertEquals("new-phone", productDetailService.getProductDetail(1L).orElseThrow().getSlug());
+    }
+
+    @Test
+    void onProductChanged_CheckoutReservation_ShouldKeepTheCachedDetail() {
+        when(productRepository.findByIdWithImages(1L)).thenReturn(Optional.of(product(1L, "phone")));
+        productDetailService.getProductDetail(1L);
+
+        productDetailService.onProductChanged(new ProductChangedEvent(1L, ProductChangedEvent.ChangeType.STOCK_RESERVED));
+        productDetailService.getProductDetail(1L);
+
+        verify(productRepository, times(1)).findByIdWithImages(1L);
+    }
+
+    @Test
+    void onCategoryChanged_ShouldReloadTheRenamedCategory() {
+        Product product = product(1L, "phone");
+        Category category = new Category();
+        category.setId(5L);
+        category.setName("Phones");
+        category.setSlug("phones");
+        product.setCategory(category);
+        when(productRepository.findByIdWithImages(1L)).thenReturn(Optional.of(product));
+        productDetailService.getProductDetail(1L);
+
+        category.setName("Mobile phones");
+        productDetailService.onCategoryChanged(new CategoryChangedEvent(5L));
+
+        assertEquals("Mobile phones", productDetailService.getProductDetail(1L).orElseThrow().getCategoryName());
+    }
+
+    @Test
+    void onImageUrlsChanged_ShouldDropEveryCachedDetail() {
+        when(productRepository.findByIdWithImages(1L)).thenReturn(Optional.of(product(1L, "phone")));
+        when(productRepository.findByIdWithImages(2L)).thenReturn(Optional.of(product(2L, "tablet")));
+        productDetailService.getProductDetail(1L);
+        productDetailService.getProductDetail(2L);
+
+        productDetailService.onImageUrlsChanged(new ImageUrlsChangedEvent(3));
+        productDetailService.getProductDetail(1L);
+        productDetailService.getProductDetail(2L);
+
+        verify(productRepository, times(2)).findByIdWithImages(1L);
+        verify(productRepository, times(2)).findByIdWithImages(2L);
+    }
+
+    @Test
+    void getProductDetail_ShouldNotCacheMissingProduct() {
+        when(productRepository.findByIdWithImages(2L)).thenReturn(Optional.empty());
+
+        assertTrue(productDetailService.getProductDetail(2L).isEmpty());
+        assertTrue(productDetailService.getProductDetail(2L).isEmpty());
+
+        verify(productRepository, times(2)).findByIdWithImages(2L);
+    }
+
+    @Test
+    void imageUpload_ShouldReplaceTheCachedPrimaryImage() throws Exception {
+        Product product = product(1L, "phone");
+        when(productRepository.findByIdWithImages(1L)).thenReturn(Optional.of(product));
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        assertEquals("/images/no-image.png", productDetailService.getProductDetail(1L).orElseThrow().getPrimaryImageUrl());
+
+        FileStorageService fileStorageService = mock(FileStorageService.class);
+        when(fileStorageService.storeFile(any(MultipartFile.class), anyString()))
+                .thenReturn(new FileStorageService.FileStorageResult("front.jpg", "front.jpg", 3, "image/jpeg", "/tmp/front.jpg"));
+        when(fileStorageService.getFileUrl(anyString())).thenAnswer(invocation -> "/files/" + invocation.getArgument(0));
+        ProductImageRepository productImageRepository = mock(ProductImageRepository.class);
+        when(productImageRepository.save(any(ProductImage.class))).thenAnswer(invocation -> {
+            ProductImage saved = invocation.getArgument(0);
+            product.getImages().add(saved);
+            return saved;
+        });
+        ImageProcessingJobRepository jobRepository = mock(ImageProcessingJobRepository.class);
+        when(jobRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        // the event is delivered to the detail cache the way the after-commit listener would receive it
+        ImageJobService imageJobService = new ImageJobService(jobRepository, mock(ImageRepository.class),
+                mock(ProductImageVariantRepository.class), productRepository, productImageRepository, fileStorageService,
+                new FileUploadConfig(), new ImageJobProperties(),
+                event -> productDetailService.onProductChanged((ProductChangedEvent) event));
+
+        imageJobService.enqueue(1L, new MockMultipartFile("file", "front.jpg", "image/jpeg", new byte[]{1, 2, 3}), true);
+
+        assertEquals("/files/products/originals/front.jpg",
+                productDetailService.getProductDetail(1L).orElseThrow().getPrimaryImageUrl());
+    }
+
+    private static Product product(Long id, String slug) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Phone");
+        product.setSlug(slug);
+        return product;
+    }
+}
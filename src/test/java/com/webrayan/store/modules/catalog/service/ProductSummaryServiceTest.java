@@ -0,0 +1,192 @@
+package com.webrayan.store.modules.catalog.service;
+
+import com.webrayan.store.core.common.entity.Image;
+import com.webrayan.store.core.common.dto.CursorPage;
+import com.webrayan.store.core.config.JpaConfig;
+import com.webrayan.store.core.exception.BadRequestException;
+import com.webrayan.store.modules.catalog.dto.ProductSummary;
+import com.webrayan.store.modules.catalog.entity.Category;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.entity.ProductImage;
+import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import com.webrayan.store.support.CatalogFixtures;
+import com.webrayan.store.support.QueryCounter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, ProductSummaryService.class, CategoryTreeService.class})
+class ProductSummaryServiceTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProductSummaryService productSummaryService;
+
+    private QueryCounter queryCounter;
+    private Category category;
+    private List<Product> products;
+
+    @BeforeEach
+    void setUp() {
+        queryCounter = new QueryCounter(entityManagerFactory);
+
+        CatalogFixtures fixtures = new CatalogFixtures(entityManager, "seller", "موبایل");
+        category = fixtures.category();
+
+        products = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int index = i;
+            Product product = fixtures.product("product-" + i, p -> {
+                p.setPrice(new BigDecimal(100 + index));
+                p.setStatus(index == 4 ? ProductStatus.DRAFT : ProductStatus.PUBLISHED);
+            });
+            if (i == 0) {
+                addImage(product, "/uploads/0-a.jpg", false, 0);
+                addImage(product, "/uploads/0-primary.jpg", true, 1);
+            }
+            products.add(product);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void getActiveProducts_ShouldNotHydrateEntities() {
+        queryCounter.reset();
+
+        Page<ProductSummary> page = productSummaryService.getActiveProducts(PageRequest.of(0, 2, Sort.by("price")));
+
+        // یک کوئری projection، یک کوئری count و یک کوئری تصاویر
+        assertEquals(3, queryCounter.count());
+        assertEquals(0, queryCounter.entityLoadCount());
+        assertEquals(4, page.getTotalElements());
+
+        ProductSummary first = page.getContent().get(0);
+        assertEquals(products.get(0).getId(), first.getId());
+        assertEquals("/uploads/0-primary.jpg", first.getImageUrl());
+        assertEquals(category.getId(), first.getCategoryId());
+        assertEquals("موبایل", first.getCategoryName());
+        assertNull(page.getContent().get(1).getImageUrl());
+    }
+
+    @Test
+    void getActiveProductsByCursor_ShouldWalkForwardAndBackWithoutCount() {
+        // محصولات 1 و 2 زمان ایجاد یکسان دارند تا ترتیب ثانویه با id بررسی شود
+        LocalDateTime base = LocalDateTime.of(2026, 1, 1, 12, 0);
+        setCreatedAt(products.get(0), base);
+        setCreatedAt(products.get(1), base.plusMinutes(1));
+        setCreatedAt(products.get(2), base.plusMinutes(1));
+        setCreatedAt(products.get(3), base.plusMinutes(2));
+        queryCounter.reset();
+
+        CursorPage<ProductSummary> first = productSummaryService.getActiveProductsByCursor(null, null, 2);
+
+        assertEquals(List.of(products.get(3).getId(), products.get(2).getId()), ids(first));
+        assertTrue(first.isHasNext());
+        assertFalse(first.isHasPrevious());
+        // کوئری projection و کوئری تصاویر؛ بدون COUNT
+        assertEquals(2, queryCounter.count());
+
+        CursorPage<ProductSummary> second = productSummaryService.getActiveProductsByCursor(null, first.getNextCursor(), 2);
+
+        assertEquals(List.of(products.get(1).getId(), products.get(0).getId()), ids(second));
+        assertFalse(second.isHasNext());
+        assertTrue(second.isHasPrevious());
+        assertEquals("/uploads/0-primary.jpg", second.getContent().get(1).getImageUrl());
+
+        CursorPage<ProductSummary> back = productSummaryService.getActiveProductsByCursor(null, second.getPrevCursor(), 2);
+
+        assertEquals(ids(first), ids(back));
+        assertFalse(back.isHasPrevious());
+        assertNotNull(back.getNextCursor());
+    }
+
+    @Test
+    void getActiveProductsByCursor_InvalidCursor_ShouldBeRejected() {
+        assertThrows(BadRequestException.class,
+                () -> productSummaryService.getActiveProductsByCursor(null, "not-a-cursor", 2));
+    }
+
+    @Test
+    void getSummariesInOrder_ShouldKeepRequestedOrderAndSkipMissingIds() {
+        List<Long> ids = List.of(products.get(3).getId(), -1L, products.get(1).getId());
+        queryCounter.reset();
+
+        List<ProductSummary> summaries = productSummaryService.getSummariesInOrder(ids);
+
+        assertEquals(2, queryCounter.count());
+        assertEquals(List.of(products.get(3).getId(), products.get(1).getId()),
+                summaries.stream().map(ProductSummary::getId).toList());
+    }
+
+    @Test
+    void getSummariesInOrder_EmptyIds_ShouldNotQuery() {
+        queryCounter.reset();
+
+        assertTrue(productSummaryService.getSummariesInOrder(List.of()).isEmpty());
+        assertEquals(0, queryCounter.count());
+    }
+
+    @Test
+    void getCategoryPage_ShouldSortInTheDatabaseAndLoadOnlyThePage() {
+        Set<Long> ids = Set.of(products.get(0).getId(), products.get(1).getId(), products.get(3).getId());
+        queryCounter.reset();
+
+        Page<ProductSummary> page = productSummaryService.getCategoryPage(category.getId(), ids,
+                PageRequest.of(1, 1, Sort.by(Sort.Direction.DESC, "price")));
+
+        // شناسه‌های مرتب دسته، خلاصه همان صفحه و تصاویر؛ بدون COUNT
+        assertEquals(3, queryCounter.count());
+        assertEquals(3, page.getTotalElements());
+        assertEquals(List.of(products.get(1).getId()), page.getContent().stream().map(ProductSummary::getId).toList());
+    }
+
+    private void setCreatedAt(Product product, LocalDateTime createdAt) {
+        entityManager.createQuery("UPDATE Product p SET p.createdAt = :createdAt WHERE p.id = :id")
+                .setParameter("createdAt", createdAt)
+                .setParameter("id", product.getId())
+                .executeUpdate();
+    }
+
+    private List<Long> ids(CursorPage<ProductSummary> page) {
+        return page.getContent().stream().map(ProductSummary::getId).toList();
+    }
+
+    private void addImage(Product product, String url, boolean primary, int sortOrder) {
+        Image image = new Image();
+        image.setUrl(url);
+        entityManager.persist(image);
+
+        ProductImage productImage = new ProductImage();
+        productImage.setProduct(product);
+        productImage.setImage(image);
+        productImage.setIsPrimary(primary);
+        productImage.setSortOrder(sortOrder);
+        entityManager.persist(productImage);
+    }
+}
@@ -0,0 +1,92 @@
+package com.webrayan.store.modules.catalog.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ProductViewCounterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ProductViewCounter productViewCounter;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        productViewCounter = new ProductViewCounter(jdbcTemplate, transactionManager);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_ShouldWriteConcurrentViewsAsOneBatch() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    productViewCounter.recordView(i % 2 == 0 ? 1L : 2L);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        productViewCounter.flush();
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batch.capture());
+        assertEquals(2, batch.getValue().size());
+        assertArrayEquals(new Object[]{4000L, 1L}, batch.getValue().get(0));
+        assertArrayEquals(new Object[]{4000L, 2L}, batch.getValue().get(1));
+        assertEquals(0, productViewCounter.getPendingViews(1L));
+    }
+
+    @Test
+    void flush_WithoutViews_ShouldNotTouchDatabase() {
+        productViewCounter.flush();
+
+        verifyNoInteractions(jdbcTemplate, transactionManager);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_WhenUpdateFails_ShouldKeepCountsForNextFlush() {
+        productViewCounter.recordView(5L);
+        productViewCounter.recordView(5L);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        productViewCounter.flush();
+
+        assertEquals(2, productViewCounter.getPendingViews(5L));
+    }
+
+    @Test
+    void flushOnShutdown_ShouldWritePendingViews() {
+        productViewCounter.recordView(7L);
+
+        productViewCounter.flushOnShutdown();
+
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+    }
+}
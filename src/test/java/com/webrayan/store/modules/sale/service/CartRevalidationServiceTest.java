@@ -0,0 +1,149 @@
+package com.webrayan.store.modules.sale.service;
+
+import com.webrayan.store.modules.catalog.event.ProductChangedEvent;
+import com.webrayan.store.modules.sale.config.CartStoreProperties;
+import com.webrayan.store.modules.sale.dto.CartLine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * هماهنگ‌سازی سبدها با قیمت و موجودی جدید با دستورات مجموعه‌ای
+ */
+class CartRevalidationServiceTest {
+
+    @TempDir
+    Path journalDirectory;
+
+    private JdbcTemplate jdbcTemplate;
+    private CartStore cartStore;
+    private CartRevalidationService revalidationService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:cart-revalidation;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE catalog_products (id BIGINT PRIMARY KEY, price NUMERIC(10, 2), " +
+                "stock_quantity INT)");
+        jdbcTemplate.execute("CREATE TABLE sale_cart_items (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "user_id BIGINT NOT NULL, product_id BIGINT NOT NULL REFERENCES catalog_products (id), " +
+                "quantity INT NOT NULL, unit_price NUMERIC(12, 2) NOT NULL, selected_attributes TEXT, " +
+                "created_at TIMESTAMP NOT NULL, updated_at TIMESTAMP, UNIQUE (user_id, product_id))");
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+
+        CartStoreProperties properties = new CartStoreProperties();
+        properties.setJournalDirectory(journalDirectory.toString());
+        cartStore = new CartStore(jdbcTemplate, properties, transactionManager);
+        cartStore.init();
+        revalidationService = new CartRevalidationService(jdbcTemplate, cartStore);
+
+        product(1L, "100.00", 50);
+        product(2L, "30.00", 50);
+        product(3L, "10.00", 50);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE sale_cart_items");
+        jdbcTemplate.execute("DROP TABLE catalog_products");
+    }
+
+    @Test
+    void productChanges_ShouldRepriceAndClampEveryCartHoldingThem() {
+        for (long userId = 1; userId <= 20; userId++) {
+            add(userId, 1L, 1 + (int) (userId % 4), "100.00");
+            add(userId, 3L, 1, "10.00");
+        }
+        add(21L, 2L, 5, "30.00");
+        cartStore.flush();
+        // user 7 adds another product at the old price; it is only in memory when the prices change
+        add(7L, 2L, 2, "30.00");
+        assertEquals(new BigDecimal("410.00"), cartStore.get(3L).getTotal());
+
+        jdbcTemplate.update("UPDATE catalog_products SET price = 90.00, stock_quantity = 2 WHERE id = 1");
+        jdbcTemplate.update("UPDATE catalog_products SET price = 25.00, stock_quantity = 0 WHERE id = 2");
+        revalidationService.onProductChanged(new ProductChangedEvent(1L, ProductChangedEvent.ChangeType.UPDATED));
+        revalidationService.onProductChanged(new ProductChangedEvent(2L, ProductChangedEvent.ChangeType.STOCK_CHANGED));
+        revalidationService.revalidateChangedProducts();
+
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sale_cart_items WHERE product_id = 1 AND (unit_price <> 90.00 OR quantity > 2)",
+                Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sale_cart_items WHERE product_id = 2", Integer.class));
+        assertEquals(20, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sale_cart_items WHERE product_id = 3 AND unit_price = 10.00", Integer.class));
+
+        // carts held in memory reload with the new values
+        CartLine line = cartStore.get(3L).getLine(1L);
+        assertEquals(0, new BigDecimal("90.00").compareTo(line.getUnitPrice()));
+        assertEquals(2, line.getQuantity());
+        assertNull(cartStore.get(7L).getLine(2L));
+        assertTrue(cartStore.get(21L).isEmpty());
+
+        // nothing left to do
+        assertEquals(0, revalidationService.revalidateProducts(List.of(1L, 2L)));
+    }
+
+    @Test
+    void checkoutStockMovements_ShouldNotTriggerRevalidation() {
+        add(1L, 1L, 5, "100.00");
+        cartStore.flush();
+        jdbcTemplate.update("UPDATE catalog_products SET stock_quantity = 1 WHERE id = 1");
+
+        revalidationService.onProductChanged(new ProductChangedEvent(1L, ProductChangedEvent.ChangeType.STOCK_RESERVED));
+        revalidationService.revalidateChangedProducts();
+
+        assertEquals(5, cartStore.get(1L).getLine(1L).getQuantity());
+    }
+
+    @Test
+    void repriceCart_ShouldOnlyTouchThatUsersCart() {
+        add(1L, 1L, 1, "100.00");
+        add(1L, 2L, 1, "30.00");
+        add(2L, 1L, 1, "100.00");
+        jdbcTemplate.update("UPDATE catalog_products SET price = 120.00");
+
+        assertEquals(2, revalidationService.repriceCart(1L));
+
+        assertEquals(0, new BigDecimal("240.00").compareTo(cartStore.get(1L).getTotal()));
+        assertEquals(0, new BigDecimal("100.00").compareTo(cartStore.get(2L).getTotal()));
+    }
+
+    @Test
+    void clampCartToStock_ShouldReduceOrRemoveLinesAboveStock() {
+        add(1L, 1L, 5, "100.00");
+        add(1L, 2L, 3, "30.00");
+        add(1L, 3L, 1, "10.00");
+        jdbcTemplate.update("UPDATE catalog_products SET stock_quantity = 2 WHERE id = 1");
+        jdbcTemplate.update("UPDATE catalog_products SET stock_quantity = 0 WHERE id = 2");
+
+        assertEquals(2, revalidationService.clampCartToStock(1L));
+
+        CartSession cart = cartStore.get(1L);
+        assertEquals(2, cart.getLine(1L).getQuantity());
+        assertNull(cart.getLine(2L));
+        assertEquals(1, cart.getLine(3L).getQuantity());
+    }
+
+    private void product(Long id, String price, int stock) {
+        jdbcTemplate.update("INSERT INTO catalog_products (id, price, stock_quantity) VALUES (?, ?, ?)",
+                id, new BigDecimal(price), stock);
+    }
+
+    private void add(Long userId, Long productId, int quantity, String price) {
+        cartStore.update(userId, productId, line -> CartLine.create(productId, quantity, new BigDecimal(price), null));
+    }
+}
@@ -0,0 +1,246 @@
+package com.webrayan.store.modules.sale.service;
+
+import com.webrayan.store.modules.sale.config.CartStoreProperties;
+import com.webrayan.store.modules.sale.dto.CartLine;
+import com.webrayan.store.support.ConcurrencyHarness;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * سبد خرید در حافظه: نوشتن دسته‌ای، بازیابی از ژورنال پس از crash
+ */
+class CartStoreTest {
+
+    @TempDir
+    Path journalDirectory;
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private CartStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:carts;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE sale_cart_items (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "user_id BIGINT NOT NULL, product_id BIGINT NOT NULL, quantity INT NOT NULL, " +
+                "unit_price NUMERIC(12, 2) NOT NULL, selected_attributes TEXT, created_at TIMESTAMP NOT NULL, " +
+                "updated_at TIMESTAMP, UNIQUE (user_id, product_id))");
+        store = newStore();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE sale_cart_items");
+    }
+
+    @Test
+    void changes_ShouldBeServedFromMemoryAndWrittenBehindInOneFlush() throws IOException {
+        jdbcTemplate.update("INSERT INTO sale_cart_items (user_id, product_id, quantity, unit_price, created_at) " +
+                "VALUES (1, 10, 1, 50.00, CURRENT_TIMESTAMP)");
+
+        store.update(1L, 11L, line -> CartLine.create(11L, 2, new BigDecimal("20.00"), "{\"size\":\"42\"}"));
+        store.update(1L, 10L, line -> line.withQuantity(3));
+        store.update(2L, 12L, line -> CartLine.create(12L, 1, new BigDecimal("5.00"), null));
+
+        CartSession cart = store.get(1L);
+        assertEquals(new BigDecimal("190.00"), cart.getTotal());
+        assertEquals(2, cart.getItemCount());
+        assertEquals(5, cart.getTotalQuantity());
+        assertEquals(1, rowCount(), "nothing is written before the flush");
+
+        store.flush();
+
+        assertEquals(3, rowCount());
+        assertEquals(3, quantityOf(1L, 10L));
+        assertEquals("{\"size\":\"42\"}", jdbcTemplate.queryForObject(
+                "SELECT selected_attributes FROM sale_cart_items WHERE user_id = 1 AND product_id = 11", String.class));
+        assertEquals(0, segmentsWithRecords(), "flushed changes leave the journal");
+    }
+
+    @Test
+    void evictedCart_WithUnflushedChanges_ShouldReloadWithThem() {
+        store.update(1L, 10L, line -> CartLine.create(10L, 1, new BigDecimal("10.00"), null));
+        store.flush();
+        store.update(1L, 10L, line -> null);
+        store.update(1L, 11L, line -> CartLine.create(11L, 4, new BigDecimal("10.00"), null));
+
+        store.invalidateAll();
+
+        CartSession cart = store.get(1L);
+        assertNull(cart.getLine(10L));
+        assertEquals(4, cart.getLine(11L).getQuantity());
+    }
+
+    @Test
+    void clear_ThenAdd_ShouldLeaveOnlyTheNewLine() {
+        store.update(1L, 10L, line -> CartLine.create(10L, 1, new BigDecimal("10.00"), null));
+        store.update(1L, 11L, line -> CartLine.create(11L, 1, new BigDecimal("10.00"), null));
+        store.flush();
+
+        store.clear(1L);
+        store.update(1L, 12L, line -> CartLine.create(12L, 2, new BigDecimal("10.00"), null));
+        store.flush();
+
+        assertEquals(List.of(12L), jdbcTemplate.queryForList(
+                "SELECT product_id FROM sale_cart_items WHERE user_id = 1", Long.class));
+    }
+
+    @Test
+    void failedChange_ShouldLeaveTheCartUntouched() {
+        store.update(1L, 10L, line -> CartLine.create(10L, 1, new BigDecimal("10.00"), null));
+
+        assertThrows(IllegalStateException.class, () -> store.update(1L, 10L, line -> {
+            throw new IllegalStateException("out of stock");
+        }));
+
+        assertEquals(1, store.get(1L).getTotalQuantity());
+    }
+
+    @Test
+    void restartAfterCrash_ShouldReplayTheJournalAndIgnoreATornRecord() throws IOException {
+        store.update(1L, 10L, line -> CartLine.create(10L, 2, new BigDecimal("10.00"), null));
+        store.update(1L, 11L, line -> CartLine.create(11L, 1, new BigDecimal("15.00"), null));
+        store.update(1L, 11L, line -> null);
+        store.update(3L, 10L, line -> CartLine.create(10L, 5, new BigDecimal("10.00"), "{\"color\":\"طلایی\"}"));
+        // the process dies before a flush, in the middle of writing one more record
+        try (Stream<Path> segments = Files.list(journalDirectory)) {
+            Path last = segments.sorted().reduce((first, second) -> second).orElseThrow();
+            Files.write(last, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        }
+        assertEquals(0, rowCount());
+
+        CartStore restarted = newStore();
+
+        assertEquals(2, restarted.get(1L).getTotalQuantity());
+        assertNull(restarted.get(1L).getLine(11L));
+        restarted.flush();
+        assertEquals(2, quantityOf(1L, 10L));
+        assertEquals(5, quantityOf(3L, 10L));
+        assertEquals(2, rowCount());
+        assertEquals(0, segmentsWithRecords());
+    }
+
+    @Test
+    void concurrentChanges_ShouldAllBeJournaledBeforeTheyAreAcknowledged() throws Exception {
+        AtomicLong users = new AtomicLong();
+
+        List<ConcurrencyHarness.Outcome<Long>> outcomes = ConcurrencyHarness.run(8, () -> {
+            Long userId = users.incrementAndGet();
+            for (long productId = 1; productId <= 50; productId++) {
+                long id = productId;
+                store.update(userId, id, line -> CartLine.create(id, 1, new BigDecimal("1.00"), null));
+            }
+            return userId;
+        });
+        assertEquals(8, ConcurrencyHarness.successes(outcomes));
+
+        CartStore restarted = newStore();
+
+        for (long userId = 1; userId <= 8; userId++) {
+            assertEquals(50, restarted.get(userId).getItemCount());
+        }
+    }
+
+    @Test
+    void flush_WhenTheDatabaseFails_ShouldKeepChangesForTheNextFlush() throws IOException {
+        store.update(1L, 10L, line -> CartLine.create(10L, 2, new BigDecimal("10.00"), null));
+        jdbcTemplate.execute("ALTER TABLE sale_cart_items RENAME TO sale_cart_items_moved");
+
+        store.flush();
+        // still recoverable after a crash at this point
+        assertEquals(1, segmentsWithRecords());
+
+        jdbcTemplate.execute("ALTER TABLE sale_cart_items_moved RENAME TO sale_cart_items");
+        store.flush();
+
+        assertEquals(2, quantityOf(1L, 10L));
+        assertEquals(0, segmentsWithRecords());
+    }
+
+    @Test
+    void changeRows_ShouldHoldCartChangesUntilTheRowsAreCommittedAndTheCartsDropped() throws Exception {
+        store.update(1L, 10L, line -> CartLine.create(10L, 5, new BigDecimal("10.00"), null));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            List<Future<CartLine>> concurrent = new ArrayList<>();
+            store.changeRows(users -> {
+                users.add(1L);
+                jdbcTemplate.update("UPDATE sale_cart_items SET unit_price = 8.00 WHERE user_id = 1");
+                // a change made while the rows are being repriced must not start from the old session
+                concurrent.add(executor.submit(() -> store.update(1L, 10L, line -> line.withQuantity(6))));
+                assertThrows(TimeoutException.class, () -> concurrent.get(0).get(200, TimeUnit.MILLISECONDS));
+                return null;
+            });
+
+            CartLine line = concurrent.get(0).get(5, TimeUnit.SECONDS);
+            assertEquals(0, new BigDecimal("8.00").compareTo(line.getUnitPrice()));
+        } finally {
+            executor.shutdownNow();
+        }
+        store.flush();
+
+        assertEquals(6, quantityOf(1L, 10L));
+        assertEquals(0, new BigDecimal("8.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT unit_price FROM sale_cart_items WHERE user_id = 1 AND product_id = 10", BigDecimal.class)));
+    }
+
+    @Test
+    void changeRows_WhenPendingChangesCannotBeWritten_ShouldNotRunTheStatements() {
+        store.update(1L, 10L, line -> CartLine.create(10L, 2, new BigDecimal("10.00"), null));
+        jdbcTemplate.execute("ALTER TABLE sale_cart_items RENAME TO sale_cart_items_moved");
+        try {
+            assertThrows(IllegalStateException.class, () -> store.changeRows(users -> {
+                fail("statements ran over unwritten cart changes");
+                return null;
+            }));
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE sale_cart_items_moved RENAME TO sale_cart_items");
+        }
+    }
+
+    private CartStore newStore() throws IOException {
+        CartStoreProperties properties = new CartStoreProperties();
+        properties.setJournalDirectory(journalDirectory.toString());
+        CartStore cartStore = new CartStore(jdbcTemplate, properties, new DataSourceTransactionManager(dataSource));
+        cartStore.init();
+        return cartStore;
+    }
+
+    private int rowCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM sale_cart_items", Integer.class);
+    }
+
+    private int quantityOf(Long userId, Long productId) {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM sale_cart_items WHERE user_id = ? AND product_id = ?",
+                Integer.class, userId, productId);
+    }
+
+    private long segmentsWithRecords() throws IOException {
+        try (Stream<Path> segments = Files.list(journalDirectory)) {
+            return segments.filter(segment -> segment.toFile().length() > 0).count();
+        }
+    }
+}
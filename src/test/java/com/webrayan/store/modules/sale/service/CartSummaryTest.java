@@ -0,0 +1,144 @@
+package com.webrayan.store.modules.sale.service;
+
+import com.webrayan.store.core.common.entity.Image;
+import com.webrayan.store.core.config.JpaConfig;
+import com.webrayan.store.modules.acl.entity.User;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.entity.ProductImage;
+import com.webrayan.store.modules.sale.config.CartStoreProperties;
+import com.webrayan.store.modules.sale.dto.CartItemView;
+import com.webrayan.store.modules.sale.dto.CartSummaryDto;
+import com.webrayan.store.support.CatalogFixtures;
+import com.webrayan.store.support.QueryCounter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, CartService.class, CartStore.class, CartStoreProperties.class,
+        CartRevalidationService.class})
+class CartSummaryTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CartService cartService;
+
+    private QueryCounter queryCounter;
+    private CatalogFixtures fixtures;
+    private User customer;
+
+    @BeforeEach
+    void setUp() {
+        queryCounter = new QueryCounter(entityManagerFactory);
+
+        fixtures = new CatalogFixtures(entityManager, "cart-customer", "کیف");
+        customer = fixtures.user();
+    }
+
+    @AfterEach
+    void tearDown() {
+        // nothing of this rolled-back test should reach the database on shutdown
+        cartService.clearCart(customer.getId());
+    }
+
+    @Test
+    void getCartSummary_ShouldReturnItemsWithProductDataAndTotalsInOneQuery() {
+        Product bag = product("cart-bag", "250", 10);
+        Product wallet = product("cart-wallet", "80", 1);
+        Product belt = product("cart-belt", "40", 5);
+        image(bag, "bag-side.jpg", false, 0);
+        image(bag, "bag-front.jpg", true, 1);
+        image(wallet, "wallet.jpg", false, 0);
+        entityManager.flush();
+        entityManager.clear();
+
+        cartService.addToCart(customer.getId(), bag.getId(), 2, null);
+        cartService.addToCart(customer.getId(), wallet.getId(), 1, "{\"color\":\"brown\"}");
+        cartService.addToCart(customer.getId(), belt.getId(), 3, null);
+        // the wallet sells out and the belt gets cheaper after they were added
+        entityManager.createQuery("UPDATE Product p SET p.stockQuantity = 0 WHERE p.id = :id")
+                .setParameter("id", wallet.getId()).executeUpdate();
+        entityManager.createQuery("UPDATE Product p SET p.price = 35 WHERE p.id = :id")
+                .setParameter("id", belt.getId()).executeUpdate();
+        entityManager.clear();
+
+        queryCounter.reset();
+        CartSummaryDto summary = cartService.getCartSummary(customer.getId());
+
+        assertEquals(1, queryCounter.count());
+        assertEquals(0, queryCounter.entityLoadCount());
+
+        assertEquals(new BigDecimal("700.00"), summary.getTotal());
+        assertEquals(3, summary.getItemCount());
+        assertEquals(6, summary.getTotalQuantity());
+        assertFalse(summary.isEmpty());
+
+        CartItemView first = summary.getItems().get(0);
+        assertEquals(bag.getId(), first.getProductId());
+        assertEquals("cart-bag", first.getProductName());
+        assertEquals("/uploads/bag-front.jpg", first.getImageUrl());
+        assertEquals(new BigDecimal("500.00"), first.getTotalPrice());
+        assertTrue(first.isAvailable());
+
+        CartItemView second = summary.getItems().get(1);
+        assertEquals("/uploads/wallet.jpg", second.getImageUrl());
+        assertEquals("{\"color\":\"brown\"}", second.getSelectedAttributes());
+        assertFalse(second.isAvailable());
+
+        CartItemView third = summary.getItems().get(2);
+        assertNull(third.getImageUrl());
+        assertTrue(third.isPriceChanged());
+        assertEquals(0, new BigDecimal("35").compareTo(third.getCurrentPrice()));
+    }
+
+    @Test
+    void getCartSummary_EmptyCart_ShouldNotQueryProducts() {
+        cartService.getCartItems(customer.getId());
+
+        queryCounter.reset();
+        CartSummaryDto summary = cartService.getCartSummary(customer.getId());
+
+        assertEquals(0, queryCounter.count());
+        assertTrue(summary.isEmpty());
+        assertEquals(BigDecimal.ZERO, summary.getTotal());
+        assertTrue(summary.getItems().isEmpty());
+    }
+
+    private Product product(String slug, String price, int stock) {
+        return fixtures.product(slug, product -> {
+            product.setPrice(new BigDecimal(price));
+            product.setStockQuantity(stock);
+        });
+    }
+
+    private void image(Product product, String filename, boolean primary, int sortOrder) {
+        Image image = new Image();
+        image.setFilename(filename);
+        image.setUrl("/uploads/" + filename);
+
+        ProductImage productImage = new ProductImage();
+        productImage.setProduct(product);
+        productImage.setImage(image);
+        productImage.setIsPrimary(primary);
+        productImage.setSortOrder(sortOrder);
+        entityManager.persist(productImage);
+    }
+}
@@ -0,0 +1,167 @@
+package com.webrayan.store.modules.sale.service;
+
+import com.webrayan.store.core.config.JpaConfig;
+import com.webrayan.store.modules.catalog.config.HotStockProperties;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.service.HotStockLedger;
+import com.webrayan.store.modules.catalog.service.InventoryService;
+import com.webrayan.store.modules.sale.config.CartStoreProperties;
+import com.webrayan.store.modules.sale.config.OrderExpiryProperties;
+import com.webrayan.store.modules.sale.entity.Order;
+import com.webrayan.store.modules.sale.entity.OrderItem;
+import com.webrayan.store.modules.sale.entity.Payment;
+import com.webrayan.store.modules.sale.entity.Shipping;
+import com.webrayan.store.modules.sale.enums.OrderStatus;
+import com.webrayan.store.modules.sale.enums.PaymentMethod;
+import com.webrayan.store.modules.sale.enums.PaymentStatus;
+import com.webrayan.store.support.CatalogFixtures;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.autoconfigure.orm.jpa.AutoConfigureDataJpa;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order detail page latency: the entity graph and batched collections of
+ * {@link OrderService#getOrderWithDetails} against the lazy render it replaced (findById, then every
+ * association touched on render), on the in-memory H2 database of the h2 test profile.
+ * {@link OrderDetailTest} pins the statement count; this shows what the round trips cost. H2 runs in
+ * process, so the gap here is a lower bound of the one against PostgreSQL over the network.
+ * <p>
+ * Run with {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * "-Dexec.args=-cp %classpath org.openjdk.jmh.Main OrderDetailBenchmark"}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderDetailBenchmark {
+
+    @Param({"2", "12", "50"})
+    public int items;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private EntityManager entityManager;
+    private TransactionTemplate readOnlyTransaction;
+    private Long orderId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(BenchmarkConfig.class)
+                .web(WebApplicationType.NONE)
+                .profiles("h2")
+                .properties("spring.jpa.properties.hibernate.generate_statistics=false",
+                        "logging.level.root=WARN")
+                .run();
+        orderService = context.getBean(OrderService.class);
+        entityManager = context.getBean(EntityManager.class);
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        orderId = new TransactionTemplate(transactionManager).execute(status -> order(items));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int detailFetchPlan() {
+        Order order = orderService.getOrderWithDetails(orderId);
+        return render(order);
+    }
+
+    @Benchmark
+    public Integer lazyRender() {
+        return readOnlyTransaction.execute(status -> render(entityManager.find(Order.class, orderId)));
+    }
+
+    /**
+     * What the detail page reads
+     */
+    private static int render(Order order) {
+        int touched = order.getCustomer().getUsername().length();
+        touched += order.getShipping().getTrackingNumber().length();
+        touched += order.getPayments().size() + order.getStatusHistories().size();
+        for (OrderItem item : order.getOrderItems()) {
+            touched += item.getProduct().getName().length();
+        }
+        return touched;
+    }
+
+    private Long order(int itemCount) {
+        CatalogFixtures fixtures = new CatalogFixtures(entityManager, "bench-customer", "لوازم خانه");
+
+        Order order = new Order();
+        order.setOrderNumber("BENCH-1");
+        order.setCustomer(fixtures.user());
+        order.setOrderDate(LocalDateTime.now());
+        order.setSubtotal(new BigDecimal("100"));
+        order.setTotalAmount(new BigDecimal("100"));
+        for (int i = 0; i < itemCount; i++) {
+            Product product = fixtures.product("bench-" + i);
+
+            OrderItem item = new OrderItem();
+            item.setProduct(product);
+            item.setProductName(product.getName());
+            item.setQuantity(1);
+            item.setUnitPrice(new BigDecimal("50"));
+            order.addOrderItem(item);
+        }
+        order.addPayment(payment("BENCH-P1", PaymentStatus.FAILED));
+        order.addPayment(payment("BENCH-P2", PaymentStatus.PAID));
+        order.updateStatus(OrderStatus.CONFIRMED, null);
+        order.updateStatus(OrderStatus.SHIPPED, null);
+
+        Shipping shipping = new Shipping();
+        shipping.setOrder(order);
+        shipping.setTrackingNumber("TRK-BENCH-1");
+        order.setShipping(shipping);
+
+        entityManager.persist(order);
+        return order.getId();
+    }
+
+    private static Payment payment(String reference, PaymentStatus status) {
+        Payment payment = new Payment();
+        payment.setPaymentReference(reference);
+        payment.setPaymentMethod(PaymentMethod.ONLINE_PAYMENT);
+        payment.setStatus(status);
+        payment.setAmount(new BigDecimal("100"));
+        return payment;
+    }
+
+    /**
+     * The slice of the application {@link OrderDetailTest} runs against
+     */
+    @Configuration
+    @AutoConfigureDataJpa
+    @EntityScan("com.webrayan.store")
+    @EnableJpaRepositories("com.webrayan.store")
+    @Import({JpaConfig.class, OrderService.class, CartStore.class, CartStoreProperties.class, InventoryService.class,
+            HotStockLedger.class, HotStockProperties.class, OrderExpiryJob.class, OrderExpiryProperties.class})
+    static class BenchmarkConfig {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(OrderDetailBenchmark.class.getSimpleName()).build()).run();
+    }
+}
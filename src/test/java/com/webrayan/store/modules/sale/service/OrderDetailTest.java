@@ -0,0 +1,177 @@
+package com.webrayan.store.modules.sale.service;
+
+import com.webrayan.store.core.config.JpaConfig;
+import com.webrayan.store.modules.acl.entity.User;
+import com.webrayan.store.modules.catalog.config.HotStockProperties;
+import com.webrayan.store.modules.catalog.service.HotStockLedger;
+import com.webrayan.store.modules.catalog.service.InventoryService;
+import com.webrayan.store.modules.sale.config.CartStoreProperties;
+import com.webrayan.store.modules.sale.config.OrderExpiryProperties;
+import com.webrayan.store.modules.sale.entity.Order;
+import com.webrayan.store.modules.sale.entity.OrderItem;
+import com.webrayan.store.modules.sale.entity.Payment;
+import com.webrayan.store.modules.sale.entity.Shipping;
+import com.webrayan.store.modules.sale.enums.OrderStatus;
+import com.webrayan.store.modules.sale.enums.PaymentMethod;
+import com.webrayan.store.modules.sale.enums.PaymentStatus;
+import com.webrayan.store.support.CatalogFixtures;
+import com.webrayan.store.support.QueryCounter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, OrderService.class, CartStore.class, CartStoreProperties.class, InventoryService.class,
+        HotStockLedger.class, HotStockProperties.class, OrderExpiryJob.class, OrderExpiryProperties.class})
+class OrderDetailTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private OrderService orderService;
+
+    private QueryCounter queryCounter;
+    private CatalogFixtures fixtures;
+    private User customer;
+
+    @BeforeEach
+    void setUp() {
+        queryCounter = new QueryCounter(entityManagerFactory);
+
+        fixtures = new CatalogFixtures(entityManager, "detail-customer", "لوازم خانه");
+        customer = fixtures.user();
+    }
+
+    @Test
+    void getOrderWithDetails_ShouldLoadTheWholePageInAFixedNumberOfQueries() {
+        Long small = order("DET-1", 2);
+        Long large = order("DET-2", 12);
+        entityManager.flush();
+        entityManager.clear();
+
+        long before = lazyRenderQueries(large);
+        long smallOrder = detailRenderQueries(small);
+        long largeOrder = detailRenderQueries(large);
+
+        // order with customer, shipping, items and products; then payments; then status histories
+        assertEquals(3, largeOrder);
+        assertEquals(smallOrder, largeOrder);
+        // the lazy render grows with every item (one product select each)
+        assertTrue(before >= largeOrder + 12, "lazy render " + before + " vs fetch plan " + largeOrder);
+    }
+
+    @Test
+    void getOrderWithDetails_ShouldReturnEverythingThePageReadsAfterTheTransaction() {
+        Long id = order("DET-3", 3);
+        entityManager.flush();
+        entityManager.clear();
+
+        Order order = orderService.getOrderWithDetails(id);
+        entityManager.clear();
+
+        assertEquals("detail-customer", order.getCustomer().getUsername());
+        assertEquals("TRK-DET-3", order.getShipping().getTrackingNumber());
+        assertEquals(3, order.getOrderItems().size());
+        assertEquals("detail-DET-3-0", order.getOrderItems().get(0).getProduct().getName());
+        assertEquals(2, order.getPayments().size());
+        assertTrue(order.isPaid());
+        assertEquals(2, order.getStatusHistories().size());
+    }
+
+    @Test
+    void getOrderWithDetails_MissingOrder_ShouldThrow() {
+        assertThrows(RuntimeException.class, () -> orderService.getOrderWithDetails(-1L));
+    }
+
+    /**
+     * Statements the detail page cost before: findById, then every association touched on render
+     */
+    private long lazyRenderQueries(Long id) {
+        queryCounter.reset();
+        Order order = entityManager.find(Order.class, id);
+        order.getCustomer().getUsername();
+        order.getPayments().size();
+        order.getStatusHistories().size();
+        if (order.getShipping() != null) {
+            order.getShipping().getId();
+        }
+        for (OrderItem item : order.getOrderItems()) {
+            item.getProduct().getName();
+        }
+        long count = queryCounter.count();
+        entityManager.clear();
+        return count;
+    }
+
+    private long detailRenderQueries(Long id) {
+        queryCounter.reset();
+        Order order = orderService.getOrderWithDetails(id);
+        long count = queryCounter.count();
+        entityManager.clear();
+
+        // detached: anything not loaded would throw here
+        order.getCustomer().getUsername();
+        order.getShipping().getTrackingNumber();
+        order.getPayments().size();
+        order.getStatusHistories().size();
+        for (OrderItem item : order.getOrderItems()) {
+            item.getProduct().getName();
+        }
+        return count;
+    }
+
+    private Long order(String number, int items) {
+        Order order = new Order();
+        order.setOrderNumber(number);
+        order.setCustomer(customer);
+        order.setOrderDate(LocalDateTime.now());
+        order.setSubtotal(new BigDecimal("100"));
+        order.setTotalAmount(new BigDecimal("100"));
+        for (int i = 0; i < items; i++) {
+            OrderItem item = new OrderItem();
+            item.setProduct(fixtures.product("detail-" + number + "-" + i));
+            item.setProductName("detail-" + number + "-" + i);
+            item.setQuantity(1);
+            item.setUnitPrice(new BigDecimal("50"));
+            order.addOrderItem(item);
+        }
+        order.addPayment(payment(number + "-P1", PaymentStatus.FAILED));
+        order.addPayment(payment(number + "-P2", PaymentStatus.PAID));
+        order.updateStatus(OrderStatus.CONFIRMED, null);
+        order.updateStatus(OrderStatus.SHIPPED, null);
+
+        Shipping shipping = new Shipping();
+        shipping.setOrder(order);
+        shipping.setTrackingNumber("TRK-" + number);
+        order.setShipping(shipping);
+
+        entityManager.persist(order);
+        return order.getId();
+    }
+
+    private Payment payment(String reference, PaymentStatus status) {
+        Payment payment = new Payment();
+        payment.setPaymentReference(reference);
+        payment.setPaymentMethod(PaymentMethod.ONLINE_PAYMENT);
+        payment.setStatus(status);
+        payment.setAmount(new BigDecimal("100"));
+        return payment;
+    }
+}
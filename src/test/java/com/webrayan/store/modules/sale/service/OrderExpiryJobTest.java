@@ -0,0 +1,158 @@
+package com.webrayan.store.modules.sale.service;
+
+import com.webrayan.store.core.config.JpaConfig;
+import com.webrayan.store.modules.acl.entity.User;
+import com.webrayan.store.modules.catalog.config.HotStockProperties;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.service.HotStockLedger;
+import com.webrayan.store.modules.catalog.service.InventoryService;
+import com.webrayan.store.modules.sale.config.OrderExpiryProperties;
+import com.webrayan.store.modules.sale.entity.Order;
+import com.webrayan.store.modules.sale.entity.OrderItem;
+import com.webrayan.store.modules.sale.enums.OrderStatus;
+import com.webrayan.store.support.CatalogFixtures;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ActiveProfiles("h2")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({JpaConfig.class, OrderExpiryProperties.class, OrderExpiryJob.class, InventoryService.class,
+        HotStockLedger.class, HotStockProperties.class})
+class OrderExpiryJobTest {
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private OrderExpiryProperties properties;
+
+    @Autowired
+    private OrderExpiryJob orderExpiryJob;
+
+    private User customer;
+    private Product shoe;
+    private Product bag;
+
+    @BeforeEach
+    void setUp() {
+        properties.setPendingTimeoutHours(24);
+        properties.setBatchSize(2);
+        properties.setMaxBatchesPerRun(100);
+
+        CatalogFixtures fixtures = new CatalogFixtures(entityManager, "expiry-customer", "کفش");
+        customer = fixtures.user();
+        shoe = fixtures.product("expiry-shoe");
+        bag = fixtures.product("expiry-bag", product -> product.setStockQuantity(4));
+    }
+
+    @Test
+    void run_ShouldCancelExpiredOrdersAndReleaseTheirStockInChunks() {
+        Order first = order("EXP-1", OrderStatus.PENDING, 30, shoe, 2, bag, 1);
+        Order second = order("EXP-2", OrderStatus.PENDING, 48, shoe, 3, null, 0);
+        Order third = order("EXP-3", OrderStatus.PENDING, 25, bag, 2, null, 0);
+        Order fresh = order("EXP-4", OrderStatus.PENDING, 1, shoe, 1, null, 0);
+        Order confirmed = order("EXP-5", OrderStatus.CONFIRMED, 72, shoe, 1, null, 0);
+
+        assertEquals(3, orderExpiryJob.run());
+
+        for (Order order : List.of(first, second, third)) {
+            assertEquals(OrderStatus.CANCELLED.name(), statusOf(order));
+            assertEquals(1, jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM sale_order_status_history WHERE order_id = ? AND old_status = ? AND new_status = ?",
+                    Integer.class, order.getId(), OrderStatus.PENDING.name(), OrderStatus.CANCELLED.name()));
+            assertNotNull(jdbcTemplate.queryForObject(
+                    "SELECT cancelled_at FROM sale_orders WHERE id = ?", Timestamp.class, order.getId()));
+        }
+        assertEquals(OrderStatus.PENDING.name(), statusOf(fresh));
+        assertEquals(OrderStatus.CONFIRMED.name(), statusOf(confirmed));
+        assertEquals(15, stockOf(shoe));
+        assertEquals(7, stockOf(bag));
+        // a completed sweep starts from the beginning next time
+        assertEquals(0L, checkpoint());
+
+        assertEquals(0, orderExpiryJob.run());
+        assertEquals(15, stockOf(shoe));
+    }
+
+    @Test
+    void run_CutShortByMaxBatches_ShouldResumeAfterTheLastCommittedChunk() {
+        Order first = order("EXP-11", OrderStatus.PENDING, 30, shoe, 1, null, 0);
+        Order second = order("EXP-12", OrderStatus.PENDING, 30, shoe, 1, null, 0);
+        Order third = order("EXP-13", OrderStatus.PENDING, 30, bag, 1, null, 0);
+        properties.setMaxBatchesPerRun(1);
+
+        assertEquals(2, orderExpiryJob.run());
+        assertEquals(second.getId(), checkpoint());
+        assertEquals(OrderStatus.PENDING.name(), statusOf(third));
+
+        // an order older than the mark but expired later is only picked up by the next sweep
+        jdbcTemplate.update("UPDATE sale_orders SET status = ? WHERE id = ?", OrderStatus.PENDING.name(), first.getId());
+
+        assertEquals(1, orderExpiryJob.run());
+        assertEquals(OrderStatus.CANCELLED.name(), statusOf(third));
+        assertEquals(OrderStatus.PENDING.name(), statusOf(first));
+        assertEquals(0L, checkpoint());
+        assertEquals(5, stockOf(bag));
+    }
+
+    private Order order(String number, OrderStatus status, int hoursOld,
+                        Product product, int quantity, Product otherProduct, int otherQuantity) {
+        Order order = new Order();
+        order.setOrderNumber(number);
+        order.setCustomer(customer);
+        order.setStatus(status);
+        order.setOrderDate(LocalDateTime.now().minusHours(hoursOld));
+        order.setSubtotal(new BigDecimal("100"));
+        order.setTotalAmount(new BigDecimal("100"));
+        order.addOrderItem(item(product, quantity));
+        if (otherProduct != null) {
+            order.addOrderItem(item(otherProduct, otherQuantity));
+        }
+        entityManager.persist(order);
+        entityManager.flush();
+        jdbcTemplate.update("UPDATE sale_orders SET created_at = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusHours(hoursOld)), order.getId());
+        return order;
+    }
+
+    private OrderItem item(Product product, int quantity) {
+        OrderItem item = new OrderItem();
+        item.setProduct(product);
+        item.setProductName(product.getName());
+        item.setQuantity(quantity);
+        item.setUnitPrice(new BigDecimal("100"));
+        return item;
+    }
+
+    private String statusOf(Order order) {
+        return jdbcTemplate.queryForObject("SELECT status FROM sale_orders WHERE id = ?", String.class, order.getId());
+    }
+
+    private int stockOf(Product product) {
+        return jdbcTemplate.queryForObject(
+                "SELECT stock_quantity FROM catalog_products WHERE id = ?", Integer.class, product.getId());
+    }
+
+    private Long checkpoint() {
+        return jdbcTemplate.queryForObject("SELECT last_id FROM job_checkpoints WHERE name = ?",
+                Long.class, OrderExpiryJob.CHECKPOINT);
+    }
+}
@@ -0,0 +1,124 @@
+package com.webrayan.store.modules.search.service;
+
+import com.webrayan.store.modules.catalog.enums.AttributeType;
+import com.webrayan.store.modules.search.dto.AttributeFacet;
+import com.webrayan.store.modules.search.dto.FacetRangeCount;
+import com.webrayan.store.modules.search.dto.FacetValueCount;
+import com.webrayan.store.modules.search.dto.ProductFacetDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductFacetIndexTest {
+
+    private static final Long CATEGORY_ID = 10L;
+    private static final Long COLOR = 1L;
+    private static final Long SCREEN = 2L;
+
+    private ProductFacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductFacetIndex();
+        index.replaceAll(
+                List.of(
+                        new ProductFacetIndex.FacetAttribute(COLOR, CATEGORY_ID, "رنگ", AttributeType.SELECT, 1),
+                        new ProductFacetIndex.FacetAttribute(SCREEN, CATEGORY_ID, "اندازه صفحه", AttributeType.DECIMAL, 2)),
+                List.of(
+                        document(1L, true, "red", "6.1"),
+                        document(2L, true, "blue", "6.7"),
+                        document(3L, true, "red", "5.4"),
+                        document(4L, false, "red", "6.1")));
+    }
+
+    @Test
+    void query_WithoutFilters_ShouldReturnVisibleProductsNewestFirst() {
+        ProductFacetIndex.FacetQueryResult result = index.query(CATEGORY_ID, Map.of(), Map.of());
+
+        assertEquals(List.of(3L, 2L, 1L), result.getProductIds());
+        assertEquals(2, count(facet(result, COLOR), "red"));
+        assertEquals(1, count(facet(result, COLOR), "blue"));
+        assertEquals(0, new BigDecimal("5.4").compareTo(facet(result, SCREEN).getMin()));
+        assertEquals(0, new BigDecimal("6.7").compareTo(facet(result, SCREEN).getMax()));
+    }
+
+    @Test
+    void query_ShouldKeepCountsOfOtherValuesOfSelectedAttribute() {
+        ProductFacetIndex.FacetQueryResult result = index.query(CATEGORY_ID, Map.of(COLOR, Set.of("red")), Map.of());
+
+        assertEquals(List.of(3L, 1L), result.getProductIds());
+        AttributeFacet color = facet(result, COLOR);
+        assertEquals(1, count(color, "blue"));
+        assertTrue(color.getValues().stream().filter(v -> v.getValue().equals("red")).findFirst().orElseThrow().isSelected());
+        assertEquals(0, new BigDecimal("6.1").compareTo(facet(result, SCREEN).getMax()));
+    }
+
+    @Test
+    void query_ShouldCombineValueAndRangeFilters() {
+        ProductFacetIndex.FacetQueryResult result = index.query(CATEGORY_ID,
+                Map.of(COLOR, Set.of("red", "blue")),
+                Map.of(SCREEN, new ProductFacetIndex.NumericRange(new BigDecimal("6"), null)));
+
+        assertEquals(List.of(2L, 1L), result.getProductIds());
+        assertEquals(1, count(facet(result, COLOR), "red"));
+    }
+
+    @Test
+    void indexAndRemove_ShouldUpdateBitmaps() {
+        index.index(document(1L, true, "green", "6.1"));
+        index.index(document(5L, true, "green", "7.0"));
+        index.remove(2L);
+
+        ProductFacetIndex.FacetQueryResult result = index.query(CATEGORY_ID, Map.of(COLOR, Set.of("green")), Map.of());
+
+        assertEquals(List.of(5L, 1L), result.getProductIds());
+        assertEquals(0, count(facet(result, COLOR), "blue"));
+        assertEquals(1, count(facet(result, COLOR), "red"));
+    }
+
+    @Test
+    void query_TinyNumericSpread_ShouldKeepEveryRangeInsideMinAndMax() {
+        index.replaceAll(
+                List.of(new ProductFacetIndex.FacetAttribute(SCREEN, CATEGORY_ID, "اندازه صفحه", AttributeType.DECIMAL, 1)),
+                List.of(document(1L, true, "red", "1.0000"), document(2L, true, "red", "1.0001")));
+
+        AttributeFacet screen = facet(index.query(CATEGORY_ID, Map.of(), Map.of()), SCREEN);
+
+        assertEquals(2, screen.getRanges().stream().mapToLong(FacetRangeCount::getCount).sum());
+        for (FacetRangeCount range : screen.getRanges()) {
+            assertTrue(range.getFrom().compareTo(range.getTo()) <= 0);
+            assertTrue(range.getTo().compareTo(new BigDecimal("1.0001")) <= 0);
+        }
+    }
+
+    @Test
+    void query_UnknownCategory_ShouldReturnEmptyResult() {
+        assertTrue(index.query(99L, Map.of(), Map.of()).getProductIds().isEmpty());
+    }
+
+    private static AttributeFacet facet(ProductFacetIndex.FacetQueryResult result, Long attributeId) {
+        return result.getFacets().stream().filter(f -> f.getAttributeId().equals(attributeId)).findFirst().orElseThrow();
+    }
+
+    private static long count(AttributeFacet facet, String value) {
+        return facet.getValues().stream()
+                .filter(v -> v.getValue().equals(value))
+                .mapToLong(FacetValueCount::getCount)
+                .findFirst()
+                .orElse(0);
+    }
+
+    private static ProductFacetDocument document(Long id, boolean visible, String color, String screen) {
+        List<ProductFacetDocument.FacetValue> values = new ArrayList<>();
+        values.add(new ProductFacetDocument.FacetValue(COLOR, color, null));
+        values.add(new ProductFacetDocument.FacetValue(SCREEN, screen, new BigDecimal(screen)));
+        return new ProductFacetDocument(id, CATEGORY_ID, visible, values);
+    }
+}
@@ -0,0 +1,97 @@
+package com.webrayan.store.modules.search.service;
+
+import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import com.webrayan.store.modules.search.config.SearchProperties;
+import com.webrayan.store.modules.search.dto.ProductSearchDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest {
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex(new SearchProperties());
+        index.replaceAll(List.of(
+                document(1L, "Samsung Galaxy Phone", "SM-A55", "Android smartphone", ProductStatus.PUBLISHED),
+                document(2L, "Phone Case", "CASE-01", "Protective case for Galaxy phones", ProductStatus.PUBLISHED),
+                document(3L, "گوشی موبایل شیائومی", "XI-13", "گوشي هوشمند", ProductStatus.PUBLISHED),
+                document(4L, "Galaxy Tab Draft", "SM-T99", "Tablet", ProductStatus.DRAFT)
+        ));
+    }
+
+    @Test
+    void search_ShouldRankNameMatchesAboveDescriptionMatches() {
+        ProductSearchIndex.SearchResult result = index.search("galaxy", ProductSearchIndex.SearchFilter.storefront(), 10);
+
+        assertEquals(2, result.getTotalMatches());
+        assertEquals(1L, result.getHits().get(0).getProductId());
+        assertEquals(2L, result.getHits().get(1).getProductId());
+    }
+
+    @Test
+    void search_ShouldRequireAllTokensAndSupportPrefix() {
+        ProductSearchIndex.SearchResult result = index.search("galaxy pho", ProductSearchIndex.SearchFilter.storefront(), 10);
+
+        assertEquals(2, result.getTotalMatches());
+        assertTrue(index.search("galaxy tablet", ProductSearchIndex.SearchFilter.storefront(), 10).getHits().isEmpty());
+    }
+
+    @Test
+    void search_ShouldMatchCompactSkuAndNormalizePersianLetters() {
+        assertEquals(1L, index.search("sma55", ProductSearchIndex.SearchFilter.storefront(), 10).getHits().get(0).getProductId());
+        // «ي» عربی در متن و «ی» فارسی در عبارت جستجو
+        assertEquals(3L, index.search("گوشی", ProductSearchIndex.SearchFilter.storefront(), 10).getHits().get(0).getProductId());
+    }
+
+    @Test
+    void search_AdminFilter_ShouldIncludeUnpublishedProducts() {
+        assertEquals(0, index.search("tablet", ProductSearchIndex.SearchFilter.storefront(), 10).getTotalMatches());
+        assertEquals(1, index.search("tablet", ProductSearchIndex.SearchFilter.admin(null), 10).getTotalMatches());
+        assertEquals(1, index.search("tablet", ProductSearchIndex.SearchFilter.admin(ProductStatus.DRAFT), 10).getTotalMatches());
+    }
+
+    @Test
+    void indexAndRemove_ShouldReplacePreviousTerms() {
+        index.index(document(1L, "Nokia Phone", "NK-1", "Classic", ProductStatus.PUBLISHED));
+
+        assertEquals(1, index.search("galaxy", ProductSearchIndex.SearchFilter.storefront(), 10).getTotalMatches());
+        assertEquals(1L, index.search("nokia", ProductSearchIndex.SearchFilter.storefront(), 10).getHits().get(0).getProductId());
+
+        index.remove(1L);
+
+        assertEquals(0, index.search("nokia", ProductSearchIndex.SearchFilter.storefront(), 10).getTotalMatches());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void search_ShouldLimitHitsButReportExactTotal() {
+        ProductSearchIndex.SearchResult result = index.search("phone", ProductSearchIndex.SearchFilter.storefront(), 1);
+
+        assertEquals(1, result.getHits().size());
+        assertEquals(2, result.getTotalMatches());
+    }
+
+    private ProductSearchDocument document(Long id, String name, String sku, String description, ProductStatus status) {
+        ProductSearchDocument document = new ProductSearchDocument();
+        document.setProductId(id);
+        document.setCategoryId(10L);
+        document.setName(name);
+        document.setSku(sku);
+        document.setDescription(description);
+        document.setStatus(status);
+        document.setIsActive(true);
+        document.setPrice(new BigDecimal("100.00"));
+        document.setViewsCount(0L);
+        document.setSalesCount(0L);
+        document.setCreatedAt(LocalDateTime.now());
+        return document;
+    }
+}
@@ -0,0 +1,125 @@
+package com.webrayan.store.modules.search.service;
+
+import com.webrayan.store.modules.catalog.entity.Category;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import com.webrayan.store.modules.catalog.event.ProductChangedEvent;
+import com.webrayan.store.modules.catalog.repository.ProductAttributeValueRepository;
+import com.webrayan.store.modules.catalog.repository.ProductRepository;
+import com.webrayan.store.modules.catalog.service.CategoryAttributeService;
+import com.webrayan.store.modules.search.config.SearchProperties;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProductSearchIndexerTest {
+
+    private static final Long CATEGORY_ID = 10L;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductAttributeValueRepository productAttributeValueRepository;
+
+    @Mock
+    private CategoryAttributeService categoryAttributeService;
+
+    private ProductSearchIndex searchIndex;
+    private ProductFacetIndex facetIndex;
+    private ProductSearchIndexer indexer;
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        SearchProperties properties = new SearchProperties();
+        searchIndex = new ProductSearchIndex(properties);
+        facetIndex = new ProductFacetIndex();
+        indexer = new ProductSearchIndexer(productRepository, productAttributeValueRepository,
+                categoryAttributeService, searchIndex, facetIndex, properties);
+        ReflectionTestUtils.setField(indexer, "entityManager", mock(EntityManager.class));
+
+        Category category = new Category();
+        category.setId(CATEGORY_ID);
+        product = new Product();
+        product.setId(1L);
+        product.setName("Kettle");
+        product.setSku("KT-1");
+        product.setCategory(category);
+        product.setPrice(new BigDecimal("100"));
+        product.setIsActive(true);
+        product.setStatus(ProductStatus.PUBLISHED);
+        when(productRepository.findById(1L)).thenReturn(Optional.of(product));
+        indexer.onProductChanged(new ProductChangedEvent(1L, ProductChangedEvent.ChangeType.CREATED));
+    }
+
+    @Test
+    void stockChange_ThatFlipsTheStatus_ShouldHideAndShowTheProduct() {
+        assertTrue(visible());
+
+        // ProductService.updateStock(1, 0)
+        product.setStockQuantity(0);
+        product.setStatus(ProductStatus.OUT_OF_STOCK);
+        indexer.onProductChanged(new ProductChangedEvent(1L, ProductChangedEvent.ChangeType.STOCK_CHANGED));
+        assertFalse(visible());
+
+        product.setStockQuantity(5);
+        product.setStatus(ProductStatus.PUBLISHED);
+        indexer.onProductChanged(new ProductChangedEvent(1L, ProductChangedEvent.ChangeType.STOCK_CHANGED));
+        assertTrue(visible());
+    }
+
+    @Test
+    void checkoutReservation_ShouldNotReloadTheProduct() {
+        clearInvocations(productRepository);
+
+        indexer.onProductChanged(new ProductChangedEvent(1L, ProductChangedEvent.ChangeType.STOCK_RESERVED));
+
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void changeDuringRebuild_ShouldNotBeOverwrittenByTheOlderSnapshot() {
+        Product snapshot = new Product();
+        snapshot.setId(1L);
+        snapshot.setName("Kettle");
+        snapshot.setSku("KT-1");
+        snapshot.setCategory(product.getCategory());
+        snapshot.setIsActive(true);
+        snapshot.setStatus(ProductStatus.PUBLISHED);
+        when(productRepository.findBatchAfterId(eq(0L), any(Pageable.class))).thenAnswer(invocation -> {
+            // the product is renamed and its event handled after the rebuild read the old row
+            product.setName("Teapot");
+            indexer.onProductChanged(new ProductChangedEvent(1L, ProductChangedEvent.ChangeType.UPDATED));
+            return List.of(snapshot);
+        });
+        when(productRepository.findByIdIn(Set.of(1L))).thenAnswer(invocation -> List.of(product));
+
+        indexer.rebuildIndex();
+
+        assertEquals(1, searchIndex.search("teapot", ProductSearchIndex.SearchFilter.storefront(), 10).getTotalMatches());
+        assertEquals(0, searchIndex.search("kettle", ProductSearchIndex.SearchFilter.storefront(), 10).getTotalMatches());
+    }
+
+    private boolean visible() {
+        boolean searchable = searchIndex.search("kettle", ProductSearchIndex.SearchFilter.storefront(), 10)
+                .getTotalMatches() == 1;
+        boolean listed = facetIndex.query(CATEGORY_ID, Map.of(), Map.of()).getProductIds().equals(List.of(1L));
+        assertEquals(searchable, listed, "search and category listing disagree");
+        return searchable;
+    }
+}
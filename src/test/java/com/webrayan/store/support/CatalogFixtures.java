@@ -0,0 +1,73 @@
+package com.webrayan.store.support;
+
+import com.webrayan.store.modules.acl.entity.User;
+import com.webrayan.store.modules.catalog.entity.Category;
+import com.webrayan.store.modules.catalog.entity.Product;
+import com.webrayan.store.modules.catalog.enums.ProductStatus;
+import jakarta.persistence.EntityManager;
+
+import java.math.BigDecimal;
+import java.util.function.Consumer;
+
+/**
+ * داده‌های پایه کاتالوگ در تست‌های JPA: یک کاربر، یک دسته و محصولات منتشرشده
+ * The user is both the seller of the products and, in order tests, the customer.
+ * Everything is persisted through the given EntityManager, inside the caller's transaction.
+ */
+public final class CatalogFixtures {
+
+    private final EntityManager entityManager;
+    private final User user;
+    private final Category category;
+
+    public CatalogFixtures(EntityManager entityManager, String username, String categoryName) {
+        this.entityManager = entityManager;
+
+        user = new User();
+        user.setUsername(username);
+        user.setEmail(username + "@example.com");
+        user.setPassword("secret");
+        user.setFirstName("Sara");
+        user.setLastName("Ahmadi");
+        entityManager.persist(user);
+
+        category = new Category();
+        category.setName(categoryName);
+        category.setSlug(username + "-category");
+        entityManager.persist(category);
+    }
+
+    public User user() {
+        return user;
+    }
+
+    public Category category() {
+        return category;
+    }
+
+    /**
+     * A published product named after its slug: price 100, 10 in stock
+     */
+    public Product product(String slug) {
+        return product(slug, product -> {
+        });
+    }
+
+    /**
+     * Same as {@link #product(String)}, with {@code adjust} applied before it is persisted
+     */
+    public Product product(String slug, Consumer<Product> adjust) {
+        Product product = new Product();
+        product.setName(slug);
+        product.setSlug(slug);
+        product.setSku(slug.toUpperCase());
+        product.setPrice(new BigDecimal("100"));
+        product.setStockQuantity(10);
+        product.setStatus(ProductStatus.PUBLISHED);
+        product.setCategory(category);
+        product.setSeller(user);
+        adjust.accept(product);
+        entityManager.persist(product);
+        return product;
+    }
+}
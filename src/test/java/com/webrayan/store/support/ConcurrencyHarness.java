@@ -0,0 +1,83 @@
+package com.webrayan.store.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * اجرای همزمان یک عملیات در چند thread برای تست‌های رقابتی
+ * All tasks wait on one latch so they hit the code under test at the same moment.
+ */
+public final class ConcurrencyHarness {
+
+    private ConcurrencyHarness() {
+    }
+
+    /**
+     * Runs {@code task} in {@code threads} parallel threads and returns one outcome per thread
+     */
+    public static <T> List<Outcome<T>> run(int threads, Callable<T> task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    ready.countDown();
+                    start.await();
+                    return task.call();
+                }));
+            }
+            ready.await(10, TimeUnit.SECONDS);
+            start.countDown();
+
+            List<Outcome<T>> outcomes = new ArrayList<>(threads);
+            for (Future<T> future : futures) {
+                try {
+                    outcomes.add(new Outcome<>(future.get(30, TimeUnit.SECONDS), null));
+                } catch (ExecutionException e) {
+                    outcomes.add(new Outcome<>(null, e.getCause()));
+                } catch (TimeoutException e) {
+                    outcomes.add(new Outcome<>(null, e));
+                }
+            }
+            return outcomes;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static <T> long successes(List<Outcome<T>> outcomes) {
+        return outcomes.stream().filter(Outcome::succeeded).count();
+    }
+
+    public static final class Outcome<T> {
+        private final T value;
+        private final Throwable error;
+
+        Outcome(T value, Throwable error) {
+            this.value = value;
+            this.error = error;
+        }
+
+        public boolean succeeded() {
+            return error == null;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public Throwable getError() {
+            return error;
+        }
+    }
+}
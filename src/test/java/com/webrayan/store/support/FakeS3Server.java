@@ -0,0 +1,324 @@
+package com.webrayan.store.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * یک S3 درون‌حافظه‌ای برای تست
+ * <p>
+ * An in-process stand-in for MinIO: path-style requests against any bucket, single PUTs, server-side
+ * copies, multipart uploads, ranged GETs, HEAD, DELETE and ListObjectsV2. Signatures are not checked;
+ * aws-chunked bodies are decoded. Not meant to be complete, only to speak enough S3 for the SDK.
+ */
+public final class FakeS3Server implements AutoCloseable {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final Pattern PART_NUMBER = Pattern.compile("<PartNumber>(\\d+)</PartNumber>");
+
+    private final HttpServer server;
+    // bucket + "/" + key -> object
+    private final Map<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final AtomicInteger completedMultipartUploads = new AtomicInteger();
+    private final AtomicInteger abortedMultipartUploads = new AtomicInteger();
+
+    public FakeS3Server() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            // a fresh connection per request spares this server any keep-alive bookkeeping
+            exchange.getResponseHeaders().set("Connection", "close");
+            try (exchange) {
+                handle(exchange);
+            } catch (RuntimeException e) {
+                exchange.sendResponseHeaders(500, -1);
+            }
+        });
+        server.start();
+    }
+
+    public String endpoint() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public boolean contains(String bucket, String key) {
+        return objects.containsKey(bucket + "/" + key);
+    }
+
+    public byte[] content(String bucket, String key) {
+        StoredObject object = objects.get(bucket + "/" + key);
+        return object == null ? null : object.content;
+    }
+
+    /**
+     * Keys of the bucket, in order
+     */
+    public List<String> keys(String bucket) {
+        return objects.keySet().stream()
+                .filter(name -> name.startsWith(bucket + "/"))
+                .map(name -> name.substring(bucket.length() + 1))
+                .toList();
+    }
+
+    public int completedMultipartUploads() {
+        return completedMultipartUploads.get();
+    }
+
+    public int abortedMultipartUploads() {
+        return abortedMultipartUploads.get();
+    }
+
+    public int pendingMultipartUploads() {
+        return uploads.size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath().substring(1);
+        int slash = path.indexOf('/');
+        String bucket = slash < 0 ? path : path.substring(0, slash);
+        String key = slash < 0 ? "" : path.substring(slash + 1);
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+        String name = bucket + "/" + key;
+
+        switch (exchange.getRequestMethod()) {
+            case "PUT" -> {
+                if (query.containsKey("uploadId")) {
+                    Map<Integer, byte[]> parts = uploads.get(query.get("uploadId"));
+                    if (parts == null) {
+                        error(exchange, 404, "NoSuchUpload");
+                        return;
+                    }
+                    byte[] part = body(exchange);
+                    parts.put(Integer.parseInt(query.get("partNumber")), part);
+                    exchange.getResponseHeaders().set("ETag", etag(part));
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+                if (copySource != null) {
+                    String source = URLDecoder.decode(copySource, StandardCharsets.UTF_8);
+                    StoredObject original = objects.get(source.startsWith("/") ? source.substring(1) : source);
+                    if (original == null) {
+                        error(exchange, 404, "NoSuchKey");
+                        return;
+                    }
+                    objects.put(name, new StoredObject(original.content, original.contentType));
+                    xml(exchange, 200, "<CopyObjectResult><ETag>" + etag(original.content)
+                            + "</ETag><LastModified>" + Instant.now() + "</LastModified></CopyObjectResult>");
+                    return;
+                }
+                byte[] content = body(exchange);
+                objects.put(name, new StoredObject(content, exchange.getRequestHeaders().getFirst("Content-Type")));
+                exchange.getResponseHeaders().set("ETag", etag(content));
+                exchange.sendResponseHeaders(200, -1);
+            }
+            case "POST" -> {
+                if (query.containsKey("uploads")) {
+                    String uploadId = UUID.randomUUID().toString();
+                    uploads.put(uploadId, new TreeMap<>());
+                    xml(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + bucket + "</Bucket><Key>" + key
+                            + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+                    return;
+                }
+                Map<Integer, byte[]> parts = uploads.remove(query.get("uploadId"));
+                if (parts == null) {
+                    error(exchange, 404, "NoSuchUpload");
+                    return;
+                }
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                Matcher partNumbers = PART_NUMBER.matcher(new String(body(exchange), StandardCharsets.UTF_8));
+                while (partNumbers.find()) {
+                    content.write(parts.get(Integer.parseInt(partNumbers.group(1))));
+                }
+                objects.put(name, new StoredObject(content.toByteArray(), null));
+                completedMultipartUploads.incrementAndGet();
+                xml(exchange, 200, "<CompleteMultipartUploadResult><Bucket>" + bucket + "</Bucket><Key>" + key
+                        + "</Key><ETag>" + etag(content.toByteArray()) + "</ETag></CompleteMultipartUploadResult>");
+            }
+            case "DELETE" -> {
+                if (query.containsKey("uploadId")) {
+                    if (uploads.remove(query.get("uploadId")) != null) {
+                        abortedMultipartUploads.incrementAndGet();
+                    }
+                } else {
+                    objects.remove(name);
+                }
+                exchange.sendResponseHeaders(204, -1);
+            }
+            case "HEAD" -> {
+                StoredObject object = objects.get(name);
+                if (object == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                headers(exchange, object);
+                // HttpServer leaves a HEAD response's Content-Length alone when no body length is given
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(object.content.length));
+                exchange.sendResponseHeaders(200, -1);
+            }
+            case "GET" -> {
+                if (key.isEmpty() && "2".equals(query.get("list-type"))) {
+                    list(exchange, bucket, query.getOrDefault("prefix", ""));
+                    return;
+                }
+                StoredObject object = objects.get(name);
+                if (object == null) {
+                    error(exchange, 404, "NoSuchKey");
+                    return;
+                }
+                headers(exchange, object);
+                byte[] content = object.content;
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                Matcher matcher = range == null ? null : RANGE.matcher(range);
+                if (matcher != null && matcher.matches()) {
+                    int start = Integer.parseInt(matcher.group(1));
+                    int end = matcher.group(2).isEmpty() ? content.length - 1
+                            : Math.min(Integer.parseInt(matcher.group(2)), content.length - 1);
+                    exchange.getResponseHeaders().set("Content-Range",
+                            "bytes " + start + "-" + end + "/" + content.length);
+                    send(exchange, 206, Arrays.copyOfRange(content, start, end + 1));
+                } else {
+                    send(exchange, 200, content);
+                }
+            }
+            default -> exchange.sendResponseHeaders(405, -1);
+        }
+    }
+
+    private void list(HttpExchange exchange, String bucket, String prefix) throws IOException {
+        StringBuilder contents = new StringBuilder();
+        int count = 0;
+        for (Map.Entry<String, StoredObject> entry : objects.entrySet()) {
+            String key = entry.getKey().substring(entry.getKey().indexOf('/') + 1);
+            if (entry.getKey().startsWith(bucket + "/") && key.startsWith(prefix)) {
+                StoredObject object = entry.getValue();
+                contents.append("<Contents><Key>").append(key).append("</Key><LastModified>")
+                        .append(object.lastModified).append("</LastModified><ETag>").append(etag(object.content))
+                        .append("</ETag><Size>").append(object.content.length).append("</Size></Contents>");
+                count++;
+            }
+        }
+        xml(exchange, 200, "<ListBucketResult><Name>" + bucket + "</Name><Prefix>" + prefix + "</Prefix><KeyCount>"
+                + count + "</KeyCount><IsTruncated>false</IsTruncated>" + contents + "</ListBucketResult>");
+    }
+
+    /**
+     * Request body, with the aws-chunked framing ({@code <hex size>;<extensions>\r\n<data>\r\n}) removed
+     */
+    private byte[] body(HttpExchange exchange) throws IOException {
+        InputStream input = exchange.getRequestBody();
+        String payload = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (payload == null || !payload.startsWith("STREAMING-")) {
+            return input.readAllBytes();
+        }
+        DataInputStream chunks = new DataInputStream(input);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        while (true) {
+            String header = line(chunks);
+            int size = Integer.parseInt(header.split(";", 2)[0].trim(), 16);
+            if (size == 0) {
+                // trailers, if any, are not checked
+                input.readAllBytes();
+                return content.toByteArray();
+            }
+            byte[] chunk = new byte[size];
+            chunks.readFully(chunk);
+            content.write(chunk);
+            line(chunks);
+        }
+    }
+
+    private String line(InputStream input) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = input.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private void headers(HttpExchange exchange, StoredObject object) {
+        exchange.getResponseHeaders().set("ETag", etag(object.content));
+        exchange.getResponseHeaders().set("Last-Modified",
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(object.lastModified.atOffset(ZoneOffset.UTC)));
+        exchange.getResponseHeaders().set("Content-Type",
+                object.contentType != null ? object.contentType : "application/octet-stream");
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+    }
+
+    private void error(HttpExchange exchange, int status, String code) throws IOException {
+        xml(exchange, status, "<Error><Code>" + code + "</Code><Message>" + code + "</Message></Error>");
+    }
+
+    private void xml(HttpExchange exchange, int status, String body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        send(exchange, status, ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + body).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private String etag(byte[] content) {
+        return "\"" + Integer.toHexString(Arrays.hashCode(content)) + "\"";
+    }
+
+    private Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? parameter : parameter.substring(0, equals), StandardCharsets.UTF_8);
+            query.put(name, equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static final class StoredObject {
+        private final byte[] content;
+        private final String contentType;
+        // S3 reports times to the second
+        private final Instant lastModified = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        private StoredObject(byte[] content, String contentType) {
+            this.content = content;
+            this.contentType = contentType;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.webrayan.store.support;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * شمارش کوئری‌های اجرا شده توسط Hibernate در تست‌ها
+ * Requires hibernate.generate_statistics=true (see application-h2.properties).
+ */
+public final class QueryCounter {
+
+    private final Statistics statistics;
+
+    public QueryCounter(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    public void reset() {
+        statistics.clear();
+    }
+
+    /**
+     * Number of JDBC statements prepared since the last {@link #reset()}
+     */
+    public long count() {
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * Number of entities hydrated since the last {@link #reset()}
+     */
+    public long entityLoadCount() {
+        return statistics.getEntityLoadCount();
+    }
+}